@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.benchmarks;
+
+import javax.servlet.http.Cookie;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Creates requests shaped like the traffic a browser sends to a secured application: a
+ * secure connection, the usual dozen headers, a session cookie next to analytics cookies
+ * and a query string, so that benchmarks pay for the same header and cookie handling as
+ * production requests.
+ *
+ * @author Ben Siegler
+ */
+public final class BenchmarkRequests {
+
+	private static final String SESSION_ID = "7F3D2A9C1B4E5F60718293A4B5C6D7E8";
+
+	private BenchmarkRequests() {
+	}
+
+	/**
+	 * Creates a GET request for a page of the application.
+	 * @param path the path of the request, without context path. A query string is
+	 * split off.
+	 * @return the request
+	 */
+	public static MockHttpServletRequest get(String path) {
+		return request("GET", path);
+	}
+
+	/**
+	 * Creates a form POST request.
+	 * @param path the path of the request, without context path
+	 * @return the request, to which the form parameters can be added
+	 */
+	public static MockHttpServletRequest post(String path) {
+		MockHttpServletRequest request = request("POST", path);
+		request.setContentType("application/x-www-form-urlencoded");
+		request.addHeader("Content-Type", "application/x-www-form-urlencoded");
+		request.addHeader("Origin", "https://app.example.com");
+		return request;
+	}
+
+	private static MockHttpServletRequest request(String method, String path) {
+		int query = path.indexOf('?');
+		String servletPath = (query != -1) ? path.substring(0, query) : path;
+		MockHttpServletRequest request = new MockHttpServletRequest(method, servletPath);
+		request.setServletPath(servletPath);
+		if (query != -1) {
+			request.setQueryString(path.substring(query + 1));
+		}
+		request.setScheme("https");
+		request.setSecure(true);
+		request.setServerName("app.example.com");
+		request.setServerPort(443);
+		request.setRemoteAddr("203.0.113.42");
+		request.addHeader("Host", "app.example.com");
+		request.addHeader("Connection", "keep-alive");
+		request.addHeader("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) "
+				+ "Chrome/91.0.4472.114 Safari/537.36");
+		request.addHeader("Accept",
+				"text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8");
+		request.addHeader("Accept-Encoding", "gzip, deflate, br");
+		request.addHeader("Accept-Language", "en-US,en;q=0.9,fr;q=0.8");
+		request.addHeader("Referer", "https://app.example.com/dashboard");
+		request.addHeader("Sec-Fetch-Dest", "document");
+		request.addHeader("Sec-Fetch-Mode", "navigate");
+		request.addHeader("Sec-Fetch-Site", "same-origin");
+		request.addHeader("Upgrade-Insecure-Requests", "1");
+		request.addHeader("Cookie", "JSESSIONID=" + SESSION_ID
+				+ "; _ga=GA1.2.1234567890.1622548800; _gid=GA1.2.987654321.1622548800; theme=dark");
+		request.setCookies(new Cookie("JSESSIONID", SESSION_ID), new Cookie("_ga", "GA1.2.1234567890.1622548800"),
+				new Cookie("_gid", "GA1.2.987654321.1622548800"), new Cookie("theme", "dark"));
+		request.setRequestedSessionId(SESSION_ID);
+		request.setRequestedSessionIdFromCookie(true);
+		return request;
+	}
+
+}
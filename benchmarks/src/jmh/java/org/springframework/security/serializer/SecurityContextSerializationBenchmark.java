@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.benchmarks.BenchmarkRequests;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Compares {@link SecurityBinaryCodec} with Java serialization and with Jackson using
+ * {@link SecurityJackson2Modules} for a logged in user's {@link SecurityContext}, as
+ * stored in a session or a cookie on every request.
+ *
+ * @author Ben Siegler
+ */
+@State(Scope.Thread)
+public class SecurityContextSerializationBenchmark {
+
+	private final SecurityBinaryCodec codec = SecurityBinaryCodec.withDefaultModules(getClass().getClassLoader());
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private SecurityContext context;
+
+	private byte[] binary;
+
+	private byte[] java;
+
+	private byte[] json;
+
+	@Setup
+	public void setup() throws IOException {
+		this.mapper.registerModules(SecurityJackson2Modules.getModules(getClass().getClassLoader()));
+		UserDetails principal = User.withUsername("user").password("{noop}password")
+				.roles("USER", "ADMIN", "AUDITOR").build();
+		UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal,
+				null, principal.getAuthorities());
+		MockHttpServletRequest request = BenchmarkRequests.get("/account/settings");
+		request.getSession();
+		authentication.setDetails(new WebAuthenticationDetails(request));
+		this.context = new SecurityContextImpl(authentication);
+		this.binary = this.codec.serialize(this.context);
+		this.java = SerializationUtils.serialize(this.context);
+		this.json = this.mapper.writeValueAsBytes(this.context);
+	}
+
+	@Benchmark
+	public byte[] binarySerialize() {
+		return this.codec.serialize(this.context);
+	}
+
+	@Benchmark
+	public SecurityContext binaryDeserialize() {
+		return this.codec.deserialize(this.binary, SecurityContext.class);
+	}
+
+	@Benchmark
+	public byte[] javaSerialize() {
+		return SerializationUtils.serialize(this.context);
+	}
+
+	@Benchmark
+	public Object javaDeserialize() {
+		return SerializationUtils.deserialize(this.java);
+	}
+
+	@Benchmark
+	public byte[] jacksonSerialize() throws IOException {
+		return this.mapper.writeValueAsBytes(this.context);
+	}
+
+	@Benchmark
+	public SecurityContext jacksonDeserialize() throws IOException {
+		return this.mapper.readValue(this.json, SecurityContext.class);
+	}
+
+}
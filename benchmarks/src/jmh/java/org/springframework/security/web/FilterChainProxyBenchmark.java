@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.benchmarks.BenchmarkRequests;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+
+/**
+ * Measures the overhead {@link FilterChainProxy} adds to every request: firewalling the
+ * request, selecting the {@link SecurityFilterChain} and walking its filters. The chains
+ * mirror a typical application, with ignored static resources first, an API chain and a
+ * catch-all chain of the size of a default configuration, and are selected either in
+ * order or through the index. The filters only pass the request on, their own cost is
+ * measured by the other benchmarks.
+ *
+ * @author Ben Siegler
+ */
+@State(Scope.Thread)
+public class FilterChainProxyBenchmark {
+
+	@Param({ "/css/site.css", "/api/orders/42", "/account/settings?tab=security" })
+	public String path;
+
+	@Param({ "false", "true" })
+	public boolean indexed;
+
+	private FilterChainProxy filterChainProxy;
+
+	private MockHttpServletRequest request;
+
+	private MockHttpServletResponse response;
+
+	private final FilterChain chain = (request, response) -> {
+	};
+
+	@Setup
+	public void setup() throws Exception {
+		List<SecurityFilterChain> chains = new ArrayList<>();
+		chains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/css/**")));
+		chains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/js/**")));
+		chains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/images/**")));
+		chains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/webjars/**")));
+		chains.add(new DefaultSecurityFilterChain(new AntPathRequestMatcher("/api/**"), passThroughFilters(11)));
+		chains.add(new DefaultSecurityFilterChain(AnyRequestMatcher.INSTANCE, passThroughFilters(15)));
+		this.filterChainProxy = new FilterChainProxy(chains);
+		this.filterChainProxy.setIndexFilterChains(this.indexed);
+		this.filterChainProxy.afterPropertiesSet();
+		this.request = BenchmarkRequests.get(this.path);
+		this.response = new MockHttpServletResponse();
+	}
+
+	@Benchmark
+	public MockHttpServletResponse doFilter() throws Exception {
+		this.filterChainProxy.doFilter(this.request, this.response, this.chain);
+		return this.response;
+	}
+
+	private static List<Filter> passThroughFilters(int count) {
+		List<Filter> filters = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			filters.add((request, response, chain) -> chain.doFilter(request, response));
+		}
+		return filters;
+	}
+
+}
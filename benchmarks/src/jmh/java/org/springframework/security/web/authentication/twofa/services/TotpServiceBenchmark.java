@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.services;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+
+/**
+ * Measures {@link TotpService#confirmCode} for a valid and an incorrect code. Both check
+ * the whole drift window, so they are expected to cost the same.
+ *
+ * @author Ben Siegler
+ */
+@State(Scope.Thread)
+public class TotpServiceBenchmark {
+
+	private static final String SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+
+	private final TotpService totpService = new TotpService();
+
+	private final TwoFactorPreference preference = new TwoFactorPreference(true, SECRET);
+
+	private String validCode;
+
+	private String incorrectCode;
+
+	@Setup
+	public void setup() {
+		Instant now = Instant.parse("2021-06-01T12:00:00Z");
+		this.totpService.setClock(Clock.fixed(now, ZoneOffset.UTC));
+		this.validCode = this.totpService.generateCode(SECRET, now.toEpochMilli() / 30000);
+		this.incorrectCode = this.validCode.equals("000000") ? "000001" : "000000";
+	}
+
+	@Benchmark
+	public String confirmCodeWhenValid() {
+		this.totpService.confirmCode(this.preference, this.validCode);
+		return this.validCode;
+	}
+
+	@Benchmark
+	public Object confirmCodeWhenIncorrect() {
+		try {
+			this.totpService.confirmCode(this.preference, this.incorrectCode);
+			return this.incorrectCode;
+		}
+		catch (BadCredentialsException ex) {
+			return ex;
+		}
+	}
+
+}
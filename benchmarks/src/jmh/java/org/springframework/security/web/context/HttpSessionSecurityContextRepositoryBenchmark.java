@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.benchmarks.BenchmarkRequests;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Measures {@link HttpSessionSecurityContextRepository#loadContext} and the load and
+ * save cycle {@link SecurityContextPersistenceFilter} performs on every request, for a
+ * logged in user and for a request without a session, with and without
+ * {@link HttpSessionSecurityContextRepository#setTrackContextChanges(boolean) change
+ * tracking}.
+ *
+ * @author Ben Siegler
+ */
+@State(Scope.Thread)
+public class HttpSessionSecurityContextRepositoryBenchmark {
+
+	@Param({ "authenticated", "anonymous" })
+	public String user;
+
+	@Param({ "false", "true" })
+	public boolean trackContextChanges;
+
+	private final HttpSessionSecurityContextRepository repository = new HttpSessionSecurityContextRepository();
+
+	private MockHttpServletRequest request;
+
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	@Setup
+	public void setup() {
+		this.repository.setTrackContextChanges(this.trackContextChanges);
+		this.request = BenchmarkRequests.get("/account/settings");
+		if ("authenticated".equals(this.user)) {
+			UserDetails principal = User.withUsername("user").password("{noop}password")
+					.roles("USER", "ADMIN", "AUDITOR").build();
+			SecurityContext context = new SecurityContextImpl(new UsernamePasswordAuthenticationToken(principal,
+					null, principal.getAuthorities()));
+			MockHttpSession session = new MockHttpSession();
+			session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
+			this.request.setSession(session);
+		}
+	}
+
+	@Benchmark
+	public SecurityContext loadContext() {
+		return this.repository.loadContext(new HttpRequestResponseHolder(this.request, this.response));
+	}
+
+	@Benchmark
+	public SecurityContext loadAndSaveContext() {
+		HttpRequestResponseHolder holder = new HttpRequestResponseHolder(this.request, this.response);
+		SecurityContext context = this.repository.loadContext(holder);
+		this.repository.saveContext(context, holder.getRequest(), holder.getResponse());
+		return context;
+	}
+
+}
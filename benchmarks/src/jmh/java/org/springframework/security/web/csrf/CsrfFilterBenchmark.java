@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.csrf;
+
+import javax.servlet.FilterChain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.benchmarks.BenchmarkRequests;
+
+/**
+ * Measures {@link CsrfFilter} with the default {@link HttpSessionCsrfTokenRepository},
+ * for a GET, which only exposes the token, and for a form POST carrying a valid token.
+ *
+ * @author Ben Siegler
+ */
+@State(Scope.Thread)
+public class CsrfFilterBenchmark {
+
+	@Param({ "GET", "POST" })
+	public String method;
+
+	private CsrfFilter filter;
+
+	private MockHttpServletRequest request;
+
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	private final FilterChain chain = (request, response) -> {
+	};
+
+	@Setup
+	public void setup() {
+		HttpSessionCsrfTokenRepository tokenRepository = new HttpSessionCsrfTokenRepository();
+		this.filter = new CsrfFilter(tokenRepository);
+		this.request = "POST".equals(this.method) ? BenchmarkRequests.post("/account/settings")
+				: BenchmarkRequests.get("/account/settings");
+		this.request.setSession(new MockHttpSession());
+		CsrfToken token = tokenRepository.generateToken(this.request);
+		tokenRepository.saveToken(token, this.request, this.response);
+		if ("POST".equals(this.method)) {
+			this.request.addParameter("displayName", "Alice");
+			this.request.addParameter("email", "alice@example.com");
+			this.request.addParameter(token.getParameterName(), token.getToken());
+		}
+	}
+
+	@Benchmark
+	public MockHttpServletResponse doFilter() throws Exception {
+		this.filter.doFilter(this.request, this.response, this.chain);
+		return this.response;
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.firewall;
+
+import java.util.Enumeration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.benchmarks.BenchmarkRequests;
+
+/**
+ * Measures {@link StrictHttpFirewall#getFirewalledRequest}, alone and followed by the
+ * header and parameter reads an application typically performs, which the firewalled
+ * request validates lazily.
+ *
+ * @author Ben Siegler
+ */
+@State(Scope.Thread)
+public class StrictHttpFirewallBenchmark {
+
+	@Param({ "/", "/api/orders/42", "/account/settings?tab=security&page=2",
+			"/static/app/assets/images/icons/very/deep/path/logo-2021.svg" })
+	public String path;
+
+	private final StrictHttpFirewall firewall = new StrictHttpFirewall();
+
+	private MockHttpServletRequest request;
+
+	private MockHttpServletRequest rejectedRequest;
+
+	@Setup
+	public void setup() {
+		this.request = BenchmarkRequests.get(this.path);
+		this.request.addParameter("tab", "security");
+		this.request.addParameter("page", "2");
+		this.rejectedRequest = BenchmarkRequests.get(this.path);
+		this.rejectedRequest.setServletPath(this.path + ";jsessionid=1234");
+		this.rejectedRequest.setRequestURI(this.path + ";jsessionid=1234");
+	}
+
+	@Benchmark
+	public FirewalledRequest getFirewalledRequest() {
+		return this.firewall.getFirewalledRequest(this.request);
+	}
+
+	@Benchmark
+	public void getFirewalledRequestAndReadHeaders(Blackhole blackhole) {
+		FirewalledRequest firewalled = this.firewall.getFirewalledRequest(this.request);
+		Enumeration<String> names = firewalled.getHeaderNames();
+		while (names.hasMoreElements()) {
+			blackhole.consume(firewalled.getHeader(names.nextElement()));
+		}
+		blackhole.consume(firewalled.getParameter("tab"));
+		blackhole.consume(firewalled.getParameterMap());
+	}
+
+	@Benchmark
+	public Object getFirewalledRequestWhenRejected() {
+		try {
+			return this.firewall.getFirewalledRequest(this.rejectedRequest);
+		}
+		catch (RequestRejectedException ex) {
+			return ex;
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.util.matcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.benchmarks.BenchmarkRequests;
+
+/**
+ * Measures {@link AntPathRequestMatcher#matches} for the pattern shapes found in
+ * security configurations: an exact path, a trailing {@code /**}, a wildcard segment
+ * and a leading {@code /**}, against a matching and a non-matching request.
+ *
+ * @author Ben Siegler
+ */
+@State(Scope.Thread)
+public class AntPathRequestMatcherBenchmark {
+
+	@Param({ "/login", "/api/**", "/users/*/orders/**", "/**/*.js" })
+	public String pattern;
+
+	@Param({ "/api/orders/42", "/users/alice/orders/42/items", "/static/js/app.min.js" })
+	public String path;
+
+	@Param({ "true", "false" })
+	public boolean caseSensitive;
+
+	private AntPathRequestMatcher matcher;
+
+	private MockHttpServletRequest request;
+
+	@Setup
+	public void setup() {
+		this.matcher = new AntPathRequestMatcher(this.pattern, null, this.caseSensitive);
+		this.request = BenchmarkRequests.get(this.path);
+	}
+
+	@Benchmark
+	public boolean matches() {
+		return this.matcher.matches(this.request);
+	}
+
+}
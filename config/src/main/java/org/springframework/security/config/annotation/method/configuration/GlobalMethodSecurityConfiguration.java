@@ -24,6 +24,7 @@ import org.aopalliance.intercept.MethodInterceptor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
@@ -31,6 +32,7 @@ import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.annotation.AdviceMode;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -74,6 +76,7 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.core.GrantedAuthorityDefaults;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 /**
  * Base {@link Configuration} for enabling global method security. Classes may extend this
@@ -174,6 +177,42 @@ public class GlobalMethodSecurityConfiguration implements ImportAware, SmartInit
 		if (grantedAuthorityDefaults != null) {
 			this.defaultMethodExpressionHandler.setDefaultRolePrefix(grantedAuthorityDefaults.getRolePrefix());
 		}
+		cacheMethodSecurityMetadata();
+	}
+
+	/**
+	 * Caches the security metadata of the methods of the singleton beans, so that secured
+	 * methods find it in the cache from their first call.
+	 */
+	private void cacheMethodSecurityMetadata() {
+		MethodSecurityMetadataSource source = (this.methodSecurityInterceptor != null)
+				? this.methodSecurityInterceptor.getSecurityMetadataSource() : null;
+		if (!(source instanceof DelegatingMethodSecurityMetadataSource)
+				|| !(this.context instanceof ConfigurableListableBeanFactory)) {
+			return;
+		}
+		DelegatingMethodSecurityMetadataSource metadataSource = (DelegatingMethodSecurityMetadataSource) source;
+		ConfigurableListableBeanFactory beanFactory = (ConfigurableListableBeanFactory) this.context;
+		int secured = 0;
+		for (String beanName : beanFactory.getBeanNamesForType(Object.class, false, false)) {
+			Class<?> targetClass = getTargetClass(beanFactory, beanName);
+			if (targetClass != null && metadataSource.cacheAttributes(targetClass)) {
+				secured++;
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Cached the method security metadata of " + secured + " beans");
+		}
+	}
+
+	private Class<?> getTargetClass(ConfigurableListableBeanFactory beanFactory, String beanName) {
+		// the type of a proxy does not tell which class it proxies, the instance does
+		Object bean = beanFactory.getSingleton(beanName);
+		if (bean != null) {
+			return AopProxyUtils.ultimateTargetClass(bean);
+		}
+		Class<?> type = beanFactory.getType(beanName, false);
+		return (type != null) ? ClassUtils.getUserClass(type) : null;
 	}
 
 	private <T> T getSingleBeanOrNull(Class<T> type) {
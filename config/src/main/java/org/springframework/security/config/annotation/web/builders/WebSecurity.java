@@ -99,6 +99,8 @@ public final class WebSecurity extends AbstractConfiguredSecurityBuilder<Filter,
 
 	private boolean debugEnabled;
 
+	private boolean indexFilterChains;
+
 	private WebInvocationPrivilegeEvaluator privilegeEvaluator;
 
 	private DefaultWebSecurityExpressionHandler defaultWebSecurityExpressionHandler = new DefaultWebSecurityExpressionHandler();
@@ -172,6 +174,20 @@ public final class WebSecurity extends AbstractConfiguredSecurityBuilder<Filter,
 		return this;
 	}
 
+	/**
+	 * Controls whether the {@link FilterChainProxy} indexes its filter chains by the
+	 * leading literal path segments and HTTP method of their request matchers, so that
+	 * the chain of a request is found without evaluating every preceding chain.
+	 * @param indexFilterChains if true, indexes the filter chains. Default is false.
+	 * @return the {@link WebSecurity} for further customization.
+	 * @since 5.5
+	 * @see FilterChainProxy#setIndexFilterChains(boolean)
+	 */
+	public WebSecurity indexFilterChains(boolean indexFilterChains) {
+		this.indexFilterChains = indexFilterChains;
+		return this;
+	}
+
 	/**
 	 * Controls debugging support for Spring Security.
 	 * @param debugEnabled if true, enables debug support with Spring Security. Default is
@@ -291,6 +307,7 @@ public final class WebSecurity extends AbstractConfiguredSecurityBuilder<Filter,
 		if (this.requestRejectedHandler != null) {
 			filterChainProxy.setRequestRejectedHandler(this.requestRejectedHandler);
 		}
+		filterChainProxy.setIndexFilterChains(this.indexFilterChains);
 		filterChainProxy.afterPropertiesSet();
 
 		Filter result = filterChainProxy;
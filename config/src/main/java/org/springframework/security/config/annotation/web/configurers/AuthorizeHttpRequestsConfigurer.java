@@ -130,6 +130,21 @@ public final class AuthorizeHttpRequestsConfigurer<H extends HttpSecurityBuilder
 			return new AuthorizedUrl(requestMatchers);
 		}
 
+		/**
+		 * Whether to index the {@link RequestMatcher}s by the leading literal segments
+		 * and the HTTP method of their patterns, so that only those which may match a
+		 * request are evaluated. Defaults to {@code false}.
+		 * @param indexRequestMatchers whether to index the {@link RequestMatcher}s
+		 * @return the {@link AuthorizationManagerRequestMatcherRegistry} for further
+		 * customizations
+		 * @since 5.5
+		 * @see DelegatingAuthorizationManager.Builder#indexRequestMatchers(boolean)
+		 */
+		public AuthorizationManagerRequestMatcherRegistry indexRequestMatchers(boolean indexRequestMatchers) {
+			this.managerBuilder.indexRequestMatchers(indexRequestMatchers);
+			return this;
+		}
+
 		/**
 		 * Adds an {@link ObjectPostProcessor} for this class.
 		 * @param objectPostProcessor the {@link ObjectPostProcessor} to use
@@ -4,10 +4,13 @@ import org.springframework.cache.Cache;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.HttpSecurityBuilder;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.TwoFactorAuthenticationFilter;
 import org.springframework.security.web.authentication.TwoFactorAuthenticationProvider;
+import org.springframework.security.web.authentication.twofa.ratelimit.InMemoryTwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter;
 import org.springframework.security.web.authentication.twofa.repositories.DatabaseTwoFactorAuthCodeRepository;
 import org.springframework.security.web.authentication.twofa.repositories.InMemoryTwoFactorAuthCodeRepository;
 import org.springframework.security.web.authentication.twofa.repositories.TwoFactorAuthCodeRepository;
@@ -16,6 +19,7 @@ import org.springframework.security.web.authentication.twofa.services.TwoFactorA
 import org.springframework.security.web.authentication.twofa.services.TwoFactorAuthCodeService;
 import org.springframework.security.web.authentication.twofa.stategies.codegeneration.TwoFactorAuthCodeGenerationStrategyImpl;
 import org.springframework.security.web.authentication.twofa.stategies.codegeneration.TwoFactorAuthCodeGenerationStrategy;
+import org.springframework.security.web.authentication.twofa.stategies.sendattemp.AsyncTwoFactorAuthCodeSendStrategy;
 import org.springframework.security.web.authentication.twofa.stategies.sendattemp.TwoFactorAuthCodeSendStrategy;
 import org.springframework.security.web.authentication.twofa.stategies.sendfailure.NullSendFailureStrategy;
 import org.springframework.security.web.authentication.twofa.stategies.sendfailure.TwoFactorAuthCodeSendFailureStrategy;
@@ -31,6 +35,7 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 
 	private TwoFactorAuthCodeSendStrategy sendStrategy;
 	private TwoFactorAuthCodeSendFailureStrategy sendFailureStrategy = new NullSendFailureStrategy();
+	private Customizer<AsyncTwoFactorAuthCodeSendStrategy> asyncSendCustomizer;
 
 	private String usernameFormKey;
 	private String passwordFormKey;
@@ -41,11 +46,13 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 	private TwoFactorAuthCodeGenerationStrategy generationStrategy;
 	private TwoFactorAuthCodeRepository codeRepository;
 	private Long codeExpirationTime;
+	private TwoFactorAuthRateLimiter rateLimiter;
 
 	private String twoFactorProcessingUrl = TwoFactorAuthenticationFilter.DEFAULT_TWO_FACTOR_PROCESSING_URL;
 	private String twoFactorRedirectUrl = TwoFactorAuthenticationFilter.DEFAULT_TWO_FACTOR_REDIRECT_URL;
 	private String twoFactorFailureUrl = TwoFactorAuthenticationFilter.DEFAULT_TWO_FACTOR_FAILURE_URL;
 	private String twoFactorChoiceUrl = TwoFactorAuthenticationFilter.DEFAULT_TWO_FACTOR_CHOICE_URL;
+	private String twoFactorLockedUrl = TwoFactorAuthenticationFilter.DEFAULT_TWO_FACTOR_LOCKED_URL;
 
 	private boolean addTwoFactorAuthenticationProvider = true;
 	private UserDetailsService userDetailsService;
@@ -61,7 +68,13 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 
 		TwoFactorAuthenticationFilter filter = super.getAuthenticationFilter();
 
-		filter.setSendStrategy(sendStrategy);
+		if(asyncSendCustomizer != null) {
+			AsyncTwoFactorAuthCodeSendStrategy asyncSendStrategy = new AsyncTwoFactorAuthCodeSendStrategy(sendStrategy, sendFailureStrategy);
+			asyncSendCustomizer.customize(asyncSendStrategy);
+			filter.setSendStrategy(postProcess(asyncSendStrategy));
+		}else{
+			filter.setSendStrategy(sendStrategy);
+		}
 		filter.setSendFailureStrategy(sendFailureStrategy);
 
 		if(usernameFormKey != null) {
@@ -74,6 +87,13 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 			filter.setTwoFactorAuthCodeFormKey(twoFactorAuthCodeFormKey);
 		}
 
+		if(codeExpirationTime != null && codeRepository instanceof InMemoryTwoFactorAuthCodeRepository) {
+			((InMemoryTwoFactorAuthCodeRepository) codeRepository).setExpirationTime(codeExpirationTime);
+		}
+		if(codeExpirationTime != null && codeRepository instanceof DatabaseTwoFactorAuthCodeRepository) {
+			((DatabaseTwoFactorAuthCodeRepository) codeRepository).setExpirationTime(codeExpirationTime);
+		}
+
 		if(codeService == null) {
 			codeService = new TwoFactorAuthCodeServiceImpl(codeRepository);
 			if(codeExpirationTime != null) {
@@ -88,6 +108,10 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 		filter.setTwoFactorProcessingUrl(twoFactorProcessingUrl);
 		filter.setTwoFactorRedirectUrl(twoFactorRedirectUrl);
 		filter.setTwoFactorFailureUrl(twoFactorFailureUrl);
+		filter.setTwoFactorLockedUrl(twoFactorLockedUrl);
+		if(rateLimiter != null) {
+			filter.setRateLimiter(rateLimiter);
+		}
 		filter.setLoginRequestUrl(getLoginPage());
 
 		if(addTwoFactorAuthenticationProvider) {
@@ -111,6 +135,7 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 					this.twoFactorProcessingUrl,
 					this.twoFactorRedirectUrl,
 					this.twoFactorFailureUrl,
+					this.twoFactorLockedUrl,
 					this.twoFactorChoiceUrl);
 		}
 	}
@@ -154,6 +179,27 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 		return TwoFactorLoginConfigurer.this;
 	}
 
+	/**
+	 * Sends codes from a pool of background threads instead of the request thread.
+	 * @return the {@link TwoFactorLoginConfigurer} for further customizations
+	 * @see AsyncTwoFactorAuthCodeSendStrategy
+	 */
+	public TwoFactorLoginConfigurer<H> asyncSend() {
+		return asyncSend(Customizer.withDefaults());
+	}
+
+	/**
+	 * Sends codes from a pool of background threads instead of the request thread.
+	 * @param asyncSendCustomizer the {@link Customizer} to tune the queue, timeouts,
+	 * retries and batching
+	 * @return the {@link TwoFactorLoginConfigurer} for further customizations
+	 * @see AsyncTwoFactorAuthCodeSendStrategy
+	 */
+	public TwoFactorLoginConfigurer<H> asyncSend(Customizer<AsyncTwoFactorAuthCodeSendStrategy> asyncSendCustomizer) {
+		this.asyncSendCustomizer = asyncSendCustomizer;
+		return TwoFactorLoginConfigurer.this;
+	}
+
 	public TwoFactorLoginConfigurer<H> sendFailureStrategy(TwoFactorAuthCodeSendFailureStrategy failureStrategy) {
 		this.sendFailureStrategy = failureStrategy;
 		return TwoFactorLoginConfigurer.this;
@@ -174,6 +220,41 @@ public final class TwoFactorLoginConfigurer<H extends HttpSecurityBuilder<H>> ex
 		return TwoFactorLoginConfigurer.this;
 	}
 
+	/**
+	 * The URL users are redirected to when they checked or asked for too many codes.
+	 * Defaults to <tt>/2FA?locked</tt>.
+	 * @param url the URL to redirect to
+	 * @return the {@link TwoFactorLoginConfigurer} for further customizations
+	 */
+	public TwoFactorLoginConfigurer<H> twoFactorLockedUrl(String url) {
+		this.twoFactorLockedUrl = url;
+		return TwoFactorLoginConfigurer.this;
+	}
+
+	/**
+	 * Limits how often codes can be checked and resent per user, session and client
+	 * address. Defaults to an {@link InMemoryTwoFactorAuthRateLimiter}.
+	 * @param rateLimiter the limiter to use
+	 * @return the {@link TwoFactorLoginConfigurer} for further customizations
+	 */
+	public TwoFactorLoginConfigurer<H> rateLimiter(TwoFactorAuthRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+		return TwoFactorLoginConfigurer.this;
+	}
+
+	/**
+	 * Tunes the default {@link InMemoryTwoFactorAuthRateLimiter}, for instance to change
+	 * its policies.
+	 * @param rateLimiterCustomizer the {@link Customizer} of the limiter
+	 * @return the {@link TwoFactorLoginConfigurer} for further customizations
+	 */
+	public TwoFactorLoginConfigurer<H> rateLimiter(Customizer<InMemoryTwoFactorAuthRateLimiter> rateLimiterCustomizer) {
+		InMemoryTwoFactorAuthRateLimiter inMemoryRateLimiter = new InMemoryTwoFactorAuthRateLimiter();
+		rateLimiterCustomizer.customize(inMemoryRateLimiter);
+		this.rateLimiter = inMemoryRateLimiter;
+		return TwoFactorLoginConfigurer.this;
+	}
+
 	public TwoFactorLoginConfigurer<H> twoFactorChoiceUrl(String url) {
 		this.twoFactorChoiceUrl = url;
 		return TwoFactorLoginConfigurer.this;
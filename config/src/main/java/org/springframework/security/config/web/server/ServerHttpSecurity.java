@@ -32,6 +32,8 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.context.Context;
 
 import org.springframework.beans.BeansException;
@@ -101,6 +103,15 @@ import org.springframework.security.oauth2.server.resource.web.server.ServerBear
 import org.springframework.security.web.PortMapper;
 import org.springframework.security.web.authentication.preauth.x509.SubjectDnX509PrincipalExtractor;
 import org.springframework.security.web.authentication.preauth.x509.X509PrincipalExtractor;
+import org.springframework.security.web.authentication.twofa.ratelimit.InMemoryTwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.repositories.InMemoryReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.repositories.R2dbcReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.repositories.ReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.services.TotpService;
+import org.springframework.security.web.authentication.twofa.stategies.codegeneration.TwoFactorAuthCodeGenerationStrategy;
+import org.springframework.security.web.authentication.twofa.stategies.sendattemp.TwoFactorAuthCodeSendStrategy;
+import org.springframework.security.web.authentication.twofa.stategies.sendfailure.TwoFactorAuthCodeSendFailureStrategy;
 import org.springframework.security.web.server.DelegatingServerAuthenticationEntryPoint;
 import org.springframework.security.web.server.DelegatingServerAuthenticationEntryPoint.DelegateEntry;
 import org.springframework.security.web.server.MatcherSecurityWebFilterChain;
@@ -111,6 +122,7 @@ import org.springframework.security.web.server.authentication.AuthenticationConv
 import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
 import org.springframework.security.web.server.authentication.HttpBasicServerAuthenticationEntryPoint;
 import org.springframework.security.web.server.authentication.ReactivePreAuthenticatedAuthenticationManager;
+import org.springframework.security.web.server.authentication.ReactiveTwoFactorAuthenticationManager;
 import org.springframework.security.web.server.authentication.RedirectServerAuthenticationEntryPoint;
 import org.springframework.security.web.server.authentication.RedirectServerAuthenticationFailureHandler;
 import org.springframework.security.web.server.authentication.RedirectServerAuthenticationSuccessHandler;
@@ -121,6 +133,7 @@ import org.springframework.security.web.server.authentication.ServerAuthenticati
 import org.springframework.security.web.server.authentication.ServerFormLoginAuthenticationConverter;
 import org.springframework.security.web.server.authentication.ServerHttpBasicAuthenticationConverter;
 import org.springframework.security.web.server.authentication.ServerX509AuthenticationConverter;
+import org.springframework.security.web.server.authentication.TwoFactorAuthenticationWebFilter;
 import org.springframework.security.web.server.authentication.logout.DelegatingServerLogoutHandler;
 import org.springframework.security.web.server.authentication.logout.LogoutWebFilter;
 import org.springframework.security.web.server.authentication.logout.SecurityContextServerLogoutHandler;
@@ -265,6 +278,8 @@ public class ServerHttpSecurity {
 
 	private FormLoginSpec formLogin;
 
+	private TwoFactorLoginSpec twoFactorLogin;
+
 	private OAuth2LoginSpec oauth2Login;
 
 	private OAuth2ResourceServerSpec resourceServer;
@@ -744,6 +759,68 @@ public class ServerHttpSecurity {
 		return this;
 	}
 
+	/**
+	 * Configures two-factor authentication: a username and password log in followed,
+	 * for users who enabled it, by a code sent to them or generated by an authenticator
+	 * app. An example configuration is provided below:
+	 *
+	 * <pre class="code">
+	 *  &#064;Bean
+	 *  public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
+	 *      http
+	 *          // ...
+	 *          .twoFactorLogin()
+	 *              // sends the codes, for example by email
+	 *              .sendStrategy(sendStrategy)
+	 *              // where pending sign in attempts are kept
+	 *              .codeRepository(new R2dbcReactiveTwoFactorAuthCodeRepository(databaseClient));
+	 *      return http.build();
+	 *  }
+	 * </pre>
+	 *
+	 * Two-factor log in handles POST "/login" itself, so it should not be combined with
+	 * {@link #formLogin()}.
+	 * @return the {@link TwoFactorLoginSpec} to customize
+	 * @since 5.5
+	 */
+	public TwoFactorLoginSpec twoFactorLogin() {
+		if (this.twoFactorLogin == null) {
+			this.twoFactorLogin = new TwoFactorLoginSpec();
+		}
+		return this.twoFactorLogin;
+	}
+
+	/**
+	 * Configures two-factor authentication. An example configuration is provided below:
+	 *
+	 * <pre class="code">
+	 *  &#064;Bean
+	 *  public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
+	 *      http
+	 *          // ...
+	 *          .twoFactorLogin((twoFactorLogin) ->
+	 *              twoFactorLogin
+	 *              	// sends the codes, for example by email
+	 *              	.sendStrategy(sendStrategy)
+	 *              	// where pending sign in attempts are kept
+	 *              	.codeRepository(new R2dbcReactiveTwoFactorAuthCodeRepository(databaseClient))
+	 *          );
+	 *      return http.build();
+	 *  }
+	 * </pre>
+	 * @param twoFactorLoginCustomizer the {@link Customizer} to provide more options for
+	 * the {@link TwoFactorLoginSpec}
+	 * @return the {@link ServerHttpSecurity} to customize
+	 * @since 5.5
+	 */
+	public ServerHttpSecurity twoFactorLogin(Customizer<TwoFactorLoginSpec> twoFactorLoginCustomizer) {
+		if (this.twoFactorLogin == null) {
+			this.twoFactorLogin = new TwoFactorLoginSpec();
+		}
+		twoFactorLoginCustomizer.customize(this.twoFactorLogin);
+		return this;
+	}
+
 	/**
 	 * Configures x509 authentication using a certificate provided by a client.
 	 *
@@ -1361,6 +1438,21 @@ public class ServerHttpSecurity {
 			}
 			this.formLogin.configure(this);
 		}
+		if (this.twoFactorLogin != null) {
+			if (this.twoFactorLogin.authenticationManager == null) {
+				this.twoFactorLogin.authenticationManager(this.authenticationManager);
+			}
+			if (this.twoFactorLogin.securityContextRepository != null) {
+				this.twoFactorLogin.securityContextRepository(this.twoFactorLogin.securityContextRepository);
+			}
+			else if (this.securityContextRepository != null) {
+				this.twoFactorLogin.securityContextRepository(this.securityContextRepository);
+			}
+			else {
+				this.twoFactorLogin.securityContextRepository(new WebSessionServerSecurityContextRepository());
+			}
+			this.twoFactorLogin.configure(this);
+		}
 		if (this.oauth2Login != null) {
 			if (this.oauth2Login.securityContextRepository != null) {
 				this.oauth2Login.securityContextRepository(this.oauth2Login.securityContextRepository);
@@ -2176,6 +2268,388 @@ public class ServerHttpSecurity {
 
 	}
 
+	/**
+	 * Configures two-factor authentication
+	 *
+	 * @author Ben Siegler
+	 * @since 5.5
+	 * @see #twoFactorLogin()
+	 */
+	public final class TwoFactorLoginSpec {
+
+		private ReactiveAuthenticationManager authenticationManager;
+
+		private ReactiveAuthenticationManager twoFactorAuthenticationManager;
+
+		private ReactiveUserDetailsService userDetailsService;
+
+		private ServerSecurityContextRepository securityContextRepository;
+
+		private ReactiveTwoFactorAuthCodeRepository codeRepository;
+
+		private TwoFactorAuthCodeSendStrategy sendStrategy;
+
+		private TwoFactorAuthCodeSendFailureStrategy sendFailureStrategy;
+
+		private TwoFactorAuthCodeGenerationStrategy generationStrategy;
+
+		private TotpService totpService = new TotpService();
+
+		private Long expirationTime;
+
+		private String loginPage = TwoFactorAuthenticationWebFilter.DEFAULT_LOGIN_URL;
+
+		private String twoFactorProcessingUrl = TwoFactorAuthenticationWebFilter.DEFAULT_TWO_FACTOR_PROCESSING_URL;
+
+		private String twoFactorRedirectUrl = TwoFactorAuthenticationWebFilter.DEFAULT_TWO_FACTOR_REDIRECT_URL;
+
+		private String codeResendUrl = TwoFactorAuthenticationWebFilter.DEFAULT_CODE_RESEND_URL;
+
+		private ServerAuthenticationSuccessHandler authenticationSuccessHandler;
+
+		private ServerAuthenticationFailureHandler authenticationFailureHandler;
+
+		private ServerAuthenticationFailureHandler twoFactorFailureHandler;
+
+		private TwoFactorAuthRateLimiter rateLimiter;
+
+		private ServerAuthenticationFailureHandler rateLimitExceededHandler;
+
+		private Scheduler sendScheduler;
+
+		private TwoFactorLoginSpec() {
+		}
+
+		/**
+		 * The {@link ReactiveAuthenticationManager} used to authenticate the username
+		 * and password. Defaults to
+		 * {@link ServerHttpSecurity#authenticationManager(ReactiveAuthenticationManager)}.
+		 * @param authenticationManager the authentication manager to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec authenticationManager(ReactiveAuthenticationManager authenticationManager) {
+			this.authenticationManager = authenticationManager;
+			return this;
+		}
+
+		/**
+		 * The {@link ReactiveAuthenticationManager} used to check the submitted codes.
+		 * Defaults to a {@link ReactiveTwoFactorAuthenticationManager}.
+		 * @param twoFactorAuthenticationManager the authentication manager to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec twoFactorAuthenticationManager(
+				ReactiveAuthenticationManager twoFactorAuthenticationManager) {
+			this.twoFactorAuthenticationManager = twoFactorAuthenticationManager;
+			return this;
+		}
+
+		/**
+		 * The {@link ReactiveUserDetailsService} used to look up users when checking or
+		 * resending a code. Defaults to the {@link ReactiveUserDetailsService} bean.
+		 * @param userDetailsService the user details service to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec userDetailsService(ReactiveUserDetailsService userDetailsService) {
+			this.userDetailsService = userDetailsService;
+			return this;
+		}
+
+		/**
+		 * The {@link ServerSecurityContextRepository} used to save the
+		 * {@code Authentication}. Defaults to
+		 * {@link WebSessionServerSecurityContextRepository}.
+		 * @param securityContextRepository the repository to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec securityContextRepository(ServerSecurityContextRepository securityContextRepository) {
+			this.securityContextRepository = securityContextRepository;
+			return this;
+		}
+
+		/**
+		 * Where the pending sign in attempts are kept. Defaults to
+		 * {@link InMemoryReactiveTwoFactorAuthCodeRepository}.
+		 * @param codeRepository the repository to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec codeRepository(ReactiveTwoFactorAuthCodeRepository codeRepository) {
+			this.codeRepository = codeRepository;
+			return this;
+		}
+
+		/**
+		 * How codes are sent to users. This is required. The strategy may block: it is
+		 * always invoked on the {@link #sendScheduler(Scheduler) send scheduler}.
+		 * @param sendStrategy the strategy to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec sendStrategy(TwoFactorAuthCodeSendStrategy sendStrategy) {
+			this.sendStrategy = sendStrategy;
+			return this;
+		}
+
+		/**
+		 * What to do when a code could not be sent. Defaults to doing nothing.
+		 * @param sendFailureStrategy the strategy to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec sendFailureStrategy(TwoFactorAuthCodeSendFailureStrategy sendFailureStrategy) {
+			this.sendFailureStrategy = sendFailureStrategy;
+			return this;
+		}
+
+		/**
+		 * How the sent codes are generated. Defaults to six digit codes.
+		 * @param generationStrategy the strategy to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec generationStrategy(TwoFactorAuthCodeGenerationStrategy generationStrategy) {
+			this.generationStrategy = generationStrategy;
+			return this;
+		}
+
+		/**
+		 * The {@link TotpService} verifying authenticator app codes.
+		 * @param totpService the service to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec totpService(TotpService totpService) {
+			Assert.notNull(totpService, "totpService cannot be null");
+			this.totpService = totpService;
+			return this;
+		}
+
+		/**
+		 * The time, in milliseconds, after which a sign in attempt is no longer accepted
+		 * or resent. It is also applied to an {@link InMemoryReactiveTwoFactorAuthCodeRepository}
+		 * or {@link R2dbcReactiveTwoFactorAuthCodeRepository}. Defaults to 90 seconds.
+		 * @param expirationTimeInMillis the expiration time
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec expirationTime(long expirationTimeInMillis) {
+			this.expirationTime = expirationTimeInMillis;
+			return this;
+		}
+
+		/**
+		 * The log in page, which the application must render. Username and password log
+		 * ins are a POST to this URL and failures are redirected to this URL + "?error".
+		 * Defaults to "/login".
+		 * @param loginPage the log in page URL
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec loginPage(String loginPage) {
+			this.loginPage = loginPage;
+			return this;
+		}
+
+		/**
+		 * The URL codes are submitted to. Defaults to "/2FA/authenticate".
+		 * @param twoFactorProcessingUrl the code processing URL
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec twoFactorProcessingUrl(String twoFactorProcessingUrl) {
+			this.twoFactorProcessingUrl = twoFactorProcessingUrl;
+			return this;
+		}
+
+		/**
+		 * The page asking for the code, which the application must render. Failures are
+		 * redirected to this URL + "?error". Defaults to "/2FA".
+		 * @param twoFactorRedirectUrl the code page URL
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec twoFactorRedirectUrl(String twoFactorRedirectUrl) {
+			this.twoFactorRedirectUrl = twoFactorRedirectUrl;
+			return this;
+		}
+
+		/**
+		 * The URL resending the pending code. Defaults to "/2FA/resend".
+		 * @param codeResendUrl the code resend URL
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec codeResendUrl(String codeResendUrl) {
+			this.codeResendUrl = codeResendUrl;
+			return this;
+		}
+
+		/**
+		 * The {@link ServerAuthenticationSuccessHandler} used once the user is logged in.
+		 * Defaults to {@link RedirectServerAuthenticationSuccessHandler}.
+		 * @param authenticationSuccessHandler the success handler to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec authenticationSuccessHandler(
+				ServerAuthenticationSuccessHandler authenticationSuccessHandler) {
+			this.authenticationSuccessHandler = authenticationSuccessHandler;
+			return this;
+		}
+
+		/**
+		 * How a failed username and password log in is handled. The default is to
+		 * redirect to the log in page + "?error".
+		 * @param authenticationFailureHandler the handler to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec authenticationFailureHandler(
+				ServerAuthenticationFailureHandler authenticationFailureHandler) {
+			this.authenticationFailureHandler = authenticationFailureHandler;
+			return this;
+		}
+
+		/**
+		 * How an incorrect or expired code is handled. The default is to redirect to the
+		 * code page + "?error".
+		 * @param twoFactorFailureHandler the handler to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec twoFactorFailureHandler(ServerAuthenticationFailureHandler twoFactorFailureHandler) {
+			this.twoFactorFailureHandler = twoFactorFailureHandler;
+			return this;
+		}
+
+		/**
+		 * Limits how often codes can be checked and resent per user, session and client
+		 * address. Defaults to an {@link InMemoryTwoFactorAuthRateLimiter}.
+		 * @param rateLimiter the limiter to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec rateLimiter(TwoFactorAuthRateLimiter rateLimiter) {
+			this.rateLimiter = rateLimiter;
+			return this;
+		}
+
+		/**
+		 * Tunes the default {@link InMemoryTwoFactorAuthRateLimiter}, for instance to
+		 * change its policies.
+		 * @param rateLimiterCustomizer the {@link Customizer} of the limiter
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec rateLimiter(Customizer<InMemoryTwoFactorAuthRateLimiter> rateLimiterCustomizer) {
+			InMemoryTwoFactorAuthRateLimiter inMemoryRateLimiter = new InMemoryTwoFactorAuthRateLimiter();
+			rateLimiterCustomizer.customize(inMemoryRateLimiter);
+			this.rateLimiter = inMemoryRateLimiter;
+			return this;
+		}
+
+		/**
+		 * How a request refused by the rate limiter is handled. The default is to
+		 * redirect to the code page + "?locked".
+		 * @param rateLimitExceededHandler the handler to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec rateLimitExceededHandler(ServerAuthenticationFailureHandler rateLimitExceededHandler) {
+			this.rateLimitExceededHandler = rateLimitExceededHandler;
+			return this;
+		}
+
+		/**
+		 * The {@link Scheduler} codes are sent on. Defaults to
+		 * {@link Schedulers#boundedElastic()}.
+		 * @param sendScheduler the scheduler to use
+		 * @return the {@link TwoFactorLoginSpec} to continue configuring
+		 */
+		public TwoFactorLoginSpec sendScheduler(Scheduler sendScheduler) {
+			this.sendScheduler = sendScheduler;
+			return this;
+		}
+
+		/**
+		 * Allows method chaining to continue configuring the {@link ServerHttpSecurity}
+		 * @return the {@link ServerHttpSecurity} to continue configuring
+		 */
+		public ServerHttpSecurity and() {
+			return ServerHttpSecurity.this;
+		}
+
+		/**
+		 * Disables two-factor authentication.
+		 * @return the {@link ServerHttpSecurity} to continue configuring
+		 */
+		public ServerHttpSecurity disable() {
+			ServerHttpSecurity.this.twoFactorLogin = null;
+			return ServerHttpSecurity.this;
+		}
+
+		protected void configure(ServerHttpSecurity http) {
+			Assert.notNull(this.sendStrategy, "sendStrategy must be set to enable two-factor login");
+			if (this.userDetailsService == null) {
+				this.userDetailsService = getBean(ReactiveUserDetailsService.class);
+			}
+			if (this.codeRepository == null) {
+				this.codeRepository = new InMemoryReactiveTwoFactorAuthCodeRepository();
+			}
+			if (this.expirationTime != null) {
+				configureExpirationTime(this.codeRepository, this.expirationTime);
+			}
+			if (this.twoFactorAuthenticationManager == null) {
+				ReactiveTwoFactorAuthenticationManager manager = new ReactiveTwoFactorAuthenticationManager(
+						this.codeRepository, this.userDetailsService, this.totpService);
+				if (this.expirationTime != null) {
+					manager.setExpirationTime(this.expirationTime);
+				}
+				this.twoFactorAuthenticationManager = manager;
+			}
+			MediaTypeServerWebExchangeMatcher htmlMatcher = new MediaTypeServerWebExchangeMatcher(MediaType.TEXT_HTML);
+			htmlMatcher.setIgnoredMediaTypes(Collections.singleton(MediaType.ALL));
+			ServerHttpSecurity.this.defaultEntryPoints.add(0,
+					new DelegateEntry(htmlMatcher, new RedirectServerAuthenticationEntryPoint(this.loginPage)));
+			TwoFactorAuthenticationWebFilter twoFactorFilter = new TwoFactorAuthenticationWebFilter(
+					this.authenticationManager, this.twoFactorAuthenticationManager, this.userDetailsService,
+					this.sendStrategy);
+			twoFactorFilter.setCodeRepository(this.codeRepository);
+			twoFactorFilter.setSecurityContextRepository(this.securityContextRepository);
+			twoFactorFilter.setLoginUrl(this.loginPage);
+			twoFactorFilter.setTwoFactorProcessingUrl(this.twoFactorProcessingUrl);
+			twoFactorFilter.setTwoFactorRedirectUrl(this.twoFactorRedirectUrl);
+			twoFactorFilter.setCodeResendUrl(this.codeResendUrl);
+			twoFactorFilter.setAuthenticationFailureHandler((this.authenticationFailureHandler != null)
+					? this.authenticationFailureHandler
+					: new RedirectServerAuthenticationFailureHandler(this.loginPage + "?error"));
+			twoFactorFilter.setTwoFactorFailureHandler((this.twoFactorFailureHandler != null)
+					? this.twoFactorFailureHandler
+					: new RedirectServerAuthenticationFailureHandler(this.twoFactorRedirectUrl + "?error"));
+			twoFactorFilter.setRateLimitExceededHandler((this.rateLimitExceededHandler != null)
+					? this.rateLimitExceededHandler
+					: new RedirectServerAuthenticationFailureHandler(this.twoFactorRedirectUrl + "?locked"));
+			if (this.rateLimiter != null) {
+				twoFactorFilter.setRateLimiter(this.rateLimiter);
+			}
+			if (this.authenticationSuccessHandler != null) {
+				twoFactorFilter.setAuthenticationSuccessHandler(this.authenticationSuccessHandler);
+			}
+			if (this.sendFailureStrategy != null) {
+				twoFactorFilter.setSendFailureStrategy(this.sendFailureStrategy);
+			}
+			if (this.generationStrategy != null) {
+				twoFactorFilter.setGenerationStrategy(this.generationStrategy);
+			}
+			if (this.sendScheduler != null) {
+				twoFactorFilter.setSendScheduler(this.sendScheduler);
+			}
+			if (this.expirationTime != null) {
+				twoFactorFilter.setExpirationTime(this.expirationTime);
+			}
+			http.addFilterAt(twoFactorFilter, SecurityWebFiltersOrder.FORM_LOGIN);
+		}
+
+		private void configureExpirationTime(ReactiveTwoFactorAuthCodeRepository codeRepository,
+				long expirationTime) {
+			if (codeRepository instanceof InMemoryReactiveTwoFactorAuthCodeRepository) {
+				((InMemoryReactiveTwoFactorAuthCodeRepository) codeRepository).setExpirationTime(expirationTime);
+				return;
+			}
+			boolean r2dbcPresent = ClassUtils.isPresent("org.springframework.r2dbc.core.DatabaseClient",
+					getClass().getClassLoader());
+			if (r2dbcPresent && codeRepository instanceof R2dbcReactiveTwoFactorAuthCodeRepository) {
+				((R2dbcReactiveTwoFactorAuthCodeRepository) codeRepository).setExpirationTime(expirationTime);
+			}
+		}
+
+	}
+
 	private final class LoginPageSpec {
 
 		private LoginPageSpec() {
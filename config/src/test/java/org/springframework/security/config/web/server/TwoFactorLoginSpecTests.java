@@ -0,0 +1,180 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.config.web.server;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.test.web.reactive.server.WebTestClientBuilder;
+import org.springframework.security.web.authentication.twofa.stategies.sendattemp.TwoFactorAuthCodeSendStrategy;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.TwoFactorAuthenticationWebFilter;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link ServerHttpSecurity.TwoFactorLoginSpec}.
+ *
+ * @author Ben Siegler
+ */
+public class TwoFactorLoginSpecTests {
+
+	private final TwoFactorAuthCodeSendStrategy sendStrategy = mock(TwoFactorAuthCodeSendStrategy.class);
+
+	private UserDetails user;
+
+	private ReactiveUserDetailsService userDetailsService;
+
+	@Before
+	public void setup() {
+		HashMap<Integer, TwoFactorPreference> preferences = new HashMap<>();
+		preferences.put(1, new TwoFactorPreference(false, "user@example.com"));
+		this.user = new User("user", "{noop}password", AuthorityUtils.createAuthorityList("ROLE_USER")) {
+
+			@Override
+			public boolean isTwoFactorAuthEnabled() {
+				return true;
+			}
+
+			@Override
+			public HashMap<Integer, TwoFactorPreference> getTwoFactorAuthPreferences() {
+				return preferences;
+			}
+
+		};
+		this.userDetailsService = (username) -> "user".equals(username) ? Mono.just(this.user) : Mono.empty();
+	}
+
+	@Test
+	public void twoFactorLoginWhenCodeSubmittedThenAuthenticated() throws Exception {
+		// @formatter:off
+		SecurityWebFilterChain securityWebFilter = ServerHttpSecurity.http()
+				.authenticationManager(new UserDetailsRepositoryReactiveAuthenticationManager(this.userDetailsService))
+				.csrf((csrf) -> csrf.disable())
+				.authorizeExchange((exchanges) -> exchanges
+						.pathMatchers("/login", "/2FA/**").permitAll()
+						.anyExchange().authenticated()
+				)
+				.twoFactorLogin((twoFactorLogin) -> twoFactorLogin
+						.userDetailsService(this.userDetailsService)
+						.sendStrategy(this.sendStrategy)
+						.generationStrategy(() -> "123456")
+						.sendScheduler(Schedulers.immediate())
+				)
+				.build();
+		// @formatter:on
+		WebTestClient client = WebTestClientBuilder.bindToWebFilters(securityWebFilter).build();
+		// @formatter:off
+		ResponseCookie loginSession = client.post()
+				.uri("/login")
+				.body(BodyInserters.fromFormData("username", "user").with("password", "password"))
+				.exchange()
+				.expectStatus().isFound()
+				.expectHeader().valueEquals("Location", "/2FA")
+				.returnResult(Void.class).getResponseCookies().getFirst("SESSION");
+		// @formatter:on
+		assertThat(loginSession).isNotNull();
+		verify(this.sendStrategy).sendCode(eq(this.user), any());
+		// @formatter:off
+		client.get()
+				.uri("/")
+				.cookie("SESSION", loginSession.getValue())
+				.exchange()
+				.expectStatus().isFound()
+				.expectHeader().valueEquals("Location", "/login");
+		ResponseCookie authenticatedSession = client.post()
+				.uri("/2FA/authenticate")
+				.cookie("SESSION", loginSession.getValue())
+				.body(BodyInserters.fromFormData("code", "123456"))
+				.exchange()
+				.expectStatus().isFound()
+				.expectHeader().valueEquals("Location", "/")
+				.returnResult(Void.class).getResponseCookies().getFirst("SESSION");
+		client.get()
+				.uri("/")
+				.cookie("SESSION", authenticatedSession.getValue())
+				.exchange()
+				.expectStatus().isOk();
+		// @formatter:on
+	}
+
+	@Test
+	public void twoFactorLoginWhenWrongCodeThenRedirectedToError() {
+		// @formatter:off
+		SecurityWebFilterChain securityWebFilter = ServerHttpSecurity.http()
+				.authenticationManager(new UserDetailsRepositoryReactiveAuthenticationManager(this.userDetailsService))
+				.csrf((csrf) -> csrf.disable())
+				.twoFactorLogin((twoFactorLogin) -> twoFactorLogin
+						.userDetailsService(this.userDetailsService)
+						.sendStrategy(this.sendStrategy)
+						.generationStrategy(() -> "123456")
+						.sendScheduler(Schedulers.immediate())
+						.twoFactorRedirectUrl("/verify")
+				)
+				.build();
+		// @formatter:on
+		WebTestClient client = WebTestClientBuilder.bindToWebFilters(securityWebFilter).build();
+		// @formatter:off
+		ResponseCookie loginSession = client.post()
+				.uri("/login")
+				.body(BodyInserters.fromFormData("username", "user").with("password", "password"))
+				.exchange()
+				.expectHeader().valueEquals("Location", "/verify")
+				.returnResult(Void.class).getResponseCookies().getFirst("SESSION");
+		client.post()
+				.uri("/2FA/authenticate")
+				.cookie("SESSION", loginSession.getValue())
+				.body(BodyInserters.fromFormData("code", "654321"))
+				.exchange()
+				.expectStatus().isFound()
+				.expectHeader().valueEquals("Location", "/verify?error");
+		// @formatter:on
+	}
+
+	@Test
+	public void twoFactorLoginWhenNoSendStrategyThenException() {
+		ServerHttpSecurity http = ServerHttpSecurity.http()
+				.twoFactorLogin((twoFactorLogin) -> twoFactorLogin.userDetailsService(this.userDetailsService));
+		assertThatIllegalArgumentException().isThrownBy(http::build);
+	}
+
+	@Test
+	public void twoFactorLoginWhenDisabledThenNoFilter() {
+		SecurityWebFilterChain securityWebFilter = ServerHttpSecurity.http().twoFactorLogin().disable().build();
+		assertThat(securityWebFilter.getWebFilters().collectList().block())
+				.noneMatch(TwoFactorAuthenticationWebFilter.class::isInstance);
+	}
+
+}
@@ -16,16 +16,31 @@
 
 package org.springframework.security.access.expression;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.expression.BeanFactoryResolver;
 import org.springframework.expression.BeanResolver;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.ReflectiveMethodResolver;
+import org.springframework.expression.spel.support.ReflectivePropertyAccessor;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.expression.spel.support.StandardTypeLocator;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.util.Assert;
 
@@ -42,12 +57,27 @@ public abstract class AbstractSecurityExpressionHandler<T>
 
 	private ExpressionParser expressionParser = new SpelExpressionParser();
 
+	private boolean customExpressionParser;
+
 	private BeanResolver beanResolver;
 
 	private RoleHierarchy roleHierarchy;
 
 	private PermissionEvaluator permissionEvaluator = new DenyAllPermissionEvaluator();
 
+	private boolean compileExpressions;
+
+	private final Map<Expression, AuthorizationManager<T>> authorizationManagers = new ConcurrentHashMap<>();
+
+	private final AuthorizationManager<T> evaluateExpression = (authentication, invocation) -> null;
+
+	private final List<PropertyAccessor> propertyAccessors = Collections
+			.singletonList(new ReflectivePropertyAccessor());
+
+	private final List<MethodResolver> methodResolvers = Collections.singletonList(new ReflectiveMethodResolver());
+
+	private final StandardTypeLocator typeLocator = new StandardTypeLocator();
+
 	@Override
 	public final ExpressionParser getExpressionParser() {
 		return this.expressionParser;
@@ -56,6 +86,87 @@ public abstract class AbstractSecurityExpressionHandler<T>
 	public final void setExpressionParser(ExpressionParser expressionParser) {
 		Assert.notNull(expressionParser, "expressionParser cannot be null");
 		this.expressionParser = expressionParser;
+		this.customExpressionParser = true;
+	}
+
+	/**
+	 * Sets whether expressions are compiled. When {@code true}, the default expression
+	 * parser is replaced by a {@link SpelExpressionParser} compiling expressions to
+	 * bytecode in {@link SpelCompilerMode#MIXED} mode,
+	 * {@link #getAuthorizationManager(Expression)} provides
+	 * {@link AuthorizationManager}s for the expressions this handler can decide without
+	 * an {@link EvaluationContext}, and the evaluation contexts share their property
+	 * accessor, method resolver and type locator, along with the reflection caches they
+	 * hold. The default is {@code false}.
+	 * <p>
+	 * A parser set with {@link #setExpressionParser(ExpressionParser)} is kept as is, so
+	 * configure it for compilation if needed.
+	 * <p>
+	 * This assumes that the expression root created by the handler decides the checks of
+	 * {@link SecurityExpressionRoot} like {@link SecurityExpressionRoot} does.
+	 * @param compileExpressions whether expressions are compiled
+	 * @since 5.5
+	 */
+	public void setCompileExpressions(boolean compileExpressions) {
+		this.compileExpressions = compileExpressions;
+		if (!this.customExpressionParser) {
+			this.expressionParser = compileExpressions ? createCompilingExpressionParser() : new SpelExpressionParser();
+		}
+		clearAuthorizationManagers();
+	}
+
+	private ExpressionParser createCompilingExpressionParser() {
+		SpelParserConfiguration configuration = new SpelParserConfiguration(SpelCompilerMode.MIXED,
+				getClass().getClassLoader());
+		return new SpelExpressionParser(configuration);
+	}
+
+	/**
+	 * Provides the {@link AuthorizationManager} created by
+	 * {@link #createAuthorizationManager(Expression)} for the expression when expressions
+	 * are compiled, creating it once for every expression.
+	 * @param expression an expression parsed by the {@link #getExpressionParser()}
+	 * @return the {@link AuthorizationManager}, or {@code null} if the expression must be
+	 * evaluated
+	 * @since 5.5
+	 * @see #setCompileExpressions(boolean)
+	 */
+	@Override
+	public AuthorizationManager<T> getAuthorizationManager(Expression expression) {
+		if (!this.compileExpressions) {
+			return null;
+		}
+		AuthorizationManager<T> authorizationManager = this.authorizationManagers.get(expression);
+		if (authorizationManager == null) {
+			authorizationManager = createAuthorizationManager(expression);
+			if (authorizationManager == null) {
+				authorizationManager = this.evaluateExpression;
+			}
+			this.authorizationManagers.putIfAbsent(expression, authorizationManager);
+		}
+		return (authorizationManager != this.evaluateExpression) ? authorizationManager : null;
+	}
+
+	/**
+	 * Override to decide the expressions that do not need an {@link EvaluationContext}
+	 * without evaluating them, typically with a
+	 * {@link SecurityExpressionAuthorizationManagerFactory}.
+	 * @param expression an expression parsed by the {@link #getExpressionParser()}
+	 * @return the {@link AuthorizationManager}, or {@code null} if the expression must be
+	 * evaluated
+	 * @since 5.5
+	 */
+	protected AuthorizationManager<T> createAuthorizationManager(Expression expression) {
+		return null;
+	}
+
+	/**
+	 * Discards the {@link AuthorizationManager}s created for expressions. To be called
+	 * when a property they depend on changes.
+	 * @since 5.5
+	 */
+	protected final void clearAuthorizationManagers() {
+		this.authorizationManagers.clear();
 	}
 
 	/**
@@ -87,7 +198,28 @@ public abstract class AbstractSecurityExpressionHandler<T>
 	 * overridden.
 	 */
 	protected StandardEvaluationContext createEvaluationContextInternal(Authentication authentication, T invocation) {
-		return new StandardEvaluationContext();
+		StandardEvaluationContext ctx = new StandardEvaluationContext();
+		shareEvaluationInfrastructure(ctx);
+		return ctx;
+	}
+
+	/**
+	 * Makes a new context share the property accessor, method resolver and type locator
+	 * of this handler when expressions are compiled, so that their reflection caches
+	 * survive from one evaluation to the next. To be called by
+	 * {@link #createEvaluationContextInternal(Authentication, Object)} before customizing
+	 * the context.
+	 * @param ctx the new context
+	 * @since 5.5
+	 * @see #setCompileExpressions(boolean)
+	 */
+	protected final void shareEvaluationInfrastructure(StandardEvaluationContext ctx) {
+		if (!this.compileExpressions) {
+			return;
+		}
+		ctx.setPropertyAccessors(new ArrayList<>(this.propertyAccessors));
+		ctx.setMethodResolvers(new ArrayList<>(this.methodResolvers));
+		ctx.setTypeLocator(this.typeLocator);
 	}
 
 	/**
@@ -106,6 +238,7 @@ public abstract class AbstractSecurityExpressionHandler<T>
 
 	public void setRoleHierarchy(RoleHierarchy roleHierarchy) {
 		this.roleHierarchy = roleHierarchy;
+		clearAuthorizationManagers();
 	}
 
 	protected PermissionEvaluator getPermissionEvaluator() {
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.access.expression;
+
+import java.util.Collection;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.BooleanLiteral;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.OperatorNot;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.util.Assert;
+
+/**
+ * Creates {@link AuthorizationManager}s deciding like security expressions that only
+ * combine checks of the {@link SecurityExpressionRoot} which do not need an
+ * {@link org.springframework.expression.EvaluationContext}: {@code permitAll},
+ * {@code denyAll}, {@code hasRole}, {@code hasAnyRole}, {@code hasAuthority},
+ * {@code hasAnyAuthority}, {@code isAnonymous}, {@code isAuthenticated},
+ * {@code isRememberMe} and {@code isFullyAuthenticated} with literal arguments, joined
+ * by {@code and}, {@code or} and {@code not}. For example
+ * {@code hasRole('ADMIN') or (isFullyAuthenticated() and hasAuthority('SCOPE_write'))}.
+ * <p>
+ * Subclasses can recognize the methods of their own expression roots by overriding
+ * {@link #createAuthorizationManager(String, String[])}.
+ *
+ * @param <T> the type of the secured object
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class SecurityExpressionAuthorizationManagerFactory<T> {
+
+	private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+
+	private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+	private final AuthenticationTrustResolver trustResolver;
+
+	private final RoleHierarchy roleHierarchy;
+
+	private final String defaultRolePrefix;
+
+	/**
+	 * Creates a factory deciding like a {@link SecurityExpressionRoot} configured with
+	 * the given collaborators.
+	 * @param trustResolver the {@link AuthenticationTrustResolver} of the expression
+	 * root
+	 * @param roleHierarchy the {@link RoleHierarchy} of the expression root, or
+	 * {@code null}
+	 * @param defaultRolePrefix the default role prefix of the expression root, or
+	 * {@code null}
+	 */
+	public SecurityExpressionAuthorizationManagerFactory(AuthenticationTrustResolver trustResolver,
+			RoleHierarchy roleHierarchy, String defaultRolePrefix) {
+		Assert.notNull(trustResolver, "trustResolver cannot be null");
+		this.trustResolver = trustResolver;
+		this.roleHierarchy = roleHierarchy;
+		this.defaultRolePrefix = defaultRolePrefix;
+	}
+
+	/**
+	 * Creates an {@link AuthorizationManager} deciding like the expression.
+	 * @param expression the expression
+	 * @return the {@link AuthorizationManager}, or {@code null} if the expression uses
+	 * anything else than the checks this factory recognizes
+	 */
+	public final AuthorizationManager<T> createAuthorizationManager(Expression expression) {
+		if (!(expression instanceof SpelExpression)) {
+			return null;
+		}
+		return createAuthorizationManager(((SpelExpression) expression).getAST());
+	}
+
+	private AuthorizationManager<T> createAuthorizationManager(SpelNode node) {
+		if (node instanceof OpAnd || node instanceof OpOr) {
+			AuthorizationManager<T> left = createAuthorizationManager(node.getChild(0));
+			AuthorizationManager<T> right = createAuthorizationManager(node.getChild(1));
+			if (left == null || right == null) {
+				return null;
+			}
+			if (node instanceof OpAnd) {
+				return (authentication, object) -> (left.check(authentication, object).isGranted())
+						? right.check(authentication, object) : DENIED;
+			}
+			return (authentication, object) -> (left.check(authentication, object).isGranted()) ? GRANTED
+					: right.check(authentication, object);
+		}
+		if (node instanceof OperatorNot) {
+			AuthorizationManager<T> operand = createAuthorizationManager(node.getChild(0));
+			if (operand == null) {
+				return null;
+			}
+			return (authentication, object) -> decision(!operand.check(authentication, object).isGranted());
+		}
+		if (node instanceof BooleanLiteral) {
+			return constant((Boolean) ((BooleanLiteral) node).getLiteralValue().getValue());
+		}
+		if (node instanceof PropertyOrFieldReference) {
+			String name = ((PropertyOrFieldReference) node).getName();
+			if ("permitAll".equals(name) || "denyAll".equals(name)) {
+				return constant("permitAll".equals(name));
+			}
+			return null;
+		}
+		if (node instanceof MethodReference) {
+			String[] arguments = new String[node.getChildCount()];
+			for (int i = 0; i < arguments.length; i++) {
+				if (!(node.getChild(i) instanceof StringLiteral)) {
+					return null;
+				}
+				arguments[i] = (String) ((StringLiteral) node.getChild(i)).getLiteralValue().getValue();
+			}
+			return createAuthorizationManager(((MethodReference) node).getName(), arguments);
+		}
+		return null;
+	}
+
+	/**
+	 * Creates an {@link AuthorizationManager} deciding like a method of the expression
+	 * root.
+	 * @param methodName the name of the method
+	 * @param arguments the literal arguments of the method
+	 * @return the {@link AuthorizationManager}, or {@code null} if the method is not
+	 * recognized
+	 */
+	protected AuthorizationManager<T> createAuthorizationManager(String methodName, String[] arguments) {
+		switch (methodName) {
+		case "hasAuthority":
+			return (arguments.length == 1) ? hasAnyAuthority(arguments) : null;
+		case "hasAnyAuthority":
+			return hasAnyAuthority(arguments);
+		case "hasRole":
+			return (arguments.length == 1) ? hasAnyAuthority(withDefaultRolePrefix(arguments)) : null;
+		case "hasAnyRole":
+			return hasAnyAuthority(withDefaultRolePrefix(arguments));
+		default:
+			break;
+		}
+		if (arguments.length != 0) {
+			return null;
+		}
+		switch (methodName) {
+		case "permitAll":
+			return constant(true);
+		case "denyAll":
+			return constant(false);
+		case "isAnonymous":
+			return (authentication, object) -> decision(isAnonymous(authentication.get()));
+		case "isAuthenticated":
+			return (authentication, object) -> decision(!isAnonymous(authentication.get()));
+		case "isRememberMe":
+			return (authentication, object) -> decision(isRememberMe(authentication.get()));
+		case "isFullyAuthenticated":
+			return (authentication, object) -> decision(
+					!isAnonymous(authentication.get()) && !isRememberMe(authentication.get()));
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the decision granting or denying access.
+	 * @param granted whether access is granted
+	 * @return the decision
+	 */
+	protected static AuthorizationDecision decision(boolean granted) {
+		return granted ? GRANTED : DENIED;
+	}
+
+	private AuthorizationManager<T> constant(boolean granted) {
+		AuthorizationDecision decision = decision(granted);
+		return (authentication, object) -> decision;
+	}
+
+	private AuthorizationManager<T> hasAnyAuthority(String[] authorities) {
+		return (authentication, object) -> decision(hasAnyAuthority(authentication.get(), authorities));
+	}
+
+	private boolean hasAnyAuthority(Authentication authentication, String[] authorities) {
+		Collection<? extends GrantedAuthority> userAuthorities = authentication.getAuthorities();
+		if (this.roleHierarchy != null) {
+			userAuthorities = this.roleHierarchy.getReachableGrantedAuthorities(userAuthorities);
+		}
+		for (GrantedAuthority userAuthority : userAuthorities) {
+			String name = userAuthority.getAuthority();
+			for (String authority : authorities) {
+				if (authority.equals(name)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isAnonymous(Authentication authentication) {
+		return this.trustResolver.isAnonymous(authentication);
+	}
+
+	private boolean isRememberMe(Authentication authentication) {
+		return this.trustResolver.isRememberMe(authentication);
+	}
+
+	private String[] withDefaultRolePrefix(String[] roles) {
+		if (this.defaultRolePrefix == null || this.defaultRolePrefix.length() == 0) {
+			return roles;
+		}
+		String[] prefixedRoles = new String[roles.length];
+		for (int i = 0; i < roles.length; i++) {
+			prefixedRoles[i] = (roles[i].startsWith(this.defaultRolePrefix)) ? roles[i]
+					: this.defaultRolePrefix + roles[i];
+		}
+		return prefixedRoles;
+	}
+
+}
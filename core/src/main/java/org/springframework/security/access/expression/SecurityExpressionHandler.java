@@ -18,7 +18,9 @@ package org.springframework.security.access.expression;
 
 import org.springframework.aop.framework.AopInfrastructureBean;
 import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 
 /**
@@ -41,4 +43,17 @@ public interface SecurityExpressionHandler<T> extends AopInfrastructureBean {
 	 */
 	EvaluationContext createEvaluationContext(Authentication authentication, T invocation);
 
+	/**
+	 * Provides an {@link AuthorizationManager} making the same decisions as an expression
+	 * without evaluating it, when the expression only uses checks the
+	 * {@link AuthorizationManager} can make directly.
+	 * @param expression an expression parsed by the {@link #getExpressionParser()}
+	 * @return the {@link AuthorizationManager}, or {@code null} if the expression must be
+	 * evaluated
+	 * @since 5.5
+	 */
+	default AuthorizationManager<T> getAuthorizationManager(Expression expression) {
+		return null;
+	}
+
 }
@@ -37,8 +37,10 @@ import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.security.access.PermissionCacheOptimizer;
 import org.springframework.security.access.expression.AbstractSecurityExpressionHandler;
 import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.SecurityExpressionAuthorizationManagerFactory;
 import org.springframework.security.authentication.AuthenticationTrustResolver;
 import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.parameters.DefaultSecurityParameterNameDiscoverer;
 import org.springframework.util.Assert;
@@ -74,7 +76,10 @@ public class DefaultMethodSecurityExpressionHandler extends AbstractSecurityExpr
 	 */
 	@Override
 	public StandardEvaluationContext createEvaluationContextInternal(Authentication auth, MethodInvocation mi) {
-		return new MethodSecurityEvaluationContext(auth, mi, getParameterNameDiscoverer());
+		MethodSecurityEvaluationContext ctx = new MethodSecurityEvaluationContext(auth, mi,
+				getParameterNameDiscoverer());
+		shareEvaluationInfrastructure(ctx);
+		return ctx;
 	}
 
 	/**
@@ -92,6 +97,17 @@ public class DefaultMethodSecurityExpressionHandler extends AbstractSecurityExpr
 		return root;
 	}
 
+	/**
+	 * Decides the expressions that only combine role, authority and authentication
+	 * checks with a {@link SecurityExpressionAuthorizationManagerFactory}.
+	 * @since 5.5
+	 */
+	@Override
+	protected AuthorizationManager<MethodInvocation> createAuthorizationManager(Expression expression) {
+		return new SecurityExpressionAuthorizationManagerFactory<MethodInvocation>(getTrustResolver(),
+				getRoleHierarchy(), getDefaultRolePrefix()).createAuthorizationManager(expression);
+	}
+
 	/**
 	 * Filters the {@code filterTarget} object (which must be either a collection, array,
 	 * map or stream), by evaluating the supplied expression.
@@ -195,6 +211,7 @@ public class DefaultMethodSecurityExpressionHandler extends AbstractSecurityExpr
 	public void setTrustResolver(AuthenticationTrustResolver trustResolver) {
 		Assert.notNull(trustResolver, "trustResolver cannot be null");
 		this.trustResolver = trustResolver;
+		clearAuthorizationManagers();
 	}
 
 	/**
@@ -246,6 +263,7 @@ public class DefaultMethodSecurityExpressionHandler extends AbstractSecurityExpr
 	 */
 	public void setDefaultRolePrefix(String defaultRolePrefix) {
 		this.defaultRolePrefix = defaultRolePrefix;
+		clearAuthorizationManagers();
 	}
 
 	/**
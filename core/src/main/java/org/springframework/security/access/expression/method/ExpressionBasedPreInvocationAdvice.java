@@ -25,6 +25,7 @@ import org.springframework.expression.Expression;
 import org.springframework.security.access.expression.ExpressionUtils;
 import org.springframework.security.access.prepost.PreInvocationAttribute;
 import org.springframework.security.access.prepost.PreInvocationAuthorizationAdvice;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.util.Assert;
 
@@ -41,9 +42,16 @@ public class ExpressionBasedPreInvocationAdvice implements PreInvocationAuthoriz
 	@Override
 	public boolean before(Authentication authentication, MethodInvocation mi, PreInvocationAttribute attr) {
 		PreInvocationExpressionAttribute preAttr = (PreInvocationExpressionAttribute) attr;
-		EvaluationContext ctx = this.expressionHandler.createEvaluationContext(authentication, mi);
 		Expression preFilter = preAttr.getFilterExpression();
 		Expression preAuthorize = preAttr.getAuthorizeExpression();
+		if (preFilter == null && preAuthorize != null) {
+			AuthorizationManager<MethodInvocation> authorizationManager = this.expressionHandler
+					.getAuthorizationManager(preAuthorize);
+			if (authorizationManager != null) {
+				return authorizationManager.check(() -> authentication, mi).isGranted();
+			}
+		}
+		EvaluationContext ctx = this.expressionHandler.createEvaluationContext(authentication, mi);
 		if (preFilter != null) {
 			Object filterTarget = findFilterTarget(preAttr.getFilterTarget(), ctx, mi);
 			this.expressionHandler.filter(filterTarget, preFilter, ctx);
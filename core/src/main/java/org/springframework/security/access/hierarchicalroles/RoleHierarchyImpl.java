@@ -17,11 +17,15 @@
 package org.springframework.security.access.hierarchicalroles;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -73,12 +77,24 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
  * In addition to shorter rules this will also make your access rules more readable and
  * your intentions clearer.
  *
+ * <p>
+ * The reachable authorities are resolved from a bitset of the roles each role includes
+ * and remembered for each distinct {@link List} or {@link Set} of
+ * {@link SimpleGrantedAuthority}, so that the authorities of the same users are
+ * resolved once.
+ *
  * @author Michael Mayr
  */
 public class RoleHierarchyImpl implements RoleHierarchy {
 
 	private static final Log logger = LogFactory.getLog(RoleHierarchyImpl.class);
 
+	/**
+	 * The number of distinct authority collections whose reachable authorities are
+	 * remembered.
+	 */
+	private static final int MAX_CACHED_AUTHORITIES = 1024;
+
 	/**
 	 * Raw hierarchy configuration where each line represents single or multiple level
 	 * role chain.
@@ -99,6 +115,13 @@ public class RoleHierarchyImpl implements RoleHierarchy {
 	 */
 	private Map<String, Set<GrantedAuthority>> rolesReachableInOneOrMoreStepsMap = null;
 
+	/**
+	 * {@code compiledHierarchy} is {@link #rolesReachableInOneOrMoreStepsMap} as bitsets,
+	 * replaced as a whole so that concurrent lookups never mix two hierarchies
+	 */
+	private volatile CompiledHierarchy compiledHierarchy = new CompiledHierarchy(Collections.emptyMap(),
+			new GrantedAuthority[0], new BitSet[0]);
+
 	/**
 	 * Set the role hierarchy and pre-calculate for every role the set of all reachable
 	 * roles, i.e. all roles lower in the hierarchy of every given role. Pre-calculation
@@ -113,20 +136,49 @@ public class RoleHierarchyImpl implements RoleHierarchy {
 				roleHierarchyStringRepresentation));
 		buildRolesReachableInOneStepMap();
 		buildRolesReachableInOneOrMoreStepsMap();
+		buildRolesReachableInOneOrMoreStepsBitSets();
 	}
 
+	/**
+	 * Returns the given authorities followed by the roles they include. The returned
+	 * collection is unmodifiable, as it may be shared by calls for equal authorities.
+	 * @param authorities the authorities of the user
+	 * @return the authorities reachable in zero or more steps
+	 */
 	@Override
 	public Collection<GrantedAuthority> getReachableGrantedAuthorities(
 			Collection<? extends GrantedAuthority> authorities) {
 		if (authorities == null || authorities.isEmpty()) {
 			return AuthorityUtils.NO_AUTHORITIES;
 		}
-		Set<GrantedAuthority> reachableRoles = new HashSet<>();
+		CompiledHierarchy hierarchy = this.compiledHierarchy;
+		Map<Collection<?>, Collection<GrantedAuthority>> cache = hierarchy.reachableAuthoritiesCache;
+		Collection<GrantedAuthority> reachableRoles = cache.get(authorities);
+		if (reachableRoles == null) {
+			reachableRoles = Collections.unmodifiableList(resolveReachableGrantedAuthorities(hierarchy, authorities));
+			if (cache.size() < MAX_CACHED_AUTHORITIES && isCacheable(authorities)) {
+				cache.putIfAbsent(copyOf(authorities), reachableRoles);
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug(LogMessage.format(
+					"getReachableGrantedAuthorities() - From the roles %s one can reach %s in zero or more steps.",
+					authorities, reachableRoles));
+		}
+		return reachableRoles;
+	}
+
+	private static List<GrantedAuthority> resolveReachableGrantedAuthorities(CompiledHierarchy hierarchy,
+			Collection<? extends GrantedAuthority> authorities) {
+		List<GrantedAuthority> reachableRoles = new ArrayList<>(authorities.size());
 		Set<String> processedNames = new HashSet<>();
+		BitSet lowerRoles = new BitSet(hierarchy.roles.length);
 		for (GrantedAuthority authority : authorities) {
 			// Do not process authorities without string representation
 			if (authority.getAuthority() == null) {
-				reachableRoles.add(authority);
+				if (!reachableRoles.contains(authority)) {
+					reachableRoles.add(authority);
+				}
 				continue;
 			}
 			// Do not process already processed roles
@@ -135,21 +187,42 @@ public class RoleHierarchyImpl implements RoleHierarchy {
 			}
 			// Add original authority
 			reachableRoles.add(authority);
-			// Add roles reachable in one or more steps
-			Set<GrantedAuthority> lowerRoles = this.rolesReachableInOneOrMoreStepsMap.get(authority.getAuthority());
-			if (lowerRoles == null) {
-				continue; // No hierarchy for the role
+			Integer roleId = hierarchy.roleIds.get(authority.getAuthority());
+			if (roleId != null && hierarchy.rolesReachableInOneOrMoreSteps[roleId] != null) {
+				lowerRoles.or(hierarchy.rolesReachableInOneOrMoreSteps[roleId]);
 			}
-			for (GrantedAuthority role : lowerRoles) {
-				if (processedNames.add(role.getAuthority())) {
-					reachableRoles.add(role);
-				}
+		}
+		// Add roles reachable in one or more steps
+		for (int roleId = lowerRoles.nextSetBit(0); roleId >= 0; roleId = lowerRoles.nextSetBit(roleId + 1)) {
+			GrantedAuthority role = hierarchy.roles[roleId];
+			if (processedNames.add(role.getAuthority())) {
+				reachableRoles.add(role);
 			}
 		}
-		logger.debug(LogMessage.format(
-				"getReachableGrantedAuthorities() - From the roles %s one can reach %s in zero or more steps.",
-				authorities, reachableRoles));
-		return new ArrayList<>(reachableRoles);
+		return reachableRoles;
+	}
+
+	/**
+	 * Only collections with value equality of authorities with value equality are
+	 * remembered, other collections could never be looked up again.
+	 */
+	private static boolean isCacheable(Collection<? extends GrantedAuthority> authorities) {
+		if (!(authorities instanceof List) && !(authorities instanceof Set)) {
+			return false;
+		}
+		for (GrantedAuthority authority : authorities) {
+			if (!(authority instanceof SimpleGrantedAuthority)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Collection<? extends GrantedAuthority> copyOf(Collection<? extends GrantedAuthority> authorities) {
+		if (authorities instanceof Set) {
+			return new HashSet<>(authorities);
+		}
+		return new ArrayList<>(authorities);
 	}
 
 	/**
@@ -213,4 +286,70 @@ public class RoleHierarchyImpl implements RoleHierarchy {
 
 	}
 
+	/**
+	 * Give every role of the hierarchy an id and store the roles reachable from every
+	 * higher role as a bitset of these ids.
+	 */
+	private void buildRolesReachableInOneOrMoreStepsBitSets() {
+		Map<String, Integer> roleIds = new HashMap<>();
+		List<GrantedAuthority> roles = new ArrayList<>();
+		for (Map.Entry<String, Set<GrantedAuthority>> entry : this.rolesReachableInOneOrMoreStepsMap.entrySet()) {
+			addRole(roleIds, roles, new SimpleGrantedAuthority(entry.getKey()));
+			for (GrantedAuthority lowerRole : entry.getValue()) {
+				addRole(roleIds, roles, lowerRole);
+			}
+		}
+		BitSet[] rolesReachableInOneOrMoreSteps = new BitSet[roles.size()];
+		for (Map.Entry<String, Set<GrantedAuthority>> entry : this.rolesReachableInOneOrMoreStepsMap.entrySet()) {
+			BitSet lowerRoles = new BitSet(roles.size());
+			for (GrantedAuthority lowerRole : entry.getValue()) {
+				lowerRoles.set(roleIds.get(lowerRole.getAuthority()));
+			}
+			rolesReachableInOneOrMoreSteps[roleIds.get(entry.getKey())] = lowerRoles;
+		}
+		this.compiledHierarchy = new CompiledHierarchy(roleIds, roles.toArray(new GrantedAuthority[0]),
+				rolesReachableInOneOrMoreSteps);
+	}
+
+	private static void addRole(Map<String, Integer> roleIds, List<GrantedAuthority> roles, GrantedAuthority role) {
+		if (!roleIds.containsKey(role.getAuthority())) {
+			roleIds.put(role.getAuthority(), roles.size());
+			roles.add(role);
+		}
+	}
+
+	/**
+	 * The roles of a hierarchy and the roles reachable from them, along with the results
+	 * computed from them.
+	 */
+	private static final class CompiledHierarchy {
+
+		/**
+		 * {@code roleIds} is a Map that under the name of every role of the hierarchy
+		 * contains its index in {@link #roles} and
+		 * {@link #rolesReachableInOneOrMoreSteps}
+		 */
+		private final Map<String, Integer> roleIds;
+
+		private final GrantedAuthority[] roles;
+
+		/**
+		 * {@code rolesReachableInOneOrMoreSteps} contains for every role the ids of the
+		 * roles reachable from it in 1 or more steps, or {@code null} if it does not
+		 * include any role
+		 */
+		private final BitSet[] rolesReachableInOneOrMoreSteps;
+
+		private final Map<Collection<?>, Collection<GrantedAuthority>> reachableAuthoritiesCache;
+
+		private CompiledHierarchy(Map<String, Integer> roleIds, GrantedAuthority[] roles,
+				BitSet[] rolesReachableInOneOrMoreSteps) {
+			this.roleIds = roleIds;
+			this.roles = roles;
+			this.rolesReachableInOneOrMoreSteps = rolesReachableInOneOrMoreSteps;
+			this.reachableAuthoritiesCache = new ConcurrentHashMap<>();
+		}
+
+	}
+
 }
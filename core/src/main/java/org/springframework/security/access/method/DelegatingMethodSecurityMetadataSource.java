@@ -19,21 +19,29 @@ package org.springframework.security.access.method;
 import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.core.log.LogMessage;
 import org.springframework.security.access.ConfigAttribute;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * Automatically tries a series of method definition sources, relying on the first source
  * of metadata that provides a non-null/non-empty response. Provides automatic caching of
  * the retrieved metadata.
+ * <p>
+ * Cached metadata is read without locking. The cache of a class can be filled in advance
+ * with {@link #cacheAttributes(Class)}, so that calls to its methods never need to query
+ * the sources.
  *
  * @author Ben Alex
  * @author Luke Taylor
@@ -44,7 +52,7 @@ public final class DelegatingMethodSecurityMetadataSource extends AbstractMethod
 
 	private final List<MethodSecurityMetadataSource> methodSecurityMetadataSources;
 
-	private final Map<DefaultCacheKey, Collection<ConfigAttribute>> attributeCache = new HashMap<>();
+	private final Map<DefaultCacheKey, Collection<ConfigAttribute>> attributeCache = new ConcurrentHashMap<>();
 
 	public DelegatingMethodSecurityMetadataSource(List<MethodSecurityMetadataSource> methodSecurityMetadataSources) {
 		Assert.notNull(methodSecurityMetadataSources, "MethodSecurityMetadataSources cannot be null");
@@ -54,29 +62,63 @@ public final class DelegatingMethodSecurityMetadataSource extends AbstractMethod
 	@Override
 	public Collection<ConfigAttribute> getAttributes(Method method, Class<?> targetClass) {
 		DefaultCacheKey cacheKey = new DefaultCacheKey(method, targetClass);
-		synchronized (this.attributeCache) {
-			Collection<ConfigAttribute> cached = this.attributeCache.get(cacheKey);
-			// Check for canonical value indicating there is no config attribute,
-			if (cached != null) {
-				return cached;
-			}
-			// No cached value, so query the sources to find a result
-			Collection<ConfigAttribute> attributes = null;
-			for (MethodSecurityMetadataSource s : this.methodSecurityMetadataSources) {
-				attributes = s.getAttributes(method, targetClass);
-				if (attributes != null && !attributes.isEmpty()) {
-					break;
-				}
-			}
-			// Put it in the cache.
-			if (attributes == null || attributes.isEmpty()) {
-				this.attributeCache.put(cacheKey, NULL_CONFIG_ATTRIBUTE);
-				return NULL_CONFIG_ATTRIBUTE;
-			}
+		Collection<ConfigAttribute> cached = this.attributeCache.get(cacheKey);
+		// Check for canonical value indicating there is no config attribute,
+		if (cached != null) {
+			return cached;
+		}
+		// No cached value, so query the sources to find a result. Another thread may do
+		// the same, the first one to cache its result wins.
+		Collection<ConfigAttribute> attributes = findAttributes(method, targetClass);
+		cached = this.attributeCache.putIfAbsent(cacheKey, attributes);
+		if (cached != null) {
+			return cached;
+		}
+		if (attributes != NULL_CONFIG_ATTRIBUTE) {
 			this.logger.debug(LogMessage.format("Caching method [%s] with attributes %s", cacheKey, attributes));
-			this.attributeCache.put(cacheKey, attributes);
-			return attributes;
 		}
+		return attributes;
+	}
+
+	/**
+	 * Caches the attributes of every method of the class, and of the interfaces it
+	 * implements, when at least one of them has attributes. Calling this method for the
+	 * classes of the secured beans when the application starts avoids querying the sources
+	 * when the methods are first called.
+	 * @param targetClass the class to cache the attributes of
+	 * @return {@code true} if at least one method has attributes, in which case the
+	 * attributes were cached
+	 * @since 5.5
+	 */
+	public boolean cacheAttributes(Class<?> targetClass) {
+		Assert.notNull(targetClass, "targetClass cannot be null");
+		Set<Method> methods = new LinkedHashSet<>();
+		Collections.addAll(methods, ReflectionUtils.getUniqueDeclaredMethods(targetClass));
+		for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(targetClass)) {
+			Collections.addAll(methods, type.getMethods());
+		}
+		Map<DefaultCacheKey, Collection<ConfigAttribute>> attributes = new LinkedHashMap<>();
+		boolean secured = false;
+		for (Method method : methods) {
+			Collection<ConfigAttribute> methodAttributes = findAttributes(method, targetClass);
+			secured |= methodAttributes != NULL_CONFIG_ATTRIBUTE;
+			attributes.put(new DefaultCacheKey(method, targetClass), methodAttributes);
+		}
+		if (secured) {
+			this.logger.debug(LogMessage.format("Caching attributes of the methods of %s", targetClass.getName()));
+			attributes.forEach(this.attributeCache::putIfAbsent);
+		}
+		return secured;
+	}
+
+	private Collection<ConfigAttribute> findAttributes(Method method, Class<?> targetClass) {
+		for (MethodSecurityMetadataSource s : this.methodSecurityMetadataSources) {
+			Collection<ConfigAttribute> attributes = s.getAttributes(method, targetClass);
+			if (attributes != null && !attributes.isEmpty()) {
+				return attributes;
+			}
+		}
+		return NULL_CONFIG_ATTRIBUTE;
 	}
 
 	@Override
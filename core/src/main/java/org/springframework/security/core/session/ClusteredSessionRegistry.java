@@ -0,0 +1,469 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.log.LogMessage;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionRegistry} which keeps the sessions in a {@link SessionInformationStore}
+ * shared by every node of an application, so that the maximum number of sessions of a
+ * principal applies to the whole cluster rather than to each node.
+ * <p>
+ * Principals are identified by their name, as resolved by the
+ * {@link #setPrincipalNameConverter(Converter) principal name converter}, and the
+ * principal of every {@link SessionInformation} returned by this registry is that name.
+ * {@link #getAllSessions(Object, boolean)} always reads the store, so that sessions
+ * created on other nodes are counted. {@link SessionInformation#expireNow()} writes
+ * through to the store.
+ * <p>
+ * {@link #getSessionInformation(String)}, which is called on every request, is served
+ * from a local cache for the {@link #setCacheTimeToLive(Duration) cache time to live}.
+ * A session expired on another node is therefore seen on this node at most that long
+ * afterwards. {@link #refreshLastRequest(String)} only updates the cached session. Once
+ * a flush is {@link #scheduleFlush(TaskScheduler, Duration) scheduled}, the last requests
+ * are written to the store in batches. Until then, they are written on each request.
+ * <p>
+ * A session whose last request is older than the
+ * {@link #setSessionTimeout(Duration) session timeout} is stale: its node may have
+ * stopped, or its destruction may not have been published. Stale sessions are not
+ * returned by {@link #getAllSessions(Object, boolean)}, so that they do not count towards
+ * the maximum number of sessions of a principal, and are deleted from the store by
+ * {@link #purgeStaleSessions(Duration)}, which can be run periodically with
+ * {@link #schedulePurge(TaskScheduler, Duration)}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see JdbcSessionInformationStore
+ * @see R2dbcSessionInformationStore
+ */
+public class ClusteredSessionRegistry
+		implements SessionRegistry, ApplicationListener<AbstractSessionEvent>, DisposableBean {
+
+	private static final int DEFAULT_MAXIMUM_CACHE_SIZE = 10000;
+
+	private static final Duration DEFAULT_SESSION_TIMEOUT = Duration.ofMinutes(30);
+
+	protected final Log logger = LogFactory.getLog(ClusteredSessionRegistry.class);
+
+	private final SessionInformationStore sessionInformationStore;
+
+	private final Map<String, CachedSession> cache = new ConcurrentHashMap<>();
+
+	private final Map<String, Date> pendingLastRequests = new ConcurrentHashMap<>();
+
+	private Converter<Object, String> principalNameConverter = ClusteredSessionRegistry::getPrincipalName;
+
+	private long cacheTimeToLive = 5000;
+
+	private int maximumCacheSize = DEFAULT_MAXIMUM_CACHE_SIZE;
+
+	private Duration sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+
+	private volatile ScheduledFuture<?> flushTask;
+
+	private ScheduledFuture<?> purgeTask;
+
+	/**
+	 * Constructs a {@code ClusteredSessionRegistry} using the provided
+	 * {@link SessionInformationStore}.
+	 * @param sessionInformationStore the store shared by the nodes
+	 */
+	public ClusteredSessionRegistry(SessionInformationStore sessionInformationStore) {
+		Assert.notNull(sessionInformationStore, "sessionInformationStore cannot be null");
+		this.sessionInformationStore = sessionInformationStore;
+	}
+
+	/**
+	 * Returns the names of the principals with at least one session on any node.
+	 */
+	@Override
+	public List<Object> getAllPrincipals() {
+		return new ArrayList<>(this.sessionInformationStore.findAllPrincipalNames());
+	}
+
+	@Override
+	public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+		Assert.notNull(principal, "principal cannot be null");
+		String principalName = this.principalNameConverter.convert(principal);
+		List<SessionInformation> stored = this.sessionInformationStore.findByPrincipalName(principalName);
+		List<SessionInformation> sessions = new ArrayList<>(stored.size());
+		long staleBefore = System.currentTimeMillis() - this.sessionTimeout.toMillis();
+		for (SessionInformation info : stored) {
+			StoreSessionInformation session = cache(info);
+			if (session.lastRequest < staleBefore) {
+				continue;
+			}
+			if (includeExpiredSessions || !session.isExpired()) {
+				sessions.add(session);
+			}
+		}
+		return sessions;
+	}
+
+	@Override
+	public SessionInformation getSessionInformation(String sessionId) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		CachedSession cached = this.cache.get(sessionId);
+		if (cached != null && System.currentTimeMillis() - cached.cachedAt < this.cacheTimeToLive) {
+			return cached.session;
+		}
+		SessionInformation info = this.sessionInformationStore.findById(sessionId);
+		if (info == null) {
+			this.cache.remove(sessionId);
+			return null;
+		}
+		return cache(info);
+	}
+
+	@Override
+	public void onApplicationEvent(AbstractSessionEvent event) {
+		if (event instanceof SessionDestroyedEvent) {
+			SessionDestroyedEvent sessionDestroyedEvent = (SessionDestroyedEvent) event;
+			String sessionId = sessionDestroyedEvent.getId();
+			removeSessionInformation(sessionId);
+		}
+		else if (event instanceof SessionIdChangedEvent) {
+			SessionIdChangedEvent sessionIdChangedEvent = (SessionIdChangedEvent) event;
+			String oldSessionId = sessionIdChangedEvent.getOldSessionId();
+			SessionInformation info = getSessionInformation(oldSessionId);
+			if (info != null) {
+				removeSessionInformation(oldSessionId);
+				registerNewSession(sessionIdChangedEvent.getNewSessionId(), info.getPrincipal());
+			}
+		}
+	}
+
+	@Override
+	public void refreshLastRequest(String sessionId) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		SessionInformation info = getSessionInformation(sessionId);
+		if (info == null) {
+			return;
+		}
+		info.refreshLastRequest();
+		if (this.flushTask != null) {
+			this.pendingLastRequests.put(sessionId, info.getLastRequest());
+		}
+		else {
+			this.sessionInformationStore.updateLastRequests(
+					Collections.singletonMap(sessionId, info.getLastRequest()));
+		}
+	}
+
+	@Override
+	public void registerNewSession(String sessionId, Object principal) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		Assert.notNull(principal, "Principal required as per interface contract");
+		String principalName = this.principalNameConverter.convert(principal);
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug(LogMessage.format("Registering session %s, for principal %s", sessionId, principalName));
+		}
+		SessionInformation info = new SessionInformation(principalName, sessionId, new Date());
+		this.pendingLastRequests.remove(sessionId);
+		this.sessionInformationStore.save(info);
+		cache(info);
+	}
+
+	@Override
+	public void removeSessionInformation(String sessionId) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		if (this.logger.isTraceEnabled()) {
+			this.logger.trace(LogMessage.format("Removing session %s from set of registered sessions", sessionId));
+		}
+		this.cache.remove(sessionId);
+		this.pendingLastRequests.remove(sessionId);
+		this.sessionInformationStore.delete(sessionId);
+	}
+
+	/**
+	 * Writes the last requests refreshed since the previous flush to the store in a
+	 * single batch.
+	 * @return the number of sessions written
+	 */
+	public int flush() {
+		if (this.pendingLastRequests.isEmpty()) {
+			return 0;
+		}
+		Map<String, Date> batch = new HashMap<>();
+		for (Map.Entry<String, Date> entry : this.pendingLastRequests.entrySet()) {
+			if (this.pendingLastRequests.remove(entry.getKey(), entry.getValue())) {
+				batch.put(entry.getKey(), entry.getValue());
+			}
+		}
+		try {
+			this.sessionInformationStore.updateLastRequests(batch);
+		}
+		catch (RuntimeException ex) {
+			batch.forEach(this.pendingLastRequests::putIfAbsent);
+			throw ex;
+		}
+		this.logger.trace(LogMessage.format("Flushed the last request of %s sessions", batch.size()));
+		return batch.size();
+	}
+
+	/**
+	 * Runs {@link #flush()} every {@code interval} on the given {@link TaskScheduler},
+	 * replacing any previously scheduled flush. From then on,
+	 * {@link #refreshLastRequest(String)} no longer writes to the store. Failures are
+	 * logged and the last requests are written by the next flush. The flush is cancelled
+	 * by {@link #destroy()}.
+	 * @param taskScheduler the scheduler to run the flush on
+	 * @param interval the time between two flushes
+	 */
+	public synchronized void scheduleFlush(TaskScheduler taskScheduler, Duration interval) {
+		Assert.notNull(taskScheduler, "taskScheduler cannot be null");
+		Assert.notNull(interval, "interval cannot be null");
+		Assert.isTrue(!interval.isNegative() && !interval.isZero(), "interval must be positive");
+		cancelFlush();
+		this.flushTask = taskScheduler.scheduleAtFixedRate(this::flushQuietly, interval);
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		}
+		catch (RuntimeException ex) {
+			this.logger.warn("Failed to flush the last request of sessions", ex);
+		}
+	}
+
+	private void cancelFlush() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+			this.flushTask = null;
+		}
+	}
+
+	/**
+	 * Deletes from the store every session whose last request is older than
+	 * {@code sessionTimeout}, on any node. The last requests refreshed on this node are
+	 * flushed first, so that its active sessions are not deleted.
+	 * @param sessionTimeout the time after its last request from which a session is
+	 * stale
+	 * @return the number of sessions deleted
+	 */
+	public int purgeStaleSessions(Duration sessionTimeout) {
+		Assert.notNull(sessionTimeout, "sessionTimeout cannot be null");
+		Assert.isTrue(!sessionTimeout.isNegative() && !sessionTimeout.isZero(), "sessionTimeout must be positive");
+		flush();
+		long staleBefore = System.currentTimeMillis() - sessionTimeout.toMillis();
+		int purged = this.sessionInformationStore.deleteStale(new Date(staleBefore));
+		this.cache.values().removeIf((cached) -> cached.session.lastRequest < staleBefore);
+		this.logger.debug(LogMessage.format("Purged %s stale sessions", purged));
+		return purged;
+	}
+
+	/**
+	 * Runs {@link #purgeStaleSessions(Duration)} with the
+	 * {@link #setSessionTimeout(Duration) session timeout} every {@code interval} on the
+	 * given {@link TaskScheduler}, replacing any previously scheduled purge. Failures are
+	 * logged and the next run proceeds as scheduled. The purge is cancelled by
+	 * {@link #destroy()}.
+	 * @param taskScheduler the scheduler to run the purge on
+	 * @param interval the time between two purges
+	 */
+	public synchronized void schedulePurge(TaskScheduler taskScheduler, Duration interval) {
+		Assert.notNull(taskScheduler, "taskScheduler cannot be null");
+		Assert.notNull(interval, "interval cannot be null");
+		Assert.isTrue(!interval.isNegative() && !interval.isZero(), "interval must be positive");
+		cancelPurge();
+		this.purgeTask = taskScheduler.scheduleAtFixedRate(this::purgeQuietly, interval);
+	}
+
+	private void purgeQuietly() {
+		try {
+			purgeStaleSessions(this.sessionTimeout);
+		}
+		catch (RuntimeException ex) {
+			this.logger.warn("Failed to purge stale sessions", ex);
+		}
+	}
+
+	private void cancelPurge() {
+		if (this.purgeTask != null) {
+			this.purgeTask.cancel(false);
+			this.purgeTask = null;
+		}
+	}
+
+	/**
+	 * Cancels the scheduled flush and purge, and writes the pending last requests.
+	 */
+	@Override
+	public synchronized void destroy() {
+		cancelPurge();
+		cancelFlush();
+		flushQuietly();
+	}
+
+	/**
+	 * Sets how long a session read from the store is served from the local cache. The
+	 * default is five seconds.
+	 * @param cacheTimeToLive the time to live, {@link Duration#ZERO} to read the store
+	 * on every request
+	 */
+	public void setCacheTimeToLive(Duration cacheTimeToLive) {
+		Assert.notNull(cacheTimeToLive, "cacheTimeToLive cannot be null");
+		Assert.isTrue(!cacheTimeToLive.isNegative(), "cacheTimeToLive cannot be negative");
+		this.cacheTimeToLive = cacheTimeToLive.toMillis();
+	}
+
+	/**
+	 * Sets the time after its last request from which a session is stale. It should be
+	 * the session timeout of the application. The default is 30 minutes, the default
+	 * session timeout of a servlet container.
+	 * @param sessionTimeout the session timeout
+	 */
+	public void setSessionTimeout(Duration sessionTimeout) {
+		Assert.notNull(sessionTimeout, "sessionTimeout cannot be null");
+		Assert.isTrue(!sessionTimeout.isNegative() && !sessionTimeout.isZero(), "sessionTimeout must be positive");
+		this.sessionTimeout = sessionTimeout;
+	}
+
+	/**
+	 * Sets the number of sessions above which the local cache drops the sessions older
+	 * than the {@link #setCacheTimeToLive(Duration) time to live}. The default is 10000.
+	 * @param maximumCacheSize the maximum cache size
+	 */
+	public void setMaximumCacheSize(int maximumCacheSize) {
+		Assert.isTrue(maximumCacheSize > 0, "maximumCacheSize must be greater than 0");
+		this.maximumCacheSize = maximumCacheSize;
+	}
+
+	/**
+	 * Sets the {@link Converter} resolving the name under which the sessions of a
+	 * principal are stored. By default, the name is the username of a
+	 * {@link UserDetails}, the name of an {@link AuthenticatedPrincipal} or a
+	 * {@link Principal}, or else the {@code toString()} of the principal.
+	 * @param principalNameConverter the principal name converter
+	 */
+	public void setPrincipalNameConverter(Converter<Object, String> principalNameConverter) {
+		Assert.notNull(principalNameConverter, "principalNameConverter cannot be null");
+		this.principalNameConverter = principalNameConverter;
+	}
+
+	private StoreSessionInformation cache(SessionInformation info) {
+		StoreSessionInformation session = new StoreSessionInformation(info, this.sessionInformationStore);
+		Date pending = this.pendingLastRequests.get(info.getSessionId());
+		if (pending != null && pending.after(info.getLastRequest())) {
+			session.lastRequest = pending.getTime();
+		}
+		if (this.cache.size() >= this.maximumCacheSize) {
+			evictStaleSessions();
+		}
+		this.cache.put(info.getSessionId(), new CachedSession(session));
+		return session;
+	}
+
+	private void evictStaleSessions() {
+		long now = System.currentTimeMillis();
+		this.cache.values().removeIf((cached) -> now - cached.cachedAt >= this.cacheTimeToLive);
+		if (this.cache.size() >= this.maximumCacheSize) {
+			this.cache.clear();
+		}
+	}
+
+	private static String getPrincipalName(Object principal) {
+		if (principal instanceof UserDetails) {
+			return ((UserDetails) principal).getUsername();
+		}
+		if (principal instanceof AuthenticatedPrincipal) {
+			return ((AuthenticatedPrincipal) principal).getName();
+		}
+		if (principal instanceof Principal) {
+			return ((Principal) principal).getName();
+		}
+		return principal.toString();
+	}
+
+	private static final class CachedSession {
+
+		private final StoreSessionInformation session;
+
+		private final long cachedAt = System.currentTimeMillis();
+
+		private CachedSession(StoreSessionInformation session) {
+			this.session = session;
+		}
+
+	}
+
+	/**
+	 * A session read from the store, which writes its expiration through to the store.
+	 */
+	private static final class StoreSessionInformation extends SessionInformation {
+
+		private final transient SessionInformationStore sessionInformationStore;
+
+		private volatile long lastRequest;
+
+		private volatile boolean expired;
+
+		private StoreSessionInformation(SessionInformation info, SessionInformationStore sessionInformationStore) {
+			super(info.getPrincipal(), info.getSessionId(), info.getLastRequest());
+			this.sessionInformationStore = sessionInformationStore;
+			this.lastRequest = info.getLastRequest().getTime();
+			this.expired = info.isExpired();
+		}
+
+		@Override
+		public void expireNow() {
+			this.expired = true;
+			if (this.sessionInformationStore != null) {
+				this.sessionInformationStore.expire(getSessionId());
+			}
+		}
+
+		@Override
+		public Date getLastRequest() {
+			return new Date(this.lastRequest);
+		}
+
+		@Override
+		public boolean isExpired() {
+			return this.expired;
+		}
+
+		@Override
+		public void refreshLastRequest() {
+			this.lastRequest = System.currentTimeMillis();
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionInformationStore} which keeps the sessions in memory. It is not shared
+ * between nodes, and is meant for tests and single node deployments of applications
+ * configured with a {@link ClusteredSessionRegistry}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public final class InMemorySessionInformationStore implements SessionInformationStore {
+
+	private final Map<String, StoredSession> sessions = new ConcurrentHashMap<>();
+
+	private final Map<String, Set<String>> sessionIdsByPrincipalName = new ConcurrentHashMap<>();
+
+	@Override
+	public SessionInformation findById(String sessionId) {
+		StoredSession session = this.sessions.get(sessionId);
+		return (session != null) ? session.toSessionInformation() : null;
+	}
+
+	@Override
+	public List<SessionInformation> findByPrincipalName(String principalName) {
+		Set<String> sessionIds = this.sessionIdsByPrincipalName.get(principalName);
+		List<SessionInformation> result = new ArrayList<>();
+		if (sessionIds != null) {
+			for (String sessionId : sessionIds) {
+				SessionInformation info = findById(sessionId);
+				if (info != null) {
+					result.add(info);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public List<String> findAllPrincipalNames() {
+		return new ArrayList<>(this.sessionIdsByPrincipalName.keySet());
+	}
+
+	@Override
+	public void save(SessionInformation sessionInformation) {
+		Assert.notNull(sessionInformation, "sessionInformation cannot be null");
+		Assert.isInstanceOf(String.class, sessionInformation.getPrincipal(), "principal must be the principal name");
+		String principalName = (String) sessionInformation.getPrincipal();
+		String sessionId = sessionInformation.getSessionId();
+		delete(sessionId);
+		this.sessions.put(sessionId, new StoredSession(principalName, sessionId,
+				sessionInformation.getLastRequest().getTime(), sessionInformation.isExpired()));
+		this.sessionIdsByPrincipalName.compute(principalName, (name, sessionIds) -> {
+			Set<String> result = (sessionIds != null) ? sessionIds : ConcurrentHashMap.newKeySet();
+			result.add(sessionId);
+			return result;
+		});
+	}
+
+	@Override
+	public void expire(String sessionId) {
+		StoredSession session = this.sessions.get(sessionId);
+		if (session != null) {
+			session.expired = true;
+		}
+	}
+
+	@Override
+	public void updateLastRequests(Map<String, Date> lastRequests) {
+		lastRequests.forEach((sessionId, lastRequest) -> {
+			StoredSession session = this.sessions.get(sessionId);
+			if (session != null) {
+				synchronized (session) {
+					session.lastRequest = Math.max(session.lastRequest, lastRequest.getTime());
+				}
+			}
+		});
+	}
+
+	@Override
+	public void delete(String sessionId) {
+		StoredSession session = this.sessions.remove(sessionId);
+		if (session == null) {
+			return;
+		}
+		this.sessionIdsByPrincipalName.computeIfPresent(session.principalName, (name, sessionIds) -> {
+			sessionIds.remove(sessionId);
+			return sessionIds.isEmpty() ? null : sessionIds;
+		});
+	}
+
+	@Override
+	public int deleteStale(Date lastRequestBefore) {
+		Assert.notNull(lastRequestBefore, "lastRequestBefore cannot be null");
+		int deleted = 0;
+		for (StoredSession session : this.sessions.values()) {
+			if (session.lastRequest < lastRequestBefore.getTime() && this.sessions.containsKey(session.sessionId)) {
+				delete(session.sessionId);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+
+	private static final class StoredSession {
+
+		private final String principalName;
+
+		private final String sessionId;
+
+		private volatile long lastRequest;
+
+		private volatile boolean expired;
+
+		private StoredSession(String principalName, String sessionId, long lastRequest, boolean expired) {
+			this.principalName = principalName;
+			this.sessionId = sessionId;
+			this.lastRequest = lastRequest;
+			this.expired = expired;
+		}
+
+		private SessionInformation toSessionInformation() {
+			SessionInformation info = new SessionInformation(this.principalName, this.sessionId,
+					new Date(this.lastRequest));
+			if (this.expired) {
+				info.expireNow();
+			}
+			return info;
+		}
+
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
+
+/**
+ * A JDBC based {@link SessionInformationStore} that stores sessions in the
+ * {@code session_information} table.
+ * <p>
+ * <b>NOTE:</b> This store depends on the table definition described in
+ * "classpath:org/springframework/security/core/session/session-information-schema.sql",
+ * which is shared with {@link R2dbcSessionInformationStore}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see ClusteredSessionRegistry
+ */
+public class JdbcSessionInformationStore implements SessionInformationStore {
+
+	private static final String COLUMN_NAMES = "session_id, principal_name, last_request, expired";
+
+	private static final String TABLE_NAME = "session_information";
+
+	// @formatter:off
+	private static final String FIND_BY_ID_SQL = "SELECT " + COLUMN_NAMES + " FROM " + TABLE_NAME
+			+ " WHERE session_id = ?";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String FIND_BY_PRINCIPAL_NAME_SQL = "SELECT " + COLUMN_NAMES + " FROM " + TABLE_NAME
+			+ " WHERE principal_name = ?";
+	// @formatter:on
+
+	private static final String FIND_ALL_PRINCIPAL_NAMES_SQL = "SELECT DISTINCT principal_name FROM " + TABLE_NAME;
+
+	// @formatter:off
+	private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME + " (" + COLUMN_NAMES
+			+ ") VALUES (?, ?, ?, ?)";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String UPDATE_SQL = "UPDATE " + TABLE_NAME
+			+ " SET principal_name = ?, last_request = ?, expired = ? WHERE session_id = ?";
+	// @formatter:on
+
+	private static final String EXPIRE_SQL = "UPDATE " + TABLE_NAME + " SET expired = ? WHERE session_id = ?";
+
+	// @formatter:off
+	private static final String UPDATE_LAST_REQUEST_SQL = "UPDATE " + TABLE_NAME
+			+ " SET last_request = ? WHERE session_id = ? AND last_request < ?";
+	// @formatter:on
+
+	private static final String DELETE_SQL = "DELETE FROM " + TABLE_NAME + " WHERE session_id = ?";
+
+	private static final String DELETE_STALE_SQL = "DELETE FROM " + TABLE_NAME + " WHERE last_request < ?";
+
+	private static final RowMapper<SessionInformation> SESSION_INFORMATION_ROW_MAPPER = JdbcSessionInformationStore::mapRow;
+
+	protected final JdbcOperations jdbcOperations;
+
+	/**
+	 * Constructs a {@code JdbcSessionInformationStore} using a {@link JdbcTemplate} for
+	 * the provided {@link DataSource}.
+	 * @param dataSource the data source
+	 */
+	public JdbcSessionInformationStore(DataSource dataSource) {
+		this(new JdbcTemplate(dataSource));
+	}
+
+	/**
+	 * Constructs a {@code JdbcSessionInformationStore} using the provided
+	 * {@link JdbcOperations}.
+	 * @param jdbcOperations the JDBC operations
+	 */
+	public JdbcSessionInformationStore(JdbcOperations jdbcOperations) {
+		Assert.notNull(jdbcOperations, "jdbcOperations cannot be null");
+		this.jdbcOperations = jdbcOperations;
+	}
+
+	@Override
+	public SessionInformation findById(String sessionId) {
+		Assert.hasText(sessionId, "sessionId cannot be empty");
+		List<SessionInformation> result = this.jdbcOperations.query(FIND_BY_ID_SQL, SESSION_INFORMATION_ROW_MAPPER,
+				sessionId);
+		return !result.isEmpty() ? result.get(0) : null;
+	}
+
+	@Override
+	public List<SessionInformation> findByPrincipalName(String principalName) {
+		Assert.hasText(principalName, "principalName cannot be empty");
+		return this.jdbcOperations.query(FIND_BY_PRINCIPAL_NAME_SQL, SESSION_INFORMATION_ROW_MAPPER, principalName);
+	}
+
+	@Override
+	public List<String> findAllPrincipalNames() {
+		return this.jdbcOperations.queryForList(FIND_ALL_PRINCIPAL_NAMES_SQL, String.class);
+	}
+
+	/**
+	 * Saves the session. A new session is the common case, so the row is inserted first
+	 * and only updated if the session is already stored.
+	 */
+	@Override
+	public void save(SessionInformation sessionInformation) {
+		Assert.notNull(sessionInformation, "sessionInformation cannot be null");
+		Assert.isInstanceOf(String.class, sessionInformation.getPrincipal(), "principal must be the principal name");
+		String principalName = (String) sessionInformation.getPrincipal();
+		long lastRequest = sessionInformation.getLastRequest().getTime();
+		try {
+			this.jdbcOperations.update(INSERT_SQL, sessionInformation.getSessionId(), principalName, lastRequest,
+					sessionInformation.isExpired());
+		}
+		catch (DuplicateKeyException ex) {
+			this.jdbcOperations.update(UPDATE_SQL, principalName, lastRequest, sessionInformation.isExpired(),
+					sessionInformation.getSessionId());
+		}
+	}
+
+	@Override
+	public void expire(String sessionId) {
+		Assert.hasText(sessionId, "sessionId cannot be empty");
+		this.jdbcOperations.update(EXPIRE_SQL, true, sessionId);
+	}
+
+	/**
+	 * Updates the last requests in a single batch.
+	 */
+	@Override
+	public void updateLastRequests(Map<String, Date> lastRequests) {
+		Assert.notNull(lastRequests, "lastRequests cannot be null");
+		if (lastRequests.isEmpty()) {
+			return;
+		}
+		List<Object[]> batchArgs = new ArrayList<>(lastRequests.size());
+		lastRequests.forEach((sessionId, lastRequest) -> batchArgs
+				.add(new Object[] { lastRequest.getTime(), sessionId, lastRequest.getTime() }));
+		this.jdbcOperations.batchUpdate(UPDATE_LAST_REQUEST_SQL, batchArgs);
+	}
+
+	@Override
+	public void delete(String sessionId) {
+		Assert.hasText(sessionId, "sessionId cannot be empty");
+		this.jdbcOperations.update(DELETE_SQL, sessionId);
+	}
+
+	/**
+	 * Deletes the stale sessions in a single statement.
+	 */
+	@Override
+	public int deleteStale(Date lastRequestBefore) {
+		Assert.notNull(lastRequestBefore, "lastRequestBefore cannot be null");
+		return this.jdbcOperations.update(DELETE_STALE_SQL, lastRequestBefore.getTime());
+	}
+
+	private static SessionInformation mapRow(ResultSet rs, int rowNum) throws SQLException {
+		SessionInformation info = new SessionInformation(rs.getString("principal_name"), rs.getString("session_id"),
+				new Date(rs.getLong("last_request")));
+		if (rs.getBoolean("expired")) {
+			info.expireNow();
+		}
+		return info;
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.util.Assert;
+
+/**
+ * A R2DBC implementation of {@link SessionInformationStore} that uses a
+ * {@link DatabaseClient} to store sessions in the {@code session_information} table, for
+ * applications whose only database access is through R2DBC.
+ * <p>
+ * {@link SessionRegistry} is a blocking contract, so every operation waits for its
+ * statement to complete, for at most the {@link #setTimeout(Duration) timeout}. The
+ * store must therefore not be used from a non-blocking thread.
+ * <p>
+ * <b>NOTE:</b> This store depends on the table definition described in
+ * "classpath:org/springframework/security/core/session/session-information-schema.sql",
+ * which is shared with {@link JdbcSessionInformationStore}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see ClusteredSessionRegistry
+ */
+public class R2dbcSessionInformationStore implements SessionInformationStore {
+
+	private static final String COLUMN_NAMES = "session_id, principal_name, last_request, expired";
+
+	private static final String TABLE_NAME = "session_information";
+
+	// @formatter:off
+	private static final String FIND_BY_ID_SQL = "SELECT " + COLUMN_NAMES + " FROM " + TABLE_NAME
+			+ " WHERE session_id = :sessionId";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String FIND_BY_PRINCIPAL_NAME_SQL = "SELECT " + COLUMN_NAMES + " FROM " + TABLE_NAME
+			+ " WHERE principal_name = :principalName";
+	// @formatter:on
+
+	private static final String FIND_ALL_PRINCIPAL_NAMES_SQL = "SELECT DISTINCT principal_name FROM " + TABLE_NAME;
+
+	// @formatter:off
+	private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME + " (" + COLUMN_NAMES
+			+ ") VALUES (:sessionId, :principalName, :lastRequest, :expired)";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String UPDATE_SQL = "UPDATE " + TABLE_NAME
+			+ " SET principal_name = :principalName, last_request = :lastRequest, expired = :expired"
+			+ " WHERE session_id = :sessionId";
+	// @formatter:on
+
+	private static final String EXPIRE_SQL = "UPDATE " + TABLE_NAME
+			+ " SET expired = :expired WHERE session_id = :sessionId";
+
+	// @formatter:off
+	private static final String UPDATE_LAST_REQUEST_SQL = "UPDATE " + TABLE_NAME
+			+ " SET last_request = :lastRequest WHERE session_id = :sessionId AND last_request < :lastRequest";
+	// @formatter:on
+
+	private static final String DELETE_SQL = "DELETE FROM " + TABLE_NAME + " WHERE session_id = :sessionId";
+
+	private static final String DELETE_STALE_SQL = "DELETE FROM " + TABLE_NAME
+			+ " WHERE last_request < :lastRequestBefore";
+
+	protected final DatabaseClient databaseClient;
+
+	private Duration timeout = Duration.ofSeconds(5);
+
+	/**
+	 * Constructs a {@code R2dbcSessionInformationStore} using the provided
+	 * {@link DatabaseClient}.
+	 * @param databaseClient the database client
+	 */
+	public R2dbcSessionInformationStore(DatabaseClient databaseClient) {
+		Assert.notNull(databaseClient, "databaseClient cannot be null");
+		this.databaseClient = databaseClient;
+	}
+
+	@Override
+	public SessionInformation findById(String sessionId) {
+		Assert.hasText(sessionId, "sessionId cannot be empty");
+		return this.databaseClient.sql(FIND_BY_ID_SQL).bind("sessionId", sessionId)
+				.map((row, metadata) -> mapRow(row)).first().block(this.timeout);
+	}
+
+	@Override
+	public List<SessionInformation> findByPrincipalName(String principalName) {
+		Assert.hasText(principalName, "principalName cannot be empty");
+		return this.databaseClient.sql(FIND_BY_PRINCIPAL_NAME_SQL).bind("principalName", principalName)
+				.map((row, metadata) -> mapRow(row)).all().collectList().block(this.timeout);
+	}
+
+	@Override
+	public List<String> findAllPrincipalNames() {
+		return this.databaseClient.sql(FIND_ALL_PRINCIPAL_NAMES_SQL)
+				.map((row, metadata) -> row.get("principal_name", String.class)).all().collectList()
+				.block(this.timeout);
+	}
+
+	/**
+	 * Saves the session. A new session is the common case, so the row is inserted first
+	 * and only updated if the session is already stored.
+	 */
+	@Override
+	public void save(SessionInformation sessionInformation) {
+		Assert.notNull(sessionInformation, "sessionInformation cannot be null");
+		Assert.isInstanceOf(String.class, sessionInformation.getPrincipal(), "principal must be the principal name");
+		bind(this.databaseClient.sql(INSERT_SQL), sessionInformation).fetch().rowsUpdated()
+				.onErrorResume(DataIntegrityViolationException.class,
+						(ex) -> bind(this.databaseClient.sql(UPDATE_SQL), sessionInformation).fetch().rowsUpdated())
+				.block(this.timeout);
+	}
+
+	@Override
+	public void expire(String sessionId) {
+		Assert.hasText(sessionId, "sessionId cannot be empty");
+		this.databaseClient.sql(EXPIRE_SQL).bind("expired", true).bind("sessionId", sessionId).fetch().rowsUpdated()
+				.block(this.timeout);
+	}
+
+	/**
+	 * Updates the last requests one statement after the other, waiting once for all of
+	 * them.
+	 */
+	@Override
+	public void updateLastRequests(Map<String, Date> lastRequests) {
+		Assert.notNull(lastRequests, "lastRequests cannot be null");
+		if (lastRequests.isEmpty()) {
+			return;
+		}
+		Flux.fromIterable(lastRequests.entrySet())
+				.concatMap((entry) -> this.databaseClient.sql(UPDATE_LAST_REQUEST_SQL)
+						.bind("lastRequest", entry.getValue().getTime()).bind("sessionId", entry.getKey()).fetch()
+						.rowsUpdated())
+				.then().block(this.timeout);
+	}
+
+	@Override
+	public void delete(String sessionId) {
+		Assert.hasText(sessionId, "sessionId cannot be empty");
+		this.databaseClient.sql(DELETE_SQL).bind("sessionId", sessionId).fetch().rowsUpdated()
+				.block(this.timeout);
+	}
+
+	/**
+	 * Deletes the stale sessions in a single statement.
+	 */
+	@Override
+	public int deleteStale(Date lastRequestBefore) {
+		Assert.notNull(lastRequestBefore, "lastRequestBefore cannot be null");
+		Integer deleted = this.databaseClient.sql(DELETE_STALE_SQL)
+				.bind("lastRequestBefore", lastRequestBefore.getTime()).fetch().rowsUpdated().block(this.timeout);
+		return (deleted != null) ? deleted : 0;
+	}
+
+	/**
+	 * Sets how long each operation waits for the database. The default is five seconds.
+	 * @param timeout the timeout
+	 */
+	public void setTimeout(Duration timeout) {
+		Assert.notNull(timeout, "timeout cannot be null");
+		Assert.isTrue(!timeout.isNegative() && !timeout.isZero(), "timeout must be positive");
+		this.timeout = timeout;
+	}
+
+	private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec,
+			SessionInformation sessionInformation) {
+		return spec.bind("sessionId", sessionInformation.getSessionId())
+				.bind("principalName", sessionInformation.getPrincipal())
+				.bind("lastRequest", sessionInformation.getLastRequest().getTime())
+				.bind("expired", sessionInformation.isExpired());
+	}
+
+	private static SessionInformation mapRow(Row row) {
+		SessionInformation info = new SessionInformation(row.get("principal_name", String.class),
+				row.get("session_id", String.class), new Date(row.get("last_request", Long.class)));
+		if (Boolean.TRUE.equals(row.get("expired", Boolean.class))) {
+			info.expireNow();
+		}
+		return info;
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the {@link SessionInformation} of a {@link ClusteredSessionRegistry} in a place
+ * shared by every node of an application, such as a database.
+ * <p>
+ * The principal of every {@link SessionInformation} given to or returned by a store is
+ * the name of the principal, as a {@code String}, so that the sessions of a principal
+ * can be found from any node.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see JdbcSessionInformationStore
+ * @see R2dbcSessionInformationStore
+ * @see InMemorySessionInformationStore
+ */
+public interface SessionInformationStore {
+
+	/**
+	 * Returns the session with the given identifier.
+	 * @param sessionId the session identifier
+	 * @return the session, or {@code null} if it is not stored
+	 */
+	SessionInformation findById(String sessionId);
+
+	/**
+	 * Returns the sessions of a principal, including the expired sessions.
+	 * @param principalName the name of the principal
+	 * @return the sessions of the principal, empty if there are none
+	 */
+	List<SessionInformation> findByPrincipalName(String principalName);
+
+	/**
+	 * Returns the names of the principals which have at least one session.
+	 * @return the principal names
+	 */
+	List<String> findAllPrincipalNames();
+
+	/**
+	 * Saves a session, replacing any session stored with the same identifier.
+	 * @param sessionInformation the session, whose principal is the principal name
+	 */
+	void save(SessionInformation sessionInformation);
+
+	/**
+	 * Marks a session as expired.
+	 * @param sessionId the session identifier
+	 */
+	void expire(String sessionId);
+
+	/**
+	 * Updates the last request of several sessions at once. The last request of a session
+	 * is never moved back in time, and sessions which are not stored are ignored.
+	 * @param lastRequests the last request of each session, by session identifier
+	 */
+	void updateLastRequests(Map<String, Date> lastRequests);
+
+	/**
+	 * Deletes a session.
+	 * @param sessionId the session identifier
+	 */
+	void delete(String sessionId);
+
+	/**
+	 * Deletes the sessions whose last request is older than the given date, such as the
+	 * sessions of a node which stopped without removing them.
+	 * @param lastRequestBefore the date before which a session is stale
+	 * @return the number of deleted sessions
+	 */
+	int deleteStale(Date lastRequestBefore);
+
+}
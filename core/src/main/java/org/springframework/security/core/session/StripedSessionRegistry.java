@@ -0,0 +1,245 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.log.LogMessage;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionRegistry} for applications with many sessions per principal, such as
+ * shared service accounts, which listens for {@link SessionDestroyedEvent}s and
+ * {@link SessionIdChangedEvent}s like {@link SessionRegistryImpl}.
+ * <p>
+ * The sessions of every principal are kept least recently used first, so that
+ * {@link #getAllSessions(Object, boolean)} returns the sessions to expire first at the
+ * start of the list, and registering or removing a session does not copy the other
+ * sessions of the principal. The principals are guarded by a fixed number of lock
+ * stripes, and the number of sessions of a principal is available without locking from
+ * {@link #getSessionCount(Object)}.
+ * <p>
+ * {@link #refreshLastRequest(String)} only updates the last request of a session once it
+ * is older than the {@link #setRefreshLastRequestInterval(Duration) refresh interval},
+ * one second by default, so that a session serving many requests is not updated on each
+ * of them.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see SessionRegistryImpl
+ */
+public class StripedSessionRegistry implements SessionRegistry, ApplicationListener<AbstractSessionEvent> {
+
+	private static final int DEFAULT_STRIPES = 64;
+
+	protected final Log logger = LogFactory.getLog(StripedSessionRegistry.class);
+
+	private final Map<Object, PrincipalSessions> principals = new ConcurrentHashMap<>();
+
+	private final Map<String, SessionInformation> sessionIds = new ConcurrentHashMap<>();
+
+	private final Object[] stripes;
+
+	private long refreshLastRequestInterval = 1000;
+
+	public StripedSessionRegistry() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a registry guarding the principals with the given number of locks.
+	 * @param stripes the number of locks, rounded up to a power of two
+	 */
+	public StripedSessionRegistry(int stripes) {
+		Assert.isTrue(stripes > 0, "stripes must be greater than 0");
+		int size = 1;
+		while (size < stripes) {
+			size <<= 1;
+		}
+		this.stripes = new Object[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Object();
+		}
+	}
+
+	@Override
+	public List<Object> getAllPrincipals() {
+		return new ArrayList<>(this.principals.keySet());
+	}
+
+	/**
+	 * Returns the sessions of the principal, least recently used first.
+	 */
+	@Override
+	public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+		PrincipalSessions sessionsUsedByPrincipal = this.principals.get(principal);
+		if (sessionsUsedByPrincipal == null) {
+			return Collections.emptyList();
+		}
+		synchronized (stripe(principal)) {
+			List<SessionInformation> list = new ArrayList<>(sessionsUsedByPrincipal.sessions.size());
+			for (SessionInformation sessionInformation : sessionsUsedByPrincipal.sessions.values()) {
+				if (includeExpiredSessions || !sessionInformation.isExpired()) {
+					list.add(sessionInformation);
+				}
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * Returns the number of sessions registered for a principal, including the expired
+	 * sessions which have not been removed yet.
+	 * @param principal the principal
+	 * @return the number of sessions of the principal
+	 */
+	public int getSessionCount(Object principal) {
+		PrincipalSessions sessionsUsedByPrincipal = this.principals.get(principal);
+		return (sessionsUsedByPrincipal != null) ? sessionsUsedByPrincipal.count.get() : 0;
+	}
+
+	@Override
+	public SessionInformation getSessionInformation(String sessionId) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		return this.sessionIds.get(sessionId);
+	}
+
+	@Override
+	public void onApplicationEvent(AbstractSessionEvent event) {
+		if (event instanceof SessionDestroyedEvent) {
+			SessionDestroyedEvent sessionDestroyedEvent = (SessionDestroyedEvent) event;
+			String sessionId = sessionDestroyedEvent.getId();
+			removeSessionInformation(sessionId);
+		}
+		else if (event instanceof SessionIdChangedEvent) {
+			SessionIdChangedEvent sessionIdChangedEvent = (SessionIdChangedEvent) event;
+			String oldSessionId = sessionIdChangedEvent.getOldSessionId();
+			SessionInformation info = this.sessionIds.get(oldSessionId);
+			if (info != null) {
+				removeSessionInformation(oldSessionId);
+				registerNewSession(sessionIdChangedEvent.getNewSessionId(), info.getPrincipal());
+			}
+		}
+	}
+
+	@Override
+	public void refreshLastRequest(String sessionId) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		SessionInformation info = getSessionInformation(sessionId);
+		if (info == null
+				|| System.currentTimeMillis() - info.getLastRequest().getTime() < this.refreshLastRequestInterval) {
+			return;
+		}
+		synchronized (stripe(info.getPrincipal())) {
+			PrincipalSessions sessionsUsedByPrincipal = this.principals.get(info.getPrincipal());
+			if (sessionsUsedByPrincipal == null || sessionsUsedByPrincipal.sessions.remove(sessionId) == null) {
+				return;
+			}
+			info.refreshLastRequest();
+			sessionsUsedByPrincipal.sessions.put(sessionId, info);
+		}
+	}
+
+	@Override
+	public void registerNewSession(String sessionId, Object principal) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		Assert.notNull(principal, "Principal required as per interface contract");
+		if (getSessionInformation(sessionId) != null) {
+			removeSessionInformation(sessionId);
+		}
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug(LogMessage.format("Registering session %s, for principal %s", sessionId, principal));
+		}
+		SessionInformation info = new SessionInformation(principal, sessionId, new Date());
+		synchronized (stripe(principal)) {
+			this.sessionIds.put(sessionId, info);
+			PrincipalSessions sessionsUsedByPrincipal = this.principals.computeIfAbsent(principal,
+					(key) -> new PrincipalSessions());
+			sessionsUsedByPrincipal.sessions.put(sessionId, info);
+			sessionsUsedByPrincipal.count.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void removeSessionInformation(String sessionId) {
+		Assert.hasText(sessionId, "SessionId required as per interface contract");
+		SessionInformation info = getSessionInformation(sessionId);
+		if (info == null) {
+			return;
+		}
+		if (this.logger.isTraceEnabled()) {
+			this.logger.trace(LogMessage.format("Removing session %s from set of registered sessions", sessionId));
+		}
+		Object principal = info.getPrincipal();
+		synchronized (stripe(principal)) {
+			if (!this.sessionIds.remove(sessionId, info)) {
+				return;
+			}
+			PrincipalSessions sessionsUsedByPrincipal = this.principals.get(principal);
+			if (sessionsUsedByPrincipal == null || sessionsUsedByPrincipal.sessions.remove(sessionId) == null) {
+				return;
+			}
+			if (sessionsUsedByPrincipal.count.decrementAndGet() == 0) {
+				// No need to keep object in principals Map anymore
+				this.logger.debug(LogMessage.format("Removing principal %s from registry", principal));
+				this.principals.remove(principal);
+			}
+		}
+	}
+
+	/**
+	 * Sets how old the last request of a session must be for
+	 * {@link #refreshLastRequest(String)} to update it. The default is one second.
+	 * @param refreshLastRequestInterval the interval, {@link Duration#ZERO} to update
+	 * the last request on every request
+	 */
+	public void setRefreshLastRequestInterval(Duration refreshLastRequestInterval) {
+		Assert.notNull(refreshLastRequestInterval, "refreshLastRequestInterval cannot be null");
+		Assert.isTrue(!refreshLastRequestInterval.isNegative(), "refreshLastRequestInterval cannot be negative");
+		this.refreshLastRequestInterval = refreshLastRequestInterval.toMillis();
+	}
+
+	private Object stripe(Object principal) {
+		int hash = principal.hashCode();
+		return this.stripes[(hash ^ (hash >>> 16)) & (this.stripes.length - 1)];
+	}
+
+	/**
+	 * The sessions of a principal, least recently used first, guarded by the stripe of
+	 * the principal.
+	 */
+	private static final class PrincipalSessions {
+
+		private final LinkedHashMap<String, SessionInformation> sessions = new LinkedHashMap<>();
+
+		private final AtomicInteger count = new AtomicInteger();
+
+	}
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * The input a {@link SecurityBinarySerializer} reads from, the counterpart of
+ * {@link BinaryOutput}.
+ * <p>
+ * While a serializer reads a value, the input is limited to the bytes of that value, so
+ * that {@link #hasRemaining()} tells whether the value was written by a later version
+ * with more fields.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see BinaryOutput
+ */
+public final class BinaryInput {
+
+	private final SecurityBinaryCodec codec;
+
+	private final byte[] buffer;
+
+	private int position;
+
+	private int limit;
+
+	BinaryInput(SecurityBinaryCodec codec, byte[] buffer, int position) {
+		this.codec = codec;
+		this.buffer = buffer;
+		this.position = position;
+		this.limit = buffer.length;
+	}
+
+	/**
+	 * Returns whether the value being read has fields left.
+	 * @return {@code true} if there are bytes left in the current value
+	 */
+	public boolean hasRemaining() {
+		return this.position < this.limit;
+	}
+
+	public int readByte() {
+		if (this.position >= this.limit) {
+			throw new SerializationFailedException("Unexpected end of input");
+		}
+		return this.buffer[this.position++] & 0xFF;
+	}
+
+	public boolean readBoolean() {
+		return readByte() != 0;
+	}
+
+	public int readVarInt() {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new SerializationFailedException("Malformed variable length integer");
+	}
+
+	public int readInt() {
+		return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+	}
+
+	public long readVarLong() {
+		long zigZag = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = readByte();
+			zigZag |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (zigZag >>> 1) ^ -(zigZag & 1);
+			}
+		}
+		throw new SerializationFailedException("Malformed variable length long");
+	}
+
+	public String readString() {
+		int length = readVarInt() - 1;
+		if (length < 0) {
+			return null;
+		}
+		checkAvailable(length);
+		String value = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+		this.position += length;
+		return value;
+	}
+
+	public Instant readInstant() {
+		if (!readBoolean()) {
+			return null;
+		}
+		return Instant.ofEpochSecond(readVarLong(), readVarInt());
+	}
+
+	/**
+	 * Reads a value written by {@link BinaryOutput#writeObject(Object)}.
+	 * @param type the expected type
+	 * @param <T> the expected type
+	 * @return the value, or {@code null}
+	 * @throws SerializationFailedException if the type of the value is unknown or is not
+	 * the expected type
+	 */
+	public <T> T readObject(Class<T> type) {
+		int typeId = readVarInt();
+		if (typeId == 0) {
+			return null;
+		}
+		SecurityBinarySerializer<?> serializer = this.codec.getSerializer(typeId);
+		int version = readVarInt();
+		int length = readVarInt();
+		checkAvailable(length);
+		int end = this.position + length;
+		int previousLimit = this.limit;
+		this.limit = end;
+		Object value;
+		try {
+			value = serializer.read(this, version);
+		}
+		finally {
+			this.limit = previousLimit;
+		}
+		this.position = end;
+		if (!type.isInstance(value)) {
+			throw new SerializationFailedException(
+					"Expected " + type.getName() + " but found " + serializer.getType().getName());
+		}
+		return type.cast(value);
+	}
+
+	/**
+	 * Reads authorities written by {@link BinaryOutput#writeAuthorities}.
+	 * @return the authorities
+	 */
+	public List<GrantedAuthority> readAuthorities() {
+		int size = readSize();
+		if (size == 0) {
+			return Collections.emptyList();
+		}
+		List<GrantedAuthority> authorities = new ArrayList<>(Math.min(size, 64));
+		for (int i = 0; i < size; i++) {
+			authorities.add(readObject(GrantedAuthority.class));
+		}
+		return authorities;
+	}
+
+	/**
+	 * Reads a value written by {@link BinaryOutput#writeValue(Object)}. Lists, sets and
+	 * maps are read as modifiable collections keeping the order they were written in.
+	 * @return the value
+	 */
+	public Object readValue() {
+		int tag = readByte();
+		switch (tag) {
+		case BinaryOutput.NULL:
+			return null;
+		case BinaryOutput.STRING:
+			return readString();
+		case BinaryOutput.TRUE:
+			return Boolean.TRUE;
+		case BinaryOutput.FALSE:
+			return Boolean.FALSE;
+		case BinaryOutput.INTEGER:
+			return (int) readVarLong();
+		case BinaryOutput.LONG:
+			return readVarLong();
+		case BinaryOutput.DOUBLE:
+			return Double.longBitsToDouble(readVarLong());
+		case BinaryOutput.INSTANT:
+			return Instant.ofEpochSecond(readVarLong(), readVarInt());
+		case BinaryOutput.URL_VALUE:
+			return readUrl();
+		case BinaryOutput.LIST:
+			return readCollection(new ArrayList<>());
+		case BinaryOutput.SET:
+			return readCollection(new LinkedHashSet<>());
+		case BinaryOutput.MAP:
+			return readMap();
+		case BinaryOutput.OBJECT:
+			return readObject(Object.class);
+		default:
+			throw new SerializationFailedException("Unknown value tag " + tag);
+		}
+	}
+
+	/**
+	 * Reads a map written by {@link BinaryOutput#writeValue(Object)} with string keys.
+	 * @return the map
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> readStringMap() {
+		Object value = readValue();
+		if (value != null && !(value instanceof Map)) {
+			throw new SerializationFailedException("Expected a map but found " + value.getClass().getName());
+		}
+		return (Map<String, Object>) value;
+	}
+
+	SimpleGrantedAuthority internAuthority(String role) {
+		return this.codec.internAuthority(role);
+	}
+
+	private URL readUrl() {
+		String url = readString();
+		try {
+			return new URL(url);
+		}
+		catch (MalformedURLException ex) {
+			throw new SerializationFailedException("Malformed URL " + url, ex);
+		}
+	}
+
+	private <C extends Collection<Object>> C readCollection(C collection) {
+		int size = readSize();
+		for (int i = 0; i < size; i++) {
+			collection.add(readValue());
+		}
+		return collection;
+	}
+
+	private Map<Object, Object> readMap() {
+		int size = readSize();
+		Map<Object, Object> map = new LinkedHashMap<>(Math.min(size, 64) * 2);
+		for (int i = 0; i < size; i++) {
+			map.put(readValue(), readValue());
+		}
+		return map;
+	}
+
+	/**
+	 * Reads the number of elements of a collection. Every element takes at least one
+	 * byte, so a size larger than the remaining input is malformed.
+	 */
+	private int readSize() {
+		int size = readVarInt();
+		if (size < 0 || size > this.limit - this.position) {
+			throw new SerializationFailedException("Malformed collection size " + size);
+		}
+		return size;
+	}
+
+	private void checkAvailable(int length) {
+		if (length < 0 || length > this.limit - this.position) {
+			throw new SerializationFailedException("Unexpected end of input");
+		}
+	}
+
+}
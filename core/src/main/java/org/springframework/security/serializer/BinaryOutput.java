@@ -0,0 +1,319 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * The output a {@link SecurityBinarySerializer} writes to, backed by a growing byte
+ * array.
+ * <p>
+ * Integers are written as variable length quantities, so that small values take a
+ * single byte, and strings as UTF-8.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see BinaryInput
+ */
+public final class BinaryOutput {
+
+	static final int NULL = 0;
+
+	static final int STRING = 1;
+
+	static final int TRUE = 2;
+
+	static final int FALSE = 3;
+
+	static final int INTEGER = 4;
+
+	static final int LONG = 5;
+
+	static final int DOUBLE = 6;
+
+	static final int INSTANT = 7;
+
+	static final int LIST = 8;
+
+	static final int SET = 9;
+
+	static final int MAP = 10;
+
+	static final int URL_VALUE = 11;
+
+	static final int OBJECT = 12;
+
+	private final SecurityBinaryCodec codec;
+
+	private byte[] buffer;
+
+	private int position;
+
+	BinaryOutput(SecurityBinaryCodec codec, int initialCapacity) {
+		this.codec = codec;
+		this.buffer = new byte[initialCapacity];
+	}
+
+	public void writeByte(int value) {
+		ensureCapacity(1);
+		this.buffer[this.position++] = (byte) value;
+	}
+
+	public void writeBoolean(boolean value) {
+		writeByte(value ? 1 : 0);
+	}
+
+	/**
+	 * Writes an integer which is usually small and positive, such as a size.
+	 * @param value the value
+	 */
+	public void writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		this.buffer[this.position++] = (byte) value;
+	}
+
+	/**
+	 * Writes an integer which may be negative or large, such as a hash code, in four
+	 * bytes.
+	 * @param value the value
+	 */
+	public void writeInt(int value) {
+		ensureCapacity(4);
+		this.buffer[this.position++] = (byte) (value >>> 24);
+		this.buffer[this.position++] = (byte) (value >>> 16);
+		this.buffer[this.position++] = (byte) (value >>> 8);
+		this.buffer[this.position++] = (byte) value;
+	}
+
+	/**
+	 * Writes a long, zig-zag encoded so that small negative values are short too.
+	 * @param value the value
+	 */
+	public void writeVarLong(long value) {
+		ensureCapacity(10);
+		long zigZag = (value << 1) ^ (value >> 63);
+		while ((zigZag & ~0x7FL) != 0) {
+			this.buffer[this.position++] = (byte) ((zigZag & 0x7F) | 0x80);
+			zigZag >>>= 7;
+		}
+		this.buffer[this.position++] = (byte) zigZag;
+	}
+
+	/**
+	 * Writes a string, which may be {@code null}.
+	 * @param value the value
+	 */
+	public void writeString(String value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		int length = value.length();
+		int utf8Length = length;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				if (Character.isSurrogate(c)) {
+					writeBytes(value.getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+				utf8Length += (c < 0x800) ? 1 : 2;
+			}
+		}
+		writeVarInt(utf8Length + 1);
+		ensureCapacity(utf8Length);
+		byte[] buffer = this.buffer;
+		int position = this.position;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer[position++] = (byte) c;
+			}
+			else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+			else {
+				buffer[position++] = (byte) (0xE0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		this.position = position;
+	}
+
+	private void writeBytes(byte[] utf8) {
+		writeVarInt(utf8.length + 1);
+		ensureCapacity(utf8.length);
+		System.arraycopy(utf8, 0, this.buffer, this.position, utf8.length);
+		this.position += utf8.length;
+	}
+
+	/**
+	 * Writes an instant, which may be {@code null}.
+	 * @param value the value
+	 */
+	public void writeInstant(Instant value) {
+		writeBoolean(value != null);
+		if (value != null) {
+			writeVarLong(value.getEpochSecond());
+			writeVarInt(value.getNano());
+		}
+	}
+
+	/**
+	 * Writes a value whose exact class has a {@link SecurityBinarySerializer}, or
+	 * {@code null}.
+	 * @param value the value
+	 * @throws SerializationFailedException if no serializer writes the class of the
+	 * value
+	 */
+	public void writeObject(Object value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		SecurityBinarySerializer<Object> serializer = this.codec.getSerializer(value.getClass());
+		writeVarInt(serializer.getTypeId());
+		writeVarInt(serializer.getVersion());
+		int start = this.position;
+		serializer.write(value, this);
+		insertLength(start);
+	}
+
+	/**
+	 * Writes authorities whose classes have a {@link SecurityBinarySerializer}.
+	 * @param authorities the authorities
+	 */
+	public void writeAuthorities(Collection<? extends GrantedAuthority> authorities) {
+		writeVarInt(authorities.size());
+		for (GrantedAuthority authority : authorities) {
+			writeObject(authority);
+		}
+	}
+
+	/**
+	 * Writes a value of any type read from a token or an identity provider: a string,
+	 * boolean, number, {@link Instant}, {@link URL}, list, set or map of such values, a
+	 * value written by {@link #writeObject(Object)}, or {@code null}.
+	 * @param value the value
+	 * @throws SerializationFailedException if the type of the value is not supported
+	 */
+	public void writeValue(Object value) {
+		if (value == null) {
+			writeByte(NULL);
+		}
+		else if (value instanceof String) {
+			writeByte(STRING);
+			writeString((String) value);
+		}
+		else if (value instanceof Boolean) {
+			writeByte(((Boolean) value) ? TRUE : FALSE);
+		}
+		else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			writeByte(INTEGER);
+			writeVarLong(((Number) value).intValue());
+		}
+		else if (value instanceof Long) {
+			writeByte(LONG);
+			writeVarLong((Long) value);
+		}
+		else if (value instanceof Double || value instanceof Float) {
+			writeByte(DOUBLE);
+			writeVarLong(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+		}
+		else if (value instanceof Instant) {
+			writeByte(INSTANT);
+			writeVarLong(((Instant) value).getEpochSecond());
+			writeVarInt(((Instant) value).getNano());
+		}
+		else if (value instanceof URL) {
+			writeByte(URL_VALUE);
+			writeString(((URL) value).toExternalForm());
+		}
+		else if (value instanceof List || value instanceof Set) {
+			Collection<?> collection = (Collection<?>) value;
+			writeByte((value instanceof List) ? LIST : SET);
+			writeVarInt(collection.size());
+			for (Object element : collection) {
+				writeValue(element);
+			}
+		}
+		else if (value instanceof Map) {
+			writeMap((Map<?, ?>) value);
+		}
+		else if (this.codec.hasSerializer(value.getClass())) {
+			writeByte(OBJECT);
+			writeObject(value);
+		}
+		else {
+			throw new SerializationFailedException("No binary serializer for " + value.getClass().getName());
+		}
+	}
+
+	private void writeMap(Map<?, ?> map) {
+		writeByte(MAP);
+		writeVarInt(map.size());
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			writeValue(entry.getKey());
+			writeValue(entry.getValue());
+		}
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(this.buffer, this.position);
+	}
+
+	/**
+	 * Inserts the length of the value written from {@code start} before it, so that a
+	 * reader can skip fields it does not know.
+	 */
+	private void insertLength(int start) {
+		int length = this.position - start;
+		int lengthSize = 1;
+		for (int remaining = length >>> 7; remaining != 0; remaining >>>= 7) {
+			lengthSize++;
+		}
+		ensureCapacity(lengthSize);
+		System.arraycopy(this.buffer, start, this.buffer, start + lengthSize, length);
+		int end = this.position + lengthSize;
+		this.position = start;
+		writeVarInt(length);
+		this.position = end;
+	}
+
+	private void ensureCapacity(int size) {
+		if (this.position + size > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + size));
+		}
+	}
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.RememberMeAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The {@link SecurityBinaryModule} for the types of Spring Security core, like the
+ * {@code CoreJackson2Module}: {@link SecurityContextImpl},
+ * {@link SimpleGrantedAuthority}, {@link UsernamePasswordAuthenticationToken},
+ * {@link AnonymousAuthenticationToken}, {@link RememberMeAuthenticationToken} and
+ * {@link User}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see SecurityBinaryCodec
+ */
+public class CoreBinaryModule implements SecurityBinaryModule {
+
+	@Override
+	public List<SecurityBinarySerializer<?>> getSerializers() {
+		return Arrays.asList(new SecurityContextImplSerializer(), new SimpleGrantedAuthoritySerializer(),
+				new UsernamePasswordAuthenticationTokenSerializer(), new AnonymousAuthenticationTokenSerializer(),
+				new RememberMeAuthenticationTokenSerializer(), new UserSerializer());
+	}
+
+	private static <T> Constructor<T> keyHashConstructor(Class<T> type) {
+		try {
+			return ReflectionUtils.accessibleConstructor(type, Integer.class, Object.class, Collection.class);
+		}
+		catch (NoSuchMethodException ex) {
+			throw new IllegalStateException("Cannot find the key hash constructor of " + type.getName(), ex);
+		}
+	}
+
+	static final class SecurityContextImplSerializer implements SecurityBinarySerializer<SecurityContextImpl> {
+
+		@Override
+		public int getTypeId() {
+			return 1;
+		}
+
+		@Override
+		public Class<SecurityContextImpl> getType() {
+			return SecurityContextImpl.class;
+		}
+
+		@Override
+		public void write(SecurityContextImpl value, BinaryOutput output) {
+			output.writeObject(value.getAuthentication());
+		}
+
+		@Override
+		public SecurityContextImpl read(BinaryInput input, int version) {
+			return new SecurityContextImpl(input.readObject(Authentication.class));
+		}
+
+	}
+
+	static final class SimpleGrantedAuthoritySerializer implements SecurityBinarySerializer<SimpleGrantedAuthority> {
+
+		@Override
+		public int getTypeId() {
+			return 2;
+		}
+
+		@Override
+		public Class<SimpleGrantedAuthority> getType() {
+			return SimpleGrantedAuthority.class;
+		}
+
+		@Override
+		public void write(SimpleGrantedAuthority value, BinaryOutput output) {
+			output.writeString(value.getAuthority());
+		}
+
+		@Override
+		public SimpleGrantedAuthority read(BinaryInput input, int version) {
+			return input.internAuthority(input.readString());
+		}
+
+	}
+
+	static final class UsernamePasswordAuthenticationTokenSerializer
+			implements SecurityBinarySerializer<UsernamePasswordAuthenticationToken> {
+
+		@Override
+		public int getTypeId() {
+			return 3;
+		}
+
+		@Override
+		public Class<UsernamePasswordAuthenticationToken> getType() {
+			return UsernamePasswordAuthenticationToken.class;
+		}
+
+		@Override
+		public void write(UsernamePasswordAuthenticationToken value, BinaryOutput output) {
+			output.writeBoolean(value.isAuthenticated());
+			output.writeValue(value.getPrincipal());
+			output.writeValue(value.getCredentials());
+			output.writeAuthorities(value.getAuthorities());
+			output.writeValue(value.getDetails());
+		}
+
+		@Override
+		public UsernamePasswordAuthenticationToken read(BinaryInput input, int version) {
+			boolean authenticated = input.readBoolean();
+			Object principal = input.readValue();
+			Object credentials = input.readValue();
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			UsernamePasswordAuthenticationToken token = authenticated
+					? new UsernamePasswordAuthenticationToken(principal, credentials, authorities)
+					: new UsernamePasswordAuthenticationToken(principal, credentials);
+			token.setDetails(input.readValue());
+			return token;
+		}
+
+	}
+
+	static final class AnonymousAuthenticationTokenSerializer
+			implements SecurityBinarySerializer<AnonymousAuthenticationToken> {
+
+		private final Constructor<AnonymousAuthenticationToken> constructor = keyHashConstructor(
+				AnonymousAuthenticationToken.class);
+
+		@Override
+		public int getTypeId() {
+			return 4;
+		}
+
+		@Override
+		public Class<AnonymousAuthenticationToken> getType() {
+			return AnonymousAuthenticationToken.class;
+		}
+
+		@Override
+		public void write(AnonymousAuthenticationToken value, BinaryOutput output) {
+			output.writeInt(value.getKeyHash());
+			output.writeValue(value.getPrincipal());
+			output.writeAuthorities(value.getAuthorities());
+			output.writeValue(value.getDetails());
+		}
+
+		@Override
+		public AnonymousAuthenticationToken read(BinaryInput input, int version) {
+			int keyHash = input.readInt();
+			Object principal = input.readValue();
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			AnonymousAuthenticationToken token = BeanUtils.instantiateClass(this.constructor, keyHash, principal,
+					authorities);
+			token.setDetails(input.readValue());
+			return token;
+		}
+
+	}
+
+	static final class RememberMeAuthenticationTokenSerializer
+			implements SecurityBinarySerializer<RememberMeAuthenticationToken> {
+
+		private final Constructor<RememberMeAuthenticationToken> constructor = keyHashConstructor(
+				RememberMeAuthenticationToken.class);
+
+		@Override
+		public int getTypeId() {
+			return 5;
+		}
+
+		@Override
+		public Class<RememberMeAuthenticationToken> getType() {
+			return RememberMeAuthenticationToken.class;
+		}
+
+		@Override
+		public void write(RememberMeAuthenticationToken value, BinaryOutput output) {
+			output.writeInt(value.getKeyHash());
+			output.writeValue(value.getPrincipal());
+			output.writeAuthorities(value.getAuthorities());
+			output.writeValue(value.getDetails());
+		}
+
+		@Override
+		public RememberMeAuthenticationToken read(BinaryInput input, int version) {
+			int keyHash = input.readInt();
+			Object principal = input.readValue();
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			RememberMeAuthenticationToken token = BeanUtils.instantiateClass(this.constructor, keyHash, principal,
+					authorities);
+			token.setDetails(input.readValue());
+			return token;
+		}
+
+	}
+
+	static final class UserSerializer implements SecurityBinarySerializer<User> {
+
+		private static final int ENABLED = 1;
+
+		private static final int ACCOUNT_NON_EXPIRED = 2;
+
+		private static final int CREDENTIALS_NON_EXPIRED = 4;
+
+		private static final int ACCOUNT_NON_LOCKED = 8;
+
+		@Override
+		public int getTypeId() {
+			return 6;
+		}
+
+		@Override
+		public Class<User> getType() {
+			return User.class;
+		}
+
+		@Override
+		public void write(User value, BinaryOutput output) {
+			int flags = (value.isEnabled() ? ENABLED : 0) | (value.isAccountNonExpired() ? ACCOUNT_NON_EXPIRED : 0)
+					| (value.isCredentialsNonExpired() ? CREDENTIALS_NON_EXPIRED : 0)
+					| (value.isAccountNonLocked() ? ACCOUNT_NON_LOCKED : 0);
+			output.writeByte(flags);
+			output.writeString(value.getUsername());
+			output.writeString(value.getPassword());
+			output.writeAuthorities(value.getAuthorities());
+		}
+
+		@Override
+		public User read(BinaryInput input, int version) {
+			int flags = input.readByte();
+			String username = input.readString();
+			String password = input.readString();
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			User user = new User(username, (password != null) ? password : "", (flags & ENABLED) != 0,
+					(flags & ACCOUNT_NON_EXPIRED) != 0, (flags & CREDENTIALS_NON_EXPIRED) != 0,
+					(flags & ACCOUNT_NON_LOCKED) != 0, authorities);
+			if (password == null) {
+				user.eraseCredentials();
+			}
+			return user;
+		}
+
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.log.LogMessage;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Serializes a {@link SecurityContext}, an {@code Authentication} or any other value
+ * with a registered {@link SecurityBinarySerializer} into a compact binary format, as an
+ * alternative to Java serialization and the {@code SecurityJackson2Modules} when security
+ * contexts are kept in an external store or in a cookie.
+ * <p>
+ * Values are written as the identifier and version of their serializer followed by
+ * their length and fields, rather than with their class name and field names, so that a
+ * {@code UsernamePasswordAuthenticationToken} takes a fraction of the bytes of its Java
+ * serialization or JSON. Since every value carries its length, a codec reads values
+ * written by later versions of a serializer by ignoring the fields it does not know.
+ * Only registered types are read, so deserializing cannot instantiate arbitrary classes.
+ * <p>
+ * {@link SimpleGrantedAuthority} instances are interned when read, so that the
+ * authorities shared by many users are not allocated again for every context.
+ * <p>
+ * A codec is thread-safe. Use {@link #withDefaultModules(ClassLoader)} to register the
+ * modules of Spring Security found on the classpath.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see SecurityBinaryModule
+ */
+public final class SecurityBinaryCodec {
+
+	private static final Log logger = LogFactory.getLog(SecurityBinaryCodec.class);
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int MAX_INTERNED_AUTHORITIES = 4096;
+
+	private static final List<String> securityBinaryModuleClasses = Arrays.asList(
+			"org.springframework.security.serializer.CoreBinaryModule",
+			"org.springframework.security.web.serializer.WebBinaryModule",
+			"org.springframework.security.oauth2.client.serializer.OAuth2ClientBinaryModule",
+			"org.springframework.security.saml2.provider.service.serializer.Saml2BinaryModule");
+
+	private final Map<Class<?>, SecurityBinarySerializer<?>> serializersByType = new HashMap<>();
+
+	private final Map<Integer, SecurityBinarySerializer<?>> serializersById = new HashMap<>();
+
+	private final Map<String, SimpleGrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs a {@code SecurityBinaryCodec} with the serializers of the given modules.
+	 * @param modules the modules
+	 */
+	public SecurityBinaryCodec(List<? extends SecurityBinaryModule> modules) {
+		Assert.notNull(modules, "modules cannot be null");
+		for (SecurityBinaryModule module : modules) {
+			for (SecurityBinarySerializer<?> serializer : module.getSerializers()) {
+				register(serializer);
+			}
+		}
+	}
+
+	/**
+	 * Creates a codec with the modules of Spring Security found on the classpath.
+	 * @param loader the {@link ClassLoader} to use
+	 * @return the codec
+	 */
+	public static SecurityBinaryCodec withDefaultModules(ClassLoader loader) {
+		List<SecurityBinaryModule> modules = new ArrayList<>();
+		for (String className : securityBinaryModuleClasses) {
+			SecurityBinaryModule module = loadAndGetInstance(className, loader);
+			if (module != null) {
+				modules.add(module);
+			}
+		}
+		return new SecurityBinaryCodec(modules);
+	}
+
+	private static SecurityBinaryModule loadAndGetInstance(String className, ClassLoader loader) {
+		if (!ClassUtils.isPresent(className, loader)) {
+			return null;
+		}
+		try {
+			Class<?> module = ClassUtils.forName(className, loader);
+			logger.debug(LogMessage.format("Loaded module %s, now registering", className));
+			return (SecurityBinaryModule) module.getDeclaredConstructor().newInstance();
+		}
+		catch (Exception | LinkageError ex) {
+			logger.debug(LogMessage.format("Cannot load module %s", className), ex);
+		}
+		return null;
+	}
+
+	/**
+	 * Serializes a value whose exact class has a registered serializer.
+	 * @param value the value
+	 * @return the serialized value
+	 * @throws SerializationFailedException if a type has no serializer
+	 */
+	public byte[] serialize(Object value) {
+		BinaryOutput output = new BinaryOutput(this, 256);
+		output.writeByte(FORMAT_VERSION);
+		output.writeObject(value);
+		return output.toByteArray();
+	}
+
+	/**
+	 * Deserializes a value returned by {@link #serialize(Object)}.
+	 * @param bytes the serialized value
+	 * @param type the expected type
+	 * @param <T> the expected type
+	 * @return the value
+	 * @throws SerializationFailedException if the bytes are malformed, contain an unknown
+	 * type or do not contain the expected type
+	 */
+	public <T> T deserialize(byte[] bytes, Class<T> type) {
+		Assert.notNull(bytes, "bytes cannot be null");
+		Assert.notNull(type, "type cannot be null");
+		BinaryInput input = new BinaryInput(this, bytes, 0);
+		int formatVersion = input.readByte();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new SerializationFailedException("Unsupported format version " + formatVersion);
+		}
+		try {
+			return input.readObject(type);
+		}
+		catch (SerializationFailedException ex) {
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			throw new SerializationFailedException("Failed to deserialize " + type.getName(), ex);
+		}
+	}
+
+	/**
+	 * Returns the {@link SimpleGrantedAuthority} for a role, shared with the other
+	 * contexts read by this codec.
+	 * @param role the role
+	 * @return the authority
+	 */
+	SimpleGrantedAuthority internAuthority(String role) {
+		SimpleGrantedAuthority authority = this.authorities.get(role);
+		if (authority != null) {
+			return authority;
+		}
+		authority = new SimpleGrantedAuthority(role);
+		if (this.authorities.size() < MAX_INTERNED_AUTHORITIES) {
+			SimpleGrantedAuthority existing = this.authorities.putIfAbsent(role, authority);
+			return (existing != null) ? existing : authority;
+		}
+		return authority;
+	}
+
+	boolean hasSerializer(Class<?> type) {
+		return this.serializersByType.containsKey(type);
+	}
+
+	@SuppressWarnings("unchecked")
+	SecurityBinarySerializer<Object> getSerializer(Class<?> type) {
+		SecurityBinarySerializer<?> serializer = this.serializersByType.get(type);
+		if (serializer == null) {
+			throw new SerializationFailedException("No binary serializer for " + type.getName());
+		}
+		return (SecurityBinarySerializer<Object>) serializer;
+	}
+
+	SecurityBinarySerializer<?> getSerializer(int typeId) {
+		SecurityBinarySerializer<?> serializer = this.serializersById.get(typeId);
+		if (serializer == null) {
+			throw new SerializationFailedException("No binary serializer for type " + typeId);
+		}
+		return serializer;
+	}
+
+	private void register(SecurityBinarySerializer<?> serializer) {
+		Assert.isTrue(serializer.getTypeId() > 0, "typeId must be greater than 0");
+		Assert.isTrue(serializer.getVersion() > 0, "version must be greater than 0");
+		SecurityBinarySerializer<?> existing = this.serializersById.putIfAbsent(serializer.getTypeId(), serializer);
+		Assert.isNull(existing, () -> "typeId " + serializer.getTypeId() + " of " + serializer.getType().getName()
+				+ " is already used by " + existing.getType().getName());
+		this.serializersByType.put(serializer.getType(), serializer);
+	}
+
+}
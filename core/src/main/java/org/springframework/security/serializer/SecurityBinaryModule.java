@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+import java.util.List;
+
+/**
+ * A set of {@link SecurityBinarySerializer}s contributed to a {@link SecurityBinaryCodec}
+ * by one module, like a Jackson {@code Module} for the {@code SecurityJackson2Modules}.
+ * <p>
+ * The type identifiers are assigned in ranges: 1 to 31 to
+ * {@link CoreBinaryModule}, 32 to 63 to the web module, 64 to 95 to the OAuth 2.0
+ * modules and 96 to 127 to the SAML 2.0 modules. Applications should use identifiers of
+ * 1024 and above.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public interface SecurityBinaryModule {
+
+	/**
+	 * Returns the serializers of this module.
+	 * @return the serializers
+	 */
+	List<SecurityBinarySerializer<?>> getSerializers();
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+/**
+ * Writes and reads one type for a {@link SecurityBinaryCodec}.
+ * <p>
+ * Every serializer has an identifier, unique among the serializers of a codec, which is
+ * written instead of the class name, and a version, which is written with every value.
+ * A serializer evolves its format by only appending fields and incrementing its version:
+ * {@link #read(BinaryInput, int)} receives the version the value was written with, and
+ * does not need to skip the fields appended by a later version, which the codec ignores.
+ *
+ * @param <T> the type written and read
+ * @author Ben Siegler
+ * @since 5.5
+ * @see SecurityBinaryModule
+ */
+public interface SecurityBinarySerializer<T> {
+
+	/**
+	 * Returns the identifier written instead of the class name, greater than 0.
+	 * @return the type identifier
+	 */
+	int getTypeId();
+
+	/**
+	 * Returns the exact class of the values written by this serializer.
+	 * @return the type
+	 */
+	Class<T> getType();
+
+	/**
+	 * Returns the version of the format written by {@link #write(Object, BinaryOutput)}.
+	 * @return the version, 1 by default
+	 */
+	default int getVersion() {
+		return 1;
+	}
+
+	/**
+	 * Writes the fields of a value.
+	 * @param value the value
+	 * @param output the output
+	 */
+	void write(T value, BinaryOutput output);
+
+	/**
+	 * Reads the fields of a value written with the given version. Fields appended by a
+	 * later version can be detected with {@link BinaryInput#hasRemaining()}.
+	 * @param input the input
+	 * @param version the version the value was written with
+	 * @return the value
+	 */
+	T read(BinaryInput input, int version);
+
+}
@@ -0,0 +1,8 @@
+CREATE TABLE session_information (
+  session_id varchar(200) NOT NULL,
+  principal_name varchar(200) NOT NULL,
+  last_request bigint NOT NULL,
+  expired boolean NOT NULL,
+  PRIMARY KEY (session_id)
+);
+CREATE INDEX session_information_principal_idx ON session_information (principal_name);
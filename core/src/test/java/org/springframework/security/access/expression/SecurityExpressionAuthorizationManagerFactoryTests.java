@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.access.expression;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchyImpl;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authentication.RememberMeAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Ben Siegler
+ */
+public class SecurityExpressionAuthorizationManagerFactoryTests {
+
+	private final SpelExpressionParser parser = new SpelExpressionParser();
+
+	private final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+	private final List<Authentication> authentications = Arrays.asList(
+			new TestingAuthenticationToken("user", "password", "ROLE_USER"),
+			new TestingAuthenticationToken("admin", "password", "ROLE_ADMIN", "SCOPE_write"),
+			new RememberMeAuthenticationToken("key", "admin", AuthorityUtils.createAuthorityList("ROLE_ADMIN")),
+			new AnonymousAuthenticationToken("key", "anonymous",
+					AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+	@Test
+	public void createAuthorizationManagerWhenRecognizedChecksThenDecidesLikeExpression() {
+		SecurityExpressionAuthorizationManagerFactory<Object> factory = createFactory(null, "ROLE_");
+		assertDecidesLikeExpression(factory, null, "ROLE_", "permitAll", "denyAll", "permitAll()", "true",
+				"hasRole('ADMIN')", "hasRole('ROLE_ADMIN')", "hasAnyRole('USER', 'ADMIN')", "hasAnyRole()",
+				"hasAuthority('SCOPE_write')", "hasAnyAuthority('ROLE_USER', 'SCOPE_write')", "isAnonymous()",
+				"isAuthenticated()", "isRememberMe()", "isFullyAuthenticated()",
+				"hasRole('ADMIN') and isFullyAuthenticated()", "hasRole('USER') or hasAuthority('SCOPE_write')",
+				"!isAnonymous() and not hasRole('USER')", "isAuthenticated() and (hasRole('USER') or isRememberMe())");
+	}
+
+	@Test
+	public void createAuthorizationManagerWhenRoleHierarchyThenDecidesLikeExpression() {
+		RoleHierarchyImpl roleHierarchy = new RoleHierarchyImpl();
+		roleHierarchy.setHierarchy("ROLE_ADMIN > ROLE_USER");
+		SecurityExpressionAuthorizationManagerFactory<Object> factory = createFactory(roleHierarchy, "ROLE_");
+		assertDecidesLikeExpression(factory, roleHierarchy, "ROLE_", "hasRole('USER')", "hasAuthority('ROLE_USER')",
+				"hasRole('ADMIN') and hasRole('USER')");
+	}
+
+	@Test
+	public void createAuthorizationManagerWhenNoDefaultRolePrefixThenDecidesLikeExpression() {
+		SecurityExpressionAuthorizationManagerFactory<Object> factory = createFactory(null, "");
+		assertDecidesLikeExpression(factory, null, "", "hasRole('ADMIN')", "hasRole('ROLE_ADMIN')");
+	}
+
+	@Test
+	public void createAuthorizationManagerWhenUnrecognizedChecksThenNull() {
+		SecurityExpressionAuthorizationManagerFactory<Object> factory = createFactory(null, "ROLE_");
+		for (String expression : Arrays.asList("hasPermission(#id, 'read')", "principal.username == 'admin'",
+				"hasRole(#role)", "hasRole('ADMIN') and @access.check()", "hasRole('ADMIN', 'USER')",
+				"isAuthenticated('now')", "authentication != null")) {
+			assertThat(factory.createAuthorizationManager(this.parser.parseExpression(expression)))
+					.as(expression).isNull();
+		}
+	}
+
+	private SecurityExpressionAuthorizationManagerFactory<Object> createFactory(RoleHierarchy roleHierarchy,
+			String defaultRolePrefix) {
+		return new SecurityExpressionAuthorizationManagerFactory<>(this.trustResolver, roleHierarchy,
+				defaultRolePrefix);
+	}
+
+	private void assertDecidesLikeExpression(SecurityExpressionAuthorizationManagerFactory<Object> factory,
+			RoleHierarchy roleHierarchy, String defaultRolePrefix, String... expressions) {
+		for (String expressionString : expressions) {
+			Expression expression = this.parser.parseExpression(expressionString);
+			AuthorizationManager<Object> authorizationManager = factory.createAuthorizationManager(expression);
+			assertThat(authorizationManager).as(expressionString).isNotNull();
+			for (Authentication authentication : this.authentications) {
+				SecurityExpressionRoot root = new SecurityExpressionRoot(authentication) {
+				};
+				root.setTrustResolver(this.trustResolver);
+				root.setRoleHierarchy(roleHierarchy);
+				root.setDefaultRolePrefix(defaultRolePrefix);
+				boolean expected = expression.getValue(new StandardEvaluationContext(root), Boolean.class);
+				assertThat(authorizationManager.check(() -> authentication, new Object()).isGranted())
+						.as(expressionString + " for " + authentication.getName()).isEqualTo(expected);
+			}
+		}
+	}
+
+}
@@ -19,14 +19,17 @@ package org.springframework.security.access.expression.method;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.aopalliance.intercept.MethodInvocation;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.security.access.intercept.method.MockMethodInvocation;
 import org.springframework.security.access.prepost.PreInvocationAttribute;
+import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.Authentication;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -118,6 +121,27 @@ public class ExpressionBasedPreInvocationAdviceTests {
 				() -> this.expressionBasedPreInvocationAdvice.before(this.authentication, methodInvocation, attribute));
 	}
 
+	@Test
+	public void beforeWhenCompilingExpressionsThenDecidesWithoutEvaluationContext() throws Exception {
+		DefaultMethodSecurityExpressionHandler expressionHandler = new DefaultMethodSecurityExpressionHandler() {
+			@Override
+			public StandardEvaluationContext createEvaluationContextInternal(Authentication auth,
+					MethodInvocation mi) {
+				throw new IllegalStateException("The expression should not be evaluated");
+			}
+		};
+		expressionHandler.setCompileExpressions(true);
+		this.expressionBasedPreInvocationAdvice.setExpressionHandler(expressionHandler);
+		PreInvocationAttribute attribute = new PreInvocationExpressionAttribute(null, null,
+				"isAuthenticated() and hasRole('ADMIN')");
+		MockMethodInvocation methodInvocation = new MockMethodInvocation(new TestClass(), TestClass.class,
+				"doSomethingString", new Class[] { String.class }, new Object[] { "param" });
+		Authentication admin = new TestingAuthenticationToken("admin", "password", "ROLE_ADMIN");
+		Authentication user = new TestingAuthenticationToken("user", "password", "ROLE_USER");
+		assertThat(this.expressionBasedPreInvocationAdvice.before(admin, methodInvocation, attribute)).isTrue();
+		assertThat(this.expressionBasedPreInvocationAdvice.before(user, methodInvocation, attribute)).isFalse();
+	}
+
 	private class TestClass {
 
 		public Boolean doSomethingCollection(List<?> param) {
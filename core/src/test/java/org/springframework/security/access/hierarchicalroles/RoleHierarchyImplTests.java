@@ -17,12 +17,16 @@
 package org.springframework.security.access.hierarchicalroles;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -191,4 +195,70 @@ public class RoleHierarchyImplTests {
 				.containsExactlyInAnyOrderElementsOf(allAuthorities);
 	}
 
+	@Test
+	public void getReachableGrantedAuthoritiesWhenEqualAuthoritiesThenSameResult() {
+		RoleHierarchyImpl roleHierarchyImpl = new RoleHierarchyImpl();
+		roleHierarchyImpl.setHierarchy("ROLE_A > ROLE_B\nROLE_B > ROLE_C");
+		Collection<GrantedAuthority> reachable = roleHierarchyImpl
+				.getReachableGrantedAuthorities(AuthorityUtils.createAuthorityList("ROLE_A", "ROLE_X"));
+		assertThat(reachable).containsExactlyInAnyOrder(new SimpleGrantedAuthority("ROLE_A"),
+				new SimpleGrantedAuthority("ROLE_X"), new SimpleGrantedAuthority("ROLE_B"),
+				new SimpleGrantedAuthority("ROLE_C"));
+		assertThat(roleHierarchyImpl
+				.getReachableGrantedAuthorities(AuthorityUtils.createAuthorityList("ROLE_A", "ROLE_X")))
+						.isSameAs(reachable);
+	}
+
+	@Test
+	public void getReachableGrantedAuthoritiesWhenHierarchyChangedThenResolvedAgain() {
+		List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList("ROLE_A");
+		RoleHierarchyImpl roleHierarchyImpl = new RoleHierarchyImpl();
+		roleHierarchyImpl.setHierarchy("ROLE_A > ROLE_B");
+		assertThat(roleHierarchyImpl.getReachableGrantedAuthorities(authorities))
+				.containsExactlyInAnyOrderElementsOf(AuthorityUtils.createAuthorityList("ROLE_A", "ROLE_B"));
+		roleHierarchyImpl.setHierarchy("ROLE_A > ROLE_C");
+		assertThat(roleHierarchyImpl.getReachableGrantedAuthorities(authorities))
+				.containsExactlyInAnyOrderElementsOf(AuthorityUtils.createAuthorityList("ROLE_A", "ROLE_C"));
+	}
+
+	@Test
+	public void getReachableGrantedAuthoritiesThenUnmodifiable() {
+		RoleHierarchyImpl roleHierarchyImpl = new RoleHierarchyImpl();
+		roleHierarchyImpl.setHierarchy("ROLE_A > ROLE_B");
+		Collection<GrantedAuthority> reachable = roleHierarchyImpl
+				.getReachableGrantedAuthorities(AuthorityUtils.createAuthorityList("ROLE_A"));
+		assertThatExceptionOfType(UnsupportedOperationException.class)
+				.isThrownBy(() -> reachable.add(new SimpleGrantedAuthority("ROLE_C")));
+	}
+
+	@Test
+	public void getReachableGrantedAuthoritiesWhenHierarchyChangedConcurrentlyThenConsistent() throws Exception {
+		String small = "ROLE_A > ROLE_B";
+		String large = "ROLE_A > ROLE_B\nROLE_B > ROLE_C\nROLE_C > ROLE_D\nROLE_D > ROLE_E\nROLE_E > ROLE_F";
+		RoleHierarchyImpl roleHierarchyImpl = new RoleHierarchyImpl();
+		roleHierarchyImpl.setHierarchy(small);
+		List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList("ROLE_A", "ROLE_F");
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				while (!done.get()) {
+					Collection<GrantedAuthority> reachable = roleHierarchyImpl
+							.getReachableGrantedAuthorities(authorities);
+					assertThat(reachable.size()).isIn(3, 6);
+				}
+			}
+			catch (Throwable ex) {
+				failure.set(ex);
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 2000; i++) {
+			roleHierarchyImpl.setHierarchy(((i % 2) == 0) ? large : small);
+		}
+		done.set(true);
+		reader.join();
+		assertThat(failure.get()).isNull();
+	}
+
 }
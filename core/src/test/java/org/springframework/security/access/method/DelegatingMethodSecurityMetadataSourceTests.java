@@ -32,6 +32,8 @@ import org.springframework.security.util.SimpleMethodInvocation;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author Luke Taylor
@@ -77,4 +79,49 @@ public class DelegatingMethodSecurityMetadataSourceTests {
 				.isEmpty();
 	}
 
+	@Test
+	public void cacheAttributesWhenMethodHasAttributesThenCached() throws Exception {
+		MethodSecurityMetadataSource delegate = mock(MethodSecurityMetadataSource.class);
+		List attributes = Arrays.asList(mock(ConfigAttribute.class));
+		Method secured = SecuredService.class.getMethod("secured");
+		Method unsecured = SecuredService.class.getMethod("unsecured");
+		given(delegate.getAttributes(secured, SecuredServiceImpl.class)).willReturn(attributes);
+		this.mds = new DelegatingMethodSecurityMetadataSource(Arrays.asList(delegate));
+		assertThat(this.mds.cacheAttributes(SecuredServiceImpl.class)).isTrue();
+		assertThat(this.mds.getAttributes(secured, SecuredServiceImpl.class)).isSameAs(attributes);
+		assertThat(this.mds.getAttributes(unsecured, SecuredServiceImpl.class)).isEmpty();
+		verify(delegate, times(1)).getAttributes(secured, SecuredServiceImpl.class);
+		verify(delegate, times(1)).getAttributes(unsecured, SecuredServiceImpl.class);
+	}
+
+	@Test
+	public void cacheAttributesWhenNoMethodHasAttributesThenNotCached() throws Exception {
+		MethodSecurityMetadataSource delegate = mock(MethodSecurityMetadataSource.class);
+		Method unsecured = SecuredService.class.getMethod("unsecured");
+		this.mds = new DelegatingMethodSecurityMetadataSource(Arrays.asList(delegate));
+		assertThat(this.mds.cacheAttributes(SecuredServiceImpl.class)).isFalse();
+		assertThat(this.mds.getAttributes(unsecured, SecuredServiceImpl.class)).isEmpty();
+		verify(delegate, times(2)).getAttributes(unsecured, SecuredServiceImpl.class);
+	}
+
+	public interface SecuredService {
+
+		void secured();
+
+		void unsecured();
+
+	}
+
+	public static class SecuredServiceImpl implements SecuredService {
+
+		@Override
+		public void secured() {
+		}
+
+		@Override
+		public void unsecured() {
+		}
+
+	}
+
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests {@link ClusteredSessionRegistry}.
+ *
+ * @author Ben Siegler
+ */
+public class ClusteredSessionRegistryTests {
+
+	private SessionInformationStore store;
+
+	private ClusteredSessionRegistry node1;
+
+	private ClusteredSessionRegistry node2;
+
+	@Before
+	public void setUp() {
+		this.store = spy(new InMemorySessionInformationStore());
+		this.node1 = new ClusteredSessionRegistry(this.store);
+		this.node2 = new ClusteredSessionRegistry(this.store);
+	}
+
+	@Test
+	public void constructorWhenStoreIsNullThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new ClusteredSessionRegistry(null))
+				.withMessage("sessionInformationStore cannot be null");
+	}
+
+	@Test
+	public void getAllSessionsWhenRegisteredOnOtherNodesThenCounted() {
+		User user = new User("user", "password", AuthorityUtils.NO_AUTHORITIES);
+		this.node1.registerNewSession("1", user);
+		this.node2.registerNewSession("2", user);
+		assertThat(this.node1.getAllSessions(user, false)).extracting(SessionInformation::getSessionId)
+				.containsExactlyInAnyOrder("1", "2");
+		assertThat(this.node2.getAllSessions("user", false)).hasSize(2);
+		assertThat(this.node1.getAllPrincipals()).containsExactly("user");
+		assertThat(this.node2.getSessionInformation("1").getPrincipal()).isEqualTo("user");
+	}
+
+	@Test
+	public void expireNowThenExpiredOnOtherNodes() {
+		this.node1.registerNewSession("1", "user");
+		this.node2.setCacheTimeToLive(Duration.ZERO);
+		assertThat(this.node2.getSessionInformation("1").isExpired()).isFalse();
+		this.node1.getAllSessions("user", false).get(0).expireNow();
+		assertThat(this.node1.getSessionInformation("1").isExpired()).isTrue();
+		assertThat(this.node2.getSessionInformation("1").isExpired()).isTrue();
+		assertThat(this.node2.getAllSessions("user", false)).isEmpty();
+		assertThat(this.node2.getAllSessions("user", true)).hasSize(1);
+	}
+
+	@Test
+	public void getSessionInformationWhenCachedThenStoreNotRead() {
+		this.node1.registerNewSession("1", "user");
+		this.node1.getSessionInformation("1");
+		this.node1.getSessionInformation("1");
+		verify(this.store, never()).findById("1");
+	}
+
+	@Test
+	public void getSessionInformationWhenRemovedOnOtherNodeThenNullOnceStale() {
+		this.node1.registerNewSession("1", "user");
+		this.node2.getSessionInformation("1");
+		this.node1.removeSessionInformation("1");
+		assertThat(this.node2.getSessionInformation("1")).isNotNull();
+		this.node2.setCacheTimeToLive(Duration.ZERO);
+		assertThat(this.node2.getSessionInformation("1")).isNull();
+	}
+
+	@Test
+	public void refreshLastRequestWhenNoFlushScheduledThenWrittenThrough() {
+		this.node1.registerNewSession("1", "user");
+		this.node1.refreshLastRequest("1");
+		verify(this.store).updateLastRequests(anyMap());
+	}
+
+	@Test
+	public void refreshLastRequestWhenFlushScheduledThenWrittenInBatch() throws Exception {
+		this.node1.scheduleFlush(mockTaskScheduler(), Duration.ofSeconds(1));
+		this.node1.registerNewSession("1", "user");
+		this.node1.registerNewSession("2", "user");
+		Date registered = this.store.findById("1").getLastRequest();
+		Thread.sleep(5);
+		this.node1.refreshLastRequest("1");
+		this.node1.refreshLastRequest("2");
+		this.node1.refreshLastRequest("1");
+		verify(this.store, never()).updateLastRequests(anyMap());
+		assertThat(this.node1.getSessionInformation("1").getLastRequest()).isAfter(registered);
+		assertThat(this.store.findById("1").getLastRequest()).isEqualTo(registered);
+		assertThat(this.node1.flush()).isEqualTo(2);
+		verify(this.store, times(1)).updateLastRequests(anyMap());
+		assertThat(this.store.findById("1").getLastRequest()).isAfter(registered);
+		assertThat(this.node1.flush()).isEqualTo(0);
+	}
+
+	@Test
+	public void flushWhenStoreFailsThenRetriedByNextFlush() {
+		SessionInformationStore failing = mock(SessionInformationStore.class);
+		given(failing.findById("1")).willReturn(new SessionInformation("user", "1", new Date()));
+		willThrow(new IllegalStateException()).willDoNothing().given(failing).updateLastRequests(anyMap());
+		ClusteredSessionRegistry registry = new ClusteredSessionRegistry(failing);
+		registry.scheduleFlush(mockTaskScheduler(), Duration.ofSeconds(1));
+		registry.refreshLastRequest("1");
+		assertThatIllegalStateException().isThrownBy(registry::flush);
+		assertThat(registry.flush()).isEqualTo(1);
+		verify(failing, times(2)).updateLastRequests(anyMap());
+	}
+
+	@Test
+	public void destroyThenPendingLastRequestsFlushed() {
+		this.node1.scheduleFlush(mockTaskScheduler(), Duration.ofSeconds(1));
+		this.node1.registerNewSession("1", "user");
+		this.node1.refreshLastRequest("1");
+		this.node1.destroy();
+		verify(this.store).updateLastRequests(anyMap());
+	}
+
+	@Test
+	public void getAllSessionsWhenStaleThenNotCounted() {
+		this.store.save(new SessionInformation("user", "crashed",
+				new Date(System.currentTimeMillis() - Duration.ofHours(1).toMillis())));
+		this.node1.registerNewSession("1", "user");
+		assertThat(this.node1.getAllSessions("user", true)).extracting(SessionInformation::getSessionId)
+				.containsExactly("1");
+		this.node1.setSessionTimeout(Duration.ofHours(2));
+		assertThat(this.node1.getAllSessions("user", true)).hasSize(2);
+	}
+
+	@Test
+	public void purgeStaleSessionsThenStaleSessionsDeletedFromStore() {
+		this.store.save(new SessionInformation("user", "crashed",
+				new Date(System.currentTimeMillis() - Duration.ofHours(1).toMillis())));
+		this.node1.registerNewSession("1", "user");
+		assertThat(this.node1.purgeStaleSessions(Duration.ofMinutes(30))).isEqualTo(1);
+		assertThat(this.store.findById("crashed")).isNull();
+		assertThat(this.store.findById("1")).isNotNull();
+	}
+
+	@Test
+	public void purgeStaleSessionsWhenLastRequestPendingThenFlushedFirst() throws Exception {
+		this.node1.scheduleFlush(mockTaskScheduler(), Duration.ofSeconds(1));
+		this.node1.registerNewSession("1", "user");
+		Thread.sleep(5);
+		this.node1.refreshLastRequest("1");
+		Date refreshed = this.node1.getSessionInformation("1").getLastRequest();
+		this.node1.purgeStaleSessions(Duration.ofMinutes(30));
+		assertThat(this.store.findById("1").getLastRequest()).isEqualTo(refreshed);
+	}
+
+	@Test
+	public void schedulePurgeThenPurgedWithSessionTimeout() {
+		TaskScheduler taskScheduler = mockTaskScheduler();
+		this.store.save(new SessionInformation("user", "crashed",
+				new Date(System.currentTimeMillis() - Duration.ofHours(1).toMillis())));
+		this.node1.schedulePurge(taskScheduler, Duration.ofMinutes(1));
+		ArgumentCaptor<Runnable> purge = ArgumentCaptor.forClass(Runnable.class);
+		verify(taskScheduler).scheduleAtFixedRate(purge.capture(), eq(Duration.ofMinutes(1)));
+		purge.getValue().run();
+		assertThat(this.store.findById("crashed")).isNull();
+	}
+
+	@Test
+	public void onApplicationEventWhenSessionIdChangedThenSessionMoved() {
+		this.node1.registerNewSession("1", "user");
+		this.node1.onApplicationEvent(new SessionIdChangedEvent("1") {
+			@Override
+			public String getOldSessionId() {
+				return "1";
+			}
+
+			@Override
+			public String getNewSessionId() {
+				return "2";
+			}
+		});
+		assertThat(this.node1.getSessionInformation("1")).isNull();
+		assertThat(this.node2.getSessionInformation("2").getPrincipal()).isEqualTo("user");
+	}
+
+	@Test
+	public void setMaximumCacheSizeWhenExceededThenStaleSessionsDropped() {
+		this.node1.setMaximumCacheSize(1);
+		this.node1.registerNewSession("1", "user");
+		this.node1.registerNewSession("2", "user");
+		this.node1.getSessionInformation("1");
+		verify(this.store).findById("1");
+	}
+
+	private static TaskScheduler mockTaskScheduler() {
+		TaskScheduler taskScheduler = mock(TaskScheduler.class);
+		ScheduledFuture<?> future = mock(ScheduledFuture.class);
+		given(taskScheduler.scheduleAtFixedRate(any(Runnable.class), any(Duration.class)))
+				.willAnswer((invocation) -> future);
+		return taskScheduler;
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link R2dbcSessionInformationStore}.
+ *
+ * @author Ben Siegler
+ */
+public class R2dbcSessionInformationStoreTests {
+
+	private static final String SCHEMA_SQL_RESOURCE = "org/springframework/security/core/session/session-information-schema.sql";
+
+	private static int databaseId = 0;
+
+	private R2dbcSessionInformationStore store;
+
+	@Before
+	public void setUp() {
+		ConnectionFactory connectionFactory = H2ConnectionFactory.inMemory("session-information-" + databaseId++);
+		new ResourceDatabasePopulator(new ClassPathResource(SCHEMA_SQL_RESOURCE)).populate(connectionFactory)
+				.block();
+		this.store = new R2dbcSessionInformationStore(DatabaseClient.create(connectionFactory));
+	}
+
+	@Test
+	public void constructorWhenDatabaseClientIsNullThenThrowIllegalArgumentException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new R2dbcSessionInformationStore(null))
+				.withMessage("databaseClient cannot be null");
+	}
+
+	@Test
+	public void findByIdWhenSavedThenFound() {
+		this.store.save(new SessionInformation("user", "1", new Date(1000)));
+		SessionInformation info = this.store.findById("1");
+		assertThat(info.getPrincipal()).isEqualTo("user");
+		assertThat(info.getLastRequest()).isEqualTo(new Date(1000));
+		assertThat(info.isExpired()).isFalse();
+		assertThat(this.store.findById("2")).isNull();
+	}
+
+	@Test
+	public void saveWhenAlreadySavedThenReplaced() {
+		this.store.save(new SessionInformation("user", "1", new Date(1000)));
+		this.store.save(new SessionInformation("other", "1", new Date(2000)));
+		assertThat(this.store.findById("1").getPrincipal()).isEqualTo("other");
+		assertThat(this.store.findAllPrincipalNames()).containsExactly("other");
+	}
+
+	@Test
+	public void findByPrincipalNameThenSessionsOfPrincipal() {
+		this.store.save(new SessionInformation("user", "1", new Date(1000)));
+		this.store.save(new SessionInformation("user", "2", new Date(1000)));
+		this.store.save(new SessionInformation("other", "3", new Date(1000)));
+		assertThat(this.store.findByPrincipalName("user")).extracting(SessionInformation::getSessionId)
+				.containsExactlyInAnyOrder("1", "2");
+	}
+
+	@Test
+	public void expireThenExpired() {
+		this.store.save(new SessionInformation("user", "1", new Date(1000)));
+		this.store.expire("1");
+		assertThat(this.store.findById("1").isExpired()).isTrue();
+	}
+
+	@Test
+	public void updateLastRequestsThenOnlyMovedForward() {
+		this.store.save(new SessionInformation("user", "1", new Date(1000)));
+		this.store.save(new SessionInformation("user", "2", new Date(3000)));
+		Map<String, Date> lastRequests = new HashMap<>();
+		lastRequests.put("1", new Date(2000));
+		lastRequests.put("2", new Date(2000));
+		this.store.updateLastRequests(lastRequests);
+		assertThat(this.store.findById("1").getLastRequest()).isEqualTo(new Date(2000));
+		assertThat(this.store.findById("2").getLastRequest()).isEqualTo(new Date(3000));
+	}
+
+	@Test
+	public void deleteThenRemoved() {
+		this.store.save(new SessionInformation("user", "1", new Date(1000)));
+		this.store.delete("1");
+		assertThat(this.store.findById("1")).isNull();
+	}
+
+	@Test
+	public void deleteStaleThenOnlyStaleSessionsRemoved() {
+		this.store.save(new SessionInformation("user", "1", new Date(1000)));
+		this.store.save(new SessionInformation("user", "2", new Date(3000)));
+		assertThat(this.store.deleteStale(new Date(2000))).isEqualTo(1);
+		assertThat(this.store.findById("1")).isNull();
+		assertThat(this.store.findById("2")).isNotNull();
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.core.session;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.core.context.SecurityContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests {@link StripedSessionRegistry}.
+ *
+ * @author Ben Siegler
+ */
+public class StripedSessionRegistryTests {
+
+	private StripedSessionRegistry sessionRegistry;
+
+	@Before
+	public void setUp() {
+		this.sessionRegistry = new StripedSessionRegistry();
+	}
+
+	@Test
+	public void constructorWhenNoStripesThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new StripedSessionRegistry(0));
+	}
+
+	@Test
+	public void registerNewSessionThenSessionsOfPrincipalCounted() {
+		this.sessionRegistry.registerNewSession("1", "principal_1");
+		this.sessionRegistry.registerNewSession("2", "principal_1");
+		this.sessionRegistry.registerNewSession("3", "principal_2");
+		assertThat(this.sessionRegistry.getAllPrincipals()).containsExactlyInAnyOrder("principal_1", "principal_2");
+		assertThat(this.sessionRegistry.getSessionCount("principal_1")).isEqualTo(2);
+		assertThat(this.sessionRegistry.getSessionCount("principal_2")).isEqualTo(1);
+		assertThat(this.sessionRegistry.getSessionCount("principal_3")).isEqualTo(0);
+	}
+
+	@Test
+	public void registerNewSessionWhenSessionIdRegisteredThenMovedToNewPrincipal() {
+		this.sessionRegistry.registerNewSession("1", "principal_1");
+		this.sessionRegistry.registerNewSession("1", "principal_2");
+		assertThat(this.sessionRegistry.getAllPrincipals()).containsExactly("principal_2");
+		assertThat(this.sessionRegistry.getSessionInformation("1").getPrincipal()).isEqualTo("principal_2");
+		assertThat(this.sessionRegistry.getSessionCount("principal_1")).isEqualTo(0);
+	}
+
+	@Test
+	public void removeSessionInformationWhenLastSessionThenPrincipalRemoved() {
+		this.sessionRegistry.registerNewSession("1", "principal");
+		this.sessionRegistry.registerNewSession("2", "principal");
+		this.sessionRegistry.removeSessionInformation("1");
+		assertThat(this.sessionRegistry.getSessionInformation("1")).isNull();
+		assertThat(sessionIds(this.sessionRegistry.getAllSessions("principal", false))).containsExactly("2");
+		this.sessionRegistry.removeSessionInformation("2");
+		assertThat(this.sessionRegistry.getAllSessions("principal", true)).isEmpty();
+		assertThat(this.sessionRegistry.getAllPrincipals()).isEmpty();
+		assertThat(this.sessionRegistry.getSessionCount("principal")).isEqualTo(0);
+	}
+
+	@Test
+	public void getAllSessionsWhenExpiredSessionThenIncludedOnlyIfRequested() {
+		this.sessionRegistry.registerNewSession("1", "principal");
+		this.sessionRegistry.registerNewSession("2", "principal");
+		this.sessionRegistry.getSessionInformation("1").expireNow();
+		assertThat(sessionIds(this.sessionRegistry.getAllSessions("principal", false))).containsExactly("2");
+		assertThat(sessionIds(this.sessionRegistry.getAllSessions("principal", true))).containsExactly("1", "2");
+		assertThat(this.sessionRegistry.getSessionCount("principal")).isEqualTo(2);
+	}
+
+	@Test
+	public void refreshLastRequestThenSessionMovedLast() throws Exception {
+		this.sessionRegistry.setRefreshLastRequestInterval(Duration.ZERO);
+		this.sessionRegistry.registerNewSession("1", "principal");
+		this.sessionRegistry.registerNewSession("2", "principal");
+		this.sessionRegistry.registerNewSession("3", "principal");
+		Date registered = this.sessionRegistry.getSessionInformation("1").getLastRequest();
+		Thread.sleep(10);
+		this.sessionRegistry.refreshLastRequest("1");
+		assertThat(this.sessionRegistry.getSessionInformation("1").getLastRequest()).isAfter(registered);
+		assertThat(sessionIds(this.sessionRegistry.getAllSessions("principal", false))).containsExactly("2", "3",
+				"1");
+	}
+
+	@Test
+	public void refreshLastRequestWhenRefreshedWithinIntervalThenNotUpdated() {
+		this.sessionRegistry.setRefreshLastRequestInterval(Duration.ofMinutes(1));
+		this.sessionRegistry.registerNewSession("1", "principal");
+		this.sessionRegistry.registerNewSession("2", "principal");
+		Date registered = this.sessionRegistry.getSessionInformation("1").getLastRequest();
+		this.sessionRegistry.refreshLastRequest("1");
+		assertThat(this.sessionRegistry.getSessionInformation("1").getLastRequest()).isSameAs(registered);
+		assertThat(sessionIds(this.sessionRegistry.getAllSessions("principal", false))).containsExactly("1", "2");
+	}
+
+	@Test
+	public void setRefreshLastRequestIntervalWhenNegativeThenException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> this.sessionRegistry.setRefreshLastRequestInterval(Duration.ofSeconds(-1)));
+	}
+
+	@Test
+	public void sessionDestroyedEventRemovesSessionFromRegistry() {
+		this.sessionRegistry.registerNewSession("zzzz", "principal");
+		this.sessionRegistry.onApplicationEvent(new SessionDestroyedEvent("") {
+			@Override
+			public String getId() {
+				return "zzzz";
+			}
+
+			@Override
+			public List<SecurityContext> getSecurityContexts() {
+				return null;
+			}
+		});
+		assertThat(this.sessionRegistry.getSessionInformation("zzzz")).isNull();
+		assertThat(this.sessionRegistry.getSessionCount("principal")).isEqualTo(0);
+	}
+
+	@Test
+	public void sessionIdChangedEventRemovesOldSessionAndAddsANewSession() {
+		this.sessionRegistry.registerNewSession("zzzz", "principal");
+		this.sessionRegistry.onApplicationEvent(new SessionIdChangedEvent("") {
+			@Override
+			public String getOldSessionId() {
+				return "zzzz";
+			}
+
+			@Override
+			public String getNewSessionId() {
+				return "123";
+			}
+		});
+		assertThat(this.sessionRegistry.getSessionInformation("zzzz")).isNull();
+		assertThat(this.sessionRegistry.getSessionInformation("123").getPrincipal()).isEqualTo("principal");
+		assertThat(sessionIds(this.sessionRegistry.getAllSessions("principal", false))).containsExactly("123");
+	}
+
+	private static String[] sessionIds(List<SessionInformation> sessions) {
+		return sessions.stream().map(SessionInformation::getSessionId).toArray(String[]::new);
+	}
+
+}
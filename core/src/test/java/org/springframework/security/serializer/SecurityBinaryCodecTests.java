@@ -0,0 +1,280 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.RememberMeAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link SecurityBinaryCodec}.
+ *
+ * @author Ben Siegler
+ */
+public class SecurityBinaryCodecTests {
+
+	private final SecurityBinaryCodec codec = SecurityBinaryCodec.withDefaultModules(getClass().getClassLoader());
+
+	@Test
+	public void deserializeWhenUsernamePasswordAuthenticationTokenThenEqual() {
+		User user = new User("user", "password", true, true, false, true,
+				AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+		user.eraseCredentials();
+		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(user, null,
+				user.getAuthorities());
+		token.setDetails("details");
+		SecurityContext context = roundTrip(new SecurityContextImpl(token), SecurityContext.class);
+		UsernamePasswordAuthenticationToken read = (UsernamePasswordAuthenticationToken) context
+				.getAuthentication();
+		assertThat(read).isEqualTo(token);
+		assertThat(read.isAuthenticated()).isTrue();
+		User readUser = (User) read.getPrincipal();
+		assertThat(readUser.getPassword()).isNull();
+		assertThat(readUser.isCredentialsNonExpired()).isFalse();
+		assertThat(readUser.isEnabled()).isTrue();
+	}
+
+	@Test
+	public void deserializeWhenUnauthenticatedTokenThenUnauthenticated() {
+		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("user", "password");
+		UsernamePasswordAuthenticationToken read = roundTrip(token, UsernamePasswordAuthenticationToken.class);
+		assertThat(read.isAuthenticated()).isFalse();
+		assertThat(read.getCredentials()).isEqualTo("password");
+	}
+
+	@Test
+	public void deserializeWhenAnonymousAndRememberMeThenKeyHashKept() {
+		AnonymousAuthenticationToken anonymous = new AnonymousAuthenticationToken("key", "anonymous",
+				AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+		assertThat(roundTrip(anonymous, Authentication.class)).isEqualTo(anonymous);
+		RememberMeAuthenticationToken rememberMe = new RememberMeAuthenticationToken("key", "user",
+				AuthorityUtils.createAuthorityList("ROLE_USER"));
+		RememberMeAuthenticationToken read = roundTrip(rememberMe, RememberMeAuthenticationToken.class);
+		assertThat(read).isEqualTo(rememberMe);
+		assertThat(read.getKeyHash()).isEqualTo("key".hashCode());
+	}
+
+	@Test
+	public void deserializeWhenSameAuthorityThenInterned() {
+		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("user", null,
+				AuthorityUtils.createAuthorityList("ROLE_USER"));
+		byte[] bytes = this.codec.serialize(token);
+		GrantedAuthority first = this.codec.deserialize(bytes, Authentication.class).getAuthorities().iterator()
+				.next();
+		GrantedAuthority second = this.codec.deserialize(bytes, Authentication.class).getAuthorities().iterator()
+				.next();
+		assertThat(first).isSameAs(second);
+	}
+
+	@Test
+	public void serializeThenSmallerThanJavaSerialization() throws IOException {
+		User user = new User("user", "password", AuthorityUtils.createAuthorityList("ROLE_USER"));
+		SecurityContext context = new SecurityContextImpl(
+				new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+		ByteArrayOutputStream java = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(java)) {
+			out.writeObject(context);
+		}
+		assertThat(this.codec.serialize(context).length).isLessThan(java.size() / 10);
+	}
+
+	@Test
+	public void deserializeWhenValuesThenEqual() throws Exception {
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		attributes.put("string", "v\u00e4lue \u20ac \ud83d\ude00");
+		attributes.put("int", -1);
+		attributes.put("long", Long.MAX_VALUE);
+		attributes.put("double", 1.5d);
+		attributes.put("boolean", true);
+		attributes.put("instant", Instant.ofEpochSecond(1600000000L, 123));
+		attributes.put("url", new URL("https://example.org/issuer"));
+		attributes.put("list", Arrays.asList("a", null, 3));
+		attributes.put("set", new LinkedHashSet<>(Collections.singletonList("b")));
+		attributes.put("map", Collections.singletonMap("nested", "value"));
+		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("user", null,
+				AuthorityUtils.NO_AUTHORITIES);
+		token.setDetails(attributes);
+		Authentication read = roundTrip(token, Authentication.class);
+		assertThat(read.getDetails()).isEqualTo(attributes);
+	}
+
+	@Test
+	public void serializeWhenUnknownTypeThenSerializationFailedException() {
+		TestingAuthenticationToken token = new TestingAuthenticationToken("user", "password");
+		assertThatExceptionOfType(SerializationFailedException.class).isThrownBy(() -> this.codec.serialize(token));
+	}
+
+	@Test
+	public void deserializeWhenTruncatedThenSerializationFailedException() {
+		byte[] bytes = this.codec.serialize(new UsernamePasswordAuthenticationToken("user", "password"));
+		byte[] truncated = Arrays.copyOf(bytes, bytes.length - 2);
+		assertThatExceptionOfType(SerializationFailedException.class)
+				.isThrownBy(() -> this.codec.deserialize(truncated, Authentication.class));
+	}
+
+	@Test
+	public void readAuthoritiesWhenSizeLargerThanInputThenSerializationFailedException() {
+		byte[] maxSize = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+		assertThatExceptionOfType(SerializationFailedException.class)
+				.isThrownBy(() -> new BinaryInput(this.codec, maxSize, 0).readAuthorities());
+		byte[] negativeSize = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F };
+		assertThatExceptionOfType(SerializationFailedException.class)
+				.isThrownBy(() -> new BinaryInput(this.codec, negativeSize, 0).readAuthorities());
+	}
+
+	@Test
+	public void readValueWhenListSizeLargerThanInputThenSerializationFailedException() {
+		byte[] bytes = { BinaryOutput.LIST, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+		assertThatExceptionOfType(SerializationFailedException.class)
+				.isThrownBy(() -> new BinaryInput(this.codec, bytes, 0).readValue());
+	}
+
+	@Test
+	public void deserializeWhenUnexpectedTypeThenSerializationFailedException() {
+		byte[] bytes = this.codec.serialize(new UsernamePasswordAuthenticationToken("user", "password"));
+		assertThatExceptionOfType(SerializationFailedException.class)
+				.isThrownBy(() -> this.codec.deserialize(bytes, SecurityContext.class));
+	}
+
+	@Test
+	public void deserializeWhenWrittenByLaterVersionThenAppendedFieldsIgnored() {
+		SecurityBinaryCodec v2 = codecWithNameSerializer(2);
+		SecurityBinaryCodec v1 = codecWithNameSerializer(1);
+		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(new Name("user", "User"),
+				null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+		Authentication read = v1.deserialize(v2.serialize(token), Authentication.class);
+		assertThat(read.getPrincipal()).isEqualTo(new Name("user", null));
+		assertThat(read.getAuthorities()).isEqualTo(token.getAuthorities());
+		read = v2.deserialize(v1.serialize(token), Authentication.class);
+		assertThat(read.getPrincipal()).isEqualTo(new Name("user", "unknown"));
+	}
+
+	@Test
+	public void constructorWhenDuplicateTypeIdThenIllegalArgumentException() {
+		List<SecurityBinaryModule> modules = Arrays.asList(new CoreBinaryModule(), new CoreBinaryModule());
+		assertThatIllegalArgumentException().isThrownBy(() -> new SecurityBinaryCodec(modules));
+	}
+
+	private static SecurityBinaryCodec codecWithNameSerializer(int version) {
+		SecurityBinaryModule nameModule = () -> Collections.singletonList(new NameSerializer(version));
+		return new SecurityBinaryCodec(Arrays.asList(new CoreBinaryModule(), nameModule));
+	}
+
+	private <T> T roundTrip(Object value, Class<T> type) {
+		return this.codec.deserialize(this.codec.serialize(value), type);
+	}
+
+	static final class Name {
+
+		private final String username;
+
+		private final String displayName;
+
+		Name(String username, String displayName) {
+			this.username = username;
+			this.displayName = displayName;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Name)) {
+				return false;
+			}
+			Name other = (Name) obj;
+			return this.username.equals(other.username) && String.valueOf(this.displayName)
+					.equals(String.valueOf(other.displayName));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.username.hashCode();
+		}
+
+	}
+
+	/**
+	 * Writes a display name since version 2.
+	 */
+	static final class NameSerializer implements SecurityBinarySerializer<Name> {
+
+		private final int version;
+
+		NameSerializer(int version) {
+			this.version = version;
+		}
+
+		@Override
+		public int getTypeId() {
+			return 1024;
+		}
+
+		@Override
+		public Class<Name> getType() {
+			return Name.class;
+		}
+
+		@Override
+		public int getVersion() {
+			return this.version;
+		}
+
+		@Override
+		public void write(Name value, BinaryOutput output) {
+			output.writeString(value.username);
+			if (this.version >= 2) {
+				output.writeString(value.displayName);
+			}
+		}
+
+		@Override
+		public Name read(BinaryInput input, int version) {
+			String username = input.readString();
+			if (this.version < 2) {
+				return new Name(username, null);
+			}
+			return new Name(username, input.hasRemaining() ? input.readString() : "unknown");
+		}
+
+	}
+
+}
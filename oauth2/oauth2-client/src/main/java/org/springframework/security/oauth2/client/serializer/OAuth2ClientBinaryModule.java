@@ -0,0 +1,267 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.oauth2.client.serializer;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.security.serializer.BinaryInput;
+import org.springframework.security.serializer.BinaryOutput;
+import org.springframework.security.serializer.SecurityBinaryModule;
+import org.springframework.security.serializer.SecurityBinarySerializer;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The {@link SecurityBinaryModule} for the principals of OAuth 2.0 Login, like the
+ * {@code OAuth2ClientJackson2Module}: {@link OAuth2AuthenticationToken},
+ * {@link DefaultOAuth2User}, {@link DefaultOidcUser}, {@link OidcIdToken},
+ * {@link OidcUserInfo}, {@link OAuth2UserAuthority} and {@link OidcUserAuthority}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see org.springframework.security.serializer.SecurityBinaryCodec
+ */
+public class OAuth2ClientBinaryModule implements SecurityBinaryModule {
+
+	private static final Field NAME_ATTRIBUTE_KEY = nameAttributeKeyField();
+
+	@Override
+	public List<SecurityBinarySerializer<?>> getSerializers() {
+		return Arrays.asList(new OAuth2AuthenticationTokenSerializer(), new DefaultOAuth2UserSerializer(),
+				new DefaultOidcUserSerializer(), new OidcIdTokenSerializer(), new OidcUserInfoSerializer(),
+				new OAuth2UserAuthoritySerializer(), new OidcUserAuthoritySerializer());
+	}
+
+	private static Field nameAttributeKeyField() {
+		Field field = ReflectionUtils.findField(DefaultOAuth2User.class, "nameAttributeKey", String.class);
+		if (field == null) {
+			throw new IllegalStateException("Cannot find the nameAttributeKey of DefaultOAuth2User");
+		}
+		ReflectionUtils.makeAccessible(field);
+		return field;
+	}
+
+	private static String getNameAttributeKey(DefaultOAuth2User user) {
+		return (String) ReflectionUtils.getField(NAME_ATTRIBUTE_KEY, user);
+	}
+
+	static final class OAuth2AuthenticationTokenSerializer
+			implements SecurityBinarySerializer<OAuth2AuthenticationToken> {
+
+		@Override
+		public int getTypeId() {
+			return 64;
+		}
+
+		@Override
+		public Class<OAuth2AuthenticationToken> getType() {
+			return OAuth2AuthenticationToken.class;
+		}
+
+		@Override
+		public void write(OAuth2AuthenticationToken value, BinaryOutput output) {
+			output.writeObject(value.getPrincipal());
+			output.writeAuthorities(value.getAuthorities());
+			output.writeString(value.getAuthorizedClientRegistrationId());
+			output.writeValue(value.getDetails());
+		}
+
+		@Override
+		public OAuth2AuthenticationToken read(BinaryInput input, int version) {
+			OAuth2User principal = input.readObject(OAuth2User.class);
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			String authorizedClientRegistrationId = input.readString();
+			OAuth2AuthenticationToken token = new OAuth2AuthenticationToken(principal, authorities,
+					authorizedClientRegistrationId);
+			token.setDetails(input.readValue());
+			return token;
+		}
+
+	}
+
+	static final class DefaultOAuth2UserSerializer implements SecurityBinarySerializer<DefaultOAuth2User> {
+
+		@Override
+		public int getTypeId() {
+			return 65;
+		}
+
+		@Override
+		public Class<DefaultOAuth2User> getType() {
+			return DefaultOAuth2User.class;
+		}
+
+		@Override
+		public void write(DefaultOAuth2User value, BinaryOutput output) {
+			output.writeAuthorities(value.getAuthorities());
+			output.writeValue(value.getAttributes());
+			output.writeString(getNameAttributeKey(value));
+		}
+
+		@Override
+		public DefaultOAuth2User read(BinaryInput input, int version) {
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			return new DefaultOAuth2User(authorities, input.readStringMap(), input.readString());
+		}
+
+	}
+
+	static final class DefaultOidcUserSerializer implements SecurityBinarySerializer<DefaultOidcUser> {
+
+		@Override
+		public int getTypeId() {
+			return 66;
+		}
+
+		@Override
+		public Class<DefaultOidcUser> getType() {
+			return DefaultOidcUser.class;
+		}
+
+		@Override
+		public void write(DefaultOidcUser value, BinaryOutput output) {
+			output.writeAuthorities(value.getAuthorities());
+			output.writeObject(value.getIdToken());
+			output.writeObject(value.getUserInfo());
+			output.writeString(getNameAttributeKey(value));
+		}
+
+		@Override
+		public DefaultOidcUser read(BinaryInput input, int version) {
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			OidcIdToken idToken = input.readObject(OidcIdToken.class);
+			OidcUserInfo userInfo = input.readObject(OidcUserInfo.class);
+			return new DefaultOidcUser(authorities, idToken, userInfo, input.readString());
+		}
+
+	}
+
+	static final class OidcIdTokenSerializer implements SecurityBinarySerializer<OidcIdToken> {
+
+		@Override
+		public int getTypeId() {
+			return 67;
+		}
+
+		@Override
+		public Class<OidcIdToken> getType() {
+			return OidcIdToken.class;
+		}
+
+		@Override
+		public void write(OidcIdToken value, BinaryOutput output) {
+			output.writeString(value.getTokenValue());
+			output.writeInstant(value.getIssuedAt());
+			output.writeInstant(value.getExpiresAt());
+			output.writeValue(value.getClaims());
+		}
+
+		@Override
+		public OidcIdToken read(BinaryInput input, int version) {
+			return new OidcIdToken(input.readString(), input.readInstant(), input.readInstant(),
+					input.readStringMap());
+		}
+
+	}
+
+	static final class OidcUserInfoSerializer implements SecurityBinarySerializer<OidcUserInfo> {
+
+		@Override
+		public int getTypeId() {
+			return 68;
+		}
+
+		@Override
+		public Class<OidcUserInfo> getType() {
+			return OidcUserInfo.class;
+		}
+
+		@Override
+		public void write(OidcUserInfo value, BinaryOutput output) {
+			output.writeValue(value.getClaims());
+		}
+
+		@Override
+		public OidcUserInfo read(BinaryInput input, int version) {
+			return new OidcUserInfo(input.readStringMap());
+		}
+
+	}
+
+	static final class OAuth2UserAuthoritySerializer implements SecurityBinarySerializer<OAuth2UserAuthority> {
+
+		@Override
+		public int getTypeId() {
+			return 69;
+		}
+
+		@Override
+		public Class<OAuth2UserAuthority> getType() {
+			return OAuth2UserAuthority.class;
+		}
+
+		@Override
+		public void write(OAuth2UserAuthority value, BinaryOutput output) {
+			output.writeString(value.getAuthority());
+			output.writeValue(value.getAttributes());
+		}
+
+		@Override
+		public OAuth2UserAuthority read(BinaryInput input, int version) {
+			return new OAuth2UserAuthority(input.readString(), input.readStringMap());
+		}
+
+	}
+
+	static final class OidcUserAuthoritySerializer implements SecurityBinarySerializer<OidcUserAuthority> {
+
+		@Override
+		public int getTypeId() {
+			return 70;
+		}
+
+		@Override
+		public Class<OidcUserAuthority> getType() {
+			return OidcUserAuthority.class;
+		}
+
+		@Override
+		public void write(OidcUserAuthority value, BinaryOutput output) {
+			output.writeString(value.getAuthority());
+			output.writeObject(value.getIdToken());
+			output.writeObject(value.getUserInfo());
+		}
+
+		@Override
+		public OidcUserAuthority read(BinaryInput input, int version) {
+			return new OidcUserAuthority(input.readString(), input.readObject(OidcIdToken.class),
+					input.readObject(OidcUserInfo.class));
+		}
+
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.oauth2.client.serializer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.TestOidcUsers;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.security.serializer.CoreBinaryModule;
+import org.springframework.security.serializer.SecurityBinaryCodec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link OAuth2ClientBinaryModule}.
+ *
+ * @author Ben Siegler
+ */
+public class OAuth2ClientBinaryModuleTests {
+
+	private final SecurityBinaryCodec codec = new SecurityBinaryCodec(
+			Arrays.asList(new CoreBinaryModule(), new OAuth2ClientBinaryModule()));
+
+	@Test
+	public void deserializeWhenOidcUserThenEqual() {
+		DefaultOidcUser user = TestOidcUsers.create();
+		OAuth2AuthenticationToken token = new OAuth2AuthenticationToken(user, user.getAuthorities(), "google");
+		OAuth2AuthenticationToken read = roundTrip(token);
+		assertThat(read).isEqualTo(token);
+		assertThat(read.getPrincipal()).isInstanceOf(DefaultOidcUser.class);
+		assertThat(read.getPrincipal().getName()).isEqualTo("subject");
+		assertThat(((DefaultOidcUser) read.getPrincipal()).getIdToken().getIssuedAt())
+				.isEqualTo(user.getIdToken().getIssuedAt());
+	}
+
+	@Test
+	public void deserializeWhenOAuth2UserThenNameAttributeKeyKept() {
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		attributes.put("id", 1234);
+		attributes.put("login", "octocat");
+		attributes.put("emails", Collections.singletonList("octocat@example.org"));
+		DefaultOAuth2User user = new DefaultOAuth2User(
+				Collections.singleton(new OAuth2UserAuthority("ROLE_USER", attributes)), attributes, "login");
+		OAuth2AuthenticationToken token = new OAuth2AuthenticationToken(user,
+				AuthorityUtils.createAuthorityList("SCOPE_read"), "github");
+		OAuth2AuthenticationToken read = roundTrip(token);
+		assertThat(read).isEqualTo(token);
+		assertThat(read.getPrincipal().getName()).isEqualTo("octocat");
+		assertThat(read.getAuthorizedClientRegistrationId()).isEqualTo("github");
+	}
+
+	private OAuth2AuthenticationToken roundTrip(OAuth2AuthenticationToken token) {
+		return (OAuth2AuthenticationToken) this.codec.deserialize(this.codec.serialize(token), Authentication.class);
+	}
+
+}
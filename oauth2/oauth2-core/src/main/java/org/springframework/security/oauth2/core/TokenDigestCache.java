@@ -0,0 +1,220 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.oauth2.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.Assert;
+
+/**
+ * A bounded cache of values derived from tokens, keyed by a SHA-256 {@link Digest} of the
+ * token so that the tokens themselves are not kept in memory.
+ * <p>
+ * Every entry expires at the time given when it is stored. Entries are evicted in
+ * insertion order once the maximum size is reached. The queue recording the insertion
+ * order also holds entries that expired or were replaced, so it is bounded to twice the
+ * maximum size.
+ *
+ * @param <V> the type of the cached values
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public final class TokenDigestCache<V> {
+
+	private final ConcurrentMap<Digest, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	private final Queue<Entry<V>> insertionOrder = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private volatile int maximumSize;
+
+	private volatile Clock clock = Clock.systemUTC();
+
+	/**
+	 * Constructs a {@code TokenDigestCache} holding up to {@code maximumSize} entries.
+	 * @param maximumSize the maximum number of entries
+	 */
+	public TokenDigestCache(int maximumSize) {
+		setMaximumSize(maximumSize);
+	}
+
+	/**
+	 * @param digest the token's digest
+	 * @return the cached value, or {@code null} if there is none or it has expired
+	 */
+	public V get(Digest digest) {
+		Entry<V> entry = this.entries.get(digest);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.expiresAt.isAfter(this.clock.instant())) {
+			this.entries.remove(digest, entry);
+			return null;
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Stores a value, evicting the eldest entries if the cache is full.
+	 * @param digest the token's digest
+	 * @param value the value
+	 * @param expiresAt when the value expires
+	 */
+	public void put(Digest digest, V value, Instant expiresAt) {
+		Assert.notNull(digest, "digest cannot be null");
+		Assert.notNull(value, "value cannot be null");
+		Assert.notNull(expiresAt, "expiresAt cannot be null");
+		Entry<V> entry = new Entry<>(digest, value, expiresAt);
+		this.entries.put(digest, entry);
+		this.insertionOrder.add(entry);
+		int queued = this.queued.incrementAndGet();
+		int maximumSize = this.maximumSize;
+		while (this.entries.size() > maximumSize || queued > 2 * maximumSize) {
+			Entry<V> eldest = this.insertionOrder.poll();
+			if (eldest == null) {
+				break;
+			}
+			queued = this.queued.decrementAndGet();
+			this.entries.remove(eldest.digest, eldest);
+		}
+	}
+
+	/**
+	 * Removes the entry of a token if it holds the given value.
+	 * @param digest the token's digest
+	 * @param value the value stored for the token
+	 */
+	public void remove(Digest digest, V value) {
+		Entry<V> entry = this.entries.get(digest);
+		if (entry != null && entry.value == value) {
+			this.entries.remove(digest, entry);
+		}
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		this.entries.clear();
+		while (this.insertionOrder.poll() != null) {
+			this.queued.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of entries, including ones that expired but were not yet
+	 * requested again
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @return the number of entries in the insertion order queue, which is at most twice
+	 * the maximum size
+	 */
+	public int queueSize() {
+		return this.queued.get();
+	}
+
+	/**
+	 * Sets the maximum number of entries. The eldest entries are evicted first.
+	 * @param maximumSize the maximum size
+	 */
+	public void setMaximumSize(int maximumSize) {
+		Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to expire entries.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	private static final class Entry<V> {
+
+		private final Digest digest;
+
+		private final V value;
+
+		private final Instant expiresAt;
+
+		private Entry(Digest digest, V value, Instant expiresAt) {
+			this.digest = digest;
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+	/**
+	 * The SHA-256 digest of a token.
+	 */
+	public static final class Digest {
+
+		private final byte[] digest;
+
+		private final int hashCode;
+
+		private Digest(byte[] digest) {
+			this.digest = digest;
+			this.hashCode = Arrays.hashCode(digest);
+		}
+
+		/**
+		 * Computes the digest of a token.
+		 * @param token the token
+		 * @return the digest
+		 */
+		public static Digest of(String token) {
+			Assert.notNull(token, "token cannot be null");
+			try {
+				return new Digest(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+			}
+			catch (NoSuchAlgorithmException ex) {
+				throw new IllegalStateException("SHA-256 is not available", ex);
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Digest && Arrays.equals(this.digest, ((Digest) obj).digest);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.oauth2.core;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+import org.springframework.security.oauth2.core.TokenDigestCache.Digest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link TokenDigestCache}.
+ *
+ * @author Ben Siegler
+ */
+public class TokenDigestCacheTests {
+
+	private static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+
+	private static final Instant EXPIRES_AT = NOW.plusSeconds(60);
+
+	@Test
+	public void constructorWhenMaximumSizeNotPositiveThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new TokenDigestCache<String>(0));
+	}
+
+	@Test
+	public void digestWhenSameTokenThenEqual() {
+		assertThat(Digest.of("token")).isEqualTo(Digest.of("token"));
+		assertThat(Digest.of("token")).hasSameHashCodeAs(Digest.of("token"));
+		assertThat(Digest.of("token")).isNotEqualTo(Digest.of("other"));
+	}
+
+	@Test
+	public void getWhenPutThenValue() {
+		TokenDigestCache<String> cache = cache(10);
+		cache.put(Digest.of("token"), "value", EXPIRES_AT);
+		assertThat(cache.get(Digest.of("token"))).isEqualTo("value");
+		assertThat(cache.get(Digest.of("other"))).isNull();
+	}
+
+	@Test
+	public void getWhenExpiredThenNullAndRemoved() {
+		TokenDigestCache<String> cache = cache(10);
+		cache.put(Digest.of("token"), "value", EXPIRES_AT);
+		cache.setClock(Clock.fixed(EXPIRES_AT, ZoneOffset.UTC));
+		assertThat(cache.get(Digest.of("token"))).isNull();
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	public void putWhenFullThenEldestEvicted() {
+		TokenDigestCache<String> cache = cache(2);
+		cache.put(Digest.of("one"), "one", EXPIRES_AT);
+		cache.put(Digest.of("two"), "two", EXPIRES_AT);
+		cache.put(Digest.of("three"), "three", EXPIRES_AT);
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.get(Digest.of("one"))).isNull();
+		assertThat(cache.get(Digest.of("three"))).isEqualTo("three");
+	}
+
+	@Test
+	public void putWhenSameTokenRepeatedlyThenQueueBounded() {
+		TokenDigestCache<String> cache = cache(2);
+		for (int i = 0; i < 100; i++) {
+			cache.put(Digest.of("token"), "value", EXPIRES_AT.plus(Duration.ofSeconds(i)));
+		}
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.queueSize()).isLessThanOrEqualTo(4);
+	}
+
+	@Test
+	public void removeWhenOtherValueThenKept() {
+		TokenDigestCache<String> cache = cache(10);
+		cache.put(Digest.of("token"), "value", EXPIRES_AT);
+		cache.remove(Digest.of("token"), new String("value"));
+		assertThat(cache.get(Digest.of("token"))).isEqualTo("value");
+	}
+
+	@Test
+	public void clearThenEmpty() {
+		TokenDigestCache<String> cache = cache(10);
+		cache.put(Digest.of("token"), "value", EXPIRES_AT);
+		cache.clear();
+		assertThat(cache.size()).isZero();
+		assertThat(cache.queueSize()).isZero();
+	}
+
+	private static TokenDigestCache<String> cache(int maximumSize) {
+		TokenDigestCache<String> cache = new TokenDigestCache<>(maximumSize);
+		cache.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+		return cache;
+	}
+
+}
@@ -21,6 +21,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -94,6 +96,8 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 
 	private OAuth2TokenValidator<Jwt> jwtValidator = JwtValidators.createDefault();
 
+	private volatile VerifiedJwtCache verifiedJwtCache;
+
 	/**
 	 * Configures a {@link NimbusJwtDecoder} with the given parameters
 	 * @param jwtProcessor - the {@link JWTProcessor} to use
@@ -121,6 +125,21 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 		this.claimSetConverter = claimSetConverter;
 	}
 
+	/**
+	 * Keep up to {@code maximumSize} verified {@link Jwt}s for at most
+	 * {@code timeToLive}, so that a token presented again is not parsed, verified and
+	 * converted again. The {@link #setJwtValidator(OAuth2TokenValidator) validator} still
+	 * runs on every decode. A cached token is never kept past its {@code exp} claim, and
+	 * the cache is cleared whenever a decoder built with {@link #withJwkSetUri(String)}
+	 * fetches a changed JWK Set. Disabled by default.
+	 * @param timeToLive the maximum time a verified {@link Jwt} is kept
+	 * @param maximumSize the maximum number of verified {@link Jwt}s kept
+	 * @since 5.5
+	 */
+	public void setVerifiedJwtCache(Duration timeToLive, int maximumSize) {
+		this.verifiedJwtCache = new VerifiedJwtCache(timeToLive, maximumSize, Clock.systemUTC());
+	}
+
 	/**
 	 * Decode and validate the JWT from its compact claims representation format
 	 * @param token the JWT value
@@ -129,13 +148,59 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 	 */
 	@Override
 	public Jwt decode(String token) throws JwtException {
-		JWT jwt = parse(token);
+		VerifiedJwtCache cache = this.verifiedJwtCache;
+		if (cache != null) {
+			Jwt cached = cache.get(token);
+			if (cached != null) {
+				return validateJwt(cached);
+			}
+		}
+		return decode(token, parse(token), cache);
+	}
+
+	/**
+	 * Decode and validate a JWT that has already been parsed from its compact claims
+	 * representation format, for example to read its issuer, so that it is not parsed
+	 * again
+	 * @param parsedJwt the parsed JWT
+	 * @return a validated {@link Jwt}
+	 * @throws JwtException
+	 * @since 5.5
+	 */
+	public Jwt decode(JWT parsedJwt) throws JwtException {
+		Assert.notNull(parsedJwt, "parsedJwt cannot be null");
+		String token = parsedJwt.getParsedString();
+		Assert.notNull(token, "parsedJwt must be parsed from a compact token");
+		VerifiedJwtCache cache = this.verifiedJwtCache;
+		if (cache != null) {
+			Jwt cached = cache.get(token);
+			if (cached != null) {
+				return validateJwt(cached);
+			}
+		}
+		return decode(token, parsedJwt, cache);
+	}
+
+	private Jwt decode(String token, JWT jwt, VerifiedJwtCache cache) {
+		long generation = (cache != null) ? cache.getGeneration() : 0;
 		if (jwt instanceof PlainJWT) {
 			this.logger.trace("Failed to decode unsigned token");
 			throw new BadJwtException("Unsupported algorithm of " + jwt.getHeader().getAlgorithm());
 		}
 		Jwt createdJwt = createJwt(token, jwt);
-		return validateJwt(createdJwt);
+		Jwt validatedJwt = validateJwt(createdJwt);
+		if (cache != null) {
+			cache.put(validatedJwt, generation);
+		}
+		return validatedJwt;
+	}
+
+	void jwkSetChanged() {
+		VerifiedJwtCache cache = this.verifiedJwtCache;
+		if (cache != null) {
+			this.logger.debug("Cleared verified JWTs as the JWK Set changed");
+			cache.invalidateAll();
+		}
 	}
 
 	private JWT parse(String token) {
@@ -243,6 +308,12 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 
 		private Cache cache;
 
+		private Duration jwkSetTimeToLive;
+
+		private Duration jwkSetRefreshAhead;
+
+		private Duration jwkSetMaxStaleness;
+
 		private Consumer<ConfigurableJWTProcessor<SecurityContext>> jwtProcessorCustomizer;
 
 		private JwkSetUriJwtDecoderBuilder(String jwkSetUri) {
@@ -307,6 +378,58 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 			return this;
 		}
 
+		/**
+		 * Keep the <a href="https://tools.ietf.org/html/rfc7517#section-5">JWK Set</a>
+		 * for {@code timeToLive} and refresh it in the background {@code refreshAhead}
+		 * before it expires. The last good JWK Set keeps being served while a refresh
+		 * is in flight or failing, so requests only wait on the first fetch and on
+		 * refetches for a key ID missing from the JWK Set. Those refetches are shared by
+		 * concurrent requests and happen at most once every 30 seconds.
+		 *
+		 * The last good JWK Set is served for at most one hour after it expires. After
+		 * that, requests fetch the JWK Set themselves and fail if it cannot be
+		 * retrieved, so that keys the authorization server revoked meanwhile are not
+		 * trusted indefinitely. Use
+		 * {@link #jwkSetRefresh(Duration, Duration, Duration)} to change this.
+		 *
+		 * This cannot be combined with {@link #cache(Cache)}.
+		 * @param timeToLive how long a fetched JWK Set is used
+		 * @param refreshAhead how long before expiry to start refreshing
+		 * @return a {@link JwkSetUriJwtDecoderBuilder} for further configurations
+		 * @since 5.5
+		 */
+		public JwkSetUriJwtDecoderBuilder jwkSetRefresh(Duration timeToLive, Duration refreshAhead) {
+			return jwkSetRefresh(timeToLive, refreshAhead, RefreshAheadJWKSource.DEFAULT_MAX_STALENESS);
+		}
+
+		/**
+		 * Keep the <a href="https://tools.ietf.org/html/rfc7517#section-5">JWK Set</a>
+		 * for {@code timeToLive} and refresh it in the background {@code refreshAhead}
+		 * before it expires, serving the last good JWK Set for at most
+		 * {@code maxStaleness} after it expires while refreshes fail.
+		 *
+		 * This cannot be combined with {@link #cache(Cache)}.
+		 * @param timeToLive how long a fetched JWK Set is used
+		 * @param refreshAhead how long before expiry to start refreshing
+		 * @param maxStaleness how long after expiry the last good JWK Set is still served
+		 * @return a {@link JwkSetUriJwtDecoderBuilder} for further configurations
+		 * @since 5.5
+		 * @see #jwkSetRefresh(Duration, Duration)
+		 */
+		public JwkSetUriJwtDecoderBuilder jwkSetRefresh(Duration timeToLive, Duration refreshAhead,
+				Duration maxStaleness) {
+			Assert.notNull(timeToLive, "timeToLive cannot be null");
+			Assert.notNull(refreshAhead, "refreshAhead cannot be null");
+			Assert.notNull(maxStaleness, "maxStaleness cannot be null");
+			Assert.isTrue(!refreshAhead.isNegative(), "refreshAhead cannot be negative");
+			Assert.isTrue(refreshAhead.compareTo(timeToLive) < 0, "refreshAhead must be less than timeToLive");
+			Assert.isTrue(!maxStaleness.isNegative(), "maxStaleness cannot be negative");
+			this.jwkSetTimeToLive = timeToLive;
+			this.jwkSetRefreshAhead = refreshAhead;
+			this.jwkSetMaxStaleness = maxStaleness;
+			return this;
+		}
+
 		/**
 		 * Use the given {@link Consumer} to customize the {@link JWTProcessor
 		 * ConfigurableJWTProcessor} before passing it to the build
@@ -335,6 +458,13 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 		}
 
 		JWKSource<SecurityContext> jwkSource(ResourceRetriever jwkSetRetriever) {
+			if (this.jwkSetTimeToLive != null) {
+				Assert.state(this.cache == null, "cache cannot be combined with a background JWK Set refresh");
+				RefreshAheadJWKSource source = new RefreshAheadJWKSource(toURL(this.jwkSetUri), jwkSetRetriever,
+						this.jwkSetTimeToLive, this.jwkSetRefreshAhead);
+				source.setMaxStaleness(this.jwkSetMaxStaleness);
+				return source;
+			}
 			if (this.cache == null) {
 				return new RemoteJWKSet<>(toURL(this.jwkSetUri), jwkSetRetriever);
 			}
@@ -343,7 +473,10 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 		}
 
 		JWTProcessor<SecurityContext> processor() {
-			ResourceRetriever jwkSetRetriever = new RestOperationsResourceRetriever(this.restOperations);
+			return processor(new RestOperationsResourceRetriever(this.restOperations));
+		}
+
+		JWTProcessor<SecurityContext> processor(ResourceRetriever jwkSetRetriever) {
 			JWKSource<SecurityContext> jwkSource = jwkSource(jwkSetRetriever);
 			ConfigurableJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
 			jwtProcessor.setJWSKeySelector(jwsKeySelector(jwkSource));
@@ -359,7 +492,11 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 		 * @return the configured {@link NimbusJwtDecoder}
 		 */
 		public NimbusJwtDecoder build() {
-			return new NimbusJwtDecoder(processor());
+			ChangeDetectingResourceRetriever jwkSetRetriever = new ChangeDetectingResourceRetriever(
+					new RestOperationsResourceRetriever(this.restOperations));
+			NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor(jwkSetRetriever));
+			jwkSetRetriever.onChange = decoder::jwkSetChanged;
+			return decoder;
 		}
 
 		private static URL toURL(String url) {
@@ -421,6 +558,35 @@ public final class NimbusJwtDecoder implements JwtDecoder {
 
 		}
 
+		/**
+		 * Notifies the decoder when a fetched JWK Set differs from the previous one.
+		 */
+		private static class ChangeDetectingResourceRetriever implements ResourceRetriever {
+
+			private final ResourceRetriever resourceRetriever;
+
+			private volatile String content;
+
+			private volatile Runnable onChange = () -> {
+			};
+
+			ChangeDetectingResourceRetriever(ResourceRetriever resourceRetriever) {
+				this.resourceRetriever = resourceRetriever;
+			}
+
+			@Override
+			public Resource retrieveResource(URL url) throws IOException {
+				Resource resource = this.resourceRetriever.retrieveResource(url);
+				String previous = this.content;
+				this.content = resource.getContent();
+				if (previous != null && !previous.equals(resource.getContent())) {
+					this.onChange.run();
+				}
+				return resource;
+			}
+
+		}
+
 		private static class RestOperationsResourceRetriever implements ResourceRetriever {
 
 			private static final MediaType APPLICATION_JWK_SET_JSON = new MediaType("application", "jwk-set+json");
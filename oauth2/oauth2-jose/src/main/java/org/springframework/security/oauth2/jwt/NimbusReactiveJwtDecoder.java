@@ -17,6 +17,8 @@
 package org.springframework.security.oauth2.jwt;
 
 import java.security.interfaces.RSAPublicKey;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -95,12 +97,20 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 	private Converter<Map<String, Object>, Map<String, Object>> claimSetConverter = MappedJwtClaimSetConverter
 			.withDefaults(Collections.emptyMap());
 
+	private volatile VerifiedJwtCache verifiedJwtCache;
+
 	/**
 	 * Constructs a {@code NimbusReactiveJwtDecoder} using the provided parameters.
 	 * @param jwkSetUrl the JSON Web Key (JWK) Set {@code URL}
 	 */
 	public NimbusReactiveJwtDecoder(String jwkSetUrl) {
-		this(withJwkSetUri(jwkSetUrl).processor());
+		this(withJwkSetUri(jwkSetUrl));
+	}
+
+	private NimbusReactiveJwtDecoder(JwkSetUriReactiveJwtDecoderBuilder builder) {
+		ReactiveRemoteJWKSource source = builder.jwkSource();
+		this.jwtProcessor = builder.processor(source);
+		source.setJwkSetChangedListener(this::jwkSetChanged);
 	}
 
 	/**
@@ -140,13 +150,72 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 		this.claimSetConverter = claimSetConverter;
 	}
 
+	/**
+	 * Keep up to {@code maximumSize} verified {@link Jwt}s for at most
+	 * {@code timeToLive}, so that a token presented again is not parsed, verified and
+	 * converted again. The {@link #setJwtValidator(OAuth2TokenValidator) validator} still
+	 * runs on every decode. A cached token is never kept past its {@code exp} claim, and
+	 * the cache is cleared whenever a decoder using a JWK Set uri fetches a changed JWK
+	 * Set. Disabled by default.
+	 * @param timeToLive the maximum time a verified {@link Jwt} is kept
+	 * @param maximumSize the maximum number of verified {@link Jwt}s kept
+	 * @since 5.5
+	 */
+	public void setVerifiedJwtCache(Duration timeToLive, int maximumSize) {
+		this.verifiedJwtCache = new VerifiedJwtCache(timeToLive, maximumSize, Clock.systemUTC());
+	}
+
 	@Override
 	public Mono<Jwt> decode(String token) throws JwtException {
-		JWT jwt = parse(token);
+		VerifiedJwtCache cache = this.verifiedJwtCache;
+		if (cache != null) {
+			Jwt cached = cache.get(token);
+			if (cached != null) {
+				return Mono.just(cached).map(this::validateJwt);
+			}
+		}
+		return decode(parse(token), cache);
+	}
+
+	/**
+	 * Decode and validate a JWT that has already been parsed from its compact claims
+	 * representation format, for example to read its issuer, so that it is not parsed
+	 * again
+	 * @param parsedJwt the parsed JWT
+	 * @return a validated {@link Jwt}
+	 * @throws JwtException
+	 * @since 5.5
+	 */
+	public Mono<Jwt> decode(JWT parsedJwt) throws JwtException {
+		Assert.notNull(parsedJwt, "parsedJwt cannot be null");
+		String token = parsedJwt.getParsedString();
+		Assert.notNull(token, "parsedJwt must be parsed from a compact token");
+		VerifiedJwtCache cache = this.verifiedJwtCache;
+		if (cache != null) {
+			Jwt cached = cache.get(token);
+			if (cached != null) {
+				return Mono.just(cached).map(this::validateJwt);
+			}
+		}
+		return decode(parsedJwt, cache);
+	}
+
+	private Mono<Jwt> decode(JWT jwt, VerifiedJwtCache cache) {
+		long generation = (cache != null) ? cache.getGeneration() : 0;
 		if (jwt instanceof PlainJWT) {
 			throw new BadJwtException("Unsupported algorithm of " + jwt.getHeader().getAlgorithm());
 		}
-		return this.decode(jwt);
+		if (cache != null) {
+			return process(jwt).doOnNext((validatedJwt) -> cache.put(validatedJwt, generation));
+		}
+		return process(jwt);
+	}
+
+	void jwkSetChanged() {
+		VerifiedJwtCache cache = this.verifiedJwtCache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
 	}
 
 	private JWT parse(String token) {
@@ -158,7 +227,7 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 		}
 	}
 
-	private Mono<Jwt> decode(JWT parsedToken) {
+	private Mono<Jwt> process(JWT parsedToken) {
 		try {
 			// @formatter:off
 			return this.jwtProcessor.convert(parsedToken)
@@ -280,6 +349,12 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 
 		private WebClient webClient = WebClient.create();
 
+		private Duration jwkSetTimeToLive;
+
+		private Duration jwkSetRefreshAhead;
+
+		private Duration jwkSetMaxStaleness;
+
 		private Consumer<ConfigurableJWTProcessor<JWKSecurityContext>> jwtProcessorCustomizer;
 
 		private JwkSetUriReactiveJwtDecoderBuilder(String jwkSetUri) {
@@ -331,6 +406,54 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 			return this;
 		}
 
+		/**
+		 * Keep the <a href="https://tools.ietf.org/html/rfc7517#section-5">JWK Set</a>
+		 * for {@code timeToLive} and refresh it in the background {@code refreshAhead}
+		 * before it expires. The last good JWK Set keeps being served while a refresh
+		 * is in flight or failing. Refetches for a key ID missing from the JWK Set are
+		 * then limited to one every 30 seconds. By default, the JWK Set is kept until
+		 * a key ID is missing from it.
+		 *
+		 * The last good JWK Set is served for at most one hour after it expires. After
+		 * that, requests fetch the JWK Set themselves and fail if it cannot be
+		 * retrieved, so that keys the authorization server revoked meanwhile are not
+		 * trusted indefinitely. Use
+		 * {@link #jwkSetRefresh(Duration, Duration, Duration)} to change this.
+		 * @param timeToLive how long a fetched JWK Set is used
+		 * @param refreshAhead how long before expiry to start refreshing
+		 * @return a {@link JwkSetUriReactiveJwtDecoderBuilder} for further configurations
+		 * @since 5.5
+		 */
+		public JwkSetUriReactiveJwtDecoderBuilder jwkSetRefresh(Duration timeToLive, Duration refreshAhead) {
+			return jwkSetRefresh(timeToLive, refreshAhead, RefreshAheadJWKSource.DEFAULT_MAX_STALENESS);
+		}
+
+		/**
+		 * Keep the <a href="https://tools.ietf.org/html/rfc7517#section-5">JWK Set</a>
+		 * for {@code timeToLive} and refresh it in the background {@code refreshAhead}
+		 * before it expires, serving the last good JWK Set for at most
+		 * {@code maxStaleness} after it expires while refreshes fail.
+		 * @param timeToLive how long a fetched JWK Set is used
+		 * @param refreshAhead how long before expiry to start refreshing
+		 * @param maxStaleness how long after expiry the last good JWK Set is still served
+		 * @return a {@link JwkSetUriReactiveJwtDecoderBuilder} for further configurations
+		 * @since 5.5
+		 * @see #jwkSetRefresh(Duration, Duration)
+		 */
+		public JwkSetUriReactiveJwtDecoderBuilder jwkSetRefresh(Duration timeToLive, Duration refreshAhead,
+				Duration maxStaleness) {
+			Assert.notNull(timeToLive, "timeToLive cannot be null");
+			Assert.notNull(refreshAhead, "refreshAhead cannot be null");
+			Assert.notNull(maxStaleness, "maxStaleness cannot be null");
+			Assert.isTrue(!refreshAhead.isNegative(), "refreshAhead cannot be negative");
+			Assert.isTrue(refreshAhead.compareTo(timeToLive) < 0, "refreshAhead must be less than timeToLive");
+			Assert.isTrue(!maxStaleness.isNegative(), "maxStaleness cannot be negative");
+			this.jwkSetTimeToLive = timeToLive;
+			this.jwkSetRefreshAhead = refreshAhead;
+			this.jwkSetMaxStaleness = maxStaleness;
+			return this;
+		}
+
 		/**
 		 * Use the given {@link Consumer} to customize the {@link JWTProcessor
 		 * ConfigurableJWTProcessor} before passing it to the build
@@ -351,7 +474,7 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 		 * @return the configured {@link NimbusReactiveJwtDecoder}
 		 */
 		public NimbusReactiveJwtDecoder build() {
-			return new NimbusReactiveJwtDecoder(processor());
+			return new NimbusReactiveJwtDecoder(this);
 		}
 
 		JWSKeySelector<JWKSecurityContext> jwsKeySelector(JWKSource<JWKSecurityContext> jwkSource) {
@@ -366,7 +489,20 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 			return new JWSVerificationKeySelector<>(jwsAlgorithms, jwkSource);
 		}
 
+		ReactiveRemoteJWKSource jwkSource() {
+			ReactiveRemoteJWKSource source = new ReactiveRemoteJWKSource(this.jwkSetUri);
+			source.setWebClient(this.webClient);
+			if (this.jwkSetTimeToLive != null) {
+				source.setRefresh(this.jwkSetTimeToLive, this.jwkSetRefreshAhead, this.jwkSetMaxStaleness);
+			}
+			return source;
+		}
+
 		Converter<JWT, Mono<JWTClaimsSet>> processor() {
+			return processor(jwkSource());
+		}
+
+		Converter<JWT, Mono<JWTClaimsSet>> processor(ReactiveRemoteJWKSource source) {
 			JWKSecurityContextJWKSet jwkSource = new JWKSecurityContextJWKSet();
 			DefaultJWTProcessor<JWKSecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
 			JWSKeySelector<JWKSecurityContext> jwsKeySelector = jwsKeySelector(jwkSource);
@@ -374,8 +510,6 @@ public final class NimbusReactiveJwtDecoder implements ReactiveJwtDecoder {
 			jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
 			});
 			this.jwtProcessorCustomizer.accept(jwtProcessor);
-			ReactiveRemoteJWKSource source = new ReactiveRemoteJWKSource(this.jwkSetUri);
-			source.setWebClient(this.webClient);
 			Function<JWSAlgorithm, Boolean> expectedJwsAlgorithms = getExpectedJwsAlgorithms(jwsKeySelector);
 			return (jwt) -> {
 				JWKSelector selector = createSelector(expectedJwsAlgorithms, jwt.getHeader());
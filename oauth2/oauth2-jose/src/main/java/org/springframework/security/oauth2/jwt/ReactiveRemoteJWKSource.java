@@ -17,6 +17,9 @@
 package org.springframework.security.oauth2.jwt;
 
 import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -27,6 +30,8 @@ import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKMatcher;
 import com.nimbusds.jose.jwk.JWKSelector;
 import com.nimbusds.jose.jwk.JWKSet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import reactor.core.publisher.Mono;
 
 import org.springframework.util.Assert;
@@ -38,6 +43,8 @@ import org.springframework.web.reactive.function.client.WebClient;
  */
 class ReactiveRemoteJWKSource implements ReactiveJWKSource {
 
+	private final Log logger = LogFactory.getLog(getClass());
+
 	/**
 	 * The cached JWK set.
 	 */
@@ -47,6 +54,29 @@ class ReactiveRemoteJWKSource implements ReactiveJWKSource {
 
 	private final String jwkSetURL;
 
+	private final AtomicReference<String> jwkSetContent = new AtomicReference<>();
+
+	private Runnable jwkSetChangedListener = () -> {
+	};
+
+	private final AtomicReference<Mono<JWKSet>> inFlight = new AtomicReference<>();
+
+	private Duration timeToLive;
+
+	private Duration refreshAhead;
+
+	private Duration maxStaleness;
+
+	private Duration minRefetchInterval = RefreshAheadJWKSource.DEFAULT_MIN_REFETCH_INTERVAL;
+
+	private Clock clock = Clock.systemUTC();
+
+	private volatile Instant refreshAt;
+
+	private volatile Instant discardAt;
+
+	private volatile Instant lastRefresh;
+
 	ReactiveRemoteJWKSource(String jwkSetURL) {
 		Assert.hasText(jwkSetURL, "jwkSetURL cannot be empty");
 		this.jwkSetURL = jwkSetURL;
@@ -56,9 +86,11 @@ class ReactiveRemoteJWKSource implements ReactiveJWKSource {
 	public Mono<List<JWK>> get(JWKSelector jwkSelector) {
 		// @formatter:off
 		return this.cachedJWKSet.get()
+				.filter((jwkSet) -> !isTooStale())
+				.doOnNext((jwkSet) -> refreshIfExpiring())
 				.switchIfEmpty(Mono.defer(() -> getJWKSet()))
 				.flatMap((jwkSet) -> get(jwkSelector, jwkSet))
-				.switchIfEmpty(Mono.defer(() -> getJWKSet()
+				.switchIfEmpty(Mono.defer(() -> refetch()
 						.map((jwkSet) -> jwkSelector.select(jwkSet)))
 				);
 		// @formatter:on
@@ -89,24 +121,92 @@ class ReactiveRemoteJWKSource implements ReactiveJWKSource {
 	}
 
 	/**
-	 * Updates the cached JWK set from the configured URL.
+	 * Refreshes the cached JWK set in the background once it is about to expire, while
+	 * it keeps being served.
+	 */
+	private void refreshIfExpiring() {
+		Instant refreshAt = this.refreshAt;
+		if (refreshAt == null || this.clock.instant().isBefore(refreshAt) || isRefetchRateLimited()) {
+			return;
+		}
+		// @formatter:off
+		getJWKSet().subscribe((jwkSet) -> {
+		}, (ex) -> this.logger.debug("Failed to refresh the JWK Set, serving the last one retrieved", ex));
+		// @formatter:on
+	}
+
+	/**
+	 * Refetches the JWK set because a sought key ID is not in it, unless a background
+	 * refresh is configured and the JWK set was fetched too recently.
+	 */
+	private Mono<JWKSet> refetch() {
+		if (this.inFlight.get() == null && isRefetchRateLimited()) {
+			return this.cachedJWKSet.get();
+		}
+		return getJWKSet();
+	}
+
+	private boolean isTooStale() {
+		Instant discardAt = this.discardAt;
+		return discardAt != null && !this.clock.instant().isBefore(discardAt);
+	}
+
+	private boolean isRefetchRateLimited() {
+		Instant lastRefresh = this.lastRefresh;
+		return this.timeToLive != null && lastRefresh != null
+				&& this.clock.instant().isBefore(lastRefresh.plus(this.minRefetchInterval));
+	}
+
+	/**
+	 * Updates the cached JWK set from the configured URL. Concurrent callers share the
+	 * fetch that is already in flight.
 	 * @return The updated JWK set.
 	 * @throws RemoteKeySourceException If JWK retrieval failed.
 	 */
 	private Mono<JWKSet> getJWKSet() {
+		return Mono.defer(() -> {
+			Mono<JWKSet> inFlight = this.inFlight.get();
+			if (inFlight != null) {
+				return inFlight;
+			}
+			AtomicReference<Mono<JWKSet>> fetch = new AtomicReference<>();
+			fetch.set(fetchJWKSet(() -> this.inFlight.compareAndSet(fetch.get(), null)));
+			return this.inFlight.compareAndSet(null, fetch.get()) ? fetch.get() : getJWKSet();
+		});
+	}
+
+	private Mono<JWKSet> fetchJWKSet(Runnable completed) {
 		// @formatter:off
 		return this.webClient.get()
 				.uri(this.jwkSetURL)
 				.retrieve()
 				.bodyToMono(String.class)
+				.doOnSubscribe((subscription) -> this.lastRefresh = this.clock.instant())
+				.doOnNext(this::fetched)
 				.map(this::parse)
-				.doOnNext((jwkSet) -> this.cachedJWKSet
-						.set(Mono.just(jwkSet))
-				)
+				.doOnNext(this::cache)
+				// before the result is emitted, so that callers seeing it can fetch again
+				.doOnEach((signal) -> completed.run())
 				.cache();
 		// @formatter:on
 	}
 
+	private void cache(JWKSet jwkSet) {
+		this.cachedJWKSet.set(Mono.just(jwkSet));
+		if (this.timeToLive != null) {
+			Instant expiresAt = this.clock.instant().plus(this.timeToLive);
+			this.refreshAt = expiresAt.minus(this.refreshAhead);
+			this.discardAt = expiresAt.plus(this.maxStaleness);
+		}
+	}
+
+	private void fetched(String body) {
+		String previous = this.jwkSetContent.getAndSet(body);
+		if (previous != null && !previous.equals(body)) {
+			this.jwkSetChangedListener.run();
+		}
+	}
+
 	private JWKSet parse(String body) {
 		try {
 			return JWKSet.parse(body);
@@ -138,4 +238,35 @@ class ReactiveRemoteJWKSource implements ReactiveJWKSource {
 		this.webClient = webClient;
 	}
 
+	/**
+	 * Keep each fetched JWK set for {@code timeToLive} and refresh it in the background
+	 * {@code refreshAhead} before it expires. Refetches for an unknown key ID are then
+	 * limited to one per refetch interval. Once a JWK set has been expired for
+	 * {@code maxStaleness}, it is no longer served and requests wait for a fetch.
+	 * @param timeToLive how long a fetched JWK set is used
+	 * @param refreshAhead how long before expiry to start refreshing
+	 * @param maxStaleness how long after expiry the last good JWK set is still served
+	 */
+	void setRefresh(Duration timeToLive, Duration refreshAhead, Duration maxStaleness) {
+		this.timeToLive = timeToLive;
+		this.refreshAhead = refreshAhead;
+		this.maxStaleness = maxStaleness;
+	}
+
+	void setMinRefetchInterval(Duration minRefetchInterval) {
+		this.minRefetchInterval = minRefetchInterval;
+	}
+
+	void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * @param jwkSetChangedListener called when a fetched JWK set differs from the
+	 * previously fetched one
+	 */
+	void setJwkSetChangedListener(Runnable jwkSetChangedListener) {
+		this.jwkSetChangedListener = jwkSetChangedListener;
+	}
+
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.jwt;
+
+import java.net.URL;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.RemoteKeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link JWKSource} that refreshes a remote JWK Set in the background shortly before it
+ * expires. Until a refresh completes, and while refreshes fail, the last good JWK Set keeps
+ * being served, so only the very first fetch is done on a request thread. Once the last
+ * good JWK Set has been expired for longer than the
+ * {@link #setMaxStaleness(Duration) maximum staleness}, it is no longer served and
+ * requests fetch the JWK Set themselves, failing if it cannot be retrieved.
+ *
+ * A key ID that is missing from the JWK Set also causes a refetch, which the request
+ * waits for. Any number of concurrent requests share a single fetch, and once the JWK
+ * Set is loaded, an unknown key ID causes at most one refetch per
+ * {@link #setMinRefetchInterval(Duration) refetch interval}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+final class RefreshAheadJWKSource implements JWKSource<SecurityContext> {
+
+	static final Duration DEFAULT_MIN_REFETCH_INTERVAL = Duration.ofSeconds(30);
+
+	static final Duration DEFAULT_MAX_STALENESS = Duration.ofHours(1);
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final Object monitor = new Object();
+
+	private final URL jwkSetUrl;
+
+	private final ResourceRetriever jwkSetRetriever;
+
+	private final Duration timeToLive;
+
+	private final Duration refreshAhead;
+
+	private Executor executor;
+
+	private Duration minRefetchInterval = DEFAULT_MIN_REFETCH_INTERVAL;
+
+	private Duration maxStaleness = DEFAULT_MAX_STALENESS;
+
+	private Clock clock = Clock.systemUTC();
+
+	private volatile CachedJWKSet cached;
+
+	private CompletableFuture<JWKSet> refresh;
+
+	private Instant lastRefresh;
+
+	RefreshAheadJWKSource(URL jwkSetUrl, ResourceRetriever jwkSetRetriever, Duration timeToLive,
+			Duration refreshAhead) {
+		Assert.notNull(jwkSetUrl, "jwkSetUrl cannot be null");
+		Assert.notNull(jwkSetRetriever, "jwkSetRetriever cannot be null");
+		Assert.isTrue(refreshAhead.compareTo(timeToLive) < 0, "refreshAhead must be less than timeToLive");
+		this.jwkSetUrl = jwkSetUrl;
+		this.jwkSetRetriever = jwkSetRetriever;
+		this.timeToLive = timeToLive;
+		this.refreshAhead = refreshAhead;
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("jwk-set-refresh-");
+		executor.setDaemon(true);
+		this.executor = executor;
+	}
+
+	@Override
+	public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+		CachedJWKSet cached = this.cached;
+		Instant now = this.clock.instant();
+		if (cached == null || !now.isBefore(cached.discardAt)) {
+			return jwkSelector.select(await(refresh(Runnable::run, false)));
+		}
+		if (!now.isBefore(cached.refreshAt)) {
+			refresh(this.executor, true);
+		}
+		List<JWK> matches = jwkSelector.select(cached.jwkSet);
+		if (!matches.isEmpty() || !isUnknownKeyId(jwkSelector, cached.jwkSet)) {
+			return matches;
+		}
+		CompletableFuture<JWKSet> refresh = refresh(Runnable::run, true);
+		return (refresh != null) ? jwkSelector.select(await(refresh)) : matches;
+	}
+
+	/**
+	 * Start a fetch of the JWK Set on the given {@link Executor}, or join the fetch that
+	 * is already in flight
+	 * @param executor where to fetch the JWK Set
+	 * @param rateLimited whether to skip the fetch when the last one was started less
+	 * than the refetch interval ago
+	 * @return the fetch, or {@code null} if it was skipped
+	 */
+	private CompletableFuture<JWKSet> refresh(Executor executor, boolean rateLimited) {
+		CompletableFuture<JWKSet> refresh;
+		synchronized (this.monitor) {
+			if (this.refresh != null) {
+				return this.refresh;
+			}
+			Instant now = this.clock.instant();
+			if (rateLimited && this.lastRefresh != null
+					&& now.isBefore(this.lastRefresh.plus(this.minRefetchInterval))) {
+				return null;
+			}
+			refresh = new CompletableFuture<>();
+			this.refresh = refresh;
+			this.lastRefresh = now;
+		}
+		executor.execute(() -> fetch(refresh));
+		return refresh;
+	}
+
+	private void fetch(CompletableFuture<JWKSet> refresh) {
+		JWKSet jwkSet;
+		try {
+			Resource resource = this.jwkSetRetriever.retrieveResource(this.jwkSetUrl);
+			jwkSet = JWKSet.parse(resource.getContent());
+		}
+		catch (Exception ex) {
+			this.logger.debug("Failed to refresh the JWK Set", ex);
+			completed();
+			refresh.completeExceptionally(ex);
+			return;
+		}
+		Instant expiresAt = this.clock.instant().plus(this.timeToLive);
+		this.cached = new CachedJWKSet(jwkSet, expiresAt.minus(this.refreshAhead), expiresAt.plus(this.maxStaleness));
+		completed();
+		refresh.complete(jwkSet);
+	}
+
+	private void completed() {
+		synchronized (this.monitor) {
+			this.refresh = null;
+		}
+	}
+
+	private JWKSet await(CompletableFuture<JWKSet> refresh) throws KeySourceException {
+		try {
+			return refresh.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RemoteKeySourceException("Interrupted while retrieving the remote JWK set", ex);
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			throw new RemoteKeySourceException("Couldn't retrieve remote JWK set: " + cause.getMessage(), cause);
+		}
+	}
+
+	private static boolean isUnknownKeyId(JWKSelector jwkSelector, JWKSet jwkSet) {
+		Set<String> keyIds = jwkSelector.getMatcher().getKeyIDs();
+		if (keyIds == null) {
+			return false;
+		}
+		for (String keyId : keyIds) {
+			if (keyId != null) {
+				return jwkSet.getKeyByKeyId(keyId) == null;
+			}
+		}
+		return false;
+	}
+
+	void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	void setMinRefetchInterval(Duration minRefetchInterval) {
+		this.minRefetchInterval = minRefetchInterval;
+	}
+
+	/**
+	 * @param maxStaleness how long after it expires the last good JWK Set is still served
+	 * while refreshes fail
+	 */
+	void setMaxStaleness(Duration maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+
+	void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	private static final class CachedJWKSet {
+
+		private final JWKSet jwkSet;
+
+		private final Instant refreshAt;
+
+		private final Instant discardAt;
+
+		private CachedJWKSet(JWKSet jwkSet, Instant refreshAt, Instant discardAt) {
+			this.jwkSet = jwkSet;
+			this.refreshAt = refreshAt;
+			this.discardAt = discardAt;
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.oauth2.jwt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.security.oauth2.core.TokenDigestCache;
+import org.springframework.security.oauth2.core.TokenDigestCache.Digest;
+import org.springframework.util.Assert;
+
+/**
+ * A bounded cache of {@link Jwt}s whose signature has been verified, keyed by a SHA-256
+ * digest of the compact token.
+ * <p>
+ * An entry expires at the earlier of the token's {@code exp} claim and the time to live.
+ * Entries are evicted in insertion order once the maximum size is reached.
+ * {@link #invalidateAll()} drops every entry, and entries verified before an
+ * invalidation are not stored, see {@link #getGeneration()}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see TokenDigestCache
+ */
+final class VerifiedJwtCache {
+
+	private final TokenDigestCache<Jwt> entries;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private final Duration timeToLive;
+
+	private final Clock clock;
+
+	VerifiedJwtCache(Duration timeToLive, int maximumSize, Clock clock) {
+		Assert.notNull(timeToLive, "timeToLive cannot be null");
+		Assert.isTrue(!timeToLive.isNegative() && !timeToLive.isZero(), "timeToLive must be positive");
+		Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+		Assert.notNull(clock, "clock cannot be null");
+		this.timeToLive = timeToLive;
+		this.clock = clock;
+		this.entries = new TokenDigestCache<>(maximumSize);
+		this.entries.setClock(clock);
+	}
+
+	/**
+	 * @param token the compact token
+	 * @return the verified {@link Jwt} for the token, or {@code null} if it is not cached
+	 * or has expired
+	 */
+	Jwt get(String token) {
+		Jwt jwt = this.entries.get(Digest.of(token));
+		return (jwt != null && token.equals(jwt.getTokenValue())) ? jwt : null;
+	}
+
+	/**
+	 * Stores a verified {@link Jwt}, unless the cache was invalidated since
+	 * {@code generation} was read.
+	 * @param jwt the verified {@link Jwt}
+	 * @param generation the {@link #getGeneration() generation} read before the token was
+	 * verified
+	 */
+	void put(Jwt jwt, long generation) {
+		Instant now = this.clock.instant();
+		Instant expiresAt = now.plus(this.timeToLive);
+		if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isBefore(expiresAt)) {
+			expiresAt = jwt.getExpiresAt();
+		}
+		if (!expiresAt.isAfter(now) || generation != this.generation.get()) {
+			return;
+		}
+		Digest digest = Digest.of(jwt.getTokenValue());
+		this.entries.put(digest, jwt, expiresAt);
+		if (generation != this.generation.get()) {
+			// invalidated while storing
+			this.entries.remove(digest, jwt);
+		}
+	}
+
+	/**
+	 * @return a value that changes every time the cache is invalidated
+	 */
+	long getGeneration() {
+		return this.generation.get();
+	}
+
+	/**
+	 * Drops every entry, for example because the JWK Set changed.
+	 */
+	void invalidateAll() {
+		this.generation.incrementAndGet();
+		this.entries.clear();
+	}
+
+	int size() {
+		return this.entries.size();
+	}
+
+	int queueSize() {
+		return this.entries.queueSize();
+	}
+
+}
@@ -25,6 +25,7 @@ import java.security.spec.EncodedKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Base64;
@@ -48,6 +49,7 @@ import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
 import com.nimbusds.jose.proc.JWSKeySelector;
 import com.nimbusds.jose.proc.JWSVerificationKeySelector;
 import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.jwt.proc.BadJWTException;
@@ -82,6 +84,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -264,6 +267,74 @@ public class NimbusJwtDecoderTests {
 		assertThat(jwt.hasClaim(JwtClaimNames.EXP)).isNotNull();
 	}
 
+	@Test
+	public void setVerifiedJwtCacheWhenTimeToLiveIsZeroThenThrowsIllegalArgumentException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> this.jwtDecoder.setVerifiedJwtCache(Duration.ZERO, 10));
+	}
+
+	@Test
+	public void decodeWhenVerifiedJwtCacheThenProcessedOnce() throws Exception {
+		JWTProcessor<SecurityContext> jwtProcessor = mockJwtProcessor();
+		NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+		jwtDecoder.setVerifiedJwtCache(Duration.ofMinutes(5), 10);
+		Jwt first = jwtDecoder.decode(SIGNED_JWT);
+		Jwt second = jwtDecoder.decode(SIGNED_JWT);
+		assertThat(second).isSameAs(first);
+		verify(jwtProcessor, times(1)).process(any(JWT.class), any());
+	}
+
+	@Test
+	public void decodeWhenVerifiedJwtCacheThenValidatedEveryTime() throws Exception {
+		OAuth2TokenValidator<Jwt> jwtValidator = mock(OAuth2TokenValidator.class);
+		given(jwtValidator.validate(any(Jwt.class))).willReturn(OAuth2TokenValidatorResult.success(),
+				OAuth2TokenValidatorResult.failure(new OAuth2Error("invalid_token", "Jwt expired", null)));
+		JWTProcessor<SecurityContext> jwtProcessor = mockJwtProcessor();
+		NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+		jwtDecoder.setJwtValidator(jwtValidator);
+		jwtDecoder.setVerifiedJwtCache(Duration.ofMinutes(5), 10);
+		jwtDecoder.decode(SIGNED_JWT);
+		assertThatExceptionOfType(JwtValidationException.class).isThrownBy(() -> jwtDecoder.decode(SIGNED_JWT));
+		verify(jwtProcessor, times(1)).process(any(JWT.class), any());
+	}
+
+	@Test
+	public void decodeWhenJwkSetChangedThenProcessedAgain() throws Exception {
+		JWTProcessor<SecurityContext> jwtProcessor = mockJwtProcessor();
+		NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+		jwtDecoder.setVerifiedJwtCache(Duration.ofMinutes(5), 10);
+		jwtDecoder.decode(SIGNED_JWT);
+		jwtDecoder.jwkSetChanged();
+		jwtDecoder.decode(SIGNED_JWT);
+		verify(jwtProcessor, times(2)).process(any(JWT.class), any());
+	}
+
+	@Test
+	public void decodeWhenParsedJwtThenProcessesSameInstance() throws Exception {
+		JWTProcessor<SecurityContext> jwtProcessor = mockJwtProcessor();
+		NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+		SignedJWT parsedJwt = SignedJWT.parse(SIGNED_JWT);
+		Jwt jwt = jwtDecoder.decode(parsedJwt);
+		assertThat(jwt.getTokenValue()).isEqualTo(SIGNED_JWT);
+		verify(jwtProcessor).process(parsedJwt, null);
+	}
+
+	@Test
+	public void decodeWhenParsedJwtAndVerifiedJwtCacheThenProcessedOnce() throws Exception {
+		JWTProcessor<SecurityContext> jwtProcessor = mockJwtProcessor();
+		NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+		jwtDecoder.setVerifiedJwtCache(Duration.ofMinutes(5), 10);
+		Jwt first = jwtDecoder.decode(SIGNED_JWT);
+		Jwt second = jwtDecoder.decode(SignedJWT.parse(SIGNED_JWT));
+		assertThat(second).isSameAs(first);
+		verify(jwtProcessor, times(1)).process(any(JWT.class), any());
+	}
+
+	@Test
+	public void decodeWhenParsedJwtIsNullThenThrowsIllegalArgumentException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.jwtDecoder.decode((JWT) null));
+	}
+
 	@Test
 	public void decodeWhenJwkResponseIsMalformedThenReturnsStockException() {
 		NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(withSigning(MALFORMED_JWK_SET));
@@ -622,6 +693,46 @@ public class NimbusJwtDecoderTests {
 		assertThat(acceptHeader).contains(MediaType.APPLICATION_JSON, APPLICATION_JWK_SET_JSON);
 	}
 
+	@Test
+	public void decodeWhenJwkSetRefreshThenRetrievesJwkSetOnce() {
+		RestOperations restOperations = mock(RestOperations.class);
+		given(restOperations.exchange(any(RequestEntity.class), eq(String.class)))
+				.willReturn(new ResponseEntity<>(JWK_SET, HttpStatus.OK));
+		// @formatter:off
+		NimbusJwtDecoder jwtDecoder = NimbusJwtDecoder.withJwkSetUri(JWK_SET_URI)
+				.restOperations(restOperations)
+				.jwkSetRefresh(Duration.ofMinutes(5), Duration.ofMinutes(1))
+				.build();
+		// @formatter:on
+		jwtDecoder.decode(SIGNED_JWT);
+		jwtDecoder.decode(SIGNED_JWT);
+		verify(restOperations, times(1)).exchange(any(RequestEntity.class), eq(String.class));
+	}
+
+	@Test
+	public void buildWhenJwkSetRefreshAndCacheThenThrowsIllegalStateException() {
+		// @formatter:off
+		NimbusJwtDecoder.JwkSetUriJwtDecoderBuilder builder = NimbusJwtDecoder.withJwkSetUri(JWK_SET_URI)
+				.cache(new ConcurrentMapCache("test-jwk-set-cache"))
+				.jwkSetRefresh(Duration.ofMinutes(5), Duration.ofMinutes(1));
+		// @formatter:on
+		assertThatIllegalStateException().isThrownBy(builder::build);
+	}
+
+	@Test
+	public void jwkSetRefreshWhenRefreshAheadNotLessThanTimeToLiveThenThrowsIllegalArgumentException() {
+		NimbusJwtDecoder.JwkSetUriJwtDecoderBuilder builder = NimbusJwtDecoder.withJwkSetUri(JWK_SET_URI);
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> builder.jwkSetRefresh(Duration.ofMinutes(1), Duration.ofMinutes(1)));
+	}
+
+	@Test
+	public void jwkSetRefreshWhenMaxStalenessNegativeThenThrowsIllegalArgumentException() {
+		NimbusJwtDecoder.JwkSetUriJwtDecoderBuilder builder = NimbusJwtDecoder.withJwkSetUri(JWK_SET_URI);
+		assertThatIllegalArgumentException().isThrownBy(() -> builder.jwkSetRefresh(Duration.ofMinutes(5),
+				Duration.ofMinutes(1), Duration.ofMinutes(-1)));
+	}
+
 	@Test
 	public void decodeWhenCacheThenStoreRetrievedJwkSetToCache() {
 		Cache cache = new ConcurrentMapCache("test-jwk-set-cache");
@@ -745,6 +856,12 @@ public class NimbusJwtDecoderTests {
 		// @formatter:on
 	}
 
+	private static JWTProcessor<SecurityContext> mockJwtProcessor() throws Exception {
+		JWTProcessor<SecurityContext> jwtProcessor = mock(JWTProcessor.class);
+		given(jwtProcessor.process(any(JWT.class), any())).willReturn(SignedJWT.parse(SIGNED_JWT).getJWTClaimsSet());
+		return jwtProcessor;
+	}
+
 	private static JWTProcessor<SecurityContext> withoutSigning() {
 		return new MockJwtProcessor();
 	}
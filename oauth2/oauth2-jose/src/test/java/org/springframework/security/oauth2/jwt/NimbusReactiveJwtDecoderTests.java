@@ -24,6 +24,7 @@ import java.security.spec.EncodedKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Collections;
@@ -43,6 +44,7 @@ import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
 import com.nimbusds.jose.proc.JWKSecurityContext;
 import com.nimbusds.jose.proc.JWSKeySelector;
 import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import okhttp3.mockwebserver.MockResponse;
@@ -71,6 +73,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -166,6 +169,44 @@ public class NimbusReactiveJwtDecoderTests {
 		assertThat(jwt.getClaims().get(JwtClaimNames.IAT)).isEqualTo(Instant.ofEpochSecond(1529942448L));
 	}
 
+	@Test
+	public void decodeWhenVerifiedJwtCacheThenProcessedOnce() throws Exception {
+		Converter<JWT, Mono<JWTClaimsSet>> jwtProcessor = mock(Converter.class);
+		given(jwtProcessor.convert(any(JWT.class)))
+				.willReturn(Mono.just(SignedJWT.parse(this.messageReadToken).getJWTClaimsSet()));
+		this.decoder = new NimbusReactiveJwtDecoder(jwtProcessor);
+		this.decoder.setVerifiedJwtCache(Duration.ofMinutes(5), 10);
+		Jwt first = this.decoder.decode(this.messageReadToken).block();
+		Jwt second = this.decoder.decode(this.messageReadToken).block();
+		assertThat(second).isSameAs(first);
+		verify(jwtProcessor, times(1)).convert(any(JWT.class));
+	}
+
+	@Test
+	public void decodeWhenVerifiedJwtCacheThenValidatedEveryTime() throws Exception {
+		OAuth2TokenValidator<Jwt> jwtValidator = mock(OAuth2TokenValidator.class);
+		given(jwtValidator.validate(any(Jwt.class))).willReturn(OAuth2TokenValidatorResult.success(),
+				OAuth2TokenValidatorResult.failure(new OAuth2Error("invalid_token", "Jwt expired", null)));
+		this.decoder.setJwtValidator(jwtValidator);
+		this.decoder.setVerifiedJwtCache(Duration.ofMinutes(5), 10);
+		this.decoder.decode(this.messageReadToken).block();
+		assertThatExceptionOfType(JwtValidationException.class)
+				.isThrownBy(() -> this.decoder.decode(this.messageReadToken).block());
+	}
+
+	@Test
+	public void decodeWhenJwkSetChangedThenProcessedAgain() throws Exception {
+		Converter<JWT, Mono<JWTClaimsSet>> jwtProcessor = mock(Converter.class);
+		given(jwtProcessor.convert(any(JWT.class)))
+				.willReturn(Mono.just(SignedJWT.parse(this.messageReadToken).getJWTClaimsSet()));
+		this.decoder = new NimbusReactiveJwtDecoder(jwtProcessor);
+		this.decoder.setVerifiedJwtCache(Duration.ofMinutes(5), 10);
+		this.decoder.decode(this.messageReadToken).block();
+		this.decoder.jwkSetChanged();
+		this.decoder.decode(this.messageReadToken).block();
+		verify(jwtProcessor, times(2)).convert(any(JWT.class));
+	}
+
 	@Test
 	public void decodeWhenExpiredThenFail() {
 		assertThatExceptionOfType(JwtValidationException.class)
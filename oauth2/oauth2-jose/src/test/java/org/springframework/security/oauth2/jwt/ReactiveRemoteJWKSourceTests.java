@@ -16,8 +16,13 @@
 
 package org.springframework.security.oauth2.jwt;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKMatcher;
@@ -31,10 +36,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import reactor.core.publisher.Mono;
+
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
 
 /**
  * @author Rob Winch
@@ -140,6 +150,26 @@ public class ReactiveRemoteJWKSourceTests {
 		assertThat(keys.get(0).getKeyID()).isEqualTo("rotated");
 	}
 
+	@Test
+	public void getWhenRefreshedJwkSetChangedThenListenerCalled() {
+		AtomicInteger changes = new AtomicInteger();
+		this.source.setJwkSetChangedListener(changes::incrementAndGet);
+		this.server.enqueue(new MockResponse().setBody(this.keys2));
+		given(this.matcher.matches(any())).willReturn(false, false, true);
+		given(this.matcher.getKeyIDs()).willReturn(Collections.singleton("rotated"));
+		this.source.get(this.selector).block();
+		assertThat(changes.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void getWhenFirstFetchThenListenerNotCalled() {
+		AtomicInteger changes = new AtomicInteger();
+		this.source.setJwkSetChangedListener(changes::incrementAndGet);
+		given(this.matcher.matches(any())).willReturn(true);
+		this.source.get(this.selector).block();
+		assertThat(changes.get()).isEqualTo(0);
+	}
+
 	@Test
 	public void getWhenNoMatchAndKeyIdNotMatchThenRefreshAndNotFoundThenEmpty() {
 		this.server.enqueue(new MockResponse().setBody(this.keys2));
@@ -149,6 +179,57 @@ public class ReactiveRemoteJWKSourceTests {
 		assertThat(keys).isEmpty();
 	}
 
+	@Test
+	public void getWhenConcurrentRequestsForUnknownKeyIdThenFetchesShared() {
+		this.server.enqueue(new MockResponse().setBody(this.keys2));
+		JWKSelector rotated = new JWKSelector(new JWKMatcher.Builder().keyID("rotated").build());
+		List<JWK> keys = Mono.zip(this.source.get(rotated), this.source.get(rotated))
+				.map((results) -> results.getT1()).block(Duration.ofSeconds(5));
+		assertThat(keys).hasSize(1);
+		assertThat(this.server.getRequestCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void getWhenRefreshAndUnknownKeyIdThenRefetchRateLimited() {
+		this.source.setRefresh(Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofHours(1));
+		given(this.matcher.matches(any())).willReturn(false);
+		given(this.matcher.getKeyIDs()).willReturn(Collections.singleton("rotated"));
+		assertThat(this.source.get(this.selector).block()).isEmpty();
+		assertThat(this.source.get(this.selector).block()).isEmpty();
+		assertThat(this.server.getRequestCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void getWhenRefreshAndExpiringThenServesCachedAndRefreshesInBackground() throws Exception {
+		Clock clock = mock(Clock.class);
+		Instant now = Instant.now();
+		given(clock.instant()).willReturn(now);
+		this.source.setClock(clock);
+		this.source.setRefresh(Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofHours(1));
+		given(this.matcher.matches(any())).willReturn(true);
+		this.source.get(this.selector).block();
+		this.server.enqueue(new MockResponse().setBody(this.keys2));
+		given(clock.instant()).willReturn(now.plus(Duration.ofMinutes(4)));
+		assertThat(this.source.get(this.selector).block()).hasSize(2);
+		this.server.takeRequest(5, TimeUnit.SECONDS);
+		assertThat(this.server.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+	}
+
+	@Test
+	public void getWhenRefreshAndPastMaxStalenessAndFetchFailsThenError() {
+		Clock clock = mock(Clock.class);
+		Instant now = Instant.now();
+		given(clock.instant()).willReturn(now);
+		this.source.setClock(clock);
+		this.source.setRefresh(Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofMinutes(10));
+		given(this.matcher.matches(any())).willReturn(true);
+		this.source.get(this.selector).block();
+		this.server.enqueue(new MockResponse().setResponseCode(500));
+		given(clock.instant()).willReturn(now.plus(Duration.ofMinutes(15)));
+		assertThatExceptionOfType(WebClientResponseException.class)
+				.isThrownBy(() -> this.source.get(this.selector).block());
+	}
+
 	@Test
 	public void getWhenNoMatchAndKeyIdMatchThenEmpty() {
 		given(this.matcher.matches(any())).willReturn(false);
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.jwt;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nimbusds.jose.RemoteKeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.oauth2.jose.TestKeys;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link RefreshAheadJWKSource}.
+ *
+ * @author Ben Siegler
+ */
+public class RefreshAheadJWKSourceTests {
+
+	private final Instant now = Instant.now();
+
+	private ResourceRetriever jwkSetRetriever;
+
+	private Clock clock;
+
+	private List<Runnable> backgroundTasks;
+
+	private RefreshAheadJWKSource source;
+
+	@Before
+	public void setup() throws Exception {
+		this.jwkSetRetriever = mock(ResourceRetriever.class);
+		this.clock = mock(Clock.class);
+		given(this.clock.instant()).willReturn(this.now);
+		this.backgroundTasks = new ArrayList<>();
+		this.source = new RefreshAheadJWKSource(new URL("https://example.org/jwks"), this.jwkSetRetriever,
+				Duration.ofMinutes(5), Duration.ofMinutes(1));
+		this.source.setClock(this.clock);
+		this.source.setExecutor(this.backgroundTasks::add);
+		this.source.setMaxStaleness(Duration.ofMinutes(10));
+	}
+
+	@Test
+	public void constructorWhenRefreshAheadNotLessThanTimeToLiveThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new RefreshAheadJWKSource(
+				new URL("https://example.org/jwks"), this.jwkSetRetriever, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+	}
+
+	@Test
+	public void getWhenFirstRequestThenFetchesOnCallingThread() throws Exception {
+		given(this.jwkSetRetriever.retrieveResource(any())).willReturn(jwkSet("one"));
+		assertThat(keyIds(this.source.get(select("one"), null))).containsExactly("one");
+		assertThat(keyIds(this.source.get(select("one"), null))).containsExactly("one");
+		assertThat(this.backgroundTasks).isEmpty();
+		verify(this.jwkSetRetriever, times(1)).retrieveResource(any());
+	}
+
+	@Test
+	public void getWhenExpiringThenServesCachedJwkSetAndRefreshesInBackground() throws Exception {
+		given(this.jwkSetRetriever.retrieveResource(any())).willReturn(jwkSet("one"), jwkSet("two"));
+		this.source.get(select("one"), null);
+		given(this.clock.instant()).willReturn(this.now.plus(Duration.ofMinutes(4)));
+		assertThat(keyIds(this.source.get(select("one"), null))).containsExactly("one");
+		assertThat(keyIds(this.source.get(select("one"), null))).containsExactly("one");
+		assertThat(this.backgroundTasks).hasSize(1);
+		this.backgroundTasks.get(0).run();
+		assertThat(keyIds(this.source.get(select("two"), null))).containsExactly("two");
+		verify(this.jwkSetRetriever, times(2)).retrieveResource(any());
+	}
+
+	@Test
+	public void getWhenRefreshFailsThenServesLastJwkSet() throws Exception {
+		given(this.jwkSetRetriever.retrieveResource(any())).willReturn(jwkSet("one"))
+				.willThrow(new IOException("unavailable"));
+		this.source.get(select("one"), null);
+		given(this.clock.instant()).willReturn(this.now.plus(Duration.ofMinutes(10)));
+		this.source.get(select("one"), null);
+		this.backgroundTasks.get(0).run();
+		assertThat(keyIds(this.source.get(select("one"), null))).containsExactly("one");
+	}
+
+	@Test
+	public void getWhenRefreshFailsPastMaxStalenessThenException() throws Exception {
+		given(this.jwkSetRetriever.retrieveResource(any())).willReturn(jwkSet("one"))
+				.willThrow(new IOException("unavailable"));
+		this.source.get(select("one"), null);
+		given(this.clock.instant()).willReturn(this.now.plus(Duration.ofMinutes(15)));
+		assertThatExceptionOfType(RemoteKeySourceException.class)
+				.isThrownBy(() -> this.source.get(select("one"), null));
+		assertThat(this.backgroundTasks).isEmpty();
+	}
+
+	@Test
+	public void getWhenPastMaxStalenessThenFetchesOnCallingThread() throws Exception {
+		given(this.jwkSetRetriever.retrieveResource(any())).willReturn(jwkSet("one"), jwkSet("two"));
+		this.source.get(select("one"), null);
+		given(this.clock.instant()).willReturn(this.now.plus(Duration.ofMinutes(15)));
+		assertThat(keyIds(this.source.get(select("two"), null))).containsExactly("two");
+		assertThat(this.backgroundTasks).isEmpty();
+	}
+
+	@Test
+	public void getWhenUnknownKeyIdThenRefetchesAtMostOncePerInterval() throws Exception {
+		given(this.jwkSetRetriever.retrieveResource(any())).willReturn(jwkSet("one"), jwkSet("rotated"));
+		this.source.get(select("one"), null);
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(1));
+		assertThat(this.source.get(select("rotated"), null)).isEmpty();
+		verify(this.jwkSetRetriever, times(1)).retrieveResource(any());
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(30));
+		assertThat(keyIds(this.source.get(select("rotated"), null))).containsExactly("rotated");
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(31));
+		assertThat(this.source.get(select("missing"), null)).isEmpty();
+		verify(this.jwkSetRetriever, times(2)).retrieveResource(any());
+		assertThat(this.backgroundTasks).isEmpty();
+	}
+
+	private static JWKSelector select(String keyId) {
+		return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+	}
+
+	private static Resource jwkSet(String keyId) {
+		RSAKey key = new RSAKey.Builder(TestKeys.DEFAULT_PUBLIC_KEY).keyID(keyId).build();
+		return new Resource(new JWKSet(key).toString(), "application/json");
+	}
+
+	private static List<String> keyIds(List<JWK> keys) {
+		List<String> keyIds = new ArrayList<>();
+		for (JWK key : keys) {
+			keyIds.add(key.getKeyID());
+		}
+		return keyIds;
+	}
+
+}
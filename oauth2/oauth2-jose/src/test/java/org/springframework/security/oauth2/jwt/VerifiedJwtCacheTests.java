@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.oauth2.jwt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link VerifiedJwtCache}.
+ *
+ * @author Ben Siegler
+ */
+public class VerifiedJwtCacheTests {
+
+	private static final Instant NOW = Instant.ofEpochSecond(1600000000L);
+
+	private Clock clock;
+
+	@Before
+	public void setUp() {
+		this.clock = mock(Clock.class);
+		given(this.clock.instant()).willReturn(NOW);
+	}
+
+	@Test
+	public void constructorWhenMaximumSizeIsZeroThenThrowsIllegalArgumentException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> new VerifiedJwtCache(Duration.ofMinutes(1), 0, this.clock));
+	}
+
+	@Test
+	public void getWhenPutThenFound() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(1), 10, this.clock);
+		Jwt jwt = jwt("token", NOW.plusSeconds(3600));
+		cache.put(jwt, cache.getGeneration());
+		assertThat(cache.get("token")).isSameAs(jwt);
+		assertThat(cache.get("other")).isNull();
+	}
+
+	@Test
+	public void getWhenTimeToLivePassedThenNull() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(1), 10, this.clock);
+		cache.put(jwt("token", NOW.plusSeconds(3600)), cache.getGeneration());
+		given(this.clock.instant()).willReturn(NOW.plusSeconds(59));
+		assertThat(cache.get("token")).isNotNull();
+		given(this.clock.instant()).willReturn(NOW.plusSeconds(60));
+		assertThat(cache.get("token")).isNull();
+		assertThat(cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void getWhenExpiresBeforeTimeToLiveThenNullAtExp() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(10), 10, this.clock);
+		cache.put(jwt("token", NOW.plusSeconds(30)), cache.getGeneration());
+		given(this.clock.instant()).willReturn(NOW.plusSeconds(30));
+		assertThat(cache.get("token")).isNull();
+	}
+
+	@Test
+	public void putWhenAlreadyExpiredThenNotStored() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(1), 10, this.clock);
+		cache.put(jwt("token", NOW.minusSeconds(1)), cache.getGeneration());
+		assertThat(cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void putWhenMaximumSizeReachedThenEldestEvicted() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(1), 2, this.clock);
+		cache.put(jwt("one", NOW.plusSeconds(3600)), cache.getGeneration());
+		cache.put(jwt("two", NOW.plusSeconds(3600)), cache.getGeneration());
+		cache.put(jwt("three", NOW.plusSeconds(3600)), cache.getGeneration());
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.get("one")).isNull();
+		assertThat(cache.get("two")).isNotNull();
+		assertThat(cache.get("three")).isNotNull();
+	}
+
+	@Test
+	public void putWhenSameTokenStoredRepeatedlyThenQueueBounded() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(1), 2, this.clock);
+		Jwt jwt = jwt("token", NOW.plusSeconds(3600));
+		for (int i = 0; i < 100; i++) {
+			cache.put(jwt, cache.getGeneration());
+		}
+		assertThat(cache.queueSize()).isLessThanOrEqualTo(4);
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.get("token")).isSameAs(jwt);
+	}
+
+	@Test
+	public void putWhenExpiredEntriesStoredAgainThenQueueBounded() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(1), 2, this.clock);
+		Instant now = NOW;
+		for (int i = 0; i < 100; i++) {
+			given(this.clock.instant()).willReturn(now);
+			cache.put(jwt("token", now.plusSeconds(3600)), cache.getGeneration());
+			now = now.plusSeconds(60);
+			given(this.clock.instant()).willReturn(now);
+			assertThat(cache.get("token")).isNull();
+		}
+		assertThat(cache.queueSize()).isLessThanOrEqualTo(4);
+	}
+
+	@Test
+	public void putWhenInvalidatedSinceGenerationThenNotStored() {
+		VerifiedJwtCache cache = new VerifiedJwtCache(Duration.ofMinutes(1), 10, this.clock);
+		cache.put(jwt("one", NOW.plusSeconds(3600)), cache.getGeneration());
+		long generation = cache.getGeneration();
+		cache.invalidateAll();
+		cache.put(jwt("two", NOW.plusSeconds(3600)), generation);
+		assertThat(cache.get("one")).isNull();
+		assertThat(cache.get("two")).isNull();
+	}
+
+	private static Jwt jwt(String token, Instant expiresAt) {
+		// @formatter:off
+		return Jwt.withTokenValue(token)
+				.header("alg", "none")
+				.claim("sub", "user")
+				.issuedAt(NOW.minusSeconds(60))
+				.expiresAt(expiresAt)
+				.build();
+		// @formatter:on
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.server.resource.authentication;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * The discovery state of a single trusted issuer: the value built from its configuration
+ * once discovery succeeds or, after a failure, the time before which discovery is not
+ * attempted again. The backoff doubles with each consecutive failure, up to a maximum.
+ *
+ * Apart from {@link #getValue()}, callers must hold the entry's monitor.
+ *
+ * @param <T> the type built from the issuer's configuration
+ * @author Ben Siegler
+ * @since 5.5
+ */
+class IssuerDiscoveryEntry<T> {
+
+	private final String issuer;
+
+	private final IssuerDiscoveryMetrics metrics = new IssuerDiscoveryMetrics();
+
+	private volatile T value;
+
+	private Exception failure;
+
+	private int consecutiveFailures;
+
+	private Instant retryAt;
+
+	IssuerDiscoveryEntry(String issuer) {
+		this.issuer = issuer;
+	}
+
+	String getIssuer() {
+		return this.issuer;
+	}
+
+	IssuerDiscoveryMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	T getValue() {
+		return this.value;
+	}
+
+	/**
+	 * Return the exception to report in place of discovery while the issuer is backing
+	 * off from a failure
+	 * @param now the current time
+	 * @return the exception, or {@code null} if discovery may be attempted
+	 */
+	IllegalStateException backoff(Instant now) {
+		if (this.retryAt == null || !now.isBefore(this.retryAt)) {
+			return null;
+		}
+		return new IllegalStateException(
+				"Discovery for issuer '" + this.issuer + "' failed, it will not be retried before " + this.retryAt,
+				this.failure);
+	}
+
+	void succeeded(T value, long latencyNanos) {
+		this.metrics.record(latencyNanos, false);
+		this.value = value;
+		this.failure = null;
+		this.consecutiveFailures = 0;
+		this.retryAt = null;
+	}
+
+	void failed(Exception failure, long latencyNanos, Instant now, Duration initialBackoff, Duration maxBackoff) {
+		this.metrics.record(latencyNanos, true);
+		this.failure = failure;
+		this.consecutiveFailures++;
+		Duration backoff = initialBackoff.multipliedBy(1L << Math.min(this.consecutiveFailures - 1, 20));
+		this.retryAt = now.plus((backoff.compareTo(maxBackoff) < 0) ? backoff : maxBackoff);
+	}
+
+}
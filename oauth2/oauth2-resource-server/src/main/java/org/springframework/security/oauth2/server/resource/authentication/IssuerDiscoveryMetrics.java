@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.server.resource.authentication;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Discovery statistics for a single trusted issuer, as recorded by
+ * {@link JwtIssuerAuthenticationManagerResolver} and
+ * {@link JwtIssuerReactiveAuthenticationManagerResolver} each time they look up the
+ * issuer's configuration.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see JwtIssuerAuthenticationManagerResolver#getDiscoveryMetrics()
+ * @see JwtIssuerReactiveAuthenticationManagerResolver#getDiscoveryMetrics()
+ */
+public final class IssuerDiscoveryMetrics {
+
+	private final LongAdder discoveryCount = new LongAdder();
+
+	private final LongAdder failureCount = new LongAdder();
+
+	private final LongAdder totalLatencyNanos = new LongAdder();
+
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	private volatile long lastLatencyNanos;
+
+	IssuerDiscoveryMetrics() {
+	}
+
+	void record(long latencyNanos, boolean failed) {
+		this.discoveryCount.increment();
+		if (failed) {
+			this.failureCount.increment();
+		}
+		this.totalLatencyNanos.add(latencyNanos);
+		this.maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+		this.lastLatencyNanos = latencyNanos;
+	}
+
+	/**
+	 * @return the number of discovery attempts, successful or not
+	 */
+	public long getDiscoveryCount() {
+		return this.discoveryCount.sum();
+	}
+
+	/**
+	 * @return the number of discovery attempts that failed
+	 */
+	public long getFailureCount() {
+		return this.failureCount.sum();
+	}
+
+	/**
+	 * @return the latency of the most recent discovery attempt
+	 */
+	public Duration getLastLatency() {
+		return Duration.ofNanos(this.lastLatencyNanos);
+	}
+
+	/**
+	 * @return the latency of the slowest discovery attempt
+	 */
+	public Duration getMaxLatency() {
+		return Duration.ofNanos(this.maxLatencyNanos.get());
+	}
+
+	/**
+	 * @return the mean latency of all discovery attempts, or {@link Duration#ZERO} if
+	 * there have been none
+	 */
+	public Duration getAverageLatency() {
+		long count = this.discoveryCount.sum();
+		return (count != 0) ? Duration.ofNanos(this.totalLatencyNanos.sum() / count) : Duration.ZERO;
+	}
+
+}
@@ -18,6 +18,7 @@ package org.springframework.security.oauth2.server.resource.authentication;
 
 import java.util.Collection;
 
+import com.nimbusds.jwt.JWT;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -32,6 +33,7 @@ import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
 import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
 import org.springframework.util.Assert;
@@ -94,6 +96,12 @@ public final class JwtAuthenticationProvider implements AuthenticationProvider {
 
 	private Jwt getJwt(BearerTokenAuthenticationToken bearer) {
 		try {
+			if (bearer instanceof ParsedBearerTokenAuthenticationToken && this.jwtDecoder instanceof NimbusJwtDecoder) {
+				JWT parsedJwt = ((ParsedBearerTokenAuthenticationToken) bearer).getParsedJwt();
+				if (parsedJwt != null) {
+					return ((NimbusJwtDecoder) this.jwtDecoder).decode(parsedJwt);
+				}
+			}
 			return this.jwtDecoder.decode(bearer.getToken());
 		}
 		catch (BadJwtException failed) {
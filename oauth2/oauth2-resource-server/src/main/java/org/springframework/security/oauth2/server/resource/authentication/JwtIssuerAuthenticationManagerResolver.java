@@ -16,22 +16,25 @@
 
 package org.springframework.security.oauth2.server.resource.authentication;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import javax.servlet.http.HttpServletRequest;
 
+import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTParser;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.log.LogMessage;
-import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationManagerResolver;
 import org.springframework.security.core.Authentication;
@@ -66,6 +69,8 @@ public final class JwtIssuerAuthenticationManagerResolver implements Authenticat
 
 	private final AuthenticationManager authenticationManager;
 
+	private final TrustedIssuerJwtAuthenticationManagerResolver trustedIssuerAuthenticationManagerResolver;
+
 	/**
 	 * Construct a {@link JwtIssuerAuthenticationManagerResolver} using the provided
 	 * parameters
@@ -82,9 +87,10 @@ public final class JwtIssuerAuthenticationManagerResolver implements Authenticat
 	 */
 	public JwtIssuerAuthenticationManagerResolver(Collection<String> trustedIssuers) {
 		Assert.notEmpty(trustedIssuers, "trustedIssuers cannot be empty");
+		this.trustedIssuerAuthenticationManagerResolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				Collections.unmodifiableCollection(trustedIssuers));
 		this.authenticationManager = new ResolvingAuthenticationManager(
-				new TrustedIssuerJwtAuthenticationManagerResolver(
-						Collections.unmodifiableCollection(trustedIssuers)::contains));
+				this.trustedIssuerAuthenticationManagerResolver);
 	}
 
 	/**
@@ -111,6 +117,7 @@ public final class JwtIssuerAuthenticationManagerResolver implements Authenticat
 	public JwtIssuerAuthenticationManagerResolver(
 			AuthenticationManagerResolver<String> issuerAuthenticationManagerResolver) {
 		Assert.notNull(issuerAuthenticationManagerResolver, "issuerAuthenticationManagerResolver cannot be null");
+		this.trustedIssuerAuthenticationManagerResolver = null;
 		this.authenticationManager = new ResolvingAuthenticationManager(issuerAuthenticationManagerResolver);
 	}
 
@@ -125,9 +132,56 @@ public final class JwtIssuerAuthenticationManagerResolver implements Authenticat
 		return this.authenticationManager;
 	}
 
-	private static class ResolvingAuthenticationManager implements AuthenticationManager {
+	/**
+	 * Discover the configuration of each trusted issuer now, for example at startup, so
+	 * that the first request for an issuer does not wait on discovery. An issuer whose
+	 * discovery fails is backed off and retried as usual.
+	 * @throws IllegalStateException if this resolver was not constructed with a list of
+	 * trusted issuers
+	 * @since 5.5
+	 */
+	public void warmUp() {
+		trustedIssuerAuthenticationManagerResolver().warmUp();
+	}
+
+	/**
+	 * Set how long to wait before discovering an issuer again after its discovery failed.
+	 * The wait starts at {@code initialBackoff}, doubles with each consecutive failure and
+	 * never exceeds {@code maxBackoff}. Until then, requests for the issuer fail without
+	 * contacting it. Defaults to 5 seconds and 5 minutes.
+	 * @param initialBackoff the wait after the first failure
+	 * @param maxBackoff the longest wait
+	 * @throws IllegalStateException if this resolver was not constructed with a list of
+	 * trusted issuers
+	 * @since 5.5
+	 */
+	public void setDiscoveryBackoff(Duration initialBackoff, Duration maxBackoff) {
+		Assert.notNull(initialBackoff, "initialBackoff cannot be null");
+		Assert.notNull(maxBackoff, "maxBackoff cannot be null");
+		Assert.isTrue(!initialBackoff.isNegative() && !initialBackoff.isZero(), "initialBackoff must be positive");
+		Assert.isTrue(maxBackoff.compareTo(initialBackoff) >= 0, "maxBackoff cannot be less than initialBackoff");
+		trustedIssuerAuthenticationManagerResolver().setDiscoveryBackoff(initialBackoff, maxBackoff);
+	}
+
+	/**
+	 * Return the discovery statistics of each trusted issuer that has been requested so
+	 * far
+	 * @return the statistics, keyed by issuer
+	 * @throws IllegalStateException if this resolver was not constructed with a list of
+	 * trusted issuers
+	 * @since 5.5
+	 */
+	public Map<String, IssuerDiscoveryMetrics> getDiscoveryMetrics() {
+		return trustedIssuerAuthenticationManagerResolver().getDiscoveryMetrics();
+	}
+
+	private TrustedIssuerJwtAuthenticationManagerResolver trustedIssuerAuthenticationManagerResolver() {
+		Assert.state(this.trustedIssuerAuthenticationManagerResolver != null,
+				"Issuer discovery is only managed when constructed with a list of trusted issuers");
+		return this.trustedIssuerAuthenticationManagerResolver;
+	}
 
-		private final Converter<BearerTokenAuthenticationToken, String> issuerConverter = new JwtClaimIssuerConverter();
+	private static class ResolvingAuthenticationManager implements AuthenticationManager {
 
 		private final AuthenticationManagerResolver<String> issuerAuthenticationManagerResolver;
 
@@ -140,23 +194,28 @@ public final class JwtIssuerAuthenticationManagerResolver implements Authenticat
 			Assert.isTrue(authentication instanceof BearerTokenAuthenticationToken,
 					"Authentication must be of type BearerTokenAuthenticationToken");
 			BearerTokenAuthenticationToken token = (BearerTokenAuthenticationToken) authentication;
-			String issuer = this.issuerConverter.convert(token);
+			JWT parsedJwt = parse(token);
+			String issuer = getIssuer(parsedJwt);
 			AuthenticationManager authenticationManager = this.issuerAuthenticationManagerResolver.resolve(issuer);
 			if (authenticationManager == null) {
 				throw new InvalidBearerTokenException("Invalid issuer");
 			}
-			return authenticationManager.authenticate(authentication);
+			// hand the parsed token on so that it is not parsed again by the decoder
+			return authenticationManager.authenticate(new ParsedBearerTokenAuthenticationToken(token, parsedJwt));
 		}
 
-	}
-
-	private static class JwtClaimIssuerConverter implements Converter<BearerTokenAuthenticationToken, String> {
+		private JWT parse(BearerTokenAuthenticationToken token) {
+			try {
+				return JWTParser.parse(token.getToken());
+			}
+			catch (Exception ex) {
+				throw new InvalidBearerTokenException(ex.getMessage(), ex);
+			}
+		}
 
-		@Override
-		public String convert(@NonNull BearerTokenAuthenticationToken authentication) {
-			String token = authentication.getToken();
+		private String getIssuer(JWT parsedJwt) {
 			try {
-				String issuer = JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+				String issuer = parsedJwt.getJWTClaimsSet().getIssuer();
 				if (issuer != null) {
 					return issuer;
 				}
@@ -171,32 +230,114 @@ public final class JwtIssuerAuthenticationManagerResolver implements Authenticat
 
 	static class TrustedIssuerJwtAuthenticationManagerResolver implements AuthenticationManagerResolver<String> {
 
+		static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(5);
+
+		static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(5);
+
 		private final Log logger = LogFactory.getLog(getClass());
 
-		private final Map<String, AuthenticationManager> authenticationManagers = new ConcurrentHashMap<>();
+		private final Map<String, IssuerDiscoveryEntry<AuthenticationManager>> authenticationManagers = new ConcurrentHashMap<>();
 
 		private final Predicate<String> trustedIssuer;
 
+		private final Collection<String> trustedIssuers;
+
+		private final Function<String, AuthenticationManager> discovery;
+
+		private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+
+		private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+
+		private Clock clock = Clock.systemUTC();
+
 		TrustedIssuerJwtAuthenticationManagerResolver(Predicate<String> trustedIssuer) {
+			this(trustedIssuer, Collections.emptyList(), TrustedIssuerJwtAuthenticationManagerResolver::discover);
+		}
+
+		TrustedIssuerJwtAuthenticationManagerResolver(Collection<String> trustedIssuers) {
+			this(trustedIssuers::contains, trustedIssuers, TrustedIssuerJwtAuthenticationManagerResolver::discover);
+		}
+
+		TrustedIssuerJwtAuthenticationManagerResolver(Predicate<String> trustedIssuer,
+				Collection<String> trustedIssuers, Function<String, AuthenticationManager> discovery) {
 			this.trustedIssuer = trustedIssuer;
+			this.trustedIssuers = trustedIssuers;
+			this.discovery = discovery;
 		}
 
 		@Override
 		public AuthenticationManager resolve(String issuer) {
-			if (this.trustedIssuer.test(issuer)) {
-				AuthenticationManager authenticationManager = this.authenticationManagers.computeIfAbsent(issuer,
-						(k) -> {
-							this.logger.debug("Constructing AuthenticationManager");
-							JwtDecoder jwtDecoder = JwtDecoders.fromIssuerLocation(issuer);
-							return new JwtAuthenticationProvider(jwtDecoder)::authenticate;
-						});
-				this.logger.debug(LogMessage.format("Resolved AuthenticationManager for issuer '%s'", issuer));
+			if (!this.trustedIssuer.test(issuer)) {
+				this.logger.debug("Did not resolve AuthenticationManager since issuer is not trusted");
+				return null;
+			}
+			IssuerDiscoveryEntry<AuthenticationManager> entry = this.authenticationManagers.computeIfAbsent(issuer,
+					IssuerDiscoveryEntry::new);
+			AuthenticationManager authenticationManager = entry.getValue();
+			if (authenticationManager == null) {
+				authenticationManager = discover(entry);
+			}
+			this.logger.debug(LogMessage.format("Resolved AuthenticationManager for issuer '%s'", issuer));
+			return authenticationManager;
+		}
+
+		private AuthenticationManager discover(IssuerDiscoveryEntry<AuthenticationManager> entry) {
+			// only callers for the same issuer wait here, none of them holding the map's lock
+			synchronized (entry) {
+				AuthenticationManager authenticationManager = entry.getValue();
+				if (authenticationManager != null) {
+					return authenticationManager;
+				}
+				IllegalStateException backoff = entry.backoff(this.clock.instant());
+				if (backoff != null) {
+					throw backoff;
+				}
+				this.logger.debug("Constructing AuthenticationManager");
+				long start = System.nanoTime();
+				try {
+					authenticationManager = this.discovery.apply(entry.getIssuer());
+				}
+				catch (RuntimeException ex) {
+					entry.failed(ex, System.nanoTime() - start, this.clock.instant(), this.initialBackoff,
+							this.maxBackoff);
+					throw ex;
+				}
+				entry.succeeded(authenticationManager, System.nanoTime() - start);
+				this.logger.debug(LogMessage.format("Discovered issuer '%s' in %s", entry.getIssuer(),
+						entry.getMetrics().getLastLatency()));
 				return authenticationManager;
 			}
-			else {
-				this.logger.debug("Did not resolve AuthenticationManager since issuer is not trusted");
+		}
+
+		void warmUp() {
+			for (String issuer : this.trustedIssuers) {
+				try {
+					resolve(issuer);
+				}
+				catch (RuntimeException ex) {
+					this.logger.debug(LogMessage.format("Failed to warm up issuer '%s'", issuer), ex);
+				}
 			}
-			return null;
+		}
+
+		Map<String, IssuerDiscoveryMetrics> getDiscoveryMetrics() {
+			Map<String, IssuerDiscoveryMetrics> metrics = new LinkedHashMap<>();
+			this.authenticationManagers.forEach((issuer, entry) -> metrics.put(issuer, entry.getMetrics()));
+			return Collections.unmodifiableMap(metrics);
+		}
+
+		void setDiscoveryBackoff(Duration initialBackoff, Duration maxBackoff) {
+			this.initialBackoff = initialBackoff;
+			this.maxBackoff = maxBackoff;
+		}
+
+		void setClock(Clock clock) {
+			this.clock = clock;
+		}
+
+		private static AuthenticationManager discover(String issuer) {
+			JwtDecoder jwtDecoder = JwtDecoders.fromIssuerLocation(issuer);
+			return new JwtAuthenticationProvider(jwtDecoder)::authenticate;
 		}
 
 	}
@@ -16,19 +16,27 @@
 
 package org.springframework.security.oauth2.server.resource.authentication;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
+import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTParser;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
-import org.springframework.core.convert.converter.Converter;
-import org.springframework.lang.NonNull;
+import org.springframework.core.log.LogMessage;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.ReactiveAuthenticationManagerResolver;
@@ -65,6 +73,8 @@ public final class JwtIssuerReactiveAuthenticationManagerResolver
 
 	private final ReactiveAuthenticationManager authenticationManager;
 
+	private final TrustedIssuerJwtAuthenticationManagerResolver trustedIssuerAuthenticationManagerResolver;
+
 	/**
 	 * Construct a {@link JwtIssuerReactiveAuthenticationManagerResolver} using the
 	 * provided parameters
@@ -81,8 +91,10 @@ public final class JwtIssuerReactiveAuthenticationManagerResolver
 	 */
 	public JwtIssuerReactiveAuthenticationManagerResolver(Collection<String> trustedIssuers) {
 		Assert.notEmpty(trustedIssuers, "trustedIssuers cannot be empty");
+		this.trustedIssuerAuthenticationManagerResolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				new ArrayList<>(trustedIssuers));
 		this.authenticationManager = new ResolvingAuthenticationManager(
-				new TrustedIssuerJwtAuthenticationManagerResolver(new ArrayList<>(trustedIssuers)::contains));
+				this.trustedIssuerAuthenticationManagerResolver);
 	}
 
 	/**
@@ -109,6 +121,7 @@ public final class JwtIssuerReactiveAuthenticationManagerResolver
 	public JwtIssuerReactiveAuthenticationManagerResolver(
 			ReactiveAuthenticationManagerResolver<String> issuerAuthenticationManagerResolver) {
 		Assert.notNull(issuerAuthenticationManagerResolver, "issuerAuthenticationManagerResolver cannot be null");
+		this.trustedIssuerAuthenticationManagerResolver = null;
 		this.authenticationManager = new ResolvingAuthenticationManager(issuerAuthenticationManagerResolver);
 	}
 
@@ -123,9 +136,58 @@ public final class JwtIssuerReactiveAuthenticationManagerResolver
 		return Mono.just(this.authenticationManager);
 	}
 
-	private static class ResolvingAuthenticationManager implements ReactiveAuthenticationManager {
+	/**
+	 * Discover the configuration of each trusted issuer, for example at startup, so that
+	 * the first request for an issuer does not wait on discovery. An issuer whose
+	 * discovery fails is backed off and retried as usual, so the returned {@link Mono}
+	 * completes empty either way.
+	 * @return a {@link Mono} that completes once every trusted issuer has been tried
+	 * @throws IllegalStateException if this resolver was not constructed with a list of
+	 * trusted issuers
+	 * @since 5.5
+	 */
+	public Mono<Void> warmUp() {
+		return trustedIssuerAuthenticationManagerResolver().warmUp();
+	}
 
-		private final Converter<BearerTokenAuthenticationToken, Mono<String>> issuerConverter = new JwtClaimIssuerConverter();
+	/**
+	 * Set how long to wait before discovering an issuer again after its discovery failed.
+	 * The wait starts at {@code initialBackoff}, doubles with each consecutive failure and
+	 * never exceeds {@code maxBackoff}. Until then, requests for the issuer fail without
+	 * contacting it. Defaults to 5 seconds and 5 minutes.
+	 * @param initialBackoff the wait after the first failure
+	 * @param maxBackoff the longest wait
+	 * @throws IllegalStateException if this resolver was not constructed with a list of
+	 * trusted issuers
+	 * @since 5.5
+	 */
+	public void setDiscoveryBackoff(Duration initialBackoff, Duration maxBackoff) {
+		Assert.notNull(initialBackoff, "initialBackoff cannot be null");
+		Assert.notNull(maxBackoff, "maxBackoff cannot be null");
+		Assert.isTrue(!initialBackoff.isNegative() && !initialBackoff.isZero(), "initialBackoff must be positive");
+		Assert.isTrue(maxBackoff.compareTo(initialBackoff) >= 0, "maxBackoff cannot be less than initialBackoff");
+		trustedIssuerAuthenticationManagerResolver().setDiscoveryBackoff(initialBackoff, maxBackoff);
+	}
+
+	/**
+	 * Return the discovery statistics of each trusted issuer that has been requested so
+	 * far
+	 * @return the statistics, keyed by issuer
+	 * @throws IllegalStateException if this resolver was not constructed with a list of
+	 * trusted issuers
+	 * @since 5.5
+	 */
+	public Map<String, IssuerDiscoveryMetrics> getDiscoveryMetrics() {
+		return trustedIssuerAuthenticationManagerResolver().getDiscoveryMetrics();
+	}
+
+	private TrustedIssuerJwtAuthenticationManagerResolver trustedIssuerAuthenticationManagerResolver() {
+		Assert.state(this.trustedIssuerAuthenticationManagerResolver != null,
+				"Issuer discovery is only managed when constructed with a list of trusted issuers");
+		return this.trustedIssuerAuthenticationManagerResolver;
+	}
+
+	private static class ResolvingAuthenticationManager implements ReactiveAuthenticationManager {
 
 		private final ReactiveAuthenticationManagerResolver<String> issuerAuthenticationManagerResolver;
 
@@ -140,20 +202,30 @@ public final class JwtIssuerReactiveAuthenticationManagerResolver
 			Assert.isTrue(authentication instanceof BearerTokenAuthenticationToken,
 					"Authentication must be of type BearerTokenAuthenticationToken");
 			BearerTokenAuthenticationToken token = (BearerTokenAuthenticationToken) authentication;
-			return this.issuerConverter.convert(token)
+			return parse(token).flatMap((parsedJwt) -> authenticate(token, parsedJwt));
+		}
+
+		private Mono<Authentication> authenticate(BearerTokenAuthenticationToken token, JWT parsedJwt) {
+			// hand the parsed token on so that it is not parsed again by the decoder
+			Authentication parsed = new ParsedBearerTokenAuthenticationToken(token, parsedJwt);
+			return getIssuer(parsedJwt)
 					.flatMap((issuer) -> this.issuerAuthenticationManagerResolver.resolve(issuer).switchIfEmpty(
 							Mono.error(() -> new InvalidBearerTokenException("Invalid issuer " + issuer))))
-					.flatMap((manager) -> manager.authenticate(authentication));
+					.flatMap((manager) -> manager.authenticate(parsed));
 		}
 
-	}
-
-	private static class JwtClaimIssuerConverter implements Converter<BearerTokenAuthenticationToken, Mono<String>> {
+		private Mono<JWT> parse(BearerTokenAuthenticationToken token) {
+			try {
+				return Mono.just(JWTParser.parse(token.getToken()));
+			}
+			catch (Exception ex) {
+				return Mono.error(() -> new InvalidBearerTokenException(ex.getMessage(), ex));
+			}
+		}
 
-		@Override
-		public Mono<String> convert(@NonNull BearerTokenAuthenticationToken token) {
+		private Mono<String> getIssuer(JWT parsedJwt) {
 			try {
-				String issuer = JWTParser.parse(token.getToken()).getJWTClaimsSet().getIssuer();
+				String issuer = parsedJwt.getJWTClaimsSet().getIssuer();
 				if (issuer == null) {
 					throw new InvalidBearerTokenException("Missing issuer");
 				}
@@ -169,12 +241,39 @@ public final class JwtIssuerReactiveAuthenticationManagerResolver
 	static class TrustedIssuerJwtAuthenticationManagerResolver
 			implements ReactiveAuthenticationManagerResolver<String> {
 
-		private final Map<String, Mono<ReactiveAuthenticationManager>> authenticationManagers = new ConcurrentHashMap<>();
+		static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(5);
+
+		static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(5);
+
+		private final Log logger = LogFactory.getLog(getClass());
+
+		private final Map<String, DiscoveryEntry> authenticationManagers = new ConcurrentHashMap<>();
 
 		private final Predicate<String> trustedIssuer;
 
+		private final Collection<String> trustedIssuers;
+
+		private final Function<String, ReactiveAuthenticationManager> discovery;
+
+		private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+
+		private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+
+		private Clock clock = Clock.systemUTC();
+
 		TrustedIssuerJwtAuthenticationManagerResolver(Predicate<String> trustedIssuer) {
+			this(trustedIssuer, Collections.emptyList(), TrustedIssuerJwtAuthenticationManagerResolver::discover);
+		}
+
+		TrustedIssuerJwtAuthenticationManagerResolver(Collection<String> trustedIssuers) {
+			this(trustedIssuers::contains, trustedIssuers, TrustedIssuerJwtAuthenticationManagerResolver::discover);
+		}
+
+		TrustedIssuerJwtAuthenticationManagerResolver(Predicate<String> trustedIssuer,
+				Collection<String> trustedIssuers, Function<String, ReactiveAuthenticationManager> discovery) {
 			this.trustedIssuer = trustedIssuer;
+			this.trustedIssuers = trustedIssuers;
+			this.discovery = discovery;
 		}
 
 		@Override
@@ -182,13 +281,92 @@ public final class JwtIssuerReactiveAuthenticationManagerResolver
 			if (!this.trustedIssuer.test(issuer)) {
 				return Mono.empty();
 			}
-			// @formatter:off
-			return this.authenticationManagers.computeIfAbsent(issuer,
-					(k) -> Mono.<ReactiveAuthenticationManager>fromCallable(() -> new JwtReactiveAuthenticationManager(ReactiveJwtDecoders.fromIssuerLocation(k)))
+			return Mono.defer(() -> resolve(this.authenticationManagers.computeIfAbsent(issuer, DiscoveryEntry::new)));
+		}
+
+		private Mono<ReactiveAuthenticationManager> resolve(DiscoveryEntry entry) {
+			ReactiveAuthenticationManager authenticationManager = entry.getValue();
+			if (authenticationManager != null) {
+				return Mono.just(authenticationManager);
+			}
+			synchronized (entry) {
+				authenticationManager = entry.getValue();
+				if (authenticationManager != null) {
+					return Mono.just(authenticationManager);
+				}
+				if (entry.discovery == null) {
+					IllegalStateException backoff = entry.backoff(this.clock.instant());
+					if (backoff != null) {
+						return Mono.error(backoff);
+					}
+					// every caller for the issuer shares this discovery until it completes
+					// @formatter:off
+					entry.discovery = Mono.fromCallable(() -> discover(entry))
 							.subscribeOn(Schedulers.boundedElastic())
-							.cache()
-			);
-			// @formatter:on
+							.cache();
+					// @formatter:on
+				}
+				return entry.discovery;
+			}
+		}
+
+		private ReactiveAuthenticationManager discover(DiscoveryEntry entry) {
+			long start = System.nanoTime();
+			try {
+				ReactiveAuthenticationManager authenticationManager = this.discovery.apply(entry.getIssuer());
+				synchronized (entry) {
+					entry.succeeded(authenticationManager, System.nanoTime() - start);
+					entry.discovery = null;
+				}
+				this.logger.debug(LogMessage.format("Discovered issuer '%s' in %s", entry.getIssuer(),
+						entry.getMetrics().getLastLatency()));
+				return authenticationManager;
+			}
+			catch (RuntimeException ex) {
+				synchronized (entry) {
+					entry.failed(ex, System.nanoTime() - start, this.clock.instant(), this.initialBackoff,
+							this.maxBackoff);
+					entry.discovery = null;
+				}
+				throw ex;
+			}
+		}
+
+		Mono<Void> warmUp() {
+			return Flux.fromIterable(this.trustedIssuers)
+					.flatMap((issuer) -> resolve(issuer).onErrorResume((ex) -> {
+						this.logger.debug(LogMessage.format("Failed to warm up issuer '%s'", issuer), ex);
+						return Mono.empty();
+					})).then();
+		}
+
+		Map<String, IssuerDiscoveryMetrics> getDiscoveryMetrics() {
+			Map<String, IssuerDiscoveryMetrics> metrics = new LinkedHashMap<>();
+			this.authenticationManagers.forEach((issuer, entry) -> metrics.put(issuer, entry.getMetrics()));
+			return Collections.unmodifiableMap(metrics);
+		}
+
+		void setDiscoveryBackoff(Duration initialBackoff, Duration maxBackoff) {
+			this.initialBackoff = initialBackoff;
+			this.maxBackoff = maxBackoff;
+		}
+
+		void setClock(Clock clock) {
+			this.clock = clock;
+		}
+
+		private static ReactiveAuthenticationManager discover(String issuer) {
+			return new JwtReactiveAuthenticationManager(ReactiveJwtDecoders.fromIssuerLocation(issuer));
+		}
+
+		private static final class DiscoveryEntry extends IssuerDiscoveryEntry<ReactiveAuthenticationManager> {
+
+			private Mono<ReactiveAuthenticationManager> discovery;
+
+			DiscoveryEntry(String issuer) {
+				super(issuer);
+			}
+
 		}
 
 	}
@@ -16,6 +16,7 @@
 
 package org.springframework.security.oauth2.server.resource.authentication;
 
+import com.nimbusds.jwt.JWT;
 import reactor.core.publisher.Mono;
 
 import org.springframework.core.convert.converter.Converter;
@@ -27,6 +28,7 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
 import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
@@ -56,8 +58,7 @@ public final class JwtReactiveAuthenticationManager implements ReactiveAuthentic
 		return Mono.justOrEmpty(authentication)
 				.filter((a) -> a instanceof BearerTokenAuthenticationToken)
 				.cast(BearerTokenAuthenticationToken.class)
-				.map(BearerTokenAuthenticationToken::getToken)
-				.flatMap(this.jwtDecoder::decode)
+				.flatMap(this::decode)
 				.flatMap(this.jwtAuthenticationConverter::convert)
 				.cast(Authentication.class)
 				.onErrorMap(JwtException.class, this::onError);
@@ -75,6 +76,17 @@ public final class JwtReactiveAuthenticationManager implements ReactiveAuthentic
 		this.jwtAuthenticationConverter = jwtAuthenticationConverter;
 	}
 
+	private Mono<Jwt> decode(BearerTokenAuthenticationToken bearer) {
+		if (bearer instanceof ParsedBearerTokenAuthenticationToken
+				&& this.jwtDecoder instanceof NimbusReactiveJwtDecoder) {
+			JWT parsedJwt = ((ParsedBearerTokenAuthenticationToken) bearer).getParsedJwt();
+			if (parsedJwt != null) {
+				return ((NimbusReactiveJwtDecoder) this.jwtDecoder).decode(parsedJwt);
+			}
+		}
+		return this.jwtDecoder.decode(bearer.getToken());
+	}
+
 	private AuthenticationException onError(JwtException ex) {
 		if (ex instanceof BadJwtException) {
 			return new InvalidBearerTokenException(ex.getMessage(), ex);
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.oauth2.server.resource.authentication;
+
+import com.nimbusds.jwt.JWT;
+
+import org.springframework.security.core.SpringSecurityCoreVersion;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+
+/**
+ * A {@link BearerTokenAuthenticationToken} whose token was already parsed as a
+ * {@link JWT}, so that {@link JwtAuthenticationProvider} and
+ * {@link JwtReactiveAuthenticationManager} can hand the parsed token to a Nimbus decoder
+ * instead of parsing it again.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see JwtIssuerAuthenticationManagerResolver
+ * @see JwtIssuerReactiveAuthenticationManagerResolver
+ */
+final class ParsedBearerTokenAuthenticationToken extends BearerTokenAuthenticationToken {
+
+	private static final long serialVersionUID = SpringSecurityCoreVersion.SERIAL_VERSION_UID;
+
+	private final transient JWT parsedJwt;
+
+	ParsedBearerTokenAuthenticationToken(BearerTokenAuthenticationToken token, JWT parsedJwt) {
+		super(token.getToken());
+		setDetails(token.getDetails());
+		this.parsedJwt = parsedJwt;
+	}
+
+	/**
+	 * @return the parsed token, or {@code null} after deserialization
+	 */
+	JWT getParsedJwt() {
+		return this.parsedJwt;
+	}
+
+}
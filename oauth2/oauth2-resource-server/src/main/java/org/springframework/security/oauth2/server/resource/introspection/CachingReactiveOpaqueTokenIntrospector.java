@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.server.resource.introspection;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.TokenDigestCache.Digest;
+import org.springframework.security.oauth2.server.resource.introspection.IntrospectionResultCache.Entry;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ReactiveOpaqueTokenIntrospector} that caches the results of another
+ * {@link ReactiveOpaqueTokenIntrospector}, so that a token is not introspected on every
+ * request.
+ * <p>
+ * An active token is cached until its {@code exp} attribute, but never for longer than
+ * the {@link #setMaxTimeToLive(Duration) maximum time to live}. An inactive token, that
+ * is one for which the delegate emits {@link BadOpaqueTokenException}, is cached for the
+ * {@link #setInactiveTimeToLive(Duration) inactive time to live}. Other failures, such as
+ * the introspection endpoint being unavailable, are not cached.
+ * <p>
+ * Concurrent requests for a token that is not cached share a single introspection.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see CachingOpaqueTokenIntrospector
+ */
+public final class CachingReactiveOpaqueTokenIntrospector implements ReactiveOpaqueTokenIntrospector {
+
+	private final IntrospectionResultCache cache = new IntrospectionResultCache();
+
+	private final ConcurrentMap<Digest, Mono<OAuth2AuthenticatedPrincipal>> introspections = new ConcurrentHashMap<>();
+
+	private final LongAdder coalescedCount = new LongAdder();
+
+	private final ReactiveOpaqueTokenIntrospector delegate;
+
+	/**
+	 * Constructs a {@code CachingReactiveOpaqueTokenIntrospector} using the provided
+	 * parameters.
+	 * @param delegate the {@link ReactiveOpaqueTokenIntrospector} whose results to cache
+	 */
+	public CachingReactiveOpaqueTokenIntrospector(ReactiveOpaqueTokenIntrospector delegate) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Mono<OAuth2AuthenticatedPrincipal> introspect(String token) {
+		return Mono.defer(() -> {
+			Digest digest = Digest.of(token);
+			Entry cached = this.cache.get(digest);
+			if (cached != null) {
+				return cached.isActive() ? Mono.just(cached.getPrincipal())
+						: Mono.error(() -> new BadOpaqueTokenException("Provided token isn't active"));
+			}
+			Mono<OAuth2AuthenticatedPrincipal> inFlight = this.introspections.get(digest);
+			if (inFlight != null) {
+				this.coalescedCount.increment();
+				return inFlight;
+			}
+			return this.introspections.computeIfAbsent(digest, (key) -> introspect(token, key));
+		});
+	}
+
+	private Mono<OAuth2AuthenticatedPrincipal> introspect(String token, Digest digest) {
+		AtomicReference<Mono<OAuth2AuthenticatedPrincipal>> self = new AtomicReference<>();
+		// @formatter:off
+		Mono<OAuth2AuthenticatedPrincipal> introspection = Mono.defer(() -> this.delegate.introspect(token))
+				.doOnNext((principal) -> this.cache.putActive(digest, principal))
+				.doOnError(BadOpaqueTokenException.class, (ex) -> this.cache.putInactive(digest))
+				.doFinally((signal) -> this.introspections.remove(digest, self.get()))
+				.cache();
+		// @formatter:on
+		self.set(introspection);
+		return introspection;
+	}
+
+	/**
+	 * Sets the longest time an active token is cached. Defaults to 5 minutes.
+	 * @param maxTimeToLive the maximum time to live
+	 */
+	public void setMaxTimeToLive(Duration maxTimeToLive) {
+		this.cache.setMaxTimeToLive(maxTimeToLive);
+	}
+
+	/**
+	 * Sets how long an inactive token is cached. Defaults to 10 seconds.
+	 * @param inactiveTimeToLive the inactive time to live, {@link Duration#ZERO} to not
+	 * cache inactive tokens
+	 */
+	public void setInactiveTimeToLive(Duration inactiveTimeToLive) {
+		this.cache.setInactiveTimeToLive(inactiveTimeToLive);
+	}
+
+	/**
+	 * Sets the maximum number of cached tokens. The oldest entries are evicted first.
+	 * Defaults to 10,000.
+	 * @param maximumSize the maximum size
+	 */
+	public void setMaximumSize(int maximumSize) {
+		this.cache.setMaximumSize(maximumSize);
+	}
+
+	/**
+	 * Sets the {@link Clock} used to expire cached tokens.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		this.cache.setClock(clock);
+	}
+
+	/**
+	 * @return the number of cached tokens, including ones that expired but were not yet
+	 * requested again
+	 */
+	public int getSize() {
+		return this.cache.size();
+	}
+
+	/**
+	 * @return the number of introspections answered from the cache
+	 */
+	public long getHitCount() {
+		return this.cache.getHitCount();
+	}
+
+	/**
+	 * @return the number of introspections not answered from the cache
+	 */
+	public long getMissCount() {
+		return this.cache.getMissCount();
+	}
+
+	/**
+	 * @return the ratio of introspections answered from the cache, between 0 and 1
+	 */
+	public double getHitRate() {
+		return this.cache.getHitRate();
+	}
+
+	/**
+	 * @return the number of introspections that joined the same token's introspection
+	 * instead of calling the delegate
+	 */
+	public long getCoalescedCount() {
+		return this.coalescedCount.sum();
+	}
+
+}
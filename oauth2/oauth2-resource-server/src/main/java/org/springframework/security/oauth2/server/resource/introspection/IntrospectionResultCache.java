@@ -0,0 +1,167 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.server.resource.introspection;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.TokenDigestCache;
+import org.springframework.security.oauth2.core.TokenDigestCache.Digest;
+import org.springframework.util.Assert;
+
+/**
+ * A bounded cache of introspection results, keyed by a SHA-256 digest of the token.
+ * <p>
+ * An active result expires at the earlier of the token's {@code exp} attribute and the
+ * maximum time to live. An inactive result expires after the inactive time to live.
+ * Entries are evicted in insertion order once the maximum size is reached.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see CachingOpaqueTokenIntrospector
+ * @see CachingReactiveOpaqueTokenIntrospector
+ * @see TokenDigestCache
+ */
+final class IntrospectionResultCache {
+
+	static final Duration DEFAULT_MAX_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+	static final Duration DEFAULT_INACTIVE_TIME_TO_LIVE = Duration.ofSeconds(10);
+
+	static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private static final Entry INACTIVE = new Entry(null);
+
+	private final TokenDigestCache<Entry> entries = new TokenDigestCache<>(DEFAULT_MAXIMUM_SIZE);
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private volatile Duration maxTimeToLive = DEFAULT_MAX_TIME_TO_LIVE;
+
+	private volatile Duration inactiveTimeToLive = DEFAULT_INACTIVE_TIME_TO_LIVE;
+
+	private volatile Clock clock = Clock.systemUTC();
+
+	/**
+	 * @param digest the token's digest
+	 * @return the cached result, or {@code null} if there is none or it has expired
+	 */
+	Entry get(Digest digest) {
+		Entry entry = this.entries.get(digest);
+		if (entry == null) {
+			this.missCount.increment();
+			return null;
+		}
+		this.hitCount.increment();
+		return entry;
+	}
+
+	void putActive(Digest digest, OAuth2AuthenticatedPrincipal principal) {
+		if (principal == null) {
+			return;
+		}
+		Instant now = this.clock.instant();
+		Instant expiresAt = now.plus(this.maxTimeToLive);
+		Object exp = principal.getAttribute(OAuth2IntrospectionClaimNames.EXPIRES_AT);
+		if (exp instanceof Instant && ((Instant) exp).isBefore(expiresAt)) {
+			expiresAt = (Instant) exp;
+		}
+		if (expiresAt.isAfter(now)) {
+			this.entries.put(digest, new Entry(principal), expiresAt);
+		}
+	}
+
+	void putInactive(Digest digest) {
+		Instant now = this.clock.instant();
+		Instant expiresAt = now.plus(this.inactiveTimeToLive);
+		if (expiresAt.isAfter(now)) {
+			this.entries.put(digest, INACTIVE, expiresAt);
+		}
+	}
+
+	int size() {
+		return this.entries.size();
+	}
+
+	long getHitCount() {
+		return this.hitCount.sum();
+	}
+
+	long getMissCount() {
+		return this.missCount.sum();
+	}
+
+	double getHitRate() {
+		long hits = this.hitCount.sum();
+		long requests = hits + this.missCount.sum();
+		return (requests != 0) ? (double) hits / requests : 0;
+	}
+
+	void setMaxTimeToLive(Duration maxTimeToLive) {
+		Assert.notNull(maxTimeToLive, "maxTimeToLive cannot be null");
+		Assert.isTrue(!maxTimeToLive.isNegative() && !maxTimeToLive.isZero(), "maxTimeToLive must be positive");
+		this.maxTimeToLive = maxTimeToLive;
+	}
+
+	/**
+	 * @param inactiveTimeToLive how long to remember that a token is inactive, zero to not
+	 * remember it at all
+	 */
+	void setInactiveTimeToLive(Duration inactiveTimeToLive) {
+		Assert.notNull(inactiveTimeToLive, "inactiveTimeToLive cannot be null");
+		Assert.isTrue(!inactiveTimeToLive.isNegative(), "inactiveTimeToLive cannot be negative");
+		this.inactiveTimeToLive = inactiveTimeToLive;
+	}
+
+	void setMaximumSize(int maximumSize) {
+		this.entries.setMaximumSize(maximumSize);
+	}
+
+	void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+		this.entries.setClock(clock);
+	}
+
+	static final class Entry {
+
+		private final OAuth2AuthenticatedPrincipal principal;
+
+		private Entry(OAuth2AuthenticatedPrincipal principal) {
+			this.principal = principal;
+		}
+
+		boolean isActive() {
+			return this.principal != null;
+		}
+
+		/**
+		 * @return the introspected principal, or {@code null} if the token is inactive
+		 */
+		OAuth2AuthenticatedPrincipal getPrincipal() {
+			return this.principal;
+		}
+
+	}
+
+}
@@ -18,6 +18,8 @@ package org.springframework.security.oauth2.server.resource.authentication;
 
 import java.util.function.Predicate;
 
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -122,6 +124,16 @@ public class JwtAuthenticationProviderTests {
 		// @formatter:on
 	}
 
+	@Test
+	public void authenticateWhenParsedTokenAndCustomDecoderThenDecodesTokenValue() {
+		BearerTokenAuthenticationToken token = new ParsedBearerTokenAuthenticationToken(this.authentication(),
+				new PlainJWT(new JWTClaimsSet.Builder().build()));
+		Jwt jwt = TestJwts.jwt().build();
+		given(this.jwtDecoder.decode("token")).willReturn(jwt);
+		given(this.jwtAuthenticationConverter.convert(jwt)).willReturn(new JwtAuthenticationToken(jwt));
+		assertThat(this.provider.authenticate(token)).isInstanceOf(JwtAuthenticationToken.class);
+	}
+
 	@Test
 	public void supportsWhenBearerTokenAuthenticationTokenThenReturnsTrue() {
 		assertThat(this.provider.supports(BearerTokenAuthenticationToken.class)).isTrue();
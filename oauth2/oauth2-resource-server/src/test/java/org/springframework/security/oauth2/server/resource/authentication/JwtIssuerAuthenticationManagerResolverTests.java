@@ -16,22 +16,35 @@
 
 package org.springframework.security.oauth2.server.resource.authentication;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSObject;
 import com.nimbusds.jose.Payload;
 import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.PlainJWT;
 import net.minidev.json.JSONObject;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationManagerResolver;
@@ -45,6 +58,8 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtIss
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.mock;
 import static org.mockito.BDDMockito.verify;
 
@@ -112,6 +127,105 @@ public class JwtIssuerAuthenticationManagerResolverTests {
 		}
 	}
 
+	@Test
+	public void resolveWhenDiscoveryFailsThenBacksOffBeforeRetrying() {
+		AtomicInteger discoveries = new AtomicInteger();
+		TrustedIssuerJwtAuthenticationManagerResolver resolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				"trusted"::equals, Collections.singleton("trusted"), (issuer) -> {
+					discoveries.incrementAndGet();
+					throw new IllegalArgumentException("Unable to resolve the Configuration");
+				});
+		Clock clock = mock(Clock.class);
+		Instant now = Instant.now();
+		given(clock.instant()).willReturn(now);
+		resolver.setClock(clock);
+		resolver.setDiscoveryBackoff(Duration.ofSeconds(5), Duration.ofSeconds(8));
+		assertThatIllegalArgumentException().isThrownBy(() -> resolver.resolve("trusted"));
+		assertThatIllegalStateException().isThrownBy(() -> resolver.resolve("trusted"))
+				.withCauseInstanceOf(IllegalArgumentException.class);
+		assertThat(discoveries).hasValue(1);
+		given(clock.instant()).willReturn(now.plusSeconds(5));
+		assertThatIllegalArgumentException().isThrownBy(() -> resolver.resolve("trusted"));
+		assertThat(discoveries).hasValue(2);
+		// the second failure doubles the backoff up to its maximum
+		given(clock.instant()).willReturn(now.plusSeconds(12));
+		assertThatIllegalStateException().isThrownBy(() -> resolver.resolve("trusted"));
+		given(clock.instant()).willReturn(now.plusSeconds(13));
+		assertThatIllegalArgumentException().isThrownBy(() -> resolver.resolve("trusted"));
+		assertThat(discoveries).hasValue(3);
+		IssuerDiscoveryMetrics metrics = resolver.getDiscoveryMetrics().get("trusted");
+		assertThat(metrics.getDiscoveryCount()).isEqualTo(3);
+		assertThat(metrics.getFailureCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void resolveWhenDiscoveryInProgressThenOtherIssuersResolveAndSameIssuerWaits() throws Exception {
+		AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+		CountDownLatch discovering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger slowDiscoveries = new AtomicInteger();
+		TrustedIssuerJwtAuthenticationManagerResolver resolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				(issuer) -> true, Collections.emptyList(), (issuer) -> {
+					if (issuer.equals("slow")) {
+						slowDiscoveries.incrementAndGet();
+						discovering.countDown();
+						await(release);
+					}
+					return authenticationManager;
+				});
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<AuthenticationManager> first = executor.submit(() -> resolver.resolve("slow"));
+			assertThat(discovering.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<AuthenticationManager> second = executor.submit(() -> resolver.resolve("slow"));
+			assertThat(resolver.resolve("fast")).isSameAs(authenticationManager);
+			release.countDown();
+			assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(authenticationManager);
+			assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(authenticationManager);
+			assertThat(slowDiscoveries).hasValue(1);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void warmUpWhenTrustedIssuersThenDiscoversEachOnce() {
+		AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+		AtomicInteger discoveries = new AtomicInteger();
+		List<String> issuers = Arrays.asList("one", "two", "failing");
+		TrustedIssuerJwtAuthenticationManagerResolver resolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				issuers::contains, issuers, (issuer) -> {
+					discoveries.incrementAndGet();
+					if (issuer.equals("failing")) {
+						throw new IllegalArgumentException("Unable to resolve the Configuration");
+					}
+					return authenticationManager;
+				});
+		resolver.warmUp();
+		assertThat(discoveries).hasValue(3);
+		assertThat(resolver.resolve("one")).isSameAs(authenticationManager);
+		assertThat(resolver.resolve("two")).isSameAs(authenticationManager);
+		assertThat(discoveries).hasValue(3);
+		assertThat(resolver.getDiscoveryMetrics()).containsOnlyKeys("one", "two", "failing");
+		assertThat(resolver.getDiscoveryMetrics().get("failing").getFailureCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void warmUpWhenCustomAuthenticationManagerResolverThenException() {
+		JwtIssuerAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerAuthenticationManagerResolver(
+				(issuer) -> null);
+		assertThatIllegalStateException().isThrownBy(authenticationManagerResolver::warmUp);
+	}
+
+	@Test
+	public void setDiscoveryBackoffWhenMaxLessThanInitialThenException() {
+		JwtIssuerAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerAuthenticationManagerResolver(
+				"trusted");
+		assertThatIllegalArgumentException().isThrownBy(() -> authenticationManagerResolver
+				.setDiscoveryBackoff(Duration.ofSeconds(10), Duration.ofSeconds(5)));
+	}
+
 	@Test
 	public void resolveWhenUsingUntrustedIssuerThenException() {
 		JwtIssuerAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerAuthenticationManagerResolver(
@@ -134,6 +248,19 @@ public class JwtIssuerAuthenticationManagerResolverTests {
 		verify(authenticationManager).authenticate(token);
 	}
 
+	@Test
+	public void resolveWhenUsingCustomIssuerAuthenticationManagerResolverThenPassesParsedToken() {
+		AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+		JwtIssuerAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerAuthenticationManagerResolver(
+				(issuer) -> authenticationManager);
+		authenticationManagerResolver.resolve(null).authenticate(withBearerToken(this.jwt));
+		ArgumentCaptor<Authentication> captor = ArgumentCaptor.forClass(Authentication.class);
+		verify(authenticationManager).authenticate(captor.capture());
+		assertThat(captor.getValue()).isInstanceOf(ParsedBearerTokenAuthenticationToken.class);
+		JWT parsedJwt = ((ParsedBearerTokenAuthenticationToken) captor.getValue()).getParsedJwt();
+		assertThat(parsedJwt.getParsedString()).isEqualTo(this.jwt);
+	}
+
 	@Test
 	public void resolveWhenUsingExternalSourceThenRespondsToChanges() {
 		Authentication token = withBearerToken(this.jwt);
@@ -209,6 +336,15 @@ public class JwtIssuerAuthenticationManagerResolverTests {
 				.isThrownBy(() -> new JwtIssuerAuthenticationManagerResolver((AuthenticationManagerResolver) null));
 	}
 
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	private Authentication withBearerToken(String token) {
 		return new BearerTokenAuthenticationToken(token);
 	}
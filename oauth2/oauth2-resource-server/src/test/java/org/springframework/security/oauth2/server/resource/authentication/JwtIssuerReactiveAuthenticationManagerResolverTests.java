@@ -16,22 +16,33 @@
 
 package org.springframework.security.oauth2.server.resource.authentication;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSObject;
 import com.nimbusds.jose.Payload;
 import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.PlainJWT;
 import net.minidev.json.JSONObject;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import reactor.core.publisher.Mono;
 
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
@@ -46,6 +57,7 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtIss
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 import static org.mockito.BDDMockito.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.mock;
@@ -111,6 +123,99 @@ public class JwtIssuerReactiveAuthenticationManagerResolverTests {
 		}
 	}
 
+	@Test
+	public void resolveWhenDiscoveryFailsThenBacksOffBeforeRetrying() {
+		AtomicInteger discoveries = new AtomicInteger();
+		TrustedIssuerJwtAuthenticationManagerResolver resolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				"trusted"::equals, Collections.singleton("trusted"), (issuer) -> {
+					discoveries.incrementAndGet();
+					throw new IllegalArgumentException("Unable to resolve the Configuration");
+				});
+		Clock clock = mock(Clock.class);
+		Instant now = Instant.now();
+		given(clock.instant()).willReturn(now);
+		resolver.setClock(clock);
+		resolver.setDiscoveryBackoff(Duration.ofSeconds(5), Duration.ofSeconds(8));
+		assertThatIllegalArgumentException().isThrownBy(() -> resolver.resolve("trusted").block());
+		assertThatIllegalStateException().isThrownBy(() -> resolver.resolve("trusted").block())
+				.withCauseInstanceOf(IllegalArgumentException.class);
+		assertThat(discoveries).hasValue(1);
+		given(clock.instant()).willReturn(now.plusSeconds(5));
+		assertThatIllegalArgumentException().isThrownBy(() -> resolver.resolve("trusted").block());
+		assertThat(discoveries).hasValue(2);
+		// the second failure doubles the backoff up to its maximum
+		given(clock.instant()).willReturn(now.plusSeconds(12));
+		assertThatIllegalStateException().isThrownBy(() -> resolver.resolve("trusted").block());
+		given(clock.instant()).willReturn(now.plusSeconds(13));
+		assertThatIllegalArgumentException().isThrownBy(() -> resolver.resolve("trusted").block());
+		assertThat(discoveries).hasValue(3);
+		IssuerDiscoveryMetrics metrics = resolver.getDiscoveryMetrics().get("trusted");
+		assertThat(metrics.getDiscoveryCount()).isEqualTo(3);
+		assertThat(metrics.getFailureCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void resolveWhenDiscoveryInProgressThenOtherIssuersResolveAndSameIssuerShares() throws Exception {
+		ReactiveAuthenticationManager authenticationManager = mock(ReactiveAuthenticationManager.class);
+		CountDownLatch discovering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger slowDiscoveries = new AtomicInteger();
+		TrustedIssuerJwtAuthenticationManagerResolver resolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				(issuer) -> true, Collections.emptyList(), (issuer) -> {
+					if (issuer.equals("slow")) {
+						slowDiscoveries.incrementAndGet();
+						discovering.countDown();
+						await(release);
+					}
+					return authenticationManager;
+				});
+		CompletableFuture<ReactiveAuthenticationManager> first = resolver.resolve("slow").toFuture();
+		assertThat(discovering.await(5, TimeUnit.SECONDS)).isTrue();
+		CompletableFuture<ReactiveAuthenticationManager> second = resolver.resolve("slow").toFuture();
+		assertThat(resolver.resolve("fast").block()).isSameAs(authenticationManager);
+		release.countDown();
+		assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(authenticationManager);
+		assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(authenticationManager);
+		assertThat(slowDiscoveries).hasValue(1);
+	}
+
+	@Test
+	public void warmUpWhenTrustedIssuersThenDiscoversEachOnce() {
+		ReactiveAuthenticationManager authenticationManager = mock(ReactiveAuthenticationManager.class);
+		AtomicInteger discoveries = new AtomicInteger();
+		List<String> issuers = Arrays.asList("one", "two", "failing");
+		TrustedIssuerJwtAuthenticationManagerResolver resolver = new TrustedIssuerJwtAuthenticationManagerResolver(
+				issuers::contains, issuers, (issuer) -> {
+					discoveries.incrementAndGet();
+					if (issuer.equals("failing")) {
+						throw new IllegalArgumentException("Unable to resolve the Configuration");
+					}
+					return authenticationManager;
+				});
+		resolver.warmUp().block();
+		assertThat(discoveries).hasValue(3);
+		assertThat(resolver.resolve("one").block()).isSameAs(authenticationManager);
+		assertThat(resolver.resolve("two").block()).isSameAs(authenticationManager);
+		assertThat(discoveries).hasValue(3);
+		assertThat(resolver.getDiscoveryMetrics()).containsOnlyKeys("one", "two", "failing");
+		assertThat(resolver.getDiscoveryMetrics().get("failing").getFailureCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void warmUpWhenCustomAuthenticationManagerResolverThenException() {
+		JwtIssuerReactiveAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerReactiveAuthenticationManagerResolver(
+				(issuer) -> Mono.empty());
+		assertThatIllegalStateException().isThrownBy(authenticationManagerResolver::warmUp);
+	}
+
+	@Test
+	public void setDiscoveryBackoffWhenMaxLessThanInitialThenException() {
+		JwtIssuerReactiveAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerReactiveAuthenticationManagerResolver(
+				"trusted");
+		assertThatIllegalArgumentException().isThrownBy(() -> authenticationManagerResolver
+				.setDiscoveryBackoff(Duration.ofSeconds(10), Duration.ofSeconds(5)));
+	}
+
 	@Test
 	public void resolveWhenUsingUntrustedIssuerThenException() {
 		JwtIssuerReactiveAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerReactiveAuthenticationManagerResolver(
@@ -136,6 +241,21 @@ public class JwtIssuerReactiveAuthenticationManagerResolverTests {
 		verify(authenticationManager).authenticate(any());
 	}
 
+	@Test
+	public void resolveWhenUsingCustomIssuerAuthenticationManagerResolverThenPassesParsedToken() {
+		ReactiveAuthenticationManager authenticationManager = mock(ReactiveAuthenticationManager.class);
+		given(authenticationManager.authenticate(any())).willReturn(Mono.empty());
+		JwtIssuerReactiveAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerReactiveAuthenticationManagerResolver(
+				(issuer) -> Mono.just(authenticationManager));
+		authenticationManagerResolver.resolve(null)
+				.flatMap((manager) -> manager.authenticate(withBearerToken(this.jwt))).block();
+		ArgumentCaptor<Authentication> captor = ArgumentCaptor.forClass(Authentication.class);
+		verify(authenticationManager).authenticate(captor.capture());
+		assertThat(captor.getValue()).isInstanceOf(ParsedBearerTokenAuthenticationToken.class);
+		JWT parsedJwt = ((ParsedBearerTokenAuthenticationToken) captor.getValue()).getParsedJwt();
+		assertThat(parsedJwt.getParsedString()).isEqualTo(this.jwt);
+	}
+
 	@Test
 	public void resolveWhenUsingExternalSourceThenRespondsToChanges() {
 		Authentication token = withBearerToken(this.jwt);
@@ -219,6 +339,15 @@ public class JwtIssuerReactiveAuthenticationManagerResolverTests {
 		return jwt.serialize();
 	}
 
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	private BearerTokenAuthenticationToken withBearerToken(String token) {
 		return new BearerTokenAuthenticationToken(token);
 	}
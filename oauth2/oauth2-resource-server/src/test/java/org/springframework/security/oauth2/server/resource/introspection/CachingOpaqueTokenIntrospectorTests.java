@@ -0,0 +1,205 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.server.resource.introspection;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.TestOAuth2AuthenticatedPrincipals;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link CachingOpaqueTokenIntrospector}.
+ *
+ * @author Ben Siegler
+ */
+public class CachingOpaqueTokenIntrospectorTests {
+
+	private final Instant now = Instant.now();
+
+	private OpaqueTokenIntrospector delegate;
+
+	private Clock clock;
+
+	private CachingOpaqueTokenIntrospector introspector;
+
+	@Before
+	public void setup() {
+		this.delegate = mock(OpaqueTokenIntrospector.class);
+		this.clock = mock(Clock.class);
+		given(this.clock.instant()).willReturn(this.now);
+		this.introspector = new CachingOpaqueTokenIntrospector(this.delegate);
+		this.introspector.setClock(this.clock);
+	}
+
+	@Test
+	public void constructorWhenDelegateIsNullThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new CachingOpaqueTokenIntrospector(null))
+				.withMessage("delegate cannot be null");
+	}
+
+	@Test
+	public void introspectWhenActiveThenCachedUntilExpiresAt() {
+		OAuth2AuthenticatedPrincipal principal = TestOAuth2AuthenticatedPrincipals.active(
+				(attributes) -> attributes.put(OAuth2IntrospectionClaimNames.EXPIRES_AT, this.now.plusSeconds(60)));
+		given(this.delegate.introspect("token")).willReturn(principal);
+		assertThat(this.introspector.introspect("token")).isSameAs(principal);
+		assertThat(this.introspector.introspect("token")).isSameAs(principal);
+		verify(this.delegate, times(1)).introspect("token");
+		assertThat(this.introspector.getSize()).isEqualTo(1);
+		assertThat(this.introspector.getHitCount()).isEqualTo(1);
+		assertThat(this.introspector.getMissCount()).isEqualTo(1);
+		assertThat(this.introspector.getHitRate()).isEqualTo(0.5);
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(60));
+		this.introspector.introspect("token");
+		verify(this.delegate, times(2)).introspect("token");
+	}
+
+	@Test
+	public void introspectWhenActiveWithoutExpiresAtThenCachedForMaxTimeToLive() {
+		OAuth2AuthenticatedPrincipal principal = TestOAuth2AuthenticatedPrincipals
+				.active((attributes) -> attributes.remove(OAuth2IntrospectionClaimNames.EXPIRES_AT));
+		given(this.delegate.introspect("token")).willReturn(principal);
+		this.introspector.setMaxTimeToLive(Duration.ofSeconds(30));
+		this.introspector.introspect("token");
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(29));
+		this.introspector.introspect("token");
+		verify(this.delegate, times(1)).introspect("token");
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(30));
+		this.introspector.introspect("token");
+		verify(this.delegate, times(2)).introspect("token");
+	}
+
+	@Test
+	public void introspectWhenInactiveThenCachedForInactiveTimeToLive() {
+		given(this.delegate.introspect("token")).willThrow(new BadOpaqueTokenException("Provided token isn't active"));
+		assertThatExceptionOfType(BadOpaqueTokenException.class)
+				.isThrownBy(() -> this.introspector.introspect("token"));
+		assertThatExceptionOfType(BadOpaqueTokenException.class)
+				.isThrownBy(() -> this.introspector.introspect("token"));
+		verify(this.delegate, times(1)).introspect("token");
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(10));
+		assertThatExceptionOfType(BadOpaqueTokenException.class)
+				.isThrownBy(() -> this.introspector.introspect("token"));
+		verify(this.delegate, times(2)).introspect("token");
+	}
+
+	@Test
+	public void introspectWhenIntrospectionFailsThenNotCached() {
+		given(this.delegate.introspect("token")).willThrow(new OAuth2IntrospectionException("unavailable"));
+		assertThatExceptionOfType(OAuth2IntrospectionException.class)
+				.isThrownBy(() -> this.introspector.introspect("token"));
+		assertThatExceptionOfType(OAuth2IntrospectionException.class)
+				.isThrownBy(() -> this.introspector.introspect("token"));
+		verify(this.delegate, times(2)).introspect("token");
+		assertThat(this.introspector.getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void introspectWhenMaximumSizeReachedThenEldestEvicted() {
+		given(this.delegate.introspect(anyString())).willReturn(TestOAuth2AuthenticatedPrincipals.active(
+				(attributes) -> attributes.put(OAuth2IntrospectionClaimNames.EXPIRES_AT, this.now.plusSeconds(60))));
+		this.introspector.setMaximumSize(1);
+		this.introspector.introspect("one");
+		this.introspector.introspect("two");
+		assertThat(this.introspector.getSize()).isEqualTo(1);
+		this.introspector.introspect("one");
+		verify(this.delegate, times(2)).introspect("one");
+	}
+
+	@Test
+	public void introspectWhenConcurrentThenIntrospectedOnce() throws Exception {
+		OAuth2AuthenticatedPrincipal principal = TestOAuth2AuthenticatedPrincipals.active(
+				(attributes) -> attributes.put(OAuth2IntrospectionClaimNames.EXPIRES_AT, this.now.plusSeconds(60)));
+		CountDownLatch introspecting = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		willAnswer((invocation) -> {
+			introspecting.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return principal;
+		}).given(this.delegate).introspect("token");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<OAuth2AuthenticatedPrincipal> first = executor.submit(() -> this.introspector.introspect("token"));
+			assertThat(introspecting.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<OAuth2AuthenticatedPrincipal> second = executor.submit(() -> this.introspector.introspect("token"));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (this.introspector.getCoalescedCount() == 0 && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(principal);
+			assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(principal);
+			assertThat(this.introspector.getCoalescedCount()).isEqualTo(1);
+			verify(this.delegate, times(1)).introspect("token");
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void introspectWhenConcurrentAndDelegateThrowsErrorThenWaiterReleased() throws Exception {
+		CountDownLatch introspecting = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		willAnswer((invocation) -> {
+			introspecting.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			throw new StackOverflowError();
+		}).given(this.delegate).introspect("token");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<OAuth2AuthenticatedPrincipal> first = executor.submit(() -> this.introspector.introspect("token"));
+			assertThat(introspecting.await(5, TimeUnit.SECONDS)).isTrue();
+			Future<OAuth2AuthenticatedPrincipal> second = executor.submit(() -> this.introspector.introspect("token"));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (this.introspector.getCoalescedCount() == 0 && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			assertThatExceptionOfType(ExecutionException.class).isThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+					.withCauseInstanceOf(StackOverflowError.class);
+			assertThatExceptionOfType(ExecutionException.class).isThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+					.withCauseInstanceOf(StackOverflowError.class);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
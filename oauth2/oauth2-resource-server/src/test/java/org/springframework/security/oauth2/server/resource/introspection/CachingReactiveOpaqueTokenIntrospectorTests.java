@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.security.oauth2.server.resource.introspection;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.TestOAuth2AuthenticatedPrincipals;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link CachingReactiveOpaqueTokenIntrospector}.
+ *
+ * @author Ben Siegler
+ */
+public class CachingReactiveOpaqueTokenIntrospectorTests {
+
+	private final Instant now = Instant.now();
+
+	private final AtomicInteger introspections = new AtomicInteger();
+
+	private Clock clock;
+
+	@Before
+	public void setup() {
+		this.clock = mock(Clock.class);
+		given(this.clock.instant()).willReturn(this.now);
+	}
+
+	@Test
+	public void constructorWhenDelegateIsNullThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new CachingReactiveOpaqueTokenIntrospector(null))
+				.withMessage("delegate cannot be null");
+	}
+
+	@Test
+	public void introspectWhenActiveThenCachedUntilExpiresAt() {
+		OAuth2AuthenticatedPrincipal principal = TestOAuth2AuthenticatedPrincipals.active(
+				(attributes) -> attributes.put(OAuth2IntrospectionClaimNames.EXPIRES_AT, this.now.plusSeconds(60)));
+		CachingReactiveOpaqueTokenIntrospector introspector = introspector(Mono.fromCallable(() -> principal));
+		StepVerifier.create(introspector.introspect("token")).expectNext(principal).verifyComplete();
+		StepVerifier.create(introspector.introspect("token")).expectNext(principal).verifyComplete();
+		assertThat(this.introspections).hasValue(1);
+		assertThat(introspector.getSize()).isEqualTo(1);
+		assertThat(introspector.getHitRate()).isEqualTo(0.5);
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(60));
+		StepVerifier.create(introspector.introspect("token")).expectNext(principal).verifyComplete();
+		assertThat(this.introspections).hasValue(2);
+	}
+
+	@Test
+	public void introspectWhenInactiveThenCachedForInactiveTimeToLive() {
+		CachingReactiveOpaqueTokenIntrospector introspector = introspector(
+				Mono.error(new BadOpaqueTokenException("Provided token isn't active")));
+		StepVerifier.create(introspector.introspect("token")).verifyError(BadOpaqueTokenException.class);
+		StepVerifier.create(introspector.introspect("token")).verifyError(BadOpaqueTokenException.class);
+		assertThat(this.introspections).hasValue(1);
+		given(this.clock.instant()).willReturn(this.now.plusSeconds(10));
+		StepVerifier.create(introspector.introspect("token")).verifyError(BadOpaqueTokenException.class);
+		assertThat(this.introspections).hasValue(2);
+	}
+
+	@Test
+	public void introspectWhenIntrospectionFailsThenNotCached() {
+		CachingReactiveOpaqueTokenIntrospector introspector = introspector(
+				Mono.error(new OAuth2IntrospectionException("unavailable")));
+		StepVerifier.create(introspector.introspect("token")).verifyError(OAuth2IntrospectionException.class);
+		StepVerifier.create(introspector.introspect("token")).verifyError(OAuth2IntrospectionException.class);
+		assertThat(this.introspections).hasValue(2);
+		assertThat(introspector.getSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void introspectWhenConcurrentThenIntrospectedOnce() {
+		OAuth2AuthenticatedPrincipal principal = TestOAuth2AuthenticatedPrincipals.active(
+				(attributes) -> attributes.put(OAuth2IntrospectionClaimNames.EXPIRES_AT, this.now.plusSeconds(60)));
+		CachingReactiveOpaqueTokenIntrospector introspector = introspector(
+				Mono.just(principal).delayElement(Duration.ofMillis(100)));
+		StepVerifier.create(Mono.zip(introspector.introspect("token"), introspector.introspect("token")))
+				.assertNext((results) -> assertThat(results.getT2()).isSameAs(results.getT1())).verifyComplete();
+		assertThat(this.introspections).hasValue(1);
+		assertThat(introspector.getCoalescedCount()).isEqualTo(1);
+	}
+
+	private CachingReactiveOpaqueTokenIntrospector introspector(Mono<OAuth2AuthenticatedPrincipal> result) {
+		CachingReactiveOpaqueTokenIntrospector introspector = new CachingReactiveOpaqueTokenIntrospector(
+				(token) -> result.doOnSubscribe((subscription) -> this.introspections.incrementAndGet()));
+		introspector.setClock(this.clock);
+		return introspector;
+	}
+
+}
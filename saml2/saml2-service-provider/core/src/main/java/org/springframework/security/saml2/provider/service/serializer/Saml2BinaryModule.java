@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.saml2.provider.service.serializer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.saml2.provider.service.authentication.DefaultSaml2AuthenticatedPrincipal;
+import org.springframework.security.saml2.provider.service.authentication.Saml2Authentication;
+import org.springframework.security.serializer.BinaryInput;
+import org.springframework.security.serializer.BinaryOutput;
+import org.springframework.security.serializer.SecurityBinaryModule;
+import org.springframework.security.serializer.SecurityBinarySerializer;
+
+/**
+ * The {@link SecurityBinaryModule} for the principals of SAML 2.0 Login:
+ * {@link Saml2Authentication} and {@link DefaultSaml2AuthenticatedPrincipal}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see org.springframework.security.serializer.SecurityBinaryCodec
+ */
+public class Saml2BinaryModule implements SecurityBinaryModule {
+
+	@Override
+	public List<SecurityBinarySerializer<?>> getSerializers() {
+		return Arrays.asList(new Saml2AuthenticationSerializer(), new DefaultSaml2AuthenticatedPrincipalSerializer());
+	}
+
+	static final class Saml2AuthenticationSerializer implements SecurityBinarySerializer<Saml2Authentication> {
+
+		@Override
+		public int getTypeId() {
+			return 96;
+		}
+
+		@Override
+		public Class<Saml2Authentication> getType() {
+			return Saml2Authentication.class;
+		}
+
+		@Override
+		public void write(Saml2Authentication value, BinaryOutput output) {
+			output.writeObject(value.getPrincipal());
+			output.writeString(value.getSaml2Response());
+			output.writeAuthorities(value.getAuthorities());
+			output.writeValue(value.getDetails());
+		}
+
+		@Override
+		public Saml2Authentication read(BinaryInput input, int version) {
+			AuthenticatedPrincipal principal = input.readObject(AuthenticatedPrincipal.class);
+			String saml2Response = input.readString();
+			List<GrantedAuthority> authorities = input.readAuthorities();
+			Saml2Authentication authentication = new Saml2Authentication(principal, saml2Response, authorities);
+			authentication.setDetails(input.readValue());
+			return authentication;
+		}
+
+	}
+
+	static final class DefaultSaml2AuthenticatedPrincipalSerializer
+			implements SecurityBinarySerializer<DefaultSaml2AuthenticatedPrincipal> {
+
+		@Override
+		public int getTypeId() {
+			return 97;
+		}
+
+		@Override
+		public Class<DefaultSaml2AuthenticatedPrincipal> getType() {
+			return DefaultSaml2AuthenticatedPrincipal.class;
+		}
+
+		@Override
+		public void write(DefaultSaml2AuthenticatedPrincipal value, BinaryOutput output) {
+			output.writeString(value.getName());
+			output.writeValue(value.getAttributes());
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public DefaultSaml2AuthenticatedPrincipal read(BinaryInput input, int version) {
+			String name = input.readString();
+			Map<String, ?> attributes = input.readStringMap();
+			return new DefaultSaml2AuthenticatedPrincipal(name, (Map<String, List<Object>>) attributes);
+		}
+
+	}
+
+}
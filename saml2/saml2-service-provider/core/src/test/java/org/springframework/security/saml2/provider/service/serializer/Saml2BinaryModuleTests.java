@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.saml2.provider.service.serializer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.saml2.provider.service.authentication.DefaultSaml2AuthenticatedPrincipal;
+import org.springframework.security.saml2.provider.service.authentication.Saml2Authentication;
+import org.springframework.security.serializer.CoreBinaryModule;
+import org.springframework.security.serializer.SecurityBinaryCodec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link Saml2BinaryModule}.
+ *
+ * @author Ben Siegler
+ */
+public class Saml2BinaryModuleTests {
+
+	private final SecurityBinaryCodec codec = new SecurityBinaryCodec(
+			Arrays.asList(new CoreBinaryModule(), new Saml2BinaryModule()));
+
+	@Test
+	public void deserializeWhenSaml2AuthenticationThenEqual() {
+		Map<String, List<Object>> attributes = new LinkedHashMap<>();
+		attributes.put("email", Arrays.asList("john.doe@example.org", "doe.john@example.org"));
+		attributes.put("age", Collections.singletonList(21));
+		DefaultSaml2AuthenticatedPrincipal principal = new DefaultSaml2AuthenticatedPrincipal("user", attributes);
+		Saml2Authentication authentication = new Saml2Authentication(principal, "<response/>",
+				AuthorityUtils.createAuthorityList("ROLE_USER"));
+		Saml2Authentication read = (Saml2Authentication) this.codec
+				.deserialize(this.codec.serialize(authentication), Authentication.class);
+		assertThat(read).isEqualTo(authentication);
+		assertThat(read.getSaml2Response()).isEqualTo("<response/>");
+		DefaultSaml2AuthenticatedPrincipal readPrincipal = (DefaultSaml2AuthenticatedPrincipal) read.getPrincipal();
+		assertThat(readPrincipal.getName()).isEqualTo("user");
+		assertThat(readPrincipal.getAttributes()).isEqualTo(attributes);
+	}
+
+}
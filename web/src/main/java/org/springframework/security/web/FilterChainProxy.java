@@ -42,6 +42,7 @@ import org.springframework.security.web.firewall.RequestRejectedHandler;
 import org.springframework.security.web.firewall.StrictHttpFirewall;
 import org.springframework.security.web.util.UrlUtils;
 import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcherIndex;
 import org.springframework.util.Assert;
 import org.springframework.web.filter.DelegatingFilterProxy;
 import org.springframework.web.filter.GenericFilterBean;
@@ -100,6 +101,11 @@ import org.springframework.web.filter.GenericFilterBean;
  * {@link javax.servlet.Filter#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse, javax.servlet.FilterChain)}
  * , in that the remainder of the original or {@code FilterChainProxy}-declared filter
  * chain will not be called.
+ * <p>
+ * Applications with many chains can {@link #setIndexFilterChains(boolean) index} them,
+ * so that the chain of a request is found by walking the leading segments of its path
+ * rather than by evaluating the request matcher of every preceding chain. The first
+ * matching chain is used either way.
  *
  * <h3>Request Firewalling</h3>
  *
@@ -148,6 +154,8 @@ public class FilterChainProxy extends GenericFilterBean {
 
 	private List<SecurityFilterChain> filterChains;
 
+	private RequestMatcherIndex<SecurityFilterChain> filterChainIndex;
+
 	private FilterChainValidator filterChainValidator = new NullFilterChainValidator();
 
 	private HttpFirewall firewall = new StrictHttpFirewall();
@@ -217,6 +225,10 @@ public class FilterChainProxy extends GenericFilterBean {
 	 * @return an ordered array of Filters defining the filter chain
 	 */
 	private List<Filter> getFilters(HttpServletRequest request) {
+		if (this.filterChainIndex != null) {
+			SecurityFilterChain chain = this.filterChainIndex.findFirst(request);
+			return (chain != null) ? chain.getFilters() : null;
+		}
 		int count = 0;
 		for (SecurityFilterChain chain : this.filterChains) {
 			if (logger.isTraceEnabled()) {
@@ -278,6 +290,39 @@ public class FilterChainProxy extends GenericFilterBean {
 		this.requestRejectedHandler = requestRejectedHandler;
 	}
 
+	/**
+	 * Whether to index the filter chains by the leading literal segments and the HTTP
+	 * method of their {@link DefaultSecurityFilterChain#getRequestMatcher() request
+	 * matchers}. Chains whose matcher cannot be analysed, such as those matching with an
+	 * {@code MvcRequestMatcher}, are still evaluated in order for every request. Defaults
+	 * to {@code false}.
+	 * <p>
+	 * The chains are indexed when this method is called and must not be modified
+	 * afterwards.
+	 * @param indexFilterChains whether to index the filter chains
+	 * @since 5.5
+	 * @see RequestMatcherIndex
+	 */
+	public void setIndexFilterChains(boolean indexFilterChains) {
+		if (!indexFilterChains) {
+			this.filterChainIndex = null;
+			return;
+		}
+		Assert.notNull(this.filterChains, "filterChains cannot be null");
+		RequestMatcherIndex.Builder<SecurityFilterChain> builder = RequestMatcherIndex.builder();
+		for (SecurityFilterChain chain : this.filterChains) {
+			RequestMatcher matcher = (chain instanceof DefaultSecurityFilterChain)
+					? ((DefaultSecurityFilterChain) chain).getRequestMatcher() : chain::matches;
+			builder.add(matcher, chain);
+		}
+		RequestMatcherIndex<SecurityFilterChain> index = builder.build();
+		if (logger.isDebugEnabled() && !index.getUnindexedMatchers().isEmpty()) {
+			logger.debug(LogMessage.format("Could not index the filter chains matching %s, "
+					+ "they will be evaluated for every request", index.getUnindexedMatchers()));
+		}
+		this.filterChainIndex = index;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
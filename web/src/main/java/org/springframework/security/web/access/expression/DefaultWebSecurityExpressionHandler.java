@@ -16,11 +16,13 @@
 
 package org.springframework.security.web.access.expression;
 
+import org.springframework.expression.Expression;
 import org.springframework.security.access.expression.AbstractSecurityExpressionHandler;
 import org.springframework.security.access.expression.SecurityExpressionHandler;
 import org.springframework.security.access.expression.SecurityExpressionOperations;
 import org.springframework.security.authentication.AuthenticationTrustResolver;
 import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.FilterInvocation;
 import org.springframework.util.Assert;
@@ -48,6 +50,17 @@ public class DefaultWebSecurityExpressionHandler extends AbstractSecurityExpress
 		return root;
 	}
 
+	/**
+	 * Decides the expressions that only combine role, authority, authentication and IP
+	 * address checks without evaluating them.
+	 * @since 5.5
+	 */
+	@Override
+	protected AuthorizationManager<FilterInvocation> createAuthorizationManager(Expression expression) {
+		return new WebSecurityExpressionAuthorizationManagerFactory(this.trustResolver, getRoleHierarchy(),
+				this.defaultRolePrefix).createAuthorizationManager(expression);
+	}
+
 	/**
 	 * Sets the {@link AuthenticationTrustResolver} to be used. The default is
 	 * {@link AuthenticationTrustResolverImpl}.
@@ -57,6 +70,7 @@ public class DefaultWebSecurityExpressionHandler extends AbstractSecurityExpress
 	public void setTrustResolver(AuthenticationTrustResolver trustResolver) {
 		Assert.notNull(trustResolver, "trustResolver cannot be null");
 		this.trustResolver = trustResolver;
+		clearAuthorizationManagers();
 	}
 
 	/**
@@ -76,6 +90,7 @@ public class DefaultWebSecurityExpressionHandler extends AbstractSecurityExpress
 	 */
 	public void setDefaultRolePrefix(String defaultRolePrefix) {
 		this.defaultRolePrefix = defaultRolePrefix;
+		clearAuthorizationManagers();
 	}
 
 }
@@ -26,6 +26,7 @@ import org.springframework.security.access.AccessDecisionVoter;
 import org.springframework.security.access.ConfigAttribute;
 import org.springframework.security.access.expression.ExpressionUtils;
 import org.springframework.security.access.expression.SecurityExpressionHandler;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.FilterInvocation;
 import org.springframework.util.Assert;
@@ -54,16 +55,25 @@ public class WebExpressionVoter implements AccessDecisionVoter<FilterInvocation>
 					.trace("Abstained since did not find a config attribute of instance WebExpressionConfigAttribute");
 			return ACCESS_ABSTAIN;
 		}
-		EvaluationContext ctx = webExpressionConfigAttribute.postProcess(
-				this.expressionHandler.createEvaluationContext(authentication, filterInvocation), filterInvocation);
-		boolean granted = ExpressionUtils.evaluateAsBoolean(webExpressionConfigAttribute.getAuthorizeExpression(), ctx);
-		if (granted) {
+		if (isGranted(authentication, filterInvocation, webExpressionConfigAttribute)) {
 			return ACCESS_GRANTED;
 		}
 		this.logger.trace("Voted to deny authorization");
 		return ACCESS_DENIED;
 	}
 
+	private boolean isGranted(Authentication authentication, FilterInvocation filterInvocation,
+			WebExpressionConfigAttribute webExpressionConfigAttribute) {
+		AuthorizationManager<FilterInvocation> authorizationManager = this.expressionHandler
+				.getAuthorizationManager(webExpressionConfigAttribute.getAuthorizeExpression());
+		if (authorizationManager != null) {
+			return authorizationManager.check(() -> authentication, filterInvocation).isGranted();
+		}
+		EvaluationContext ctx = webExpressionConfigAttribute.postProcess(
+				this.expressionHandler.createEvaluationContext(authentication, filterInvocation), filterInvocation);
+		return ExpressionUtils.evaluateAsBoolean(webExpressionConfigAttribute.getAuthorizeExpression(), ctx);
+	}
+
 	private WebExpressionConfigAttribute findConfigAttribute(Collection<ConfigAttribute> attributes) {
 		for (ConfigAttribute attribute : attributes) {
 			if (attribute instanceof WebExpressionConfigAttribute) {
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.access.expression;
+
+import org.springframework.security.access.expression.SecurityExpressionAuthorizationManagerFactory;
+import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+/**
+ * A {@link SecurityExpressionAuthorizationManagerFactory} which also recognizes the
+ * {@code hasIpAddress} check of the {@link WebSecurityExpressionRoot}, matching the
+ * request with an {@link IpAddressMatcher} created once.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+final class WebSecurityExpressionAuthorizationManagerFactory
+		extends SecurityExpressionAuthorizationManagerFactory<FilterInvocation> {
+
+	WebSecurityExpressionAuthorizationManagerFactory(AuthenticationTrustResolver trustResolver,
+			RoleHierarchy roleHierarchy, String defaultRolePrefix) {
+		super(trustResolver, roleHierarchy, defaultRolePrefix);
+	}
+
+	@Override
+	protected AuthorizationManager<FilterInvocation> createAuthorizationManager(String methodName,
+			String[] arguments) {
+		if (!"hasIpAddress".equals(methodName)) {
+			return super.createAuthorizationManager(methodName, arguments);
+		}
+		if (arguments.length != 1) {
+			return null;
+		}
+		IpAddressMatcher matcher;
+		try {
+			matcher = new IpAddressMatcher(arguments[0]);
+		}
+		catch (IllegalArgumentException ex) {
+			// leave the expression to fail when it is evaluated
+			return null;
+		}
+		return (authentication, filterInvocation) -> decision(matcher.matches(filterInvocation.getRequest()));
+	}
+
+}
@@ -31,6 +31,7 @@ import org.springframework.core.log.LogMessage;
 import org.springframework.security.access.ConfigAttribute;
 import org.springframework.security.web.FilterInvocation;
 import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcherIndex;
 
 /**
  * Default implementation of <tt>FilterInvocationDefinitionSource</tt>.
@@ -42,7 +43,10 @@ import org.springframework.security.web.util.matcher.RequestMatcher;
  * The order of the {@link RequestMatcher}s in the map is very important. The <b>first</b>
  * one which matches the request will be used. Later matchers in the map will not be
  * invoked if a match has already been found. Accordingly, the most specific matchers
- * should be registered first, with the most general matches registered last.
+ * should be registered first, with the most general matches registered last. The
+ * {@link RequestMatcher}s may be compiled into a {@link RequestMatcherIndex} with
+ * {@link #setIndexRequestMatchers(boolean)}, which only evaluates those which may match a
+ * request, without changing which one matches first.
  * <p>
  * The most common method creating an instance is using the Spring Security namespace. For
  * example, the {@code pattern} and {@code access} attributes of the
@@ -58,6 +62,8 @@ public class DefaultFilterInvocationSecurityMetadataSource implements FilterInvo
 
 	private final Map<RequestMatcher, Collection<ConfigAttribute>> requestMap;
 
+	private RequestMatcherIndex<Collection<ConfigAttribute>> requestIndex;
+
 	/**
 	 * Sets the internal request map from the supplied map. The key elements should be of
 	 * type {@link RequestMatcher}, which. The path stored in the key will depend on the
@@ -69,6 +75,31 @@ public class DefaultFilterInvocationSecurityMetadataSource implements FilterInvo
 		this.requestMap = requestMap;
 	}
 
+	/**
+	 * Whether to compile the {@link RequestMatcher}s into a {@link RequestMatcherIndex},
+	 * by the leading literal segments and the HTTP method of their patterns, so that
+	 * only those which may match a request are evaluated. Defaults to {@code false}.
+	 * <p>
+	 * The {@link RequestMatcher}s are indexed when this method is called, and the request
+	 * map must not be modified afterwards.
+	 * @param indexRequestMatchers whether to index the {@link RequestMatcher}s
+	 * @since 5.5
+	 */
+	public void setIndexRequestMatchers(boolean indexRequestMatchers) {
+		if (!indexRequestMatchers) {
+			this.requestIndex = null;
+			return;
+		}
+		RequestMatcherIndex.Builder<Collection<ConfigAttribute>> builder = RequestMatcherIndex.builder();
+		this.requestMap.forEach(builder::add);
+		RequestMatcherIndex<Collection<ConfigAttribute>> index = builder.build();
+		if (this.logger.isDebugEnabled() && !index.getUnindexedMatchers().isEmpty()) {
+			this.logger.debug(LogMessage.format("Could not index %s, they will be evaluated for every request",
+					index.getUnindexedMatchers()));
+		}
+		this.requestIndex = index;
+	}
+
 	@Override
 	public Collection<ConfigAttribute> getAllConfigAttributes() {
 		Set<ConfigAttribute> allAttributes = new HashSet<>();
@@ -79,6 +110,14 @@ public class DefaultFilterInvocationSecurityMetadataSource implements FilterInvo
 	@Override
 	public Collection<ConfigAttribute> getAttributes(Object object) {
 		final HttpServletRequest request = ((FilterInvocation) object).getRequest();
+		if (this.requestIndex != null) {
+			Collection<ConfigAttribute> attributes = this.requestIndex.findFirst(request);
+			if (attributes == null && this.logger.isTraceEnabled()) {
+				this.logger.trace(LogMessage.format("Did not match request to any of the %d request matchers",
+						this.requestMap.size()));
+			}
+			return attributes;
+		}
 		int count = 0;
 		for (Map.Entry<RequestMatcher, Collection<ConfigAttribute>> entry : this.requestMap.entrySet()) {
 			if (entry.getKey().matches(request)) {
@@ -31,11 +31,17 @@ import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher.MatchResult;
+import org.springframework.security.web.util.matcher.RequestMatcherIndex;
 import org.springframework.util.Assert;
 
 /**
  * An {@link AuthorizationManager} which delegates to a specific
  * {@link AuthorizationManager} based on a {@link RequestMatcher} evaluation.
+ * <p>
+ * The {@link RequestMatcher}s may be compiled into a {@link RequestMatcherIndex} with
+ * {@link Builder#indexRequestMatchers(boolean)}, so that only those which may match a
+ * request are evaluated. The first matching {@link RequestMatcher} decides either way,
+ * as if they were evaluated in the order they were added.
  *
  * @author Evgeniy Cheban
  * @since 5.5
@@ -46,10 +52,26 @@ public final class DelegatingAuthorizationManager implements AuthorizationManage
 
 	private final Map<RequestMatcher, AuthorizationManager<RequestAuthorizationContext>> mappings;
 
+	private final RequestMatcherIndex<AuthorizationManager<RequestAuthorizationContext>> index;
+
 	private DelegatingAuthorizationManager(
-			Map<RequestMatcher, AuthorizationManager<RequestAuthorizationContext>> mappings) {
+			Map<RequestMatcher, AuthorizationManager<RequestAuthorizationContext>> mappings, boolean indexed) {
 		Assert.notEmpty(mappings, "mappings cannot be empty");
 		this.mappings = mappings;
+		this.index = indexed ? index(mappings) : null;
+	}
+
+	private RequestMatcherIndex<AuthorizationManager<RequestAuthorizationContext>> index(
+			Map<RequestMatcher, AuthorizationManager<RequestAuthorizationContext>> mappings) {
+		RequestMatcherIndex.Builder<AuthorizationManager<RequestAuthorizationContext>> builder = RequestMatcherIndex
+				.builder();
+		mappings.forEach(builder::add);
+		RequestMatcherIndex<AuthorizationManager<RequestAuthorizationContext>> index = builder.build();
+		if (this.logger.isDebugEnabled() && !index.getUnindexedMatchers().isEmpty()) {
+			this.logger.debug(LogMessage.format("Could not index %s, they will be evaluated for every request",
+					index.getUnindexedMatchers()));
+		}
+		return index;
 	}
 
 	/**
@@ -66,24 +88,36 @@ public final class DelegatingAuthorizationManager implements AuthorizationManage
 		if (this.logger.isTraceEnabled()) {
 			this.logger.trace(LogMessage.format("Authorizing %s", request));
 		}
+		if (this.index != null) {
+			RequestMatcherIndex.Match<AuthorizationManager<RequestAuthorizationContext>> mapping = this.index
+					.findFirstMatch(request);
+			if (mapping != null) {
+				return check(authentication, request, mapping.getValue(), mapping.getMatchResult());
+			}
+			this.logger.trace("Abstaining since did not find matching RequestMatcher");
+			return null;
+		}
 		for (Map.Entry<RequestMatcher, AuthorizationManager<RequestAuthorizationContext>> mapping : this.mappings
 				.entrySet()) {
 
 			RequestMatcher matcher = mapping.getKey();
 			MatchResult matchResult = matcher.matcher(request);
 			if (matchResult.isMatch()) {
-				AuthorizationManager<RequestAuthorizationContext> manager = mapping.getValue();
-				if (this.logger.isTraceEnabled()) {
-					this.logger.trace(LogMessage.format("Checking authorization on %s using %s", request, manager));
-				}
-				return manager.check(authentication,
-						new RequestAuthorizationContext(request, matchResult.getVariables()));
+				return check(authentication, request, mapping.getValue(), matchResult);
 			}
 		}
 		this.logger.trace("Abstaining since did not find matching RequestMatcher");
 		return null;
 	}
 
+	private AuthorizationDecision check(Supplier<Authentication> authentication, HttpServletRequest request,
+			AuthorizationManager<RequestAuthorizationContext> manager, MatchResult matchResult) {
+		if (this.logger.isTraceEnabled()) {
+			this.logger.trace(LogMessage.format("Checking authorization on %s using %s", request, manager));
+		}
+		return manager.check(authentication, new RequestAuthorizationContext(request, matchResult.getVariables()));
+	}
+
 	/**
 	 * Creates a builder for {@link DelegatingAuthorizationManager}.
 	 * @return the new {@link Builder} instance
@@ -99,6 +133,8 @@ public final class DelegatingAuthorizationManager implements AuthorizationManage
 
 		private final Map<RequestMatcher, AuthorizationManager<RequestAuthorizationContext>> mappings = new LinkedHashMap<>();
 
+		private boolean indexRequestMatchers;
+
 		/**
 		 * Maps a {@link RequestMatcher} to an {@link AuthorizationManager}.
 		 * @param matcher the {@link RequestMatcher} to use
@@ -112,12 +148,26 @@ public final class DelegatingAuthorizationManager implements AuthorizationManage
 			return this;
 		}
 
+		/**
+		 * Whether to compile the {@link RequestMatcher}s into a
+		 * {@link RequestMatcherIndex}, by the leading literal segments and the HTTP method
+		 * of their patterns, so that only those which may match a request are evaluated.
+		 * Defaults to {@code false}.
+		 * @param indexRequestMatchers whether to index the {@link RequestMatcher}s
+		 * @return the {@link Builder} for further customizations
+		 * @since 5.5
+		 */
+		public Builder indexRequestMatchers(boolean indexRequestMatchers) {
+			this.indexRequestMatchers = indexRequestMatchers;
+			return this;
+		}
+
 		/**
 		 * Creates a {@link DelegatingAuthorizationManager} instance.
 		 * @return the {@link DelegatingAuthorizationManager} instance
 		 */
 		public DelegatingAuthorizationManager build() {
-			return new DelegatingAuthorizationManager(this.mappings);
+			return new DelegatingAuthorizationManager(this.mappings, this.indexRequestMatchers);
 		}
 
 	}
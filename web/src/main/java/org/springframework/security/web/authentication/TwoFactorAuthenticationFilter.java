@@ -11,11 +11,16 @@ import org.springframework.security.core.userdetails.TwoFactorPreference;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.security.web.authentication.twofa.ratelimit.InMemoryTwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.KeyType;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.Operation;
 import org.springframework.security.web.authentication.twofa.services.TwoFactorAuthCodeService;
 import org.springframework.security.web.authentication.twofa.stategies.sendattemp.TwoFactorAuthCodeSendStrategy;
 import org.springframework.security.web.authentication.twofa.stategies.sendfailure.TwoFactorAuthCodeSendFailureStrategy;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.Assert;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -31,6 +36,7 @@ public class TwoFactorAuthenticationFilter extends AbstractAuthenticationProcess
 	public static final String DEFAULT_LOGIN_REQUEST_URL = "/login";
 	public static final String DEFAULT_CODE_RESEND_URL = "/2FA/resend";
 	public static final String DEFAULT_TWO_FACTOR_FAILURE_URL = "/2FA?error";
+	public static final String DEFAULT_TWO_FACTOR_LOCKED_URL = "/2FA?locked";
 	public static final String DEFAULT_TWO_FACTOR_REDIRECT_URL = "/2FA";
 	public static final String DEFAULT_TWO_FACTOR_CHOICE_URL = "/2FA/choice";
 
@@ -39,6 +45,7 @@ public class TwoFactorAuthenticationFilter extends AbstractAuthenticationProcess
 	protected String twoFactorAuthCodeFormKey = DEFAULT_CODE_FORM_KEY;
 
     protected String twoFactorFailureUrl = DEFAULT_TWO_FACTOR_FAILURE_URL;
+	protected String twoFactorLockedUrl = DEFAULT_TWO_FACTOR_LOCKED_URL;
     protected String twoFactorChoiceUrl = DEFAULT_TWO_FACTOR_CHOICE_URL;
 	protected String twoFactorRedirectUrl = DEFAULT_TWO_FACTOR_REDIRECT_URL;
 	protected String loginRequestUrl = DEFAULT_LOGIN_REQUEST_URL;
@@ -55,6 +62,7 @@ public class TwoFactorAuthenticationFilter extends AbstractAuthenticationProcess
 
 	private TwoFactorAuthCodeService codeService;
 	private UserDetailsService userDetailsService;
+	private TwoFactorAuthRateLimiter rateLimiter = new InMemoryTwoFactorAuthRateLimiter();
 
 	//TODO make sure to set this up
 	private AuthenticationFailureHandler failureHandler;
@@ -108,13 +116,7 @@ public class TwoFactorAuthenticationFilter extends AbstractAuthenticationProcess
 		}else if(twoFactorAuthenticationProcessingRequestMatcher.matches(request)) {
     		return handleTwoFactorAuthenticationLogin(request, response);
 		}else if(twoFactorAuthCodeResendRequestMatcher.matches(request)) {
-			if(codeService.isPasswordVerified(request.getRequestedSessionId())) {
-				SignInAttempt codeWrapper = codeService.getCode(request.getRequestedSessionId());
-				UserDetails userDetails = userDetailsService.loadUserByUsername(codeWrapper.getUsername());
-				sendCode(request, userDetails, codeWrapper);
-			}else{
-				response.sendRedirect(loginRequestUrl);
-			}
+			handleCodeResend(request, response);
 		}
 		//TODO make sure you actually want to return null
 		return null;
@@ -221,16 +223,29 @@ public class TwoFactorAuthenticationFilter extends AbstractAuthenticationProcess
 		String sessionId = request.getRequestedSessionId();
 		String submittedCode = getRequestTwoFactorCode(request);
 
-		if(!codeService.isPasswordVerified(sessionId)) {
+		//the address is checked before the code repository is queried
+		if(!rateLimiter.tryAcquire(Operation.VERIFY_CODE, KeyType.REMOTE_ADDRESS, request.getRemoteAddr())) {
+			response.sendRedirect(twoFactorLockedUrl);
+			return null;
+		}
+
+		SignInAttempt attempt = codeService.getCode(sessionId);
+		if(attempt == null || codeService.isCodeExpired(attempt)) {
 			//redirect to login page if user did not already do step 1
 			response.sendRedirect(loginRequestUrl);
 			return null;
 		}
+		if(!isPermitted(Operation.VERIFY_CODE, sessionId, attempt)) {
+			response.sendRedirect(twoFactorLockedUrl);
+			return null;
+		}
 
 		TwoFactorAuthenticationToken authenticationToken = new TwoFactorAuthenticationToken(sessionId, submittedCode);
 		try {
 			Authentication authentication =  super.getAuthenticationManager().authenticate(authenticationToken);
 			codeService.cleanUp(sessionId);
+			rateLimiter.reset(Operation.VERIFY_CODE, KeyType.USERNAME, attempt.getUsername());
+			rateLimiter.reset(Operation.VERIFY_CODE, KeyType.SESSION, sessionId);
 			return authentication;
 		}catch (AuthenticationException e) {
 			//TODO start adding more failure handlers for customization
@@ -239,6 +254,42 @@ public class TwoFactorAuthenticationFilter extends AbstractAuthenticationProcess
 		}
 	}
 
+	/**
+	 * Resends the pending code of the session, unless the session, the client address or the user
+	 * asked for too many codes, in which case the request is redirected to <tt>twoFactorLockedUrl</tt>.
+	 * @param request the current request
+	 * @param response used to control redirect behavior.
+	 * @throws IOException when a input-output problem occurs
+	 */
+	private void handleCodeResend(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String sessionId = request.getRequestedSessionId();
+		if(!rateLimiter.tryAcquire(Operation.RESEND_CODE, KeyType.REMOTE_ADDRESS, request.getRemoteAddr())) {
+			response.sendRedirect(twoFactorLockedUrl);
+			return;
+		}
+
+		SignInAttempt codeWrapper = codeService.getCode(sessionId);
+		if(codeWrapper == null || codeService.isCodeExpired(codeWrapper)) {
+			response.sendRedirect(loginRequestUrl);
+			return;
+		}
+		if(!isPermitted(Operation.RESEND_CODE, sessionId, codeWrapper)) {
+			response.sendRedirect(twoFactorLockedUrl);
+			return;
+		}
+		UserDetails userDetails = userDetailsService.loadUserByUsername(codeWrapper.getUsername());
+		sendCode(request, userDetails, codeWrapper);
+	}
+
+	/**
+	 * Only sessions with a pending attempt are charged, so that made up session ids cannot
+	 * use up the limiter.
+	 */
+	private boolean isPermitted(Operation operation, String sessionId, SignInAttempt attempt) {
+		return rateLimiter.tryAcquire(operation, KeyType.SESSION, sessionId)
+				&& rateLimiter.tryAcquire(operation, KeyType.USERNAME, attempt.getUsername());
+	}
+
 	/**
 	 * This method encapsulates the send and send failure behavior of the filter. It attempts to send a code
 	 * and if anything goes wrong a failure strategy is invoked.
@@ -318,6 +369,26 @@ public class TwoFactorAuthenticationFilter extends AbstractAuthenticationProcess
 		this.twoFactorFailureUrl = twoFactorFailureUrl;
 	}
 
+	/**
+	 * Sets the URL users are redirected to when they checked or asked for too many codes.
+	 * Defaults to <tt>/2FA?locked</tt>.
+	 * @param twoFactorLockedUrl the URL to redirect to
+	 */
+	public void setTwoFactorLockedUrl(String twoFactorLockedUrl) {
+		this.twoFactorLockedUrl = twoFactorLockedUrl;
+	}
+
+	/**
+	 * Sets the limiter guarding code checks and resends. Defaults to an
+	 * {@link InMemoryTwoFactorAuthRateLimiter}, which limits sessions and usernames but
+	 * not client addresses.
+	 * @param rateLimiter the limiter to use
+	 */
+	public void setRateLimiter(TwoFactorAuthRateLimiter rateLimiter) {
+		Assert.notNull(rateLimiter, "rateLimiter cannot be null");
+		this.rateLimiter = rateLimiter;
+	}
+
 	public String getTwoFactorRedirectUrl() {
 		return twoFactorRedirectUrl;
 	}
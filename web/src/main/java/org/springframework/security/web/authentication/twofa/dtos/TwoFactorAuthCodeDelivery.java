@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.dtos;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.Assert;
+
+/**
+ * A code waiting to be sent to a user.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class TwoFactorAuthCodeDelivery {
+
+	private final UserDetails userDetails;
+
+	private final SignInAttempt signInAttempt;
+
+	public TwoFactorAuthCodeDelivery(UserDetails userDetails, SignInAttempt signInAttempt) {
+		Assert.notNull(userDetails, "userDetails cannot be null");
+		Assert.notNull(signInAttempt, "signInAttempt cannot be null");
+		this.userDetails = userDetails;
+		this.signInAttempt = signInAttempt;
+	}
+
+	public UserDetails getUserDetails() {
+		return this.userDetails;
+	}
+
+	public SignInAttempt getSignInAttempt() {
+		return this.signInAttempt;
+	}
+
+}
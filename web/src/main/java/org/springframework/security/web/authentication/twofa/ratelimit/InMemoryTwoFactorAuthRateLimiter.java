@@ -0,0 +1,339 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.ratelimit;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link TwoFactorAuthRateLimiter} keeping its counters in memory.
+ * <p>
+ * Every key is limited by a token bucket, implemented with the generic cell rate
+ * algorithm: the whole state of a key is the time at which its bucket will be full again,
+ * so an attempt is a single compare-and-set of a {@code long}. A key refused while it has
+ * a {@link Policy#withLockout(Duration) lockout} is refused for the lockout duration and
+ * then starts over with its full allowance.
+ * <p>
+ * The states live in a fixed-size table per {@link Operation} and {@link KeyType}, which
+ * is allocated once: attempts do not allocate, never lock and the memory used does not
+ * grow with the number of keys an attacker makes up. Each key may use one of two slots
+ * chosen by a randomly seeded hash, and is recognized by a fingerprint stored with its
+ * state. A key never inherits the state of another key: when both its slots are held by
+ * other keys, it evicts the one whose bucket is full again first and starts over with its
+ * full allowance. Slots whose bucket is full again are free to be reused, which keeps the
+ * tables small: the default of 16384 slots uses 128 KB per table.
+ * <p>
+ * Client addresses are not limited by default. Behind a reverse proxy or a load balancer
+ * every request comes from the same address, so a single bucket would be shared by all
+ * users. Set a policy for {@link KeyType#REMOTE_ADDRESS} when the remote address of the
+ * request identifies the client.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class InMemoryTwoFactorAuthRateLimiter implements TwoFactorAuthRateLimiter {
+
+	private static final int DEFAULT_TABLE_SIZE = 1 << 14;
+
+	private static final int MAXIMUM_TABLE_SIZE = 1 << 24;
+
+	private static final long MAXIMUM_DURATION_IN_MILLIS = 1L << 40;
+
+	private static final long TIME_MASK = (1L << 48) - 1;
+
+	private static final long LOCKED = 1L << 48;
+
+	private static final int FINGERPRINT_SHIFT = 49;
+
+	private final AtomicLongArray[][] tables;
+
+	private final LongAdder[] rejections;
+
+	private final Policy[][] policies;
+
+	private final int mask;
+
+	private final long seed;
+
+	private Clock clock = Clock.systemUTC();
+
+	public InMemoryTwoFactorAuthRateLimiter() {
+		this(DEFAULT_TABLE_SIZE);
+	}
+
+	/**
+	 * Creates an instance with the given number of slots per operation and type of key.
+	 * @param tableSize a power of two, at most 2<sup>24</sup>
+	 */
+	public InMemoryTwoFactorAuthRateLimiter(int tableSize) {
+		Assert.isTrue(tableSize > 1 && tableSize <= MAXIMUM_TABLE_SIZE && Integer.bitCount(tableSize) == 1,
+				"tableSize must be a power of two between 2 and 2^24");
+		int operations = Operation.values().length;
+		int keyTypes = KeyType.values().length;
+		this.tables = new AtomicLongArray[operations][keyTypes];
+		this.rejections = new LongAdder[operations];
+		for (int i = 0; i < operations; i++) {
+			for (int j = 0; j < keyTypes; j++) {
+				this.tables[i][j] = new AtomicLongArray(tableSize);
+			}
+			this.rejections[i] = new LongAdder();
+		}
+		this.mask = tableSize - 1;
+		this.seed = new SecureRandom().nextLong();
+		this.policies = new Policy[operations][keyTypes];
+		Policy session = Policy.of(5, Duration.ofMinutes(5)).withLockout(Duration.ofMinutes(15));
+		Policy user = Policy.of(10, Duration.ofMinutes(15)).withLockout(Duration.ofMinutes(15));
+		setPolicy(Operation.VERIFY_CODE, KeyType.SESSION, session);
+		setPolicy(Operation.VERIFY_CODE, KeyType.USERNAME, user);
+		setPolicy(Operation.RESEND_CODE, KeyType.SESSION, Policy.of(3, Duration.ofMinutes(5)));
+		setPolicy(Operation.RESEND_CODE, KeyType.USERNAME, Policy.of(5, Duration.ofMinutes(15)));
+	}
+
+	@Override
+	public boolean tryAcquire(Operation operation, KeyType keyType, String key) {
+		Policy policy = this.policies[operation.ordinal()][keyType.ordinal()];
+		if (key == null || policy == null) {
+			return true;
+		}
+		AtomicLongArray table = this.tables[operation.ordinal()][keyType.ordinal()];
+		if (acquire(table, policy, hash(keyType, key), this.clock.millis())) {
+			return true;
+		}
+		this.rejections[operation.ordinal()].increment();
+		return false;
+	}
+
+	private boolean acquire(AtomicLongArray table, Policy policy, long hash, long now) {
+		long fingerprint = fingerprint(hash);
+		int first = firstIndex(hash);
+		int second = secondIndex(hash, first);
+		while (true) {
+			long state = table.get(first);
+			long alternative = table.get(second);
+			int slot;
+			if (fingerprintOf(state) == fingerprint) {
+				slot = first;
+			}
+			else if (fingerprintOf(alternative) == fingerprint) {
+				slot = second;
+				state = alternative;
+			}
+			else {
+				// evict the slot full again first, the key starts over with an empty state
+				slot = (timeOf(state) <= timeOf(alternative)) ? first : second;
+				long evicted = (slot == first) ? state : alternative;
+				if (table.compareAndSet(slot, evicted, state(fingerprint, false, now + policy.interval))) {
+					return true;
+				}
+				continue;
+			}
+			long time = timeOf(state);
+			if ((state & LOCKED) != 0 && time > now) {
+				return false;
+			}
+			long full = Math.max(time, now);
+			if (full - now <= policy.tolerance) {
+				if (table.compareAndSet(slot, state, state(fingerprint, false, full + policy.interval))) {
+					return true;
+				}
+			}
+			else if (policy.lockout == 0
+					|| table.compareAndSet(slot, state, state(fingerprint, true, now + policy.lockout))) {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public void reset(Operation operation, KeyType keyType, String key) {
+		if (key == null) {
+			return;
+		}
+		AtomicLongArray table = this.tables[operation.ordinal()][keyType.ordinal()];
+		long hash = hash(keyType, key);
+		long fingerprint = fingerprint(hash);
+		int first = firstIndex(hash);
+		clear(table, first, fingerprint);
+		clear(table, secondIndex(hash, first), fingerprint);
+	}
+
+	private static void clear(AtomicLongArray table, int slot, long fingerprint) {
+		long state = table.get(slot);
+		if (fingerprintOf(state) == fingerprint) {
+			table.compareAndSet(slot, state, 0L);
+		}
+	}
+
+	/**
+	 * A seeded FNV-1a hash followed by the MurmurHash3 finalizer. Unlike
+	 * {@link String#hashCode()}, its collisions cannot be computed in advance, so an
+	 * attacker cannot choose keys sharing the slots of a victim.
+	 */
+	private long hash(KeyType keyType, String key) {
+		long hash = this.seed ^ ((keyType.ordinal() + 1) * 0x9e3779b97f4a7c15L);
+		for (int i = 0; i < key.length(); i++) {
+			hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	private int firstIndex(long hash) {
+		return (int) hash & this.mask;
+	}
+
+	private int secondIndex(long hash, int first) {
+		int second = (int) (hash >>> 24) & this.mask;
+		return (second != first) ? second : first ^ 1;
+	}
+
+	private static long fingerprint(long hash) {
+		long fingerprint = hash >>> FINGERPRINT_SHIFT;
+		return (fingerprint != 0) ? fingerprint : 1;
+	}
+
+	private static long fingerprintOf(long state) {
+		return state >>> FINGERPRINT_SHIFT;
+	}
+
+	private static long timeOf(long state) {
+		return state & TIME_MASK;
+	}
+
+	private static long state(long fingerprint, boolean locked, long time) {
+		return (fingerprint << FINGERPRINT_SHIFT) | (locked ? LOCKED : 0L) | time;
+	}
+
+	/**
+	 * Sets how attempts of an operation are limited for a type of key.
+	 * @param operation the operation
+	 * @param keyType the type of key
+	 * @param policy the policy to apply, or {@code null} not to limit this type of key
+	 */
+	public void setPolicy(Operation operation, KeyType keyType, Policy policy) {
+		Assert.notNull(operation, "operation cannot be null");
+		Assert.notNull(keyType, "keyType cannot be null");
+		this.policies[operation.ordinal()][keyType.ordinal()] = policy;
+	}
+
+	/**
+	 * Returns the policy applied to an operation for a type of key.
+	 * @param operation the operation
+	 * @param keyType the type of key
+	 * @return the policy, or {@code null} if this type of key is not limited
+	 */
+	public Policy getPolicy(Operation operation, KeyType keyType) {
+		return this.policies[operation.ordinal()][keyType.ordinal()];
+	}
+
+	/**
+	 * Returns how many attempts of an operation were refused.
+	 * @param operation the operation
+	 * @return the number of refused attempts
+	 */
+	public long getRejectedCount(Operation operation) {
+		return this.rejections[operation.ordinal()].sum();
+	}
+
+	/**
+	 * Sets the {@link Clock} used to refill the buckets and end lockouts.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	/**
+	 * How often a key may attempt an operation: up to {@code limit} attempts in a row,
+	 * after which one more attempt is allowed every {@code window / limit}.
+	 */
+	public static final class Policy {
+
+		private final int limit;
+
+		private final Duration window;
+
+		private final Duration lockoutDuration;
+
+		private final long interval;
+
+		private final long tolerance;
+
+		private final long lockout;
+
+		private Policy(int limit, Duration window, Duration lockoutDuration) {
+			this.limit = limit;
+			this.window = window;
+			this.lockoutDuration = lockoutDuration;
+			this.interval = Math.max(1, window.toMillis() / limit);
+			this.tolerance = this.interval * (limit - 1);
+			this.lockout = (lockoutDuration != null) ? lockoutDuration.toMillis() : 0;
+		}
+
+		/**
+		 * Creates a policy allowing {@code limit} attempts per {@code window}, without
+		 * lockout.
+		 * @param limit the number of attempts
+		 * @param window the period over which they are allowed
+		 * @return the policy
+		 */
+		public static Policy of(int limit, Duration window) {
+			Assert.isTrue(limit > 0, "limit must be greater than 0");
+			Assert.notNull(window, "window cannot be null");
+			Assert.isTrue(!window.isNegative() && !window.isZero(), "window must be positive");
+			Assert.isTrue(window.toMillis() <= MAXIMUM_DURATION_IN_MILLIS, "window is too long");
+			return new Policy(limit, window, null);
+		}
+
+		/**
+		 * Returns a copy of this policy that refuses every attempt of a key for the
+		 * given duration once it exceeded its limit.
+		 * @param lockoutDuration the lockout duration, at least the window
+		 * @return the policy
+		 */
+		public Policy withLockout(Duration lockoutDuration) {
+			Assert.notNull(lockoutDuration, "lockoutDuration cannot be null");
+			Assert.isTrue(lockoutDuration.compareTo(this.window) >= 0, "lockoutDuration cannot be shorter than the window");
+			Assert.isTrue(lockoutDuration.toMillis() <= MAXIMUM_DURATION_IN_MILLIS, "lockoutDuration is too long");
+			return new Policy(this.limit, this.window, lockoutDuration);
+		}
+
+		public int getLimit() {
+			return this.limit;
+		}
+
+		public Duration getWindow() {
+			return this.window;
+		}
+
+		/**
+		 * @return the lockout duration, or {@code null} if keys are not locked out
+		 */
+		public Duration getLockoutDuration() {
+			return this.lockoutDuration;
+		}
+
+	}
+
+}
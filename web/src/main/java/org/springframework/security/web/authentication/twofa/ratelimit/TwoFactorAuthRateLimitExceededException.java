@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.ratelimit;
+
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Thrown when a two-factor request is refused by the {@link TwoFactorAuthRateLimiter}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class TwoFactorAuthRateLimitExceededException extends AuthenticationException {
+
+	/**
+	 * Constructs a {@code TwoFactorAuthRateLimitExceededException} with the specified
+	 * message.
+	 * @param msg the detail message
+	 */
+	public TwoFactorAuthRateLimitExceededException(String msg) {
+		super(msg);
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.ratelimit;
+
+/**
+ * Limits how often two-factor codes can be checked or resent, so that the short codes
+ * cannot be guessed and users cannot be flooded with messages.
+ * <p>
+ * Each {@link Operation} is limited separately for the username, the session and the
+ * client address of the request. The two-factor filters ask for a permit for every key
+ * they know of, and reject the request as soon as one of them is refused. Since the
+ * limiter sits in front of every two-factor request, implementations must answer without
+ * performing any I/O.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see InMemoryTwoFactorAuthRateLimiter
+ */
+public interface TwoFactorAuthRateLimiter {
+
+	/**
+	 * Records an attempt of the given operation for a key.
+	 * @param operation the operation being attempted
+	 * @param keyType what the key identifies
+	 * @param key the username, session id or client address. A {@code null} key is
+	 * not limited.
+	 * @return {@code true} if the attempt may proceed, {@code false} if the key is over
+	 * its limit or locked out
+	 */
+	boolean tryAcquire(Operation operation, KeyType keyType, String key);
+
+	/**
+	 * Forgets the attempts recorded for a key, for instance once the user submitted a
+	 * valid code.
+	 * @param operation the operation
+	 * @param keyType what the key identifies
+	 * @param key the username, session id or client address
+	 */
+	void reset(Operation operation, KeyType keyType, String key);
+
+	/**
+	 * The two-factor operations which are limited.
+	 */
+	enum Operation {
+
+		/**
+		 * Checking a submitted code.
+		 */
+		VERIFY_CODE,
+
+		/**
+		 * Resending the pending code.
+		 */
+		RESEND_CODE
+
+	}
+
+	/**
+	 * What a limited key identifies.
+	 */
+	enum KeyType {
+
+		/**
+		 * The user completing the sign in.
+		 */
+		USERNAME,
+
+		/**
+		 * The session the sign in attempt belongs to.
+		 */
+		SESSION,
+
+		/**
+		 * The address of the client sending the request.
+		 */
+		REMOTE_ADDRESS
+
+	}
+
+}
@@ -1,121 +1,303 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
 package org.springframework.security.web.authentication.twofa.repositories;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.log.LogMessage;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.util.Assert;
 
-import javax.sql.DataSource;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+/**
+ * A JDBC based {@link TwoFactorAuthCodeRepository} that stores {@link SignInAttempt}s in
+ * the {@code two_factor_code} table.
+ * <p>
+ * The schema can be found in
+ * {@code org/springframework/security/web/authentication/twofa/repositories/two-factor-code-schema.sql}.
+ * All database access goes through {@link JdbcOperations}, so connections, statements
+ * and result sets are always released back to the pool.
+ * <p>
+ * Attempts that are never completed are removed by {@link #purgeExpiredCodes()}, which
+ * deletes every row older than the {@link #setExpirationTime(long) expiration time} in a
+ * single statement. It can be run periodically with
+ * {@link #schedulePurge(TaskScheduler, Duration)}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see JdbcOperations
+ */
+public class DatabaseTwoFactorAuthCodeRepository implements TwoFactorAuthCodeRepository, DisposableBean {
+
+	/**
+	 * The default time, in milliseconds, after which an attempt may be purged.
+	 */
+	public static final long DEFAULT_EXPIRATION_TIME_IN_MILLIS = 90000;
+
+	/** The default SQL used by {@link #getCode(String)} */
+	public static final String GET_TWO_FACTOR_CODE_BY_SESSION_ID = "SELECT cookie, code, username, time_created FROM two_factor_code WHERE cookie = ?";
+
+	/** The default SQL used by {@link #removeCode(String)} */
+	public static final String REMOVE_TWO_FACTOR_CODE_BY_SESSION_ID = "DELETE FROM two_factor_code WHERE cookie = ?";
 
-public class DatabaseTwoFactorAuthCodeRepository implements TwoFactorAuthCodeRepository {
+	/** The default SQL used by {@link #insertCode(SignInAttempt)} */
+	public static final String INSERT_TWO_FACTOR_CODE = "INSERT INTO two_factor_code (cookie, code, username, time_created) VALUES (?, ?, ?, ?)";
 
-    public static final String GET_TWO_FACTOR_CODE_BY_SESSION_ID = "SELECT * FROM two_factor_code WHERE cookie = ?;";
-    public static final String REMOVE_TWO_FACTOR_CODE_BY_SESSION_ID = "DELETE FROM two_factor_code WHERE cookie = ?;";
-    public static final String INSERT_TWO_FACTOR_CODE = "INSERT INTO two_factor_code (cookie, code, username, time_created) VALUES (?, ?, ?, ?);";
+	/**
+	 * The default SQL used by {@link #insertCode(SignInAttempt)} when an attempt already
+	 * exists for the session
+	 */
+	public static final String UPDATE_TWO_FACTOR_CODE = "UPDATE two_factor_code SET code = ?, username = ?, time_created = ? WHERE cookie = ?";
 
-    private String getTwoFactorCodeBySessionIdQuery = GET_TWO_FACTOR_CODE_BY_SESSION_ID;
-    private String removeTwoFactorCodeQuery = REMOVE_TWO_FACTOR_CODE_BY_SESSION_ID;
-    private String insertTwoFactorCode = INSERT_TWO_FACTOR_CODE;
+	/** The default SQL used by {@link #purgeExpiredCodes()} */
+	public static final String REMOVE_EXPIRED_TWO_FACTOR_CODES = "DELETE FROM two_factor_code WHERE time_created < ?";
 
-	private DataSource dataSource;
+	private final Log logger = LogFactory.getLog(getClass());
 
+	private JdbcOperations jdbcOperations;
+
+	private String getTwoFactorCodeBySessionIdQuery = GET_TWO_FACTOR_CODE_BY_SESSION_ID;
+
+	private String removeTwoFactorCodeQuery = REMOVE_TWO_FACTOR_CODE_BY_SESSION_ID;
+
+	private String insertTwoFactorCode = INSERT_TWO_FACTOR_CODE;
+
+	private String updateTwoFactorCode = UPDATE_TWO_FACTOR_CODE;
+
+	private String removeExpiredTwoFactorCodesQuery = REMOVE_EXPIRED_TWO_FACTOR_CODES;
+
+	private long expirationTimeInMillis = DEFAULT_EXPIRATION_TIME_IN_MILLIS;
+
+	private Clock clock = Clock.systemUTC();
+
+	private ScheduledFuture<?> purgeTask;
+
+	/**
+	 * Constructs a {@code DatabaseTwoFactorAuthCodeRepository} using a
+	 * {@link JdbcTemplate} for the provided {@link DataSource}.
+	 * @param dataSource the data source
+	 */
 	public DatabaseTwoFactorAuthCodeRepository(DataSource dataSource) {
-		this.dataSource = dataSource;
+		this(new JdbcTemplate(dataSource));
+	}
+
+	/**
+	 * Constructs a {@code DatabaseTwoFactorAuthCodeRepository} using the provided
+	 * {@link JdbcOperations}.
+	 * @param jdbcOperations the JDBC operations
+	 */
+	public DatabaseTwoFactorAuthCodeRepository(JdbcOperations jdbcOperations) {
+		Assert.notNull(jdbcOperations, "jdbcOperations cannot be null");
+		this.jdbcOperations = jdbcOperations;
 	}
 
+	/**
+	 * Saves the attempt, replacing any attempt already stored for the same session. The
+	 * insert is tried first since most attempts belong to a new session; if the session
+	 * already has a row, it is updated instead.
+	 * @param code the attempt to save
+	 */
 	@Override
-    public void insertCode(SignInAttempt code) {
-        try {
-            PreparedStatement statement = getPreparedStatement(insertTwoFactorCode);
-
-            statement.setString(1, code.getSessionId());
-            statement.setString(2, code.getTwoFactorCode());
-            statement.setString(3, code.getUsername());
-            statement.setLong(4, code.getTime().getTime());
-
-            statement.execute();
-        }catch(SQLException e) {
-            throw new RepositoryHandlingException(e.getMessage(), e.getCause());
-        }
-    }
-
-    @Override
-    public SignInAttempt getCode(String sessionId) {
-		ResultSet resultSet;
+	public void insertCode(SignInAttempt code) {
+		Assert.notNull(code, "code cannot be null");
+		long timeCreated = code.getTime().getTime();
 		try {
-            PreparedStatement statement = getPreparedStatement(getTwoFactorCodeBySessionIdQuery);
+			try {
+				this.jdbcOperations.update(this.insertTwoFactorCode, code.getSessionId(), code.getTwoFactorCode(),
+						code.getUsername(), timeCreated);
+			}
+			catch (DuplicateKeyException ex) {
+				this.jdbcOperations.update(this.updateTwoFactorCode, code.getTwoFactorCode(), code.getUsername(),
+						timeCreated, code.getSessionId());
+			}
+		}
+		catch (DataAccessException ex) {
+			throw new RepositoryHandlingException(ex.getMessage(), ex);
+		}
+	}
 
-            statement.setString(1, sessionId);
+	@Override
+	public SignInAttempt getCode(String sessionId) {
+		if (sessionId == null) {
+			return null;
+		}
+		try {
+			RowMapper<SignInAttempt> rowMapper = (rs, rowNum) -> createSignInAttempt(sessionId, rs);
+			List<SignInAttempt> attempts = this.jdbcOperations.query(this.getTwoFactorCodeBySessionIdQuery, rowMapper,
+					sessionId);
+			return !attempts.isEmpty() ? attempts.get(0) : null;
+		}
+		catch (DataAccessException ex) {
+			throw new RepositoryHandlingException(ex.getMessage(), ex);
+		}
+	}
 
-            resultSet = statement.executeQuery();
-            resultSet.next();
-		}catch (SQLException e) {
-			throw new RepositoryHandlingException(e.getMessage(), e.getCause());
+	private SignInAttempt createSignInAttempt(String sessionId, ResultSet rs) throws SQLException {
+		return new SignInAttempt(sessionId, rs.getString("code"), rs.getString("username"),
+				rs.getLong("time_created"));
+	}
+
+	@Override
+	public void removeCode(SignInAttempt code) {
+		removeCode(code.getSessionId());
+	}
+
+	@Override
+	public void removeCode(String sessionId) {
+		try {
+			this.jdbcOperations.update(this.removeTwoFactorCodeQuery, sessionId);
+		}
+		catch (DataAccessException ex) {
+			throw new RepositoryHandlingException(ex.getMessage(), ex);
 		}
+	}
 
+	/**
+	 * Deletes, in a single statement, every attempt created before the
+	 * {@link #setExpirationTime(long) expiration time}.
+	 * @return the number of attempts deleted
+	 */
+	public int purgeExpiredCodes() {
+		long cutoff = this.clock.millis() - this.expirationTimeInMillis;
 		try {
-			return new SignInAttempt
-					(
-							sessionId,
-							resultSet.getString("code"),
-							resultSet.getString("username"),
-							resultSet.getLong("time_created")
-					);
-		}catch(SQLException e) {
-			return null;
+			int purged = this.jdbcOperations.update(this.removeExpiredTwoFactorCodesQuery, cutoff);
+			this.logger.debug(LogMessage.format("Purged %s expired two-factor codes", purged));
+			return purged;
 		}
-    }
-
-    @Override
-    public void removeCode(SignInAttempt code) {
-        removeCode(code.getSessionId());
-    }
-
-    @Override
-    public void removeCode(String sessionId) {
-        try {
-            PreparedStatement statement = getPreparedStatement(removeTwoFactorCodeQuery);
-
-            statement.setString(1, sessionId);
-
-            statement.execute();
-        }catch (SQLException e) {
-            throw new RepositoryHandlingException(e.getMessage(), e.getCause());
-        }
-    }
-
-    //TODO do these connections ever get released? Or do i have to manually release?
-    private PreparedStatement getPreparedStatement(String query) throws SQLException {
-        return dataSource.getConnection().prepareStatement(query);
-    }
-
-    public void setDataSource(DataSource dataSource) {
-        this.dataSource = dataSource;
-    }
-
-    public void setGetTwoFactorCodeBySessionIdQuery(String getTwoFactorCodeBySessionIdQuery) {
-        this.getTwoFactorCodeBySessionIdQuery = getTwoFactorCodeBySessionIdQuery;
-    }
-
-    public void setRemoveTwoFactorCodeQuery(String removeTwoFactorCodeQuery) {
-        this.removeTwoFactorCodeQuery = removeTwoFactorCodeQuery;
-    }
-
-    public void setInsertTwoFactorCode(String insertTwoFactorCode) {
-        this.insertTwoFactorCode = insertTwoFactorCode;
-    }
-
-    public String getGetTwoFactorCodeBySessionIdQuery() {
-        return getTwoFactorCodeBySessionIdQuery;
-    }
-
-    public String getRemoveTwoFactorCodeQuery() {
-        return removeTwoFactorCodeQuery;
-    }
-
-    public String getInsertTwoFactorCode() {
-        return insertTwoFactorCode;
-    }
+		catch (DataAccessException ex) {
+			throw new RepositoryHandlingException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Runs {@link #purgeExpiredCodes()} every {@code interval} on the given
+	 * {@link TaskScheduler}, replacing any previously scheduled purge. Failures are
+	 * logged and the next run proceeds as scheduled. The purge is cancelled by
+	 * {@link #destroy()}.
+	 * @param taskScheduler the scheduler to run the purge on
+	 * @param interval the time between two purges
+	 */
+	public synchronized void schedulePurge(TaskScheduler taskScheduler, Duration interval) {
+		Assert.notNull(taskScheduler, "taskScheduler cannot be null");
+		Assert.notNull(interval, "interval cannot be null");
+		Assert.isTrue(!interval.isNegative() && !interval.isZero(), "interval must be positive");
+		cancelPurge();
+		this.purgeTask = taskScheduler.scheduleAtFixedRate(this::purgeQuietly, interval);
+	}
+
+	private void purgeQuietly() {
+		try {
+			purgeExpiredCodes();
+		}
+		catch (RepositoryHandlingException ex) {
+			this.logger.warn("Failed to purge expired two-factor codes", ex);
+		}
+	}
+
+	private void cancelPurge() {
+		if (this.purgeTask != null) {
+			this.purgeTask.cancel(false);
+			this.purgeTask = null;
+		}
+	}
+
+	@Override
+	public synchronized void destroy() {
+		cancelPurge();
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.jdbcOperations = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Sets the time, in milliseconds, after which an attempt is considered expired by
+	 * {@link #purgeExpiredCodes()}. Defaults to
+	 * {@link #DEFAULT_EXPIRATION_TIME_IN_MILLIS}.
+	 * @param expirationTimeInMillis the expiration time in milliseconds
+	 */
+	public void setExpirationTime(long expirationTimeInMillis) {
+		Assert.isTrue(expirationTimeInMillis > 0, "expirationTimeInMillis must be greater than 0");
+		this.expirationTimeInMillis = expirationTimeInMillis;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to compute the purge cutoff.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	public void setGetTwoFactorCodeBySessionIdQuery(String getTwoFactorCodeBySessionIdQuery) {
+		this.getTwoFactorCodeBySessionIdQuery = getTwoFactorCodeBySessionIdQuery;
+	}
+
+	public void setRemoveTwoFactorCodeQuery(String removeTwoFactorCodeQuery) {
+		this.removeTwoFactorCodeQuery = removeTwoFactorCodeQuery;
+	}
+
+	public void setInsertTwoFactorCode(String insertTwoFactorCode) {
+		this.insertTwoFactorCode = insertTwoFactorCode;
+	}
+
+	public void setUpdateTwoFactorCode(String updateTwoFactorCode) {
+		this.updateTwoFactorCode = updateTwoFactorCode;
+	}
+
+	public void setRemoveExpiredTwoFactorCodesQuery(String removeExpiredTwoFactorCodesQuery) {
+		this.removeExpiredTwoFactorCodesQuery = removeExpiredTwoFactorCodesQuery;
+	}
+
+	public String getGetTwoFactorCodeBySessionIdQuery() {
+		return this.getTwoFactorCodeBySessionIdQuery;
+	}
+
+	public String getRemoveTwoFactorCodeQuery() {
+		return this.removeTwoFactorCodeQuery;
+	}
+
+	public String getInsertTwoFactorCode() {
+		return this.insertTwoFactorCode;
+	}
+
+	public String getUpdateTwoFactorCode() {
+		return this.updateTwoFactorCode;
+	}
+
+	public String getRemoveExpiredTwoFactorCodesQuery() {
+		return this.removeExpiredTwoFactorCodesQuery;
+	}
+
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.repositories;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ReactiveTwoFactorAuthCodeRepository} that keeps {@link SignInAttempt}s in
+ * memory. It adapts an {@link InMemoryTwoFactorAuthCodeRepository}, whose operations
+ * never block, so attempts expire and are bounded in the same way.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class InMemoryReactiveTwoFactorAuthCodeRepository implements ReactiveTwoFactorAuthCodeRepository {
+
+	private final InMemoryTwoFactorAuthCodeRepository delegate;
+
+	public InMemoryReactiveTwoFactorAuthCodeRepository() {
+		this(new InMemoryTwoFactorAuthCodeRepository());
+	}
+
+	/**
+	 * Creates an instance backed by the given repository, which may also be shared with
+	 * a servlet two-factor flow.
+	 * @param delegate the repository holding the attempts
+	 */
+	public InMemoryReactiveTwoFactorAuthCodeRepository(InMemoryTwoFactorAuthCodeRepository delegate) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Mono<Void> insertCode(SignInAttempt code) {
+		Assert.notNull(code, "code cannot be null");
+		return Mono.fromRunnable(() -> this.delegate.insertCode(code));
+	}
+
+	@Override
+	public Mono<SignInAttempt> getCode(String sessionId) {
+		return Mono.fromSupplier(() -> this.delegate.getCode(sessionId));
+	}
+
+	@Override
+	public Mono<Void> removeCode(String sessionId) {
+		return Mono.fromRunnable(() -> this.delegate.removeCode(sessionId));
+	}
+
+	/**
+	 * Sets the time, in milliseconds, after which an attempt expires.
+	 * @param expirationTimeInMillis the expiration time
+	 * @see InMemoryTwoFactorAuthCodeRepository#setExpirationTime(long)
+	 */
+	public void setExpirationTime(long expirationTimeInMillis) {
+		this.delegate.setExpirationTime(expirationTimeInMillis);
+	}
+
+	/**
+	 * Returns the repository holding the attempts, to configure or monitor it.
+	 * @return the underlying repository
+	 */
+	public InMemoryTwoFactorAuthCodeRepository getDelegate() {
+		return this.delegate;
+	}
+
+}
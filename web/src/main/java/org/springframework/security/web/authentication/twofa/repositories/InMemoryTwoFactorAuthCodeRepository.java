@@ -1,36 +1,215 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
 package org.springframework.security.web.authentication.twofa.repositories;
 
-import org.springframework.cache.Cache;
+import java.time.Clock;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
 import org.springframework.util.Assert;
 
-import java.util.HashMap;
-
+/**
+ * A thread-safe, bounded {@link TwoFactorAuthCodeRepository} that keeps
+ * {@link SignInAttempt}s in memory.
+ * <p>
+ * Every attempt lives for the same amount of time, so attempts expire in the order they
+ * were inserted. The repository keeps that order in a queue and drops expired attempts
+ * from its head whenever an attempt is inserted, which keeps the repository bounded
+ * without a dedicated sweeper thread and without scanning live attempts. Once
+ * {@link #setMaximumEntries(int) the maximum number of entries} is reached the oldest
+ * attempts are evicted to make room for new ones.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
 public class InMemoryTwoFactorAuthCodeRepository implements TwoFactorAuthCodeRepository {
 
-    private final HashMap<String, SignInAttempt> signInAttempts = new HashMap<>();
+	/**
+	 * The default time, in milliseconds, after which an attempt expires. Matches the
+	 * default code expiration time of
+	 * {@link org.springframework.security.web.authentication.twofa.services.TwoFactorAuthCodeServiceImpl}.
+	 */
+	public static final long DEFAULT_EXPIRATION_TIME_IN_MILLIS = 90000;
+
+	/**
+	 * The default maximum number of attempts kept at once.
+	 */
+	public static final int DEFAULT_MAXIMUM_ENTRIES = 100000;
+
+	private final ConcurrentMap<String, SignInAttempt> signInAttempts = new ConcurrentHashMap<>();
+
+	private final Queue<SignInAttempt> insertionOrder = new ConcurrentLinkedQueue<>();
+
+	private final Lock evictionLock = new ReentrantLock();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private long expirationTimeInMillis = DEFAULT_EXPIRATION_TIME_IN_MILLIS;
+
+	private int maximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+
+	private Clock clock = Clock.systemUTC();
+
+	@Override
+	public void insertCode(SignInAttempt code) {
+		Assert.notNull(code, "code cannot be null");
+		Assert.notNull(code.getSessionId(), "code must have a session id");
+		this.signInAttempts.put(code.getSessionId(), code);
+		this.insertionOrder.offer(code);
+		evict();
+	}
+
+	@Override
+	public SignInAttempt getCode(String sessionId) {
+		if (sessionId == null) {
+			return null;
+		}
+		SignInAttempt attempt = this.signInAttempts.get(sessionId);
+		if (attempt == null) {
+			this.misses.increment();
+			return null;
+		}
+		if (isExpired(attempt, this.clock.millis())) {
+			if (this.signInAttempts.remove(sessionId, attempt)) {
+				this.evictions.increment();
+			}
+			this.misses.increment();
+			return null;
+		}
+		this.hits.increment();
+		return attempt;
+	}
+
+	@Override
+	public void removeCode(SignInAttempt code) {
+		removeCode(code.getSessionId());
+	}
+
+	@Override
+	public void removeCode(String sessionId) {
+		if (sessionId != null) {
+			this.signInAttempts.remove(sessionId);
+		}
+	}
+
+	/**
+	 * Removes every expired attempt and, if the repository is full, the oldest attempts
+	 * over the limit. This is invoked on each insert, but may also be scheduled
+	 * externally when inserts are rare.
+	 * <p>
+	 * Only one thread evicts at a time; concurrent callers return immediately rather
+	 * than waiting, so the limit may briefly be exceeded by the number of concurrent
+	 * inserts.
+	 */
+	public void evict() {
+		if (!this.evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			long now = this.clock.millis();
+			SignInAttempt oldest;
+			while ((oldest = this.insertionOrder.peek()) != null) {
+				if (!isExpired(oldest, now) && this.signInAttempts.size() <= this.maximumEntries) {
+					return;
+				}
+				this.insertionOrder.poll();
+				// the attempt may have been replaced or removed since it was queued
+				if (this.signInAttempts.remove(oldest.getSessionId(), oldest)) {
+					this.evictions.increment();
+				}
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	private boolean isExpired(SignInAttempt attempt, long now) {
+		return attempt.getTime().getTime() + this.expirationTimeInMillis < now;
+	}
+
+	/**
+	 * Sets the time, in milliseconds, after which an attempt is discarded. This should
+	 * match the expiration time of the
+	 * {@link org.springframework.security.web.authentication.twofa.services.TwoFactorAuthCodeService}
+	 * using this repository. Defaults to {@link #DEFAULT_EXPIRATION_TIME_IN_MILLIS}.
+	 * @param expirationTimeInMillis the expiration time in milliseconds
+	 */
+	public void setExpirationTime(long expirationTimeInMillis) {
+		Assert.isTrue(expirationTimeInMillis > 0, "expirationTimeInMillis must be greater than 0");
+		this.expirationTimeInMillis = expirationTimeInMillis;
+	}
+
+	/**
+	 * Sets the maximum number of attempts kept at once. When it is reached, the oldest
+	 * attempts are evicted. Defaults to {@link #DEFAULT_MAXIMUM_ENTRIES}.
+	 * @param maximumEntries the maximum number of entries
+	 */
+	public void setMaximumEntries(int maximumEntries) {
+		Assert.isTrue(maximumEntries > 0, "maximumEntries must be greater than 0");
+		this.maximumEntries = maximumEntries;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to decide whether an attempt has expired.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
 
-    @Override
-    public void insertCode(SignInAttempt code) {
-        signInAttempts.put(code.getSessionId(), code);
-    }
+	/**
+	 * @return the number of attempts currently held
+	 */
+	public int size() {
+		return this.signInAttempts.size();
+	}
 
-    @Override
-    public SignInAttempt getCode(String sessionId) {
-        if(sessionId == null) {
-            return null;
-        }
+	/**
+	 * @return the number of lookups that found a live attempt
+	 */
+	public long getHitCount() {
+		return this.hits.sum();
+	}
 
-        return signInAttempts.get(sessionId);
-    }
+	/**
+	 * @return the number of lookups that found no attempt or an expired one
+	 */
+	public long getMissCount() {
+		return this.misses.sum();
+	}
 
-    @Override
-    public void removeCode(SignInAttempt code) {
-        removeCode(code.getSessionId());
-    }
+	/**
+	 * @return the number of attempts removed because they expired or because the
+	 * repository was full
+	 */
+	public long getEvictionCount() {
+		return this.evictions.sum();
+	}
 
-    @Override
-    public void removeCode(String sessionId) {
-        signInAttempts.remove(sessionId);
-    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.repositories;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import io.r2dbc.spi.Row;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.log.LogMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.util.Assert;
+
+/**
+ * A R2DBC implementation of {@link ReactiveTwoFactorAuthCodeRepository} that uses a
+ * {@link DatabaseClient} to store {@link SignInAttempt}s in the {@code two_factor_code}
+ * table.
+ * <p>
+ * <b>NOTE:</b> This repository depends on the table definition described in
+ * "classpath:org/springframework/security/web/authentication/twofa/repositories/two-factor-code-schema.sql",
+ * which is shared with {@link DatabaseTwoFactorAuthCodeRepository}.
+ * <p>
+ * Attempts older than the {@link #setExpirationTime(long) expiration time} are never
+ * returned, and are deleted by {@link #purgeExpiredCodes()}. It can be run periodically
+ * with {@link #schedulePurge(Scheduler, Duration)}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see DatabaseClient
+ */
+public class R2dbcReactiveTwoFactorAuthCodeRepository implements ReactiveTwoFactorAuthCodeRepository, DisposableBean {
+
+	private static final String TABLE_NAME = "two_factor_code";
+
+	private static final String PK_FILTER = "cookie = :sessionId";
+
+	// @formatter:off
+	private static final String LOAD_CODE_SQL = "SELECT cookie, code, username, time_created FROM " + TABLE_NAME
+			+ " WHERE " + PK_FILTER + " AND time_created >= :notBefore";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String INSERT_CODE_SQL = "INSERT INTO " + TABLE_NAME
+			+ " (cookie, code, username, time_created) VALUES (:sessionId, :code, :username, :timeCreated)";
+	// @formatter:on
+
+	// @formatter:off
+	private static final String UPDATE_CODE_SQL = "UPDATE " + TABLE_NAME
+			+ " SET code = :code, username = :username, time_created = :timeCreated WHERE " + PK_FILTER;
+	// @formatter:on
+
+	private static final String REMOVE_CODE_SQL = "DELETE FROM " + TABLE_NAME + " WHERE " + PK_FILTER;
+
+	private static final String REMOVE_EXPIRED_CODES_SQL = "DELETE FROM " + TABLE_NAME
+			+ " WHERE time_created < :expiredBefore";
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	protected final DatabaseClient databaseClient;
+
+	private long expirationTimeInMillis = DatabaseTwoFactorAuthCodeRepository.DEFAULT_EXPIRATION_TIME_IN_MILLIS;
+
+	private Clock clock = Clock.systemUTC();
+
+	private Disposable purgeTask;
+
+	/**
+	 * Constructs a {@code R2dbcReactiveTwoFactorAuthCodeRepository} using the provided
+	 * {@link DatabaseClient}.
+	 * @param databaseClient the database client
+	 */
+	public R2dbcReactiveTwoFactorAuthCodeRepository(DatabaseClient databaseClient) {
+		Assert.notNull(databaseClient, "databaseClient cannot be null");
+		this.databaseClient = databaseClient;
+	}
+
+	/**
+	 * Saves the attempt. A new session is the common case, so the row is inserted first
+	 * and only updated if the session already has an attempt.
+	 */
+	@Override
+	public Mono<Void> insertCode(SignInAttempt code) {
+		Assert.notNull(code, "code cannot be null");
+		Assert.notNull(code.getSessionId(), "code must have a session id");
+		return bind(this.databaseClient.sql(INSERT_CODE_SQL), code).fetch().rowsUpdated()
+				.onErrorResume(DataIntegrityViolationException.class,
+						(ex) -> bind(this.databaseClient.sql(UPDATE_CODE_SQL), code).fetch().rowsUpdated())
+				.then();
+	}
+
+	@Override
+	public Mono<SignInAttempt> getCode(String sessionId) {
+		if (sessionId == null) {
+			return Mono.empty();
+		}
+		return Mono.defer(() -> this.databaseClient.sql(LOAD_CODE_SQL).bind("sessionId", sessionId)
+				.bind("notBefore", this.clock.millis() - this.expirationTimeInMillis)
+				.map((row, metadata) -> mapRow(row)).first());
+	}
+
+	@Override
+	public Mono<Void> removeCode(String sessionId) {
+		if (sessionId == null) {
+			return Mono.empty();
+		}
+		return this.databaseClient.sql(REMOVE_CODE_SQL).bind("sessionId", sessionId).fetch().rowsUpdated().then();
+	}
+
+	/**
+	 * Deletes every attempt older than the {@link #setExpirationTime(long) expiration
+	 * time} in a single statement.
+	 * @return the number of deleted attempts
+	 */
+	public Mono<Integer> purgeExpiredCodes() {
+		return Mono.defer(() -> this.databaseClient.sql(REMOVE_EXPIRED_CODES_SQL)
+				.bind("expiredBefore", this.clock.millis() - this.expirationTimeInMillis).fetch().rowsUpdated());
+	}
+
+	/**
+	 * Runs {@link #purgeExpiredCodes()} every {@code interval} on the given
+	 * {@link Scheduler}, replacing any previously scheduled purge. Failures are logged
+	 * and the next run proceeds as scheduled. The purge is cancelled by
+	 * {@link #destroy()}.
+	 * @param scheduler the scheduler to run the purge on
+	 * @param interval the time between two purges
+	 */
+	public synchronized void schedulePurge(Scheduler scheduler, Duration interval) {
+		Assert.notNull(scheduler, "scheduler cannot be null");
+		Assert.notNull(interval, "interval cannot be null");
+		Assert.isTrue(!interval.isNegative() && !interval.isZero(), "interval must be positive");
+		cancelPurge();
+		// @formatter:off
+		this.purgeTask = Flux.interval(interval, scheduler)
+				.concatMap((tick) -> purgeExpiredCodes()
+						.doOnNext((purged) -> this.logger
+								.debug(LogMessage.format("Purged %s expired two-factor codes", purged)))
+						.onErrorResume((ex) -> {
+							this.logger.warn("Failed to purge expired two-factor codes", ex);
+							return Mono.empty();
+						}))
+				.subscribe();
+		// @formatter:on
+	}
+
+	private void cancelPurge() {
+		if (this.purgeTask != null) {
+			this.purgeTask.dispose();
+			this.purgeTask = null;
+		}
+	}
+
+	@Override
+	public synchronized void destroy() {
+		cancelPurge();
+	}
+
+	/**
+	 * Sets the time, in milliseconds, after which an attempt is no longer returned and
+	 * may be deleted by {@link #purgeExpiredCodes()}. Defaults to 90 seconds.
+	 * @param expirationTimeInMillis the expiration time
+	 */
+	public void setExpirationTime(long expirationTimeInMillis) {
+		Assert.isTrue(expirationTimeInMillis > 0, "expirationTimeInMillis must be greater than 0");
+		this.expirationTimeInMillis = expirationTimeInMillis;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to tell expired attempts apart.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec,
+			SignInAttempt code) {
+		return spec.bind("sessionId", code.getSessionId())
+				.bind("code", Parameter.fromOrEmpty(code.getTwoFactorCode(), String.class))
+				.bind("username", code.getUsername()).bind("timeCreated", code.getTime().getTime());
+	}
+
+	private static SignInAttempt mapRow(Row row) {
+		return new SignInAttempt(row.get("cookie", String.class), row.get("code", String.class),
+				row.get("username", String.class), row.get("time_created", Long.class));
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.repositories;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+
+/**
+ * The reactive counterpart of {@link TwoFactorAuthCodeRepository}, storing the
+ * {@link SignInAttempt}s of users who still have to submit a two-factor code.
+ * Implementations must not block the subscribing thread.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see InMemoryReactiveTwoFactorAuthCodeRepository
+ * @see R2dbcReactiveTwoFactorAuthCodeRepository
+ */
+public interface ReactiveTwoFactorAuthCodeRepository {
+
+	/**
+	 * Saves a sign in attempt, replacing any attempt of the same session.
+	 * @param code the attempt to save
+	 * @return a {@link Mono} completing once the attempt is saved
+	 */
+	Mono<Void> insertCode(SignInAttempt code);
+
+	/**
+	 * Finds the sign in attempt of a session.
+	 * @param sessionId the session id
+	 * @return the attempt, or an empty {@link Mono} if there is none
+	 */
+	Mono<SignInAttempt> getCode(String sessionId);
+
+	/**
+	 * Removes the sign in attempt of a session, if any.
+	 * @param sessionId the session id
+	 * @return a {@link Mono} completing once the attempt is removed
+	 */
+	Mono<Void> removeCode(String sessionId);
+
+}
@@ -1,91 +1,198 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
 package org.springframework.security.web.authentication.twofa.services;
 
 import java.nio.ByteBuffer;
-
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
-import org.springframework.core.codec.Decoder;
-import org.springframework.util.Assert;
-import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.core.userdetails.TwoFactorPreference;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.Key;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import java.util.BitSet;
+
 import org.apache.commons.codec.binary.Base32;
 
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+import org.springframework.util.Assert;
+
+/**
+ * Verifies time-based one-time passwords as specified by
+ * <a href="https://tools.ietf.org/html/rfc6238">RFC 6238</a>.
+ * <p>
+ * Verification is designed to run on every two-factor login without allocating:
+ * <ul>
+ * <li>each Base32 secret is decoded once and the resulting key is cached,</li>
+ * <li>every thread reuses its own {@link Mac} and buffers, and only re-initializes the
+ * {@link Mac} when the key changes,</li>
+ * <li>codes are compared as integers, and every time step in the drift window is
+ * checked so the time taken does not reveal which step, if any, matched.</li>
+ * </ul>
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
 public class TotpService {
 
-	private final static int DEFAULT_CODE_LENGTH = 6;
+	private static final int DEFAULT_CODE_LENGTH = 6;
+
+	private static final Duration DEFAULT_TIME_STEP = Duration.ofSeconds(30);
+
+	private static final int DEFAULT_PAST_STEPS = 2;
+
+	private static final int DEFAULT_FUTURE_STEPS = 0;
+
+	private static final int DEFAULT_MAXIMUM_CACHED_KEYS = 10000;
+
+	private static final int[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+			1000000000 };
+
+	private static final Base32 BASE32 = new Base32();
+
+	private final ConcurrentMap<String, SecretKeySpec> keys = new ConcurrentHashMap<>();
+
 	private int codeLength = DEFAULT_CODE_LENGTH;
 
+	private Algorithm algorithm = Algorithm.SHA1;
+
+	private long timeStepMillis = DEFAULT_TIME_STEP.toMillis();
+
+	private int pastSteps = DEFAULT_PAST_STEPS;
+
+	private int futureSteps = DEFAULT_FUTURE_STEPS;
+
+	private int maximumCachedKeys = DEFAULT_MAXIMUM_CACHED_KEYS;
+
+	private Clock clock = Clock.systemUTC();
+
+	private ThreadLocal<MacHolder> macs = newMacs(this.algorithm);
+
 	public TotpService() {
 	}
 
 	public TotpService(int codeLength) {
-		this.codeLength = codeLength;
+		setCodeLength(codeLength);
 	}
 
+	/**
+	 * Checks the submitted code against the codes of the current time step and of the
+	 * steps in the allowed drift window.
+	 * @param preference the key preference holding the Base32 encoded secret
+	 * @param codeToCheck the submitted code
+	 * @throws BadCredentialsException if the code does not match
+	 */
 	public void confirmCode(TwoFactorPreference preference, String codeToCheck) {
-		Assert.isTrue(preference.isKey(),
-				"non-key 2FA preference was passed to TotpService's confirmCode()");
-
-		codeToCheck = codeToCheck.trim();
-		String secret = preference.getData();
-		long currentInterval = System.currentTimeMillis() / 30000;
-
-		if(generateCode(secret, currentInterval).equals(codeToCheck)) {
-			return;
-		}else{
-			if(generateCode(secret, currentInterval - 1).equals(codeToCheck)) {
-				return;
-			}
-			if(generateCode(secret, currentInterval - 2).equals(codeToCheck)) {
-				return;
-			}
+		Assert.isTrue(preference.isKey(), "non-key 2FA preference was passed to TotpService's confirmCode()");
+		int submitted = parseCode(codeToCheck);
+		SecretKeySpec key = getKey(preference.getData());
+		long currentInterval = this.clock.millis() / this.timeStepMillis;
+		int matches = 0;
+		for (long interval = currentInterval - this.pastSteps; interval <= currentInterval
+				+ this.futureSteps; interval++) {
+			// (diff - 1) >>> 31 is 1 only when diff is 0; codes are never negative
+			matches |= ((generateCodeValue(key, interval) ^ submitted) - 1) >>> 31;
+		}
+		if (submitted < 0 || matches == 0) {
+			throw new BadCredentialsException("code was incorrect!");
 		}
-		throw new BadCredentialsException("code was incorrect!");
 	}
 
-	//TODO figure this shit out
+	/**
+	 * Generates the code for a given time step.
+	 * @param secret the Base32 encoded secret
+	 * @param interval the time step, in number of {@link #setTimeStep(Duration) time
+	 * steps} since the epoch
+	 * @return the code, left padded with zeros to the code length
+	 */
 	public String generateCode(String secret, long interval) {
-		byte[] hash = generateHash(secret, interval);
-		long partialHash = 0;
+		int code = generateCodeValue(getKey(secret), interval);
+		char[] digits = new char[this.codeLength];
+		for (int i = digits.length - 1; i >= 0; i--) {
+			digits[i] = (char) ('0' + code % 10);
+			code /= 10;
+		}
+		return new String(digits);
+	}
+
+	public byte[] generateHash(String secret, long interval) {
+		MacHolder holder = this.macs.get();
+		holder.hash(getKey(secret), interval);
+		return Arrays.copyOf(holder.hash, holder.hash.length);
+	}
+
+	private int generateCodeValue(SecretKeySpec key, long interval) {
+		MacHolder holder = this.macs.get();
+		byte[] hash = holder.hash(key, interval);
 		int offset = hash[hash.length - 1] & 0xF;
+		int binary = ((hash[offset] & 0x7F) << 24) | ((hash[offset + 1] & 0xFF) << 16)
+				| ((hash[offset + 2] & 0xFF) << 8) | (hash[offset + 3] & 0xFF);
+		return binary % POWERS_OF_TEN[this.codeLength];
+	}
 
-		for (int i = 0; i < 4; ++i) {
-			partialHash <<= 8;
-			partialHash |= (hash[offset + i] & 0xFF);
+	/**
+	 * Parses the submitted code without allocating.
+	 * @return the code, or -1 if it is not made of exactly code length digits
+	 */
+	private int parseCode(String code) {
+		if (code == null) {
+			return -1;
 		}
-
-		partialHash &= 0x7FFFFFFF;
-		partialHash %= Math.pow(10, codeLength);
-		return String.format("%0" + 6 + "d", partialHash);
+		int start = 0;
+		int end = code.length();
+		while (start < end && code.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && code.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (end - start != this.codeLength) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = code.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
 	}
 
-	public byte[] generateHash(String secret, long interval) {
-		try {
-			Base32 base32 = new Base32();
-			Key key = new SecretKeySpec(base32.decode(secret),"HmacSHA1");
-			Mac mac = Mac.getInstance("HmacSHA1");
-			mac.init(key);
-			return mac.doFinal(longToBytes(interval));
-		}catch (NoSuchAlgorithmException | InvalidKeyException e) {
-			//should not happen
-			return new byte[1];
-		}catch (Exception e) {
-			System.out.println(e.getMessage());
-			return new byte[1];
+	private SecretKeySpec getKey(String secret) {
+		Assert.notNull(secret, "secret cannot be null");
+		SecretKeySpec key = this.keys.get(secret);
+		if (key != null) {
+			return key;
 		}
+		byte[] decoded = BASE32.decode(secret);
+		Assert.isTrue(decoded.length > 0, "secret must be a non-empty Base32 encoded value");
+		key = new SecretKeySpec(decoded, this.algorithm.getJcaName());
+		if (this.keys.size() >= this.maximumCachedKeys) {
+			this.keys.clear();
+		}
+		this.keys.put(secret, key);
+		return key;
 	}
 
-	public byte[] longToBytes(long x)  {
+	public byte[] longToBytes(long x) {
 		ByteBuffer byteBuffer = ByteBuffer.allocate(Long.BYTES);
 		byteBuffer.putLong(x);
 		return byteBuffer.array();
@@ -95,4 +202,140 @@ public class TotpService {
 		ByteBuffer buffer = ByteBuffer.wrap(bytes);
 		return buffer.getInt();
 	}
+
+	/**
+	 * Sets the number of digits of a code. Defaults to 6.
+	 * @param codeLength the number of digits, between 1 and 9
+	 */
+	public void setCodeLength(int codeLength) {
+		Assert.isTrue(codeLength > 0 && codeLength < POWERS_OF_TEN.length, "codeLength must be between 1 and 9");
+		this.codeLength = codeLength;
+	}
+
+	/**
+	 * Sets the HMAC algorithm used to derive codes. Defaults to {@link Algorithm#SHA1},
+	 * which is what most authenticator apps use.
+	 * @param algorithm the algorithm
+	 */
+	public void setAlgorithm(Algorithm algorithm) {
+		Assert.notNull(algorithm, "algorithm cannot be null");
+		this.algorithm = algorithm;
+		this.macs = newMacs(algorithm);
+		this.keys.clear();
+	}
+
+	/**
+	 * Sets the duration of a time step. Defaults to 30 seconds.
+	 * @param timeStep the duration of a time step
+	 */
+	public void setTimeStep(Duration timeStep) {
+		Assert.notNull(timeStep, "timeStep cannot be null");
+		Assert.isTrue(timeStep.toMillis() > 0, "timeStep must be positive");
+		this.timeStepMillis = timeStep.toMillis();
+	}
+
+	/**
+	 * Sets how many time steps before and after the current one are accepted, to
+	 * account for clock drift between the server and the device generating codes.
+	 * Defaults to 2 past steps and no future steps.
+	 * @param pastSteps the number of accepted past time steps
+	 * @param futureSteps the number of accepted future time steps
+	 */
+	public void setAllowedTimeStepDrift(int pastSteps, int futureSteps) {
+		Assert.isTrue(pastSteps >= 0, "pastSteps cannot be negative");
+		Assert.isTrue(futureSteps >= 0, "futureSteps cannot be negative");
+		this.pastSteps = pastSteps;
+		this.futureSteps = futureSteps;
+	}
+
+	/**
+	 * Sets the maximum number of decoded secrets kept in memory. Defaults to 10000.
+	 * @param maximumCachedKeys the maximum number of cached keys
+	 */
+	public void setMaximumCachedKeys(int maximumCachedKeys) {
+		Assert.isTrue(maximumCachedKeys > 0, "maximumCachedKeys must be greater than 0");
+		this.maximumCachedKeys = maximumCachedKeys;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to determine the current time step.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	private static ThreadLocal<MacHolder> newMacs(Algorithm algorithm) {
+		return ThreadLocal.withInitial(() -> new MacHolder(algorithm));
+	}
+
+	/**
+	 * The HMAC algorithms allowed by RFC 6238.
+	 */
+	public enum Algorithm {
+
+		SHA1("HmacSHA1"),
+
+		SHA256("HmacSHA256"),
+
+		SHA512("HmacSHA512");
+
+		private final String jcaName;
+
+		Algorithm(String jcaName) {
+			this.jcaName = jcaName;
+		}
+
+		public String getJcaName() {
+			return this.jcaName;
+		}
+
+	}
+
+	/**
+	 * A {@link Mac} and the buffers it writes to, confined to a single thread.
+	 */
+	private static final class MacHolder {
+
+		private final Mac mac;
+
+		private final byte[] counter = new byte[Long.BYTES];
+
+		private final byte[] hash;
+
+		private SecretKeySpec key;
+
+		private MacHolder(Algorithm algorithm) {
+			try {
+				this.mac = Mac.getInstance(algorithm.getJcaName());
+			}
+			catch (GeneralSecurityException ex) {
+				throw new IllegalStateException("Failed to create " + algorithm.getJcaName(), ex);
+			}
+			this.hash = new byte[this.mac.getMacLength()];
+		}
+
+		private byte[] hash(SecretKeySpec key, long interval) {
+			try {
+				if (this.key != key) {
+					this.mac.init(key);
+					this.key = key;
+				}
+				for (int i = this.counter.length - 1; i >= 0; i--) {
+					this.counter[i] = (byte) interval;
+					interval >>>= 8;
+				}
+				this.mac.update(this.counter);
+				this.mac.doFinal(this.hash, 0);
+				return this.hash;
+			}
+			catch (GeneralSecurityException ex) {
+				this.key = null;
+				throw new IllegalStateException("Failed to compute the TOTP hash", ex);
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.stategies.sendattemp;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.log.LogMessage;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.security.web.authentication.twofa.dtos.TwoFactorAuthCodeDelivery;
+import org.springframework.security.web.authentication.twofa.stategies.sendfailure.TwoFactorAuthCodeSendFailureStrategy;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link TwoFactorAuthCodeSendStrategy} that hands codes to a pool of worker threads so
+ * that a slow SMS or mail gateway does not hold the request thread.
+ * <p>
+ * Codes are put on a bounded queue. When the queue is full, {@link #sendCode} waits up to
+ * the {@link #setEnqueueTimeout(Duration) enqueue timeout} and then throws a
+ * {@link RejectedExecutionException}, which the filter reports to its
+ * {@link TwoFactorAuthCodeSendFailureStrategy} like any other send failure.
+ * <p>
+ * Workers are started by the first {@link #sendCode} call. They deliver queued codes
+ * through the delegate, waiting at most the {@link #setSendTimeout(Duration) send
+ * timeout} for each call, so that a gateway that hangs does not stall the workers. The
+ * delegate is called on a separate thread, which is interrupted when the call times out;
+ * a delegate that ignores interruption keeps that thread until it returns, so it should
+ * still set timeouts on its own client.
+ * <p>
+ * Failed codes are queued again after a {@link #setRetryDelay(Duration) retry delay}
+ * that doubles with every attempt, up to the {@link #setMaximumAttempts(int) maximum
+ * number of attempts}. Codes that were not delivered within the
+ * {@link #setDeliveryTimeout(Duration) delivery timeout} are dropped, since the user has
+ * likely given up on them. When a code is finally not delivered,
+ * {@link TwoFactorAuthCodeSendFailureStrategy#handleAsyncSendFailure(SignInAttempt, Exception)}
+ * is invoked on the worker thread.
+ * <p>
+ * If the delegate is a {@link BatchTwoFactorAuthCodeSendStrategy}, workers send up to
+ * {@link #setBatchSize(int) batch size} queued codes in one call.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class AsyncTwoFactorAuthCodeSendStrategy implements TwoFactorAuthCodeSendStrategy, DisposableBean {
+
+	private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	private static final int DEFAULT_POOL_SIZE = 4;
+
+	private static final Duration DEFAULT_DELIVERY_TIMEOUT = Duration.ofSeconds(60);
+
+	private static final Duration DEFAULT_SEND_TIMEOUT = Duration.ofSeconds(10);
+
+	private static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(1);
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final TwoFactorAuthCodeSendStrategy delegate;
+
+	private final TwoFactorAuthCodeSendFailureStrategy failureStrategy;
+
+	private final BlockingQueue<QueuedDelivery> queue;
+
+	private final Set<QueuedDelivery> retrying = ConcurrentHashMap.newKeySet();
+
+	private final int poolSize;
+
+	private final Object monitor = new Object();
+
+	private Thread[] workers;
+
+	private ExecutorService sendExecutor;
+
+	private ScheduledExecutorService retryScheduler;
+
+	private final LongAdder sent = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder totalLatencyNanos = new LongAdder();
+
+	private final AtomicLong maximumLatencyNanos = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	private volatile boolean started;
+
+	private long enqueueTimeoutNanos;
+
+	private long deliveryTimeoutNanos = DEFAULT_DELIVERY_TIMEOUT.toNanos();
+
+	private long sendTimeoutNanos = DEFAULT_SEND_TIMEOUT.toNanos();
+
+	private long retryDelayNanos = DEFAULT_RETRY_DELAY.toNanos();
+
+	private int maximumAttempts = 1;
+
+	private int batchSize = 1;
+
+	/**
+	 * Creates an instance with a queue of 1000 codes and 4 worker threads.
+	 * @param delegate the strategy that talks to the gateway
+	 * @param failureStrategy the strategy to notify when a code is finally not delivered
+	 */
+	public AsyncTwoFactorAuthCodeSendStrategy(TwoFactorAuthCodeSendStrategy delegate,
+			TwoFactorAuthCodeSendFailureStrategy failureStrategy) {
+		this(delegate, failureStrategy, DEFAULT_QUEUE_CAPACITY, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * Creates an instance. The worker threads are started by the first {@link #sendCode}
+	 * call.
+	 * @param delegate the strategy that talks to the gateway
+	 * @param failureStrategy the strategy to notify when a code is finally not delivered
+	 * @param queueCapacity the maximum number of codes waiting to be sent
+	 * @param poolSize the number of worker threads
+	 */
+	public AsyncTwoFactorAuthCodeSendStrategy(TwoFactorAuthCodeSendStrategy delegate,
+			TwoFactorAuthCodeSendFailureStrategy failureStrategy, int queueCapacity, int poolSize) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		Assert.notNull(failureStrategy, "failureStrategy cannot be null");
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be greater than 0");
+		Assert.isTrue(poolSize > 0, "poolSize must be greater than 0");
+		this.delegate = delegate;
+		this.failureStrategy = failureStrategy;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.poolSize = poolSize;
+	}
+
+	private void startIfNecessary() {
+		if (this.started) {
+			return;
+		}
+		synchronized (this.monitor) {
+			if (this.started || !this.running) {
+				return;
+			}
+			this.sendExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+					new SynchronousQueue<>(), threadFactory("two-factor-code-gateway-"));
+			this.retryScheduler = new ScheduledThreadPoolExecutor(1, threadFactory("two-factor-code-retry-"));
+			CustomizableThreadFactory workerFactory = threadFactory("two-factor-code-send-");
+			this.workers = new Thread[this.poolSize];
+			for (int i = 0; i < this.poolSize; i++) {
+				this.workers[i] = workerFactory.newThread(this::work);
+				this.workers[i].start();
+			}
+			this.started = true;
+		}
+	}
+
+	private static CustomizableThreadFactory threadFactory(String threadNamePrefix) {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+		threadFactory.setDaemon(true);
+		return threadFactory;
+	}
+
+	/**
+	 * Queues the code for delivery and returns immediately.
+	 * @throws RejectedExecutionException if the queue stays full for longer than the
+	 * enqueue timeout, or if this strategy was destroyed
+	 */
+	@Override
+	public void sendCode(UserDetails userDetails, SignInAttempt codeWrapper) throws InterruptedException {
+		if (!this.running) {
+			throw new RejectedExecutionException("Two-factor code delivery has been shut down");
+		}
+		startIfNecessary();
+		QueuedDelivery delivery = new QueuedDelivery(new TwoFactorAuthCodeDelivery(userDetails, codeWrapper),
+				System.nanoTime());
+		if (!this.queue.offer(delivery, this.enqueueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+			this.rejected.increment();
+			throw new RejectedExecutionException("Two-factor code delivery queue is full");
+		}
+	}
+
+	private void work() {
+		List<QueuedDelivery> batch = new ArrayList<>(this.batchSize);
+		while (this.running) {
+			try {
+				batch.add(this.queue.take());
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			this.queue.drainTo(batch, this.batchSize - 1);
+			deliver(batch);
+			batch.clear();
+		}
+	}
+
+	private void deliver(List<QueuedDelivery> batch) {
+		long now = System.nanoTime();
+		List<QueuedDelivery> live = new ArrayList<>(batch.size());
+		for (QueuedDelivery delivery : batch) {
+			if (now - delivery.enqueuedAt > this.deliveryTimeoutNanos) {
+				fail(delivery, delivery.lastFailure);
+			}
+			else {
+				live.add(delivery);
+			}
+		}
+		if (live.size() > 1 && this.delegate instanceof BatchTwoFactorAuthCodeSendStrategy) {
+			BatchTwoFactorAuthCodeSendStrategy batchDelegate = (BatchTwoFactorAuthCodeSendStrategy) this.delegate;
+			List<TwoFactorAuthCodeDelivery> deliveries = new ArrayList<>(live.size());
+			long enqueuedAt = Long.MAX_VALUE;
+			for (QueuedDelivery delivery : live) {
+				deliveries.add(delivery.delivery);
+				enqueuedAt = Math.min(enqueuedAt, delivery.enqueuedAt);
+			}
+			try {
+				send(() -> {
+					batchDelegate.sendCodes(deliveries);
+					return null;
+				}, enqueuedAt);
+				live.forEach(this::succeed);
+			}
+			catch (Exception ex) {
+				live.forEach((delivery) -> retryOrFail(delivery, ex));
+			}
+			return;
+		}
+		for (QueuedDelivery delivery : live) {
+			try {
+				send(() -> {
+					this.delegate.sendCode(delivery.delivery.getUserDetails(), delivery.delivery.getSignInAttempt());
+					return null;
+				}, delivery.enqueuedAt);
+				succeed(delivery);
+			}
+			catch (Exception ex) {
+				retryOrFail(delivery, ex);
+			}
+		}
+	}
+
+	/**
+	 * Calls the delegate on the send executor, waiting at most the send timeout and no
+	 * longer than the delivery timeout of the eldest code allows.
+	 * @param call the call to the delegate
+	 * @param enqueuedAt when the eldest code sent by the call was queued
+	 * @throws Exception the exception thrown by the delegate, or a
+	 * {@link TimeoutException} if the call did not complete in time
+	 */
+	private void send(Callable<Void> call, long enqueuedAt) throws Exception {
+		long remaining = this.deliveryTimeoutNanos - (System.nanoTime() - enqueuedAt);
+		Future<Void> future = this.sendExecutor.submit(call);
+		try {
+			future.get(Math.min(this.sendTimeoutNanos, remaining), TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException ex) {
+			future.cancel(true);
+			throw ex;
+		}
+		catch (InterruptedException ex) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw ex;
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw (Exception) cause;
+		}
+	}
+
+	private void succeed(QueuedDelivery delivery) {
+		long latency = System.nanoTime() - delivery.enqueuedAt;
+		this.sent.increment();
+		this.totalLatencyNanos.add(latency);
+		this.maximumLatencyNanos.accumulateAndGet(latency, Math::max);
+	}
+
+	private void retryOrFail(QueuedDelivery delivery, Exception ex) {
+		delivery.attempts++;
+		delivery.lastFailure = ex;
+		long remaining = this.deliveryTimeoutNanos - (System.nanoTime() - delivery.enqueuedAt);
+		long delay = this.retryDelayNanos;
+		for (int i = 1; i < delivery.attempts && delay < remaining; i++) {
+			delay *= 2;
+		}
+		if (delivery.attempts < this.maximumAttempts && delay < remaining && scheduleRetry(delivery, delay)) {
+			this.logger.debug(LogMessage.format("Failed to send two-factor code, retrying in %s ms (attempt %s of %s)",
+					TimeUnit.NANOSECONDS.toMillis(delay), delivery.attempts, this.maximumAttempts), ex);
+			return;
+		}
+		fail(delivery, ex);
+	}
+
+	private boolean scheduleRetry(QueuedDelivery delivery, long delay) {
+		if (!this.running) {
+			return false;
+		}
+		this.retrying.add(delivery);
+		try {
+			this.retryScheduler.schedule(() -> retry(delivery), delay, TimeUnit.NANOSECONDS);
+			return true;
+		}
+		catch (RejectedExecutionException ex) {
+			// destroyed meanwhile, let the caller fail the code unless destroy did
+			return !this.retrying.remove(delivery);
+		}
+	}
+
+	private void retry(QueuedDelivery delivery) {
+		if (this.retrying.remove(delivery) && (!this.running || !this.queue.offer(delivery))) {
+			fail(delivery, delivery.lastFailure);
+		}
+	}
+
+	private void fail(QueuedDelivery delivery, Exception cause) {
+		this.failed.increment();
+		this.logger.debug("Failed to send two-factor code", cause);
+		try {
+			this.failureStrategy.handleAsyncSendFailure(delivery.delivery.getSignInAttempt(), cause);
+		}
+		catch (RuntimeException ex) {
+			this.logger.warn("Two-factor code send failure strategy threw an exception", ex);
+		}
+	}
+
+	/**
+	 * Stops the workers. Codes still waiting in the queue or for a retry are reported to
+	 * the failure strategy.
+	 */
+	@Override
+	public void destroy() {
+		this.running = false;
+		synchronized (this.monitor) {
+			if (this.started) {
+				for (Thread worker : this.workers) {
+					worker.interrupt();
+				}
+				this.retryScheduler.shutdownNow();
+				this.sendExecutor.shutdownNow();
+			}
+		}
+		List<QueuedDelivery> remaining = new ArrayList<>();
+		this.queue.drainTo(remaining);
+		for (QueuedDelivery delivery : this.retrying) {
+			if (this.retrying.remove(delivery)) {
+				remaining.add(delivery);
+			}
+		}
+		for (QueuedDelivery delivery : remaining) {
+			fail(delivery, delivery.lastFailure);
+		}
+	}
+
+	/**
+	 * Sets how long {@link #sendCode} waits for room in a full queue before rejecting the
+	 * code. Defaults to zero, which rejects immediately.
+	 * @param enqueueTimeout the time to wait for room in the queue
+	 */
+	public void setEnqueueTimeout(Duration enqueueTimeout) {
+		Assert.notNull(enqueueTimeout, "enqueueTimeout cannot be null");
+		Assert.isTrue(!enqueueTimeout.isNegative(), "enqueueTimeout cannot be negative");
+		this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+	}
+
+	/**
+	 * Sets how long after being queued a code may still be sent, including retries.
+	 * Defaults to 60 seconds.
+	 * @param deliveryTimeout the time after which an undelivered code is dropped
+	 */
+	public void setDeliveryTimeout(Duration deliveryTimeout) {
+		Assert.notNull(deliveryTimeout, "deliveryTimeout cannot be null");
+		Assert.isTrue(!deliveryTimeout.isNegative() && !deliveryTimeout.isZero(), "deliveryTimeout must be positive");
+		this.deliveryTimeoutNanos = deliveryTimeout.toNanos();
+	}
+
+	/**
+	 * Sets how long a worker waits for one call to the delegate before considering it
+	 * failed. Defaults to 10 seconds.
+	 * @param sendTimeout the time to wait for the delegate
+	 */
+	public void setSendTimeout(Duration sendTimeout) {
+		Assert.notNull(sendTimeout, "sendTimeout cannot be null");
+		Assert.isTrue(!sendTimeout.isNegative() && !sendTimeout.isZero(), "sendTimeout must be positive");
+		this.sendTimeoutNanos = sendTimeout.toNanos();
+	}
+
+	/**
+	 * Sets how long to wait before the first retry of a code that failed to be sent. The
+	 * delay doubles with every further attempt. Defaults to 1 second.
+	 * @param retryDelay the delay before the first retry
+	 */
+	public void setRetryDelay(Duration retryDelay) {
+		Assert.notNull(retryDelay, "retryDelay cannot be null");
+		Assert.isTrue(!retryDelay.isNegative(), "retryDelay cannot be negative");
+		this.retryDelayNanos = retryDelay.toNanos();
+	}
+
+	/**
+	 * Sets how many times sending a code is tried before giving up. Defaults to 1.
+	 * @param maximumAttempts the maximum number of attempts
+	 */
+	public void setMaximumAttempts(int maximumAttempts) {
+		Assert.isTrue(maximumAttempts > 0, "maximumAttempts must be greater than 0");
+		this.maximumAttempts = maximumAttempts;
+	}
+
+	/**
+	 * Sets how many queued codes are sent in one call when the delegate is a
+	 * {@link BatchTwoFactorAuthCodeSendStrategy}. Defaults to 1.
+	 * @param batchSize the maximum number of codes per batch
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "batchSize must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return the number of codes waiting to be sent
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return the number of codes delivered
+	 */
+	public long getSentCount() {
+		return this.sent.sum();
+	}
+
+	/**
+	 * @return the number of queued codes that were finally not delivered
+	 */
+	public long getFailedCount() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * @return the number of codes rejected because the queue was full
+	 */
+	public long getRejectedCount() {
+		return this.rejected.sum();
+	}
+
+	/**
+	 * @return the average time between queuing and delivering a code
+	 */
+	public Duration getAverageDeliveryLatency() {
+		long sent = this.sent.sum();
+		return (sent != 0) ? Duration.ofNanos(this.totalLatencyNanos.sum() / sent) : Duration.ZERO;
+	}
+
+	/**
+	 * @return the longest time between queuing and delivering a code
+	 */
+	public Duration getMaximumDeliveryLatency() {
+		return Duration.ofNanos(this.maximumLatencyNanos.get());
+	}
+
+	private static final class QueuedDelivery {
+
+		private final TwoFactorAuthCodeDelivery delivery;
+
+		private final long enqueuedAt;
+
+		private int attempts;
+
+		private Exception lastFailure;
+
+		private QueuedDelivery(TwoFactorAuthCodeDelivery delivery, long enqueuedAt) {
+			this.delivery = delivery;
+			this.enqueuedAt = enqueuedAt;
+		}
+
+	}
+
+}
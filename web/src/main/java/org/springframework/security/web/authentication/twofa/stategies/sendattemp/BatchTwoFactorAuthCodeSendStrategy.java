@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.stategies.sendattemp;
+
+import java.util.List;
+
+import org.springframework.security.web.authentication.twofa.dtos.TwoFactorAuthCodeDelivery;
+
+/**
+ * A {@link TwoFactorAuthCodeSendStrategy} for gateways that accept several messages in a
+ * single call, such as bulk SMS or mail APIs.
+ * <p>
+ * {@link AsyncTwoFactorAuthCodeSendStrategy} groups queued codes into batches when its
+ * delegate implements this interface.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see AsyncTwoFactorAuthCodeSendStrategy#setBatchSize(int)
+ */
+public interface BatchTwoFactorAuthCodeSendStrategy extends TwoFactorAuthCodeSendStrategy {
+
+	/**
+	 * Sends all the given codes. If an exception is thrown, every code of the batch is
+	 * considered not delivered.
+	 * @param deliveries the codes to send
+	 * @throws Exception if the codes could not be sent
+	 */
+	void sendCodes(List<TwoFactorAuthCodeDelivery> deliveries) throws Exception;
+
+}
@@ -12,4 +12,18 @@ import javax.servlet.http.HttpServletRequest;
 public interface TwoFactorAuthCodeSendFailureStrategy {
 
     void handleSendFailure(SignInAttempt codeWrapper, HttpServletRequest request);
+
+    /**
+     * Invoked when a code sent in the background could not be delivered. By then the
+     * request that triggered the send has completed, so the default implementation
+     * invokes {@link #handleSendFailure(SignInAttempt, HttpServletRequest)} with a
+     * {@code null} request.
+     * @param codeWrapper the attempt whose code was not delivered
+     * @param cause the last failure, or {@code null} if the code expired before it could
+     * be sent
+     * @since 5.5
+     */
+    default void handleAsyncSendFailure(SignInAttempt codeWrapper, Exception cause) {
+        handleSendFailure(codeWrapper, null);
+    }
 }
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.context;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.log.LogMessage;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.Transient;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.EncryptedSecurityContextCodec.DecodedSecurityContext;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * A {@link SecurityContextRepository} which keeps the {@link SecurityContext} in an
+ * encrypted cookie rather than in the {@code HttpSession}, so that no state is kept on
+ * the server for an authenticated user.
+ * <p>
+ * The cookie is encoded by an {@link EncryptedSecurityContextCodec} and expires after
+ * the {@link #setMaxAge(Duration) maximum age} without requests. The expiration slides:
+ * once half of the maximum age has passed, the next response renews the cookie. The
+ * cookie is also written when the context changes or when it was encrypted with a key
+ * which is no longer the current one, and is otherwise left untouched. Like
+ * {@link HttpSessionSecurityContextRepository}, anonymous contexts and
+ * {@link Transient} authentications are not stored.
+ * <p>
+ * The cookie is {@code HttpOnly}, {@code SameSite=Lax} by default, and {@code Secure}
+ * when the request is secure unless {@link #setSecure(boolean) configured} otherwise.
+ * <p>
+ * Browsers limit the size of a cookie, so a context whose cookie would be larger than the
+ * {@link #setMaxCookieSize(int) size budget} is not stored, and the cookie is removed.
+ * <p>
+ * The cookie must be written before the response is committed, so
+ * {@link #loadContext(HttpRequestResponseHolder)} wraps the response to save the context
+ * when it is committed.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public final class CookieSecurityContextRepository implements SecurityContextRepository {
+
+	/**
+	 * The default name of the cookie.
+	 */
+	public static final String DEFAULT_COOKIE_NAME = "SPRING_SECURITY_CONTEXT";
+
+	private static final int DEFAULT_MAX_COOKIE_SIZE = 4096;
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final EncryptedSecurityContextCodec codec;
+
+	private String cookieName = DEFAULT_COOKIE_NAME;
+
+	private String cookiePath;
+
+	private String cookieDomain;
+
+	private Boolean secure;
+
+	private String sameSite = "Lax";
+
+	private Duration maxAge = Duration.ofMinutes(30);
+
+	private int maxCookieSize = DEFAULT_MAX_COOKIE_SIZE;
+
+	private AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+	private Clock clock = Clock.systemUTC();
+
+	/**
+	 * Constructs a {@code CookieSecurityContextRepository} using the provided
+	 * {@link EncryptedSecurityContextCodec}.
+	 * @param codec the codec encrypting the cookie
+	 */
+	public CookieSecurityContextRepository(EncryptedSecurityContextCodec codec) {
+		Assert.notNull(codec, "codec cannot be null");
+		this.codec = codec;
+	}
+
+	@Override
+	public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+		HttpServletRequest request = requestResponseHolder.getRequest();
+		Cookie cookie = WebUtils.getCookie(request, this.cookieName);
+		DecodedSecurityContext decoded = (cookie != null) ? this.codec.decode(cookie.getValue(), this.clock.instant())
+				: null;
+		SecurityContext context = (decoded != null) ? decoded.getContext() : SecurityContextHolder.createEmptyContext();
+		if (decoded != null && this.logger.isDebugEnabled()) {
+			this.logger.debug(LogMessage.format("Retrieved %s from cookie %s", context, this.cookieName));
+		}
+		SaveToCookieResponseWrapper wrappedResponse = new SaveToCookieResponseWrapper(
+				requestResponseHolder.getResponse(), request, cookie != null, decoded, context);
+		requestResponseHolder.setResponse(wrappedResponse);
+		requestResponseHolder.setRequest(new SaveToCookieRequestWrapper(request, wrappedResponse));
+		return context;
+	}
+
+	@Override
+	public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+		SaveContextOnUpdateOrErrorResponseWrapper responseWrapper = WebUtils.getNativeResponse(response,
+				SaveContextOnUpdateOrErrorResponseWrapper.class);
+		Assert.state(responseWrapper != null, () -> "Cannot invoke saveContext on response " + response
+				+ ". You must use the HttpRequestResponseHolder.response after invoking loadContext");
+		responseWrapper.saveContext(context);
+	}
+
+	@Override
+	public boolean containsContext(HttpServletRequest request) {
+		return WebUtils.getCookie(request, this.cookieName) != null;
+	}
+
+	/**
+	 * Sets the name of the cookie. Defaults to {@link #DEFAULT_COOKIE_NAME}.
+	 * @param cookieName the cookie name
+	 */
+	public void setCookieName(String cookieName) {
+		Assert.hasText(cookieName, "cookieName cannot be empty");
+		this.cookieName = cookieName;
+	}
+
+	/**
+	 * Sets the path of the cookie. Defaults to the context path of the request.
+	 * @param cookiePath the cookie path
+	 */
+	public void setCookiePath(String cookiePath) {
+		this.cookiePath = cookiePath;
+	}
+
+	/**
+	 * Sets the domain of the cookie.
+	 * @param cookieDomain the cookie domain
+	 */
+	public void setCookieDomain(String cookieDomain) {
+		this.cookieDomain = cookieDomain;
+	}
+
+	/**
+	 * Sets whether the cookie is only sent over HTTPS. Defaults to whether the request
+	 * is secure.
+	 * @param secure whether the cookie is secure
+	 */
+	public void setSecure(boolean secure) {
+		this.secure = secure;
+	}
+
+	/**
+	 * Sets the {@code SameSite} attribute of the cookie. Defaults to {@code Lax}.
+	 * @param sameSite the {@code SameSite} attribute, or {@code null} to omit it
+	 */
+	public void setSameSite(String sameSite) {
+		this.sameSite = sameSite;
+	}
+
+	/**
+	 * Sets how long the cookie is valid without requests. Defaults to 30 minutes.
+	 * @param maxAge the maximum age of the cookie
+	 */
+	public void setMaxAge(Duration maxAge) {
+		Assert.notNull(maxAge, "maxAge cannot be null");
+		Assert.isTrue(maxAge.getSeconds() > 0, "maxAge must be at least one second");
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Sets the largest cookie, name and value included, which is written. Defaults to
+	 * 4096, the smallest limit browsers must support.
+	 * @param maxCookieSize the size budget of the cookie
+	 */
+	public void setMaxCookieSize(int maxCookieSize) {
+		Assert.isTrue(maxCookieSize > 0, "maxCookieSize must be greater than 0");
+		this.maxCookieSize = maxCookieSize;
+	}
+
+	/**
+	 * Sets the {@link AuthenticationTrustResolver} to be used. The default is
+	 * {@link AuthenticationTrustResolverImpl}.
+	 * @param trustResolver the {@link AuthenticationTrustResolver} to use. Cannot be
+	 * null.
+	 */
+	public void setTrustResolver(AuthenticationTrustResolver trustResolver) {
+		Assert.notNull(trustResolver, "trustResolver cannot be null");
+		this.trustResolver = trustResolver;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to expire the cookie.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	/**
+	 * Creates the {@code Set-Cookie} header, since {@link Cookie} cannot carry the
+	 * {@code SameSite} attribute.
+	 */
+	private String createCookie(HttpServletRequest request, String value, int maxAge) {
+		String path = (this.cookiePath != null) ? this.cookiePath : request.getContextPath();
+		// @formatter:off
+		return ResponseCookie.from(this.cookieName, value)
+				.path(StringUtils.hasLength(path) ? path : "/")
+				.domain(this.cookieDomain)
+				.secure((this.secure != null) ? this.secure : request.isSecure())
+				.httpOnly(true)
+				.sameSite(this.sameSite)
+				.maxAge(maxAge)
+				.build()
+				.toString();
+		// @formatter:on
+	}
+
+	private static boolean isTransientAuthentication(Authentication authentication) {
+		return AnnotationUtils.getAnnotation(authentication.getClass(), Transient.class) != null;
+	}
+
+	private static class SaveToCookieRequestWrapper extends HttpServletRequestWrapper {
+
+		private final SaveContextOnUpdateOrErrorResponseWrapper response;
+
+		SaveToCookieRequestWrapper(HttpServletRequest request, SaveContextOnUpdateOrErrorResponseWrapper response) {
+			super(request);
+			this.response = response;
+		}
+
+		@Override
+		public AsyncContext startAsync() {
+			this.response.disableSaveOnResponseCommitted();
+			return super.startAsync();
+		}
+
+		@Override
+		public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse)
+				throws IllegalStateException {
+			this.response.disableSaveOnResponseCommitted();
+			return super.startAsync(servletRequest, servletResponse);
+		}
+
+	}
+
+	/**
+	 * Writes the cookie when the response is committed, if the context changed, the
+	 * cookie needs renewing or it was encrypted with a previous key.
+	 */
+	final class SaveToCookieResponseWrapper extends SaveContextOnUpdateOrErrorResponseWrapper {
+
+		private final HttpServletRequest request;
+
+		private final boolean cookiePresent;
+
+		private final DecodedSecurityContext decoded;
+
+		private final SecurityContext contextBeforeExecution;
+
+		private final Authentication authBeforeExecution;
+
+		private boolean cookieWritten;
+
+		SaveToCookieResponseWrapper(HttpServletResponse response, HttpServletRequest request, boolean cookiePresent,
+				DecodedSecurityContext decoded, SecurityContext context) {
+			super(response, true);
+			this.request = request;
+			this.cookiePresent = cookiePresent;
+			this.decoded = decoded;
+			this.contextBeforeExecution = context;
+			this.authBeforeExecution = context.getAuthentication();
+		}
+
+		@Override
+		protected void saveContext(SecurityContext context) {
+			if (this.cookieWritten || isCommitted()) {
+				return;
+			}
+			Authentication authentication = context.getAuthentication();
+			if (authentication == null || CookieSecurityContextRepository.this.trustResolver.isAnonymous(authentication)
+					|| isTransientAuthentication(authentication)) {
+				if (this.cookiePresent) {
+					removeCookie();
+				}
+				return;
+			}
+			Instant now = CookieSecurityContextRepository.this.clock.instant();
+			if (!contextChanged(context) && !needsRenewal(now)) {
+				return;
+			}
+			String value = CookieSecurityContextRepository.this.codec.encode(context,
+					now.plus(CookieSecurityContextRepository.this.maxAge));
+			String cookieName = CookieSecurityContextRepository.this.cookieName;
+			if (cookieName.length() + value.length() + 1 > CookieSecurityContextRepository.this.maxCookieSize) {
+				CookieSecurityContextRepository.this.logger.warn(LogMessage.format(
+						"Did not store SecurityContext since its cookie of %s bytes exceeds the maximum of %s",
+						value.length(), CookieSecurityContextRepository.this.maxCookieSize));
+				if (this.cookiePresent) {
+					removeCookie();
+				}
+				return;
+			}
+			int maxAge = (int) CookieSecurityContextRepository.this.maxAge.getSeconds();
+			addHeader(HttpHeaders.SET_COOKIE, createCookie(this.request, value, maxAge));
+			this.cookieWritten = true;
+			CookieSecurityContextRepository.this.logger
+					.debug(LogMessage.format("Stored %s to cookie %s", context, cookieName));
+		}
+
+		private boolean contextChanged(SecurityContext context) {
+			return this.decoded == null || context != this.contextBeforeExecution
+					|| context.getAuthentication() != this.authBeforeExecution;
+		}
+
+		private boolean needsRenewal(Instant now) {
+			Duration halfMaxAge = CookieSecurityContextRepository.this.maxAge.dividedBy(2);
+			return !this.decoded.isCurrentKey() || now.plus(halfMaxAge).isAfter(this.decoded.getExpiresAt());
+		}
+
+		private void removeCookie() {
+			addHeader(HttpHeaders.SET_COOKIE, createCookie(this.request, "", 0));
+			this.cookieWritten = true;
+			CookieSecurityContextRepository.this.logger
+					.debug(LogMessage.format("Removed cookie %s", CookieSecurityContextRepository.this.cookieName));
+		}
+
+	}
+
+}
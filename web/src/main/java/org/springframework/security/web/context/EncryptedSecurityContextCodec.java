@@ -0,0 +1,346 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.log.LogMessage;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.crypto.encrypt.BytesEncryptor;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.util.Assert;
+
+/**
+ * Encodes a {@link SecurityContext} into an encrypted and authenticated string which can
+ * be kept by the client, such as in a cookie, and decodes it back.
+ * <p>
+ * The encoded value is the identifier of the key followed by a dot and the URL-safe
+ * Base64 encoding of the encrypted expiration time and serialized context. Every key must
+ * be an authenticated cipher, such as the AES-GCM encryptors returned by
+ * {@link Encryptors#stronger(CharSequence, CharSequence)} or
+ * {@code BouncyCastleAesGcmBytesEncryptor}, so that a value which was not encoded by the
+ * server is rejected before it is deserialized. An encryptor which decrypts a tampered
+ * value, such as the AES-CBC encryptor returned by
+ * {@link Encryptors#standard(CharSequence, CharSequence)}, is refused. Keys can be
+ * rotated by {@link #addDecryptionKey(String, BytesEncryptor) keeping the previous keys}
+ * for decryption only until the values they encrypted have expired.
+ * <p>
+ * The context is serialized with Java serialization by default. As a second line of
+ * defense, it is only deserialized into classes of the {@code java.lang},
+ * {@code java.util}, {@code java.time} and {@code java.net} packages and of Spring
+ * Security. The classes of custom principals or details must be
+ * {@link #addAllowedClassNamePrefixes(String...) allowed} explicitly.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see CookieSecurityContextRepository
+ * @see org.springframework.security.web.server.context.CookieServerSecurityContextRepository
+ */
+public final class EncryptedSecurityContextCodec {
+
+	private static final char KEY_ID_SEPARATOR = '.';
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final String currentKeyId;
+
+	private final Map<String, BytesEncryptor> encryptors = new LinkedHashMap<>();
+
+	private Converter<SecurityContext, byte[]> serializer = new SerializingConverter()::convert;
+
+	private final JavaDeserializer javaDeserializer = new JavaDeserializer();
+
+	private Converter<byte[], SecurityContext> deserializer = this.javaDeserializer;
+
+	/**
+	 * Constructs an {@code EncryptedSecurityContextCodec} encrypting with the given key.
+	 * @param keyId the identifier of the key, made of letters, digits, {@code -} and
+	 * {@code _}
+	 * @param encryptor the encryptor, which must be an authenticated cipher
+	 * @throws IllegalArgumentException if the encryptor decrypts a tampered value
+	 */
+	public EncryptedSecurityContextCodec(String keyId, BytesEncryptor encryptor) {
+		addDecryptionKey(keyId, encryptor);
+		this.currentKeyId = keyId;
+	}
+
+	/**
+	 * Adds a key which is only used to decrypt values, such as the key used before the
+	 * current one.
+	 * @param keyId the identifier of the key, made of letters, digits, {@code -} and
+	 * {@code _}
+	 * @param encryptor the encryptor, which must be an authenticated cipher
+	 * @throws IllegalArgumentException if the encryptor decrypts a tampered value
+	 */
+	public void addDecryptionKey(String keyId, BytesEncryptor encryptor) {
+		Assert.hasText(keyId, "keyId cannot be empty");
+		Assert.isTrue(keyId.chars().allMatch(EncryptedSecurityContextCodec::isKeyIdCharacter),
+				"keyId must only contain letters, digits, '-' and '_'");
+		Assert.notNull(encryptor, "encryptor cannot be null");
+		Assert.isTrue(!this.encryptors.containsKey(keyId), () -> "keyId " + keyId + " is already used");
+		Assert.isTrue(isAuthenticated(encryptor),
+				"encryptor must be an authenticated cipher, such as AES-GCM, since it decrypted a tampered value");
+		this.encryptors.put(keyId, encryptor);
+	}
+
+	/**
+	 * Allows the default deserializer to create instances of the classes whose name
+	 * starts with one of the given prefixes, such as the package of a custom principal.
+	 * @param classNamePrefixes the class name prefixes, such as {@code "com.example."}
+	 */
+	public void addAllowedClassNamePrefixes(String... classNamePrefixes) {
+		Assert.notEmpty(classNamePrefixes, "classNamePrefixes cannot be empty");
+		Assert.noNullElements(classNamePrefixes, "classNamePrefixes cannot contain null elements");
+		this.javaDeserializer.allowedClassNamePrefixes.addAll(Arrays.asList(classNamePrefixes));
+	}
+
+	/**
+	 * Encodes a context with the current key.
+	 * @param context the context
+	 * @param expiresAt the time after which the value is no longer decoded
+	 * @return the encoded context
+	 */
+	public String encode(SecurityContext context, Instant expiresAt) {
+		Assert.notNull(context, "context cannot be null");
+		Assert.notNull(expiresAt, "expiresAt cannot be null");
+		byte[] serialized = this.serializer.convert(context);
+		ByteBuffer plaintext = ByteBuffer.allocate(Long.BYTES + serialized.length);
+		plaintext.putLong(expiresAt.toEpochMilli()).put(serialized);
+		byte[] encrypted = this.encryptors.get(this.currentKeyId).encrypt(plaintext.array());
+		return this.currentKeyId + KEY_ID_SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(encrypted);
+	}
+
+	/**
+	 * Decodes a value returned by {@link #encode(SecurityContext, Instant)}.
+	 * @param value the encoded context
+	 * @param now the current time
+	 * @return the decoded context, or {@code null} if the value is malformed, was
+	 * encrypted with an unknown key, fails authentication or has expired
+	 */
+	public DecodedSecurityContext decode(String value, Instant now) {
+		if (value == null) {
+			return null;
+		}
+		int separator = value.indexOf(KEY_ID_SEPARATOR);
+		if (separator <= 0) {
+			return null;
+		}
+		String keyId = value.substring(0, separator);
+		BytesEncryptor encryptor = this.encryptors.get(keyId);
+		if (encryptor == null) {
+			this.logger.debug(LogMessage.format("Did not decode SecurityContext encrypted with unknown key %s", keyId));
+			return null;
+		}
+		ByteBuffer plaintext;
+		try {
+			byte[] encrypted = Base64.getUrlDecoder().decode(value.substring(separator + 1));
+			plaintext = ByteBuffer.wrap(encryptor.decrypt(encrypted));
+		}
+		catch (RuntimeException ex) {
+			this.logger.debug("Did not decode SecurityContext which failed decryption", ex);
+			return null;
+		}
+		if (plaintext.remaining() < Long.BYTES) {
+			return null;
+		}
+		Instant expiresAt = Instant.ofEpochMilli(plaintext.getLong());
+		if (!now.isBefore(expiresAt)) {
+			this.logger.debug(LogMessage.format("Did not decode SecurityContext which expired at %s", expiresAt));
+			return null;
+		}
+		byte[] serialized = new byte[plaintext.remaining()];
+		plaintext.get(serialized);
+		SecurityContext context;
+		try {
+			context = this.deserializer.convert(serialized);
+		}
+		catch (RuntimeException ex) {
+			this.logger.debug("Did not decode SecurityContext which failed deserialization", ex);
+			return null;
+		}
+		return new DecodedSecurityContext(context, expiresAt, keyId.equals(this.currentKeyId));
+	}
+
+	/**
+	 * Sets the {@link Converter}s serializing the context before encryption and
+	 * deserializing it after decryption. Java serialization, restricted to allowed
+	 * classes, is used by default.
+	 * @param serializer the serializer
+	 * @param deserializer the deserializer
+	 */
+	public void setSerialization(Converter<SecurityContext, byte[]> serializer,
+			Converter<byte[], SecurityContext> deserializer) {
+		Assert.notNull(serializer, "serializer cannot be null");
+		Assert.notNull(deserializer, "deserializer cannot be null");
+		this.serializer = serializer;
+		this.deserializer = deserializer;
+	}
+
+	private static boolean isKeyIdCharacter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+	}
+
+	/**
+	 * Flips a bit at the start and at the end of an encrypted value, which an
+	 * authenticated cipher must refuse to decrypt. Without authentication, flipping a bit
+	 * of a CBC initialization vector changes the plaintext without any error.
+	 */
+	private static boolean isAuthenticated(BytesEncryptor encryptor) {
+		byte[] encrypted = encryptor.encrypt(new byte[32]);
+		for (int index : new int[] { 0, encrypted.length - 1 }) {
+			byte[] tampered = encrypted.clone();
+			tampered[index] ^= 1;
+			try {
+				encryptor.decrypt(tampered);
+				return false;
+			}
+			catch (RuntimeException ex) {
+				// expected
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Java deserialization refusing the classes which are not explicitly allowed, before
+	 * they are instantiated.
+	 */
+	private static final class JavaDeserializer implements Converter<byte[], SecurityContext> {
+
+		private final List<String> allowedClassNamePrefixes = new ArrayList<>(
+				Arrays.asList("java.lang.", "java.util.", "java.time.", "java.net.", "org.springframework.security."));
+
+		private final List<String> deniedClassNamePrefixes = Arrays.asList("java.lang.reflect.", "java.lang.invoke.",
+				"java.util.logging.", "java.util.prefs.");
+
+		@Override
+		public SecurityContext convert(byte[] source) {
+			try (ObjectInputStream objectInputStream = new AllowListObjectInputStream(
+					new ByteArrayInputStream(source))) {
+				return (SecurityContext) objectInputStream.readObject();
+			}
+			catch (IOException | ClassNotFoundException | ClassCastException ex) {
+				throw new SerializationFailedException("Failed to deserialize SecurityContext", ex);
+			}
+		}
+
+		private boolean isAllowed(String className) {
+			String name = className;
+			if (name.startsWith("[")) {
+				name = name.substring(name.lastIndexOf('[') + 1);
+				if (name.length() == 1) {
+					// an array of primitives
+					return true;
+				}
+				name = name.substring(1, name.length() - 1);
+			}
+			for (String denied : this.deniedClassNamePrefixes) {
+				if (name.startsWith(denied)) {
+					return false;
+				}
+			}
+			for (String allowed : this.allowedClassNamePrefixes) {
+				if (name.startsWith(allowed)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private final class AllowListObjectInputStream extends ObjectInputStream {
+
+			private AllowListObjectInputStream(InputStream in) throws IOException {
+				super(in);
+			}
+
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				if (!isAllowed(desc.getName())) {
+					throw new InvalidClassException(desc.getName(), "Class is not allowed to be deserialized");
+				}
+				return super.resolveClass(desc);
+			}
+
+			@Override
+			protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+				throw new InvalidClassException("Proxy classes are not allowed to be deserialized");
+			}
+
+		}
+
+	}
+
+	/**
+	 * A {@link SecurityContext} decoded by an {@link EncryptedSecurityContextCodec}.
+	 */
+	public static final class DecodedSecurityContext {
+
+		private final SecurityContext context;
+
+		private final Instant expiresAt;
+
+		private final boolean currentKey;
+
+		private DecodedSecurityContext(SecurityContext context, Instant expiresAt, boolean currentKey) {
+			this.context = context;
+			this.expiresAt = expiresAt;
+			this.currentKey = currentKey;
+		}
+
+		public SecurityContext getContext() {
+			return this.context;
+		}
+
+		/**
+		 * Returns the time after which the encoded value is no longer decoded.
+		 * @return the expiration time
+		 */
+		public Instant getExpiresAt() {
+			return this.expiresAt;
+		}
+
+		/**
+		 * Returns whether the value was encrypted with the current key. A value encrypted
+		 * with a decryption key should be encoded again.
+		 * @return {@code true} if the value was encrypted with the current key
+		 */
+		public boolean isCurrentKey() {
+			return this.currentKey;
+		}
+
+	}
+
+}
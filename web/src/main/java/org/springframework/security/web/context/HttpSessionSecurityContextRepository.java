@@ -16,6 +16,12 @@
 
 package org.springframework.security.web.context;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
 import javax.servlet.AsyncContext;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -32,6 +38,7 @@ import org.springframework.core.log.LogMessage;
 import org.springframework.security.authentication.AuthenticationTrustResolver;
 import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.Transient;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -77,6 +84,14 @@ import org.springframework.web.util.WebUtils;
  * need to conserve server memory and ensure all classes using the
  * {@code SecurityContextHolder} are designed to have no persistence of the
  * {@code SecurityContext} between web requests.
+ * <p>
+ * With a replicated session store every <tt>getAttribute</tt> and <tt>setAttribute</tt>
+ * may be a remote call. Setting {@link #setTrackContextChanges(boolean)
+ * trackContextChanges} to <tt>true</tt> records a fingerprint of the context loaded from
+ * the session (the type and name of the authentication, whether it is authenticated and
+ * the set of its authorities). When the context saved at the end of the request has the
+ * same type, name and authentication state, an equal set of authorities, and the request
+ * still uses the same session, the session attribute is neither read nor written.
  *
  * @author Luke Taylor
  * @since 3.0
@@ -104,6 +119,12 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 
 	private AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
 
+	private boolean trackContextChanges = false;
+
+	private final LongAdder performedSaves = new LongAdder();
+
+	private final LongAdder skippedSaves = new LongAdder();
+
 	/**
 	 * Gets the security context for the current request (if available) and returns it.
 	 * <p>
@@ -123,8 +144,14 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 				this.logger.trace(LogMessage.format("Created %s", context));
 			}
 		}
+		ContextFingerprint fingerprint = null;
+		String sessionId = null;
+		if (this.trackContextChanges && httpSession != null && context.getAuthentication() != null) {
+			fingerprint = new ContextFingerprint(context.getAuthentication());
+			sessionId = httpSession.getId();
+		}
 		SaveToSessionResponseWrapper wrappedResponse = new SaveToSessionResponseWrapper(response, request,
-				httpSession != null, context);
+				httpSession != null, context, fingerprint, sessionId);
 		requestResponseHolder.setResponse(wrappedResponse);
 		requestResponseHolder.setRequest(new SaveToSessionRequestWrapper(request, wrappedResponse));
 		return context;
@@ -232,6 +259,39 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 		this.springSecurityContextKey = springSecurityContextKey;
 	}
 
+	/**
+	 * Enables skipping the session entirely when the saved context has the same
+	 * fingerprint as the one loaded from the session. Off by default.
+	 * <p>
+	 * An {@code Authentication} replaced by one of the same type, name, authenticated
+	 * state and authorities is then not written back, so changes to its details or
+	 * credentials are not propagated to the session.
+	 * @param trackContextChanges set to <tt>true</tt> to compare fingerprints instead of
+	 * instances
+	 * @since 5.5
+	 */
+	public void setTrackContextChanges(boolean trackContextChanges) {
+		this.trackContextChanges = trackContextChanges;
+	}
+
+	/**
+	 * @return the number of times the security context was stored in or removed from the
+	 * session
+	 * @since 5.5
+	 */
+	public long getPerformedSaveCount() {
+		return this.performedSaves.sum();
+	}
+
+	/**
+	 * @return the number of times the session was not accessed because the security
+	 * context was unchanged, see {@link #setTrackContextChanges(boolean)}
+	 * @since 5.5
+	 */
+	public long getSkippedSaveCount() {
+		return this.skippedSaves.sum();
+	}
+
 	private boolean isTransientAuthentication(Authentication authentication) {
 		return AnnotationUtils.getAnnotation(authentication.getClass(), Transient.class) != null;
 	}
@@ -291,6 +351,10 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 
 		private final Authentication authBeforeExecution;
 
+		private final ContextFingerprint fingerprintBeforeExecution;
+
+		private final String sessionIdBeforeExecution;
+
 		private boolean isSaveContextInvoked;
 
 		/**
@@ -303,14 +367,21 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 		 * a new session will now be created.
 		 * @param context the context before the filter chain executed. The context will
 		 * only be stored if it or its contents changed during the request.
+		 * @param fingerprint the fingerprint of the context loaded from the session, or
+		 * null if changes are not tracked
+		 * @param sessionId the id of the session the context was loaded from, or null if
+		 * changes are not tracked
 		 */
 		SaveToSessionResponseWrapper(HttpServletResponse response, HttpServletRequest request,
-				boolean httpSessionExistedAtStartOfRequest, SecurityContext context) {
+				boolean httpSessionExistedAtStartOfRequest, SecurityContext context, ContextFingerprint fingerprint,
+				String sessionId) {
 			super(response, HttpSessionSecurityContextRepository.this.disableUrlRewriting);
 			this.request = request;
 			this.httpSessionExistedAtStartOfRequest = httpSessionExistedAtStartOfRequest;
 			this.contextBeforeExecution = context;
 			this.authBeforeExecution = context.getAuthentication();
+			this.fingerprintBeforeExecution = fingerprint;
+			this.sessionIdBeforeExecution = sessionId;
 		}
 
 		/**
@@ -327,6 +398,11 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 		@Override
 		protected void saveContext(SecurityContext context) {
 			final Authentication authentication = context.getAuthentication();
+			if (isUnchanged(authentication)) {
+				HttpSessionSecurityContextRepository.this.skippedSaves.increment();
+				this.logger.trace("Did not store unchanged SecurityContext");
+				return;
+			}
 			HttpSession httpSession = this.request.getSession(false);
 			String springSecurityContextKey = HttpSessionSecurityContextRepository.this.springSecurityContextKey;
 			// See SEC-776
@@ -336,6 +412,7 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 					// SEC-1587 A non-anonymous context may still be in the session
 					// SEC-1735 remove if the contextBeforeExecution was not anonymous
 					httpSession.removeAttribute(springSecurityContextKey);
+					HttpSessionSecurityContextRepository.this.performedSaves.increment();
 					this.isSaveContextInvoked = true;
 				}
 				if (this.logger.isDebugEnabled()) {
@@ -356,6 +433,7 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 				// is set SEC-1561
 				if (contextChanged(context) || httpSession.getAttribute(springSecurityContextKey) == null) {
 					httpSession.setAttribute(springSecurityContextKey, context);
+					HttpSessionSecurityContextRepository.this.performedSaves.increment();
 					this.isSaveContextInvoked = true;
 					if (this.logger.isDebugEnabled()) {
 						this.logger.debug(LogMessage.format("Stored %s to HttpSession [%s]", context, httpSession));
@@ -364,6 +442,16 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 			}
 		}
 
+		private boolean isUnchanged(Authentication authentication) {
+			if (this.fingerprintBeforeExecution == null || this.isSaveContextInvoked
+					|| !this.fingerprintBeforeExecution.matches(authentication)) {
+				return false;
+			}
+			// The session may have been invalidated or replaced during the request
+			HttpSession httpSession = this.request.getSession(false);
+			return httpSession != null && this.sessionIdBeforeExecution.equals(httpSession.getId());
+		}
+
 		private boolean contextChanged(SecurityContext context) {
 			return this.isSaveContextInvoked || context != this.contextBeforeExecution
 					|| context.getAuthentication() != this.authBeforeExecution;
@@ -410,4 +498,48 @@ public class HttpSessionSecurityContextRepository implements SecurityContextRepo
 
 	}
 
+	/**
+	 * The parts of an {@link Authentication} that decide whether the stored context is
+	 * still current.
+	 */
+	private static final class ContextFingerprint {
+
+		private final Class<?> type;
+
+		private final String name;
+
+		private final boolean authenticated;
+
+		private final Set<String> authorities;
+
+		ContextFingerprint(Authentication authentication) {
+			this.type = authentication.getClass();
+			this.name = authentication.getName();
+			this.authenticated = authentication.isAuthenticated();
+			this.authorities = authorities(authentication.getAuthorities());
+		}
+
+		boolean matches(Authentication authentication) {
+			if (authentication == null || authentication.getClass() != this.type
+					|| authentication.isAuthenticated() != this.authenticated) {
+				return false;
+			}
+			String name = authentication.getName();
+			return ((name != null) ? name.equals(this.name) : this.name == null)
+					&& authorities(authentication.getAuthorities()).equals(this.authorities);
+		}
+
+		private static Set<String> authorities(Collection<? extends GrantedAuthority> authorities) {
+			if (authorities == null || authorities.isEmpty()) {
+				return Collections.emptySet();
+			}
+			Set<String> values = new HashSet<>(authorities.size() * 2);
+			for (GrantedAuthority authority : authorities) {
+				values.add(authority.getAuthority());
+			}
+			return Collections.unmodifiableSet(values);
+		}
+
+	}
+
 }
@@ -16,16 +16,17 @@
 
 package org.springframework.security.web.firewall;
 
+import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -72,6 +73,12 @@ import org.springframework.util.Assert;
  * <li>Reject parameter values that are not allowed. See
  * {@link #setAllowedParameterValues(Predicate)}</li>
  * </ul>
+ * <p>
+ * The blocklists are compiled into an automaton when they are first used after a
+ * change, so that each path of the request is scanned once, whatever the number of
+ * blocklisted strings, and checked for normalization and printable ASCII characters in
+ * the same pass.
+ * </p>
  *
  * @author Rob Winch
  * @author Eddú Meléndez
@@ -107,19 +114,28 @@ public class StrictHttpFirewall implements HttpFirewall {
 
 	private static final List<String> FORBIDDEN_NULL = Collections.unmodifiableList(Arrays.asList("\0", "%00"));
 
-	private Set<String> encodedUrlBlocklist = new HashSet<>();
+	private static final int BLOCKLISTED = 1;
+
+	private static final int NOT_NORMALIZED = 2;
+
+	private static final int NOT_PRINTABLE_ASCII = 4;
 
-	private Set<String> decodedUrlBlocklist = new HashSet<>();
+	private UrlBlocklist encodedUrlBlocklist = new UrlBlocklist();
+
+	private UrlBlocklist decodedUrlBlocklist = new UrlBlocklist();
 
 	private Set<String> allowedHttpMethods = createDefaultAllowedHttpMethods();
 
 	private Predicate<String> allowedHostnames = (hostname) -> true;
 
-	private static final Pattern ASSIGNED_AND_NOT_ISO_CONTROL_PATTERN = Pattern
-			.compile("[\\p{IsAssigned}&&[^\\p{IsControl}]]*");
+	private static final Predicate<String> ASSIGNED_AND_NOT_ISO_CONTROL_PREDICATE =
+			StrictHttpFirewall::isAssignedAndNotIsoControl;
 
-	private static final Predicate<String> ASSIGNED_AND_NOT_ISO_CONTROL_PREDICATE = (
-			s) -> ASSIGNED_AND_NOT_ISO_CONTROL_PATTERN.matcher(s).matches();
+	/**
+	 * The number of distinct header names, header values, parameter names and parameter
+	 * values a request remembers as validated.
+	 */
+	private static final int MAX_VALIDATED_VALUES = 32;
 
 	private Predicate<String> allowedHeaderNames = ASSIGNED_AND_NOT_ISO_CONTROL_PREDICATE;
 
@@ -426,13 +442,21 @@ public class StrictHttpFirewall implements HttpFirewall {
 	@Override
 	public FirewalledRequest getFirewalledRequest(HttpServletRequest request) throws RequestRejectedException {
 		rejectForbiddenHttpMethod(request);
-		rejectedBlocklistedUrls(request);
+		UrlBlocklistMatcher encodedUrlBlocklist = this.encodedUrlBlocklist.getMatcher();
+		UrlBlocklistMatcher decodedUrlBlocklist = this.decodedUrlBlocklist.getMatcher();
+		int requestUri = scan(request.getRequestURI(), encodedUrlBlocklist);
+		int contextPath = scan(request.getContextPath(), encodedUrlBlocklist);
+		int servletPath = scan(request.getServletPath(), decodedUrlBlocklist);
+		int pathInfo = scan(request.getPathInfo(), decodedUrlBlocklist);
+		if (((requestUri | contextPath | servletPath | pathInfo) & BLOCKLISTED) != 0) {
+			// find the blocklisted string to report the same way as evaluating each of them
+			rejectedBlocklistedUrls(request);
+		}
 		rejectedUntrustedHosts(request);
-		if (!isNormalized(request)) {
+		if (((requestUri | contextPath | servletPath | pathInfo) & NOT_NORMALIZED) != 0) {
 			throw new RequestRejectedException("The request was rejected because the URL was not normalized.");
 		}
-		String requestUri = request.getRequestURI();
-		if (!containsOnlyPrintableAsciiCharacters(requestUri)) {
+		if ((requestUri & NOT_PRINTABLE_ASCII) != 0) {
 			throw new RequestRejectedException(
 					"The requestURI was rejected because it can only contain printable ASCII characters.");
 		}
@@ -492,20 +516,46 @@ public class StrictHttpFirewall implements HttpFirewall {
 		return result;
 	}
 
-	private static boolean isNormalized(HttpServletRequest request) {
-		if (!isNormalized(request.getRequestURI())) {
-			return false;
+	/**
+	 * Checks a path in a single pass: whether it contains a blocklisted string, whether
+	 * one of its segments is {@code .} or {@code ..} and whether it only contains
+	 * printable ASCII characters.
+	 * @return the problems found, or 0 if there are none
+	 */
+	private static int scan(String path, UrlBlocklistMatcher blocklist) {
+		if (path == null) {
+			return 0;
 		}
-		if (!isNormalized(request.getContextPath())) {
-			return false;
+		int state = blocklist.initialState();
+		int result = blocklist.isMatch(state) ? BLOCKLISTED : 0;
+		int length = path.length();
+		int segmentStart = 0;
+		for (int i = 0; i < length; i++) {
+			char ch = path.charAt(i);
+			if (ch == '/') {
+				result |= checkSegment(path, segmentStart, i);
+				segmentStart = i + 1;
+			}
+			if (ch < '\u0020' || ch > '\u007e') {
+				result |= NOT_PRINTABLE_ASCII;
+			}
+			state = blocklist.next(state, ch);
+			if (blocklist.isMatch(state)) {
+				result |= BLOCKLISTED;
+			}
 		}
-		if (!isNormalized(request.getServletPath())) {
-			return false;
+		return result | checkSegment(path, segmentStart, length);
+	}
+
+	private static int checkSegment(String path, int start, int end) {
+		int length = end - start;
+		if (length == 1 && path.charAt(start) == '.') {
+			return NOT_NORMALIZED; // ".", "/./" or "/."
 		}
-		if (!isNormalized(request.getPathInfo())) {
-			return false;
+		if (length == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.') {
+			return NOT_NORMALIZED;
 		}
-		return true;
+		return 0;
 	}
 
 	private static boolean encodedUrlContains(HttpServletRequest request, String value) {
@@ -525,45 +575,10 @@ public class StrictHttpFirewall implements HttpFirewall {
 		return false;
 	}
 
-	private static boolean containsOnlyPrintableAsciiCharacters(String uri) {
-		int length = uri.length();
-		for (int i = 0; i < length; i++) {
-			char ch = uri.charAt(i);
-			if (ch < '\u0020' || ch > '\u007e') {
-				return false;
-			}
-		}
-		return true;
-	}
-
 	private static boolean valueContains(String value, String contains) {
 		return value != null && value.contains(contains);
 	}
 
-	/**
-	 * Checks whether a path is normalized (doesn't contain path traversal sequences like
-	 * "./", "/../" or "/.")
-	 * @param path the path to test
-	 * @return true if the path doesn't contain any path-traversal character sequences.
-	 */
-	private static boolean isNormalized(String path) {
-		if (path == null) {
-			return true;
-		}
-		for (int i = path.length(); i > 0;) {
-			int slashIndex = path.lastIndexOf('/', i - 1);
-			int gap = i - slashIndex;
-			if (gap == 2 && path.charAt(slashIndex + 1) == '.') {
-				return false; // ".", "/./" or "/."
-			}
-			if (gap == 3 && path.charAt(slashIndex + 1) == '.' && path.charAt(slashIndex + 2) == '.') {
-				return false;
-			}
-			i = slashIndex;
-		}
-		return true;
-	}
-
 	/**
 	 * Provides the existing encoded url blocklist which can add/remove entries from
 	 * @return the existing encoded url blocklist, never null
@@ -599,11 +614,151 @@ public class StrictHttpFirewall implements HttpFirewall {
 		return getDecodedUrlBlocklist();
 	}
 
+	/**
+	 * A blocklist which can be modified like any set, and compiles its strings into a
+	 * {@link UrlBlocklistMatcher} when it is used after a modification.
+	 */
+	private static final class UrlBlocklist extends AbstractSet<String> {
+
+		private final Set<String> values = new HashSet<>();
+
+		private volatile UrlBlocklistMatcher matcher;
+
+		@Override
+		public boolean add(String value) {
+			Assert.notNull(value, "value cannot be null");
+			return modified(this.values.add(value));
+		}
+
+		@Override
+		public boolean remove(Object value) {
+			return modified(this.values.remove(value));
+		}
+
+		@Override
+		public boolean contains(Object value) {
+			return this.values.contains(value);
+		}
+
+		@Override
+		public void clear() {
+			this.values.clear();
+			this.matcher = null;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			Iterator<String> iterator = this.values.iterator();
+			return new Iterator<String>() {
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public String next() {
+					return iterator.next();
+				}
+
+				@Override
+				public void remove() {
+					iterator.remove();
+					UrlBlocklist.this.matcher = null;
+				}
+
+			};
+		}
+
+		@Override
+		public int size() {
+			return this.values.size();
+		}
+
+		private boolean modified(boolean modified) {
+			if (modified) {
+				this.matcher = null;
+			}
+			return modified;
+		}
+
+		UrlBlocklistMatcher getMatcher() {
+			UrlBlocklistMatcher matcher = this.matcher;
+			if (matcher == null) {
+				matcher = UrlBlocklistMatcher.compile(this.values);
+				this.matcher = matcher;
+			}
+			return matcher;
+		}
+
+	}
+
+	/**
+	 * Whether a value only contains characters that are defined and are not ISO control
+	 * characters. Header and parameter names and values are almost always printable
+	 * ASCII, which is checked without decoding code points.
+	 * @param value the value to test
+	 * @return {@code true} if the value is allowed
+	 */
+	private static boolean isAssignedAndNotIsoControl(String value) {
+		int length = value.length();
+		int i = 0;
+		while (i < length) {
+			char ch = value.charAt(i);
+			if (ch >= '\u0080') {
+				break;
+			}
+			if (ch < '\u0020' || ch == '\u007f') {
+				return false;
+			}
+			i++;
+		}
+		while (i < length) {
+			int codePoint = value.codePointAt(i);
+			if (!Character.isDefined(codePoint) || Character.isISOControl(codePoint)) {
+				return false;
+			}
+			i += Character.charCount(codePoint);
+		}
+		return true;
+	}
+
+	/**
+	 * The names or values of one kind a request already validated, so that reading the
+	 * same header or parameter again does not test it again.
+	 */
+	private static final class ValidatedValues {
+
+		private Set<String> values;
+
+		boolean contains(String value) {
+			return this.values != null && this.values.contains(value);
+		}
+
+		void add(String value) {
+			if (this.values == null) {
+				this.values = new HashSet<>();
+			}
+			if (this.values.size() < MAX_VALIDATED_VALUES) {
+				this.values.add(value);
+			}
+		}
+
+	}
+
 	/**
 	 * Strict {@link FirewalledRequest}.
 	 */
 	private class StrictFirewalledRequest extends FirewalledRequest {
 
+		private final ValidatedValues validatedHeaderNames = new ValidatedValues();
+
+		private final ValidatedValues validatedHeaderValues = new ValidatedValues();
+
+		private final ValidatedValues validatedParameterNames = new ValidatedValues();
+
+		private final ValidatedValues validatedParameterValues = new ValidatedValues();
+
 		StrictFirewalledRequest(HttpServletRequest request) {
 			super(request);
 		}
@@ -728,31 +883,47 @@ public class StrictHttpFirewall implements HttpFirewall {
 		}
 
 		private void validateAllowedHeaderName(String headerNames) {
+			if (this.validatedHeaderNames.contains(headerNames)) {
+				return;
+			}
 			if (!StrictHttpFirewall.this.allowedHeaderNames.test(headerNames)) {
 				throw new RequestRejectedException(
 						"The request was rejected because the header name \"" + headerNames + "\" is not allowed.");
 			}
+			this.validatedHeaderNames.add(headerNames);
 		}
 
 		private void validateAllowedHeaderValue(String value) {
+			if (this.validatedHeaderValues.contains(value)) {
+				return;
+			}
 			if (!StrictHttpFirewall.this.allowedHeaderValues.test(value)) {
 				throw new RequestRejectedException(
 						"The request was rejected because the header value \"" + value + "\" is not allowed.");
 			}
+			this.validatedHeaderValues.add(value);
 		}
 
 		private void validateAllowedParameterName(String name) {
+			if (this.validatedParameterNames.contains(name)) {
+				return;
+			}
 			if (!StrictHttpFirewall.this.allowedParameterNames.test(name)) {
 				throw new RequestRejectedException(
 						"The request was rejected because the parameter name \"" + name + "\" is not allowed.");
 			}
+			this.validatedParameterNames.add(name);
 		}
 
 		private void validateAllowedParameterValue(String value) {
+			if (this.validatedParameterValues.contains(value)) {
+				return;
+			}
 			if (!StrictHttpFirewall.this.allowedParameterValues.test(value)) {
 				throw new RequestRejectedException(
 						"The request was rejected because the parameter value \"" + value + "\" is not allowed.");
 			}
+			this.validatedParameterValues.add(value);
 		}
 
 		@Override
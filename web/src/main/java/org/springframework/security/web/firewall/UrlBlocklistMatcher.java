@@ -0,0 +1,213 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.firewall;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton finding whether a string contains any of the strings of a
+ * blocklist, reading each of its characters once whatever the number of blocklisted
+ * strings.
+ * <p>
+ * The transitions on ASCII characters are precomputed into a table, so that a step is an
+ * array lookup. Other characters follow the failure links of the automaton.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+final class UrlBlocklistMatcher {
+
+	private static final int ASCII = 128;
+
+	/**
+	 * The state reached from each state by each ASCII character.
+	 */
+	private final int[] asciiTransitions;
+
+	/**
+	 * For each state, the non-ASCII characters it has a child for, sorted, and the
+	 * children.
+	 */
+	private final char[][] wideCharacters;
+
+	private final int[][] wideChildren;
+
+	private final int[] failures;
+
+	/**
+	 * Whether reaching each state means that a blocklisted string was read.
+	 */
+	private final boolean[] matches;
+
+	private final boolean hasWideCharacters;
+
+	private UrlBlocklistMatcher(int[] asciiTransitions, char[][] wideCharacters, int[][] wideChildren,
+			int[] failures, boolean[] matches) {
+		this.asciiTransitions = asciiTransitions;
+		this.wideCharacters = wideCharacters;
+		this.wideChildren = wideChildren;
+		this.failures = failures;
+		this.matches = matches;
+		this.hasWideCharacters = hasWideCharacters(wideCharacters);
+	}
+
+	/**
+	 * Compiles the blocklisted strings into an automaton.
+	 * @param blocklist the blocklisted strings
+	 * @return the automaton
+	 */
+	static UrlBlocklistMatcher compile(Collection<String> blocklist) {
+		List<int[]> asciiChildren = new ArrayList<>();
+		List<Map<Character, Integer>> wideChildren = new ArrayList<>();
+		List<Boolean> terminal = new ArrayList<>();
+		addState(asciiChildren, wideChildren, terminal);
+		for (String value : blocklist) {
+			int state = 0;
+			for (int i = 0; i < value.length(); i++) {
+				char ch = value.charAt(i);
+				int child = (ch < ASCII) ? asciiChildren.get(state)[ch] : wideChildren.get(state).getOrDefault(ch, -1);
+				if (child == -1) {
+					child = addState(asciiChildren, wideChildren, terminal);
+					if (ch < ASCII) {
+						asciiChildren.get(state)[ch] = child;
+					}
+					else {
+						wideChildren.get(state).put(ch, child);
+					}
+				}
+				state = child;
+			}
+			terminal.set(state, true);
+		}
+		int states = terminal.size();
+		int[] asciiTransitions = new int[states * ASCII];
+		char[][] wideCharacters = new char[states][];
+		int[][] wideTargets = new int[states][];
+		int[] failures = new int[states];
+		boolean[] matches = new boolean[states];
+		for (int state = 0; state < states; state++) {
+			matches[state] = terminal.get(state);
+			Map<Character, Integer> children = wideChildren.get(state);
+			wideCharacters[state] = new char[children.size()];
+			wideTargets[state] = new int[children.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> child : children.entrySet()) {
+				wideCharacters[state][i] = child.getKey();
+				wideTargets[state][i] = child.getValue();
+				i++;
+			}
+		}
+		UrlBlocklistMatcher matcher = new UrlBlocklistMatcher(asciiTransitions, wideCharacters, wideTargets, failures,
+				matches);
+		// breadth first, so that the failure of a state is complete before its children
+		Deque<Integer> queue = new ArrayDeque<>();
+		queue.add(0);
+		while (!queue.isEmpty()) {
+			int state = queue.remove();
+			int failure = failures[state];
+			for (int ch = 0; ch < ASCII; ch++) {
+				int child = asciiChildren.get(state)[ch];
+				if (child != -1) {
+					failures[child] = (state != 0) ? asciiTransitions[failure * ASCII + ch] : 0;
+					matches[child] |= matches[failures[child]];
+					asciiTransitions[state * ASCII + ch] = child;
+					queue.add(child);
+				}
+				else {
+					asciiTransitions[state * ASCII + ch] = (state != 0) ? asciiTransitions[failure * ASCII + ch] : 0;
+				}
+			}
+			for (int i = 0; i < wideCharacters[state].length; i++) {
+				int child = wideTargets[state][i];
+				failures[child] = (state != 0) ? matcher.next(failure, wideCharacters[state][i]) : 0;
+				matches[child] |= matches[failures[child]];
+				queue.add(child);
+			}
+		}
+		return matcher;
+	}
+
+	private static int addState(List<int[]> asciiChildren, List<Map<Character, Integer>> wideChildren,
+			List<Boolean> terminal) {
+		int[] children = new int[ASCII];
+		Arrays.fill(children, -1);
+		asciiChildren.add(children);
+		wideChildren.add(new TreeMap<>());
+		terminal.add(false);
+		return terminal.size() - 1;
+	}
+
+	private static boolean hasWideCharacters(char[][] wideCharacters) {
+		for (char[] characters : wideCharacters) {
+			if (characters.length > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The state the automaton starts in.
+	 * @return the initial state
+	 */
+	int initialState() {
+		return 0;
+	}
+
+	/**
+	 * Reads a character.
+	 * @param state the current state
+	 * @param ch the character
+	 * @return the next state
+	 */
+	int next(int state, char ch) {
+		if (ch < ASCII) {
+			return this.asciiTransitions[state * ASCII + ch];
+		}
+		if (!this.hasWideCharacters) {
+			return 0;
+		}
+		while (true) {
+			int index = Arrays.binarySearch(this.wideCharacters[state], ch);
+			if (index >= 0) {
+				return this.wideChildren[state][index];
+			}
+			if (state == 0) {
+				return 0;
+			}
+			state = this.failures[state];
+		}
+	}
+
+	/**
+	 * Whether a blocklisted string was read, including the empty string, which the
+	 * initial state matches.
+	 * @param state the current state
+	 * @return {@code true} if the characters read so far contain a blocklisted string
+	 */
+	boolean isMatch(int state) {
+		return this.matches[state];
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.serializer;
+
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.security.serializer.BinaryInput;
+import org.springframework.security.serializer.BinaryOutput;
+import org.springframework.security.serializer.SecurityBinaryModule;
+import org.springframework.security.serializer.SecurityBinarySerializer;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The {@link SecurityBinaryModule} for the types of Spring Security web, like the
+ * {@code WebServletJackson2Module}: {@link WebAuthenticationDetails}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see org.springframework.security.serializer.SecurityBinaryCodec
+ */
+public class WebBinaryModule implements SecurityBinaryModule {
+
+	@Override
+	public List<SecurityBinarySerializer<?>> getSerializers() {
+		return Collections.singletonList(new WebAuthenticationDetailsSerializer());
+	}
+
+	static final class WebAuthenticationDetailsSerializer
+			implements SecurityBinarySerializer<WebAuthenticationDetails> {
+
+		private final Constructor<WebAuthenticationDetails> constructor;
+
+		WebAuthenticationDetailsSerializer() {
+			try {
+				this.constructor = ReflectionUtils.accessibleConstructor(WebAuthenticationDetails.class, String.class,
+						String.class);
+			}
+			catch (NoSuchMethodException ex) {
+				throw new IllegalStateException("Cannot find the constructor of WebAuthenticationDetails", ex);
+			}
+		}
+
+		@Override
+		public int getTypeId() {
+			return 32;
+		}
+
+		@Override
+		public Class<WebAuthenticationDetails> getType() {
+			return WebAuthenticationDetails.class;
+		}
+
+		@Override
+		public void write(WebAuthenticationDetails value, BinaryOutput output) {
+			output.writeString(value.getRemoteAddress());
+			output.writeString(value.getSessionId());
+		}
+
+		@Override
+		public WebAuthenticationDetails read(BinaryInput input, int version) {
+			String remoteAddress = input.readString();
+			String sessionId = input.readString();
+			return BeanUtils.instantiateClass(this.constructor, remoteAddress, sessionId);
+		}
+
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.authentication;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Map;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.TwoFactorAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.security.web.authentication.twofa.repositories.ReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.services.TotpService;
+import org.springframework.util.Assert;
+
+/**
+ * The reactive counterpart of
+ * {@link org.springframework.security.web.authentication.TwoFactorAuthenticationProvider}.
+ * It authenticates an unauthenticated {@link TwoFactorAuthenticationToken} whose
+ * principal is the session id and whose credentials are the submitted code.
+ * <p>
+ * The sign in attempt and the user are looked up through non-blocking APIs, and the code
+ * is checked in memory: sent codes are compared in constant time, and authenticator app
+ * codes are verified by the {@link TotpService}, which does not perform any I/O.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class ReactiveTwoFactorAuthenticationManager implements ReactiveAuthenticationManager {
+
+	private final ReactiveTwoFactorAuthCodeRepository codeRepository;
+
+	private final ReactiveUserDetailsService userDetailsService;
+
+	private final TotpService totpService;
+
+	private long expirationTimeInMillis = 90000;
+
+	private Clock clock = Clock.systemUTC();
+
+	public ReactiveTwoFactorAuthenticationManager(ReactiveTwoFactorAuthCodeRepository codeRepository,
+			ReactiveUserDetailsService userDetailsService, TotpService totpService) {
+		Assert.notNull(codeRepository, "codeRepository cannot be null");
+		Assert.notNull(userDetailsService, "userDetailsService cannot be null");
+		Assert.notNull(totpService, "totpService cannot be null");
+		this.codeRepository = codeRepository;
+		this.userDetailsService = userDetailsService;
+		this.totpService = totpService;
+	}
+
+	/**
+	 * Verifies the submitted code.
+	 * @return the authenticated token, or an empty {@link Mono} if the token is not an
+	 * unauthenticated {@link TwoFactorAuthenticationToken}
+	 * @throws AuthenticationCredentialsNotFoundException (as an error signal) if the
+	 * session has no sign in attempt, meaning the password step was not completed
+	 * @throws BadCredentialsException (as an error signal) if the code is incorrect or
+	 * expired
+	 */
+	@Override
+	public Mono<Authentication> authenticate(Authentication authentication) {
+		if (!(authentication instanceof TwoFactorAuthenticationToken) || authentication.isAuthenticated()) {
+			return Mono.empty();
+		}
+		String sessionId = (String) authentication.getPrincipal();
+		String codeToCheck = (String) authentication.getCredentials();
+		// @formatter:off
+		return this.codeRepository.getCode(sessionId)
+				.switchIfEmpty(Mono.defer(() -> Mono.error(
+						new AuthenticationCredentialsNotFoundException("No two-factor sign in attempt found"))))
+				.flatMap((attempt) -> this.userDetailsService.findByUsername(attempt.getUsername())
+						.switchIfEmpty(Mono.defer(() -> Mono.error(new BadCredentialsException("Invalid Credentials"))))
+						.map((user) -> {
+							checkCode(attempt, user, codeToCheck);
+							return createNewToken(user);
+						}));
+		// @formatter:on
+	}
+
+	private void checkCode(SignInAttempt attempt, UserDetails user, String codeToCheck) {
+		if (attempt.getTime().getTime() + this.expirationTimeInMillis < this.clock.millis()) {
+			throw new BadCredentialsException("code is expired");
+		}
+		if (attempt.getTwoFactorCode() == null) {
+			checkAuthenticatorCode(user, codeToCheck);
+			return;
+		}
+		if (codeToCheck == null || !MessageDigest.isEqual(attempt.getTwoFactorCode().getBytes(StandardCharsets.UTF_8),
+				codeToCheck.trim().getBytes(StandardCharsets.UTF_8))) {
+			throw new BadCredentialsException("invalid code");
+		}
+	}
+
+	private void checkAuthenticatorCode(UserDetails user, String codeToCheck) {
+		Map<Integer, TwoFactorPreference> preferences = user.getTwoFactorAuthPreferences();
+		if (preferences == null) {
+			throw new BadCredentialsException("no authenticator app is registered");
+		}
+		BadCredentialsException failure = null;
+		for (TwoFactorPreference preference : preferences.values()) {
+			if (preference.isKey()) {
+				try {
+					this.totpService.confirmCode(preference, codeToCheck);
+					return;
+				}
+				catch (BadCredentialsException ex) {
+					failure = ex;
+				}
+			}
+		}
+		throw (failure != null) ? failure : new BadCredentialsException("no authenticator app is registered");
+	}
+
+	protected Authentication createNewToken(UserDetails principal) {
+		return new TwoFactorAuthenticationToken(principal, null, principal.getAuthorities());
+	}
+
+	/**
+	 * Sets the time, in milliseconds, after which a sign in attempt is no longer
+	 * accepted, whether its code was sent or comes from an authenticator app. Defaults to
+	 * 90 seconds.
+	 * @param expirationTimeInMillis the expiration time
+	 */
+	public void setExpirationTime(long expirationTimeInMillis) {
+		Assert.isTrue(expirationTimeInMillis > 0, "expirationTimeInMillis must be greater than 0");
+		this.expirationTimeInMillis = expirationTimeInMillis;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to check whether a sign in attempt expired.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+}
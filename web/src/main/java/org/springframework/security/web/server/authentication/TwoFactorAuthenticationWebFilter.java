@@ -0,0 +1,551 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.authentication;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Clock;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.core.log.LogMessage;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.TwoFactorAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.security.web.authentication.twofa.ratelimit.InMemoryTwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimitExceededException;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.KeyType;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.Operation;
+import org.springframework.security.web.authentication.twofa.repositories.InMemoryReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.repositories.ReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.stategies.codegeneration.TwoFactorAuthCodeGenerationStrategy;
+import org.springframework.security.web.authentication.twofa.stategies.codegeneration.TwoFactorAuthCodeGenerationStrategyImpl;
+import org.springframework.security.web.authentication.twofa.stategies.sendattemp.TwoFactorAuthCodeSendStrategy;
+import org.springframework.security.web.authentication.twofa.stategies.sendfailure.NullSendFailureStrategy;
+import org.springframework.security.web.authentication.twofa.stategies.sendfailure.TwoFactorAuthCodeSendFailureStrategy;
+import org.springframework.security.web.server.DefaultServerRedirectStrategy;
+import org.springframework.security.web.server.ServerRedirectStrategy;
+import org.springframework.security.web.server.WebFilterExchange;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.server.WebSession;
+
+/**
+ * The reactive counterpart of
+ * {@link org.springframework.security.web.authentication.TwoFactorAuthenticationFilter}.
+ * It handles three kinds of requests:
+ * <ul>
+ * <li>A username and password log in (POST "/login"). The credentials are authenticated
+ * with the password {@link ReactiveAuthenticationManager}. If the user enabled two-factor
+ * authentication, a {@link SignInAttempt} is saved for the session, a code is sent when
+ * the primary preference is not an authenticator app, and the user is redirected to
+ * "/2FA". Otherwise the user is logged in.</li>
+ * <li>A code submission (POST "/2FA/authenticate"). The code is checked by the two-factor
+ * {@link ReactiveAuthenticationManager}, typically a
+ * {@link ReactiveTwoFactorAuthenticationManager}, and on success the attempt is removed,
+ * the session id is changed and the user is logged in.</li>
+ * <li>A resend request (GET "/2FA/resend"), which sends the pending code again, unless
+ * the sign in attempt has expired.</li>
+ * </ul>
+ * <p>
+ * Code submissions and resend requests are limited per session, client address and user
+ * by a {@link TwoFactorAuthRateLimiter}. The session and the address are checked before
+ * the sign in attempt is read, so that a brute-force attack is absorbed in memory. Refused
+ * requests are redirected to "/2FA?locked".
+ * <p>
+ * The {@link TwoFactorAuthCodeSendStrategy} is a blocking API, usually talking to a mail
+ * or SMS gateway, so codes are always sent on a {@link Scheduler} suited to blocking
+ * work, {@link Schedulers#boundedElastic()} by default, and never on the thread handling
+ * the request.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public class TwoFactorAuthenticationWebFilter implements WebFilter {
+
+	public static final String DEFAULT_USERNAME_PARAMETER = "username";
+
+	public static final String DEFAULT_PASSWORD_PARAMETER = "password";
+
+	public static final String DEFAULT_CODE_PARAMETER = "code";
+
+	public static final String DEFAULT_LOGIN_URL = "/login";
+
+	public static final String DEFAULT_TWO_FACTOR_PROCESSING_URL = "/2FA/authenticate";
+
+	public static final String DEFAULT_CODE_RESEND_URL = "/2FA/resend";
+
+	public static final String DEFAULT_TWO_FACTOR_REDIRECT_URL = "/2FA";
+
+	public static final String DEFAULT_TWO_FACTOR_FAILURE_URL = "/2FA?error";
+
+	public static final String DEFAULT_TWO_FACTOR_LOCKED_URL = "/2FA?locked";
+
+	private static final Log logger = LogFactory.getLog(TwoFactorAuthenticationWebFilter.class);
+
+	private final ReactiveAuthenticationManager authenticationManager;
+
+	private final ReactiveAuthenticationManager twoFactorAuthenticationManager;
+
+	private final ReactiveUserDetailsService userDetailsService;
+
+	private final TwoFactorAuthCodeSendStrategy sendStrategy;
+
+	private TwoFactorAuthCodeSendFailureStrategy sendFailureStrategy = new NullSendFailureStrategy();
+
+	private ReactiveTwoFactorAuthCodeRepository codeRepository = new InMemoryReactiveTwoFactorAuthCodeRepository();
+
+	private TwoFactorAuthCodeGenerationStrategy generationStrategy = new TwoFactorAuthCodeGenerationStrategyImpl();
+
+	private ServerSecurityContextRepository securityContextRepository = new WebSessionServerSecurityContextRepository();
+
+	private TwoFactorAuthRateLimiter rateLimiter = new InMemoryTwoFactorAuthRateLimiter();
+
+	private ServerRedirectStrategy redirectStrategy = new DefaultServerRedirectStrategy();
+
+	private ServerWebExchangeMatcher loginMatcher = ServerWebExchangeMatchers.pathMatchers(HttpMethod.POST,
+			DEFAULT_LOGIN_URL);
+
+	private ServerWebExchangeMatcher twoFactorProcessingMatcher = ServerWebExchangeMatchers
+			.pathMatchers(HttpMethod.POST, DEFAULT_TWO_FACTOR_PROCESSING_URL);
+
+	private ServerWebExchangeMatcher codeResendMatcher = ServerWebExchangeMatchers.pathMatchers(HttpMethod.GET,
+			DEFAULT_CODE_RESEND_URL);
+
+	private String usernameParameter = DEFAULT_USERNAME_PARAMETER;
+
+	private String passwordParameter = DEFAULT_PASSWORD_PARAMETER;
+
+	private String codeParameter = DEFAULT_CODE_PARAMETER;
+
+	private URI loginLocation = URI.create(DEFAULT_LOGIN_URL);
+
+	private URI twoFactorRedirectLocation = URI.create(DEFAULT_TWO_FACTOR_REDIRECT_URL);
+
+	private ServerAuthenticationSuccessHandler authenticationSuccessHandler = new RedirectServerAuthenticationSuccessHandler();
+
+	private ServerAuthenticationFailureHandler authenticationFailureHandler = new RedirectServerAuthenticationFailureHandler(
+			DEFAULT_LOGIN_URL + "?error");
+
+	private ServerAuthenticationFailureHandler twoFactorFailureHandler = new RedirectServerAuthenticationFailureHandler(
+			DEFAULT_TWO_FACTOR_FAILURE_URL);
+
+	private ServerAuthenticationFailureHandler rateLimitExceededHandler = new RedirectServerAuthenticationFailureHandler(
+			DEFAULT_TWO_FACTOR_LOCKED_URL);
+
+	private Scheduler sendScheduler = Schedulers.boundedElastic();
+
+	private long expirationTimeInMillis = 90000;
+
+	private Clock clock = Clock.systemUTC();
+
+	/**
+	 * Creates an instance
+	 * @param authenticationManager authenticates the username and password
+	 * @param twoFactorAuthenticationManager authenticates the submitted code
+	 * @param userDetailsService looks up the user when a code is resent
+	 * @param sendStrategy sends the generated codes
+	 */
+	public TwoFactorAuthenticationWebFilter(ReactiveAuthenticationManager authenticationManager,
+			ReactiveAuthenticationManager twoFactorAuthenticationManager, ReactiveUserDetailsService userDetailsService,
+			TwoFactorAuthCodeSendStrategy sendStrategy) {
+		Assert.notNull(authenticationManager, "authenticationManager cannot be null");
+		Assert.notNull(twoFactorAuthenticationManager, "twoFactorAuthenticationManager cannot be null");
+		Assert.notNull(userDetailsService, "userDetailsService cannot be null");
+		Assert.notNull(sendStrategy, "sendStrategy cannot be null");
+		this.authenticationManager = authenticationManager;
+		this.twoFactorAuthenticationManager = twoFactorAuthenticationManager;
+		this.userDetailsService = userDetailsService;
+		this.sendStrategy = sendStrategy;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		WebFilterExchange webFilterExchange = new WebFilterExchange(exchange, chain);
+		return whenMatches(this.loginMatcher, exchange, () -> login(webFilterExchange),
+				() -> whenMatches(this.twoFactorProcessingMatcher, exchange, () -> verifyCode(webFilterExchange),
+						() -> whenMatches(this.codeResendMatcher, exchange, () -> resendCode(webFilterExchange),
+								() -> chain.filter(exchange))));
+	}
+
+	private Mono<Void> whenMatches(ServerWebExchangeMatcher matcher, ServerWebExchange exchange,
+			Supplier<Mono<Void>> matched, Supplier<Mono<Void>> notMatched) {
+		return matcher.matches(exchange)
+				.flatMap((matchResult) -> matchResult.isMatch() ? matched.get() : notMatched.get());
+	}
+
+	private Mono<Void> login(WebFilterExchange webFilterExchange) {
+		ServerWebExchange exchange = webFilterExchange.getExchange();
+		// @formatter:off
+		return exchange.getFormData()
+				.map((data) -> new UsernamePasswordAuthenticationToken(nonNull(data.getFirst(this.usernameParameter)),
+						nonNull(data.getFirst(this.passwordParameter))))
+				.flatMap(this.authenticationManager::authenticate)
+				.flatMap((authentication) -> {
+					Object principal = authentication.getPrincipal();
+					if (principal instanceof UserDetails && ((UserDetails) principal).isTwoFactorAuthEnabled()) {
+						return startTwoFactorAuthentication(exchange, (UserDetails) principal);
+					}
+					return onAuthenticationSuccess(authentication, webFilterExchange);
+				})
+				.onErrorResume(AuthenticationException.class, (ex) -> {
+					logger.debug(LogMessage.format("Authentication failed: %s", ex.getMessage()));
+					return this.authenticationFailureHandler.onAuthenticationFailure(webFilterExchange, ex);
+				});
+		// @formatter:on
+	}
+
+	private Mono<Void> startTwoFactorAuthentication(ServerWebExchange exchange, UserDetails user) {
+		Map<Integer, TwoFactorPreference> preferences = user.getTwoFactorAuthPreferences();
+		TwoFactorPreference primaryPreference = (preferences != null) ? preferences.get(1) : null;
+		boolean sendCode = primaryPreference != null && !primaryPreference.isKey();
+		// @formatter:off
+		return exchange.getSession()
+				.flatMap((session) -> {
+					session.start();
+					String code = sendCode ? this.generationStrategy.generateCode() : null;
+					SignInAttempt attempt = new SignInAttempt(session.getId(), code, user.getUsername(),
+							this.clock.millis());
+					Mono<Void> saved = this.codeRepository.insertCode(attempt);
+					return sendCode ? saved.then(sendCode(user, attempt)) : saved;
+				})
+				.then(this.redirectStrategy.sendRedirect(exchange, this.twoFactorRedirectLocation));
+		// @formatter:on
+	}
+
+	private Mono<Void> verifyCode(WebFilterExchange webFilterExchange) {
+		ServerWebExchange exchange = webFilterExchange.getExchange();
+		// @formatter:off
+		return exchange.getSession()
+				.flatMap((session) -> acquire(Operation.VERIFY_CODE, session.getId(), exchange)
+						.switchIfEmpty(Mono.defer(() -> Mono.error(
+								new AuthenticationCredentialsNotFoundException("No two-factor sign in attempt found"))))
+						.flatMap((attempt) -> exchange.getFormData()
+								.map((data) -> new TwoFactorAuthenticationToken(session.getId(),
+										nonNull(data.getFirst(this.codeParameter))))
+								.flatMap(this.twoFactorAuthenticationManager::authenticate)
+								.flatMap((authentication) -> {
+									this.rateLimiter.reset(Operation.VERIFY_CODE, KeyType.USERNAME, attempt.getUsername());
+									this.rateLimiter.reset(Operation.VERIFY_CODE, KeyType.SESSION, session.getId());
+									return this.codeRepository.removeCode(session.getId())
+											.then(session.changeSessionId())
+											.then(onAuthenticationSuccess(authentication, webFilterExchange));
+								})))
+				.onErrorResume(TwoFactorAuthRateLimitExceededException.class, (ex) -> {
+					logger.debug(LogMessage.format("Two-factor request refused: %s", ex.getMessage()));
+					return this.rateLimitExceededHandler.onAuthenticationFailure(webFilterExchange, ex);
+				})
+				.onErrorResume(AuthenticationCredentialsNotFoundException.class,
+						(ex) -> this.redirectStrategy.sendRedirect(exchange, this.loginLocation))
+				.onErrorResume(AuthenticationException.class, (ex) -> {
+					logger.debug(LogMessage.format("Two-factor authentication failed: %s", ex.getMessage()));
+					return this.twoFactorFailureHandler.onAuthenticationFailure(webFilterExchange, ex);
+				});
+		// @formatter:on
+	}
+
+	private Mono<Void> resendCode(WebFilterExchange webFilterExchange) {
+		ServerWebExchange exchange = webFilterExchange.getExchange();
+		// @formatter:off
+		return exchange.getSession()
+				.map(WebSession::getId)
+				.flatMap((sessionId) -> acquire(Operation.RESEND_CODE, sessionId, exchange))
+				.filter((attempt) -> attempt.getTwoFactorCode() != null && !isExpired(attempt))
+				.flatMap((attempt) -> this.userDetailsService.findByUsername(attempt.getUsername())
+						.flatMap((user) -> sendCode(user, attempt))
+						.thenReturn(this.twoFactorRedirectLocation))
+				.defaultIfEmpty(this.loginLocation)
+				.flatMap((location) -> this.redirectStrategy.sendRedirect(exchange, location))
+				.onErrorResume(TwoFactorAuthRateLimitExceededException.class, (ex) -> {
+					logger.debug(LogMessage.format("Two-factor request refused: %s", ex.getMessage()));
+					return this.rateLimitExceededHandler.onAuthenticationFailure(webFilterExchange, ex);
+				});
+		// @formatter:on
+	}
+
+	private boolean isExpired(SignInAttempt attempt) {
+		return attempt.getTime().getTime() + this.expirationTimeInMillis < this.clock.millis();
+	}
+
+	/**
+	 * Asks the {@link TwoFactorAuthRateLimiter} for a permit for the client address, then
+	 * for the session and the user of the pending sign in attempt. Sessions without an
+	 * attempt are not charged, so that made up session ids cannot use up the limiter.
+	 * @return the pending sign in attempt, an empty {@link Mono} if there is none, or a
+	 * {@link TwoFactorAuthRateLimitExceededException} if a permit is refused
+	 */
+	private Mono<SignInAttempt> acquire(Operation operation, String sessionId, ServerWebExchange exchange) {
+		if (!this.rateLimiter.tryAcquire(operation, KeyType.REMOTE_ADDRESS, remoteAddress(exchange))) {
+			return Mono.error(new TwoFactorAuthRateLimitExceededException("Too many two-factor requests"));
+		}
+		return this.codeRepository.getCode(sessionId).flatMap((attempt) -> {
+			if (!this.rateLimiter.tryAcquire(operation, KeyType.SESSION, sessionId)
+					|| !this.rateLimiter.tryAcquire(operation, KeyType.USERNAME, attempt.getUsername())) {
+				return Mono.error(new TwoFactorAuthRateLimitExceededException("Too many two-factor requests"));
+			}
+			return Mono.just(attempt);
+		});
+	}
+
+	private static String remoteAddress(ServerWebExchange exchange) {
+		InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+		if (remoteAddress == null) {
+			return null;
+		}
+		return (remoteAddress.getAddress() != null) ? remoteAddress.getAddress().getHostAddress()
+				: remoteAddress.getHostString();
+	}
+
+	/**
+	 * Sends a code on the send {@link Scheduler}. Failures are handed to the
+	 * {@link TwoFactorAuthCodeSendFailureStrategy} on that same thread.
+	 */
+	private Mono<Void> sendCode(UserDetails user, SignInAttempt attempt) {
+		return Mono.<Void>fromRunnable(() -> {
+			try {
+				this.sendStrategy.sendCode(user, attempt);
+			}
+			catch (Exception ex) {
+				this.sendFailureStrategy.handleAsyncSendFailure(attempt, ex);
+			}
+		}).subscribeOn(this.sendScheduler);
+	}
+
+	protected Mono<Void> onAuthenticationSuccess(Authentication authentication, WebFilterExchange webFilterExchange) {
+		ServerWebExchange exchange = webFilterExchange.getExchange();
+		SecurityContextImpl securityContext = new SecurityContextImpl();
+		securityContext.setAuthentication(authentication);
+		return this.securityContextRepository.save(exchange, securityContext)
+				.then(this.authenticationSuccessHandler.onAuthenticationSuccess(webFilterExchange, authentication))
+				.subscriberContext(ReactiveSecurityContextHolder.withSecurityContext(Mono.just(securityContext)));
+	}
+
+	private static String nonNull(String value) {
+		return (value != null) ? value : "";
+	}
+
+	/**
+	 * Sets the repository holding the pending sign in attempts. Default is
+	 * {@link InMemoryReactiveTwoFactorAuthCodeRepository}. It must be the repository
+	 * the two-factor {@link ReactiveAuthenticationManager} reads from.
+	 * @param codeRepository the repository to use
+	 */
+	public void setCodeRepository(ReactiveTwoFactorAuthCodeRepository codeRepository) {
+		Assert.notNull(codeRepository, "codeRepository cannot be null");
+		this.codeRepository = codeRepository;
+	}
+
+	/**
+	 * Sets the strategy invoked when a code could not be sent. Default is
+	 * {@link NullSendFailureStrategy}.
+	 * @param sendFailureStrategy the strategy to use
+	 */
+	public void setSendFailureStrategy(TwoFactorAuthCodeSendFailureStrategy sendFailureStrategy) {
+		Assert.notNull(sendFailureStrategy, "sendFailureStrategy cannot be null");
+		this.sendFailureStrategy = sendFailureStrategy;
+	}
+
+	/**
+	 * Sets the strategy generating the codes sent to users. Default is
+	 * {@link TwoFactorAuthCodeGenerationStrategyImpl}.
+	 * @param generationStrategy the strategy to use
+	 */
+	public void setGenerationStrategy(TwoFactorAuthCodeGenerationStrategy generationStrategy) {
+		Assert.notNull(generationStrategy, "generationStrategy cannot be null");
+		this.generationStrategy = generationStrategy;
+	}
+
+	/**
+	 * Sets the repository for persisting the SecurityContext. Default is
+	 * {@link WebSessionServerSecurityContextRepository}
+	 * @param securityContextRepository the repository to use
+	 */
+	public void setSecurityContextRepository(ServerSecurityContextRepository securityContextRepository) {
+		Assert.notNull(securityContextRepository, "securityContextRepository cannot be null");
+		this.securityContextRepository = securityContextRepository;
+	}
+
+	/**
+	 * Sets the limiter guarding code submissions and resend requests. Default is
+	 * {@link InMemoryTwoFactorAuthRateLimiter}, which limits sessions and usernames but
+	 * not client addresses.
+	 * @param rateLimiter the limiter to use
+	 */
+	public void setRateLimiter(TwoFactorAuthRateLimiter rateLimiter) {
+		Assert.notNull(rateLimiter, "rateLimiter cannot be null");
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Sets the handler invoked when a code submission or a resend request is refused by
+	 * the {@link TwoFactorAuthRateLimiter}. Default is to redirect to "/2FA?locked".
+	 * @param rateLimitExceededHandler the handler to use
+	 */
+	public void setRateLimitExceededHandler(ServerAuthenticationFailureHandler rateLimitExceededHandler) {
+		Assert.notNull(rateLimitExceededHandler, "rateLimitExceededHandler cannot be null");
+		this.rateLimitExceededHandler = rateLimitExceededHandler;
+	}
+
+	/**
+	 * Sets the handler invoked once the user is logged in. Default is
+	 * {@link RedirectServerAuthenticationSuccessHandler}.
+	 * @param authenticationSuccessHandler the handler to use
+	 */
+	public void setAuthenticationSuccessHandler(ServerAuthenticationSuccessHandler authenticationSuccessHandler) {
+		Assert.notNull(authenticationSuccessHandler, "authenticationSuccessHandler cannot be null");
+		this.authenticationSuccessHandler = authenticationSuccessHandler;
+	}
+
+	/**
+	 * Sets the handler invoked when the username or password is incorrect. Default is to
+	 * redirect to "/login?error".
+	 * @param authenticationFailureHandler the handler to use
+	 */
+	public void setAuthenticationFailureHandler(ServerAuthenticationFailureHandler authenticationFailureHandler) {
+		Assert.notNull(authenticationFailureHandler, "authenticationFailureHandler cannot be null");
+		this.authenticationFailureHandler = authenticationFailureHandler;
+	}
+
+	/**
+	 * Sets the handler invoked when the submitted code is incorrect or expired. Default
+	 * is to redirect to "/2FA?error".
+	 * @param twoFactorFailureHandler the handler to use
+	 */
+	public void setTwoFactorFailureHandler(ServerAuthenticationFailureHandler twoFactorFailureHandler) {
+		Assert.notNull(twoFactorFailureHandler, "twoFactorFailureHandler cannot be null");
+		this.twoFactorFailureHandler = twoFactorFailureHandler;
+	}
+
+	/**
+	 * Sets the strategy used to redirect between the steps of the flow.
+	 * @param redirectStrategy the strategy to use
+	 */
+	public void setRedirectStrategy(ServerRedirectStrategy redirectStrategy) {
+		Assert.notNull(redirectStrategy, "redirectStrategy cannot be null");
+		this.redirectStrategy = redirectStrategy;
+	}
+
+	/**
+	 * Sets the URL of the log in page. Username and password log ins are expected as a
+	 * POST to this URL, and users without a pending sign in attempt are redirected to
+	 * it. Default is "/login".
+	 * @param loginUrl the log in URL
+	 */
+	public void setLoginUrl(String loginUrl) {
+		Assert.hasText(loginUrl, "loginUrl cannot be empty");
+		this.loginMatcher = ServerWebExchangeMatchers.pathMatchers(HttpMethod.POST, loginUrl);
+		this.loginLocation = URI.create(loginUrl);
+	}
+
+	/**
+	 * Sets the URL codes are submitted to with a POST. Default is "/2FA/authenticate".
+	 * @param twoFactorProcessingUrl the code processing URL
+	 */
+	public void setTwoFactorProcessingUrl(String twoFactorProcessingUrl) {
+		Assert.hasText(twoFactorProcessingUrl, "twoFactorProcessingUrl cannot be empty");
+		this.twoFactorProcessingMatcher = ServerWebExchangeMatchers.pathMatchers(HttpMethod.POST,
+				twoFactorProcessingUrl);
+	}
+
+	/**
+	 * Sets the URL a code is resent from with a GET. Default is "/2FA/resend".
+	 * @param codeResendUrl the code resend URL
+	 */
+	public void setCodeResendUrl(String codeResendUrl) {
+		Assert.hasText(codeResendUrl, "codeResendUrl cannot be empty");
+		this.codeResendMatcher = ServerWebExchangeMatchers.pathMatchers(HttpMethod.GET, codeResendUrl);
+	}
+
+	/**
+	 * Sets the URL of the page asking for the code. Default is "/2FA".
+	 * @param twoFactorRedirectUrl the code page URL
+	 */
+	public void setTwoFactorRedirectUrl(String twoFactorRedirectUrl) {
+		Assert.hasText(twoFactorRedirectUrl, "twoFactorRedirectUrl cannot be empty");
+		this.twoFactorRedirectLocation = URI.create(twoFactorRedirectUrl);
+	}
+
+	public void setUsernameParameter(String usernameParameter) {
+		Assert.hasText(usernameParameter, "usernameParameter cannot be empty");
+		this.usernameParameter = usernameParameter;
+	}
+
+	public void setPasswordParameter(String passwordParameter) {
+		Assert.hasText(passwordParameter, "passwordParameter cannot be empty");
+		this.passwordParameter = passwordParameter;
+	}
+
+	public void setCodeParameter(String codeParameter) {
+		Assert.hasText(codeParameter, "codeParameter cannot be empty");
+		this.codeParameter = codeParameter;
+	}
+
+	/**
+	 * Sets the {@link Scheduler} codes are sent on. Default is
+	 * {@link Schedulers#boundedElastic()}.
+	 * @param sendScheduler the scheduler to use
+	 */
+	public void setSendScheduler(Scheduler sendScheduler) {
+		Assert.notNull(sendScheduler, "sendScheduler cannot be null");
+		this.sendScheduler = sendScheduler;
+	}
+
+	/**
+	 * Sets the time, in milliseconds, after which a sign in attempt can no longer be
+	 * resent. It should match the expiration time of the two-factor
+	 * {@link ReactiveAuthenticationManager}. Defaults to 90 seconds.
+	 * @param expirationTimeInMillis the expiration time
+	 */
+	public void setExpirationTime(long expirationTimeInMillis) {
+		Assert.isTrue(expirationTimeInMillis > 0, "expirationTimeInMillis must be greater than 0");
+		this.expirationTimeInMillis = expirationTimeInMillis;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to timestamp sign in attempts and to check whether
+	 * they expired.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+}
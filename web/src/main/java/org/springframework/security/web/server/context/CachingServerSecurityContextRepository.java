@@ -0,0 +1,176 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.context;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * A {@link ServerSecurityContextRepository} that loads the {@link SecurityContext} from
+ * another {@link ServerSecurityContextRepository} at most once per exchange.
+ * <p>
+ * {@link ReactorContextWebFilter} hands the {@code Mono} returned by {@link #load} to
+ * every subscriber of
+ * {@link org.springframework.security.core.context.ReactiveSecurityContextHolder#getContext()},
+ * so each authorization check of an exchange would otherwise look the context up again,
+ * for example in a remote {@link org.springframework.web.server.WebSession} store. This
+ * repository memoizes the result in an exchange attribute instead. {@link #save} only
+ * delegates if the context, or its {@link Authentication}, is not the one the exchange
+ * already holds, and then replaces the memoized result.
+ * <p>
+ * The number of round-trips to the delegate is available for each exchange with
+ * {@link #getRoundTrips(ServerWebExchange)} and in total with {@link #getLoadCount()} and
+ * {@link #getSaveCount()}.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public final class CachingServerSecurityContextRepository implements ServerSecurityContextRepository {
+
+	private static final String STATE_ATTR_NAME = CachingServerSecurityContextRepository.class.getName()
+			.concat(".STATE");
+
+	private final ServerSecurityContextRepository delegate;
+
+	private final LongAdder exchanges = new LongAdder();
+
+	private final LongAdder loads = new LongAdder();
+
+	private final LongAdder saves = new LongAdder();
+
+	private final LongAdder skippedSaves = new LongAdder();
+
+	/**
+	 * Constructs a {@code CachingServerSecurityContextRepository} using the provided
+	 * {@link ServerSecurityContextRepository}.
+	 * @param delegate the repository to load and save the context with
+	 */
+	public CachingServerSecurityContextRepository(ServerSecurityContextRepository delegate) {
+		Assert.notNull(delegate, "delegate cannot be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Mono<Void> save(ServerWebExchange exchange, SecurityContext context) {
+		return Mono.defer(() -> {
+			ExchangeState state = getState(exchange);
+			if (state.isUnchanged(context)) {
+				this.skippedSaves.increment();
+				return Mono.empty();
+			}
+			this.saves.increment();
+			state.roundTrips.incrementAndGet();
+			return this.delegate.save(exchange, context).then(Mono.fromRunnable(() -> state.saved(context)));
+		});
+	}
+
+	@Override
+	public Mono<SecurityContext> load(ServerWebExchange exchange) {
+		return Mono.defer(() -> getState(exchange).context);
+	}
+
+	/**
+	 * @param exchange the exchange
+	 * @return the number of times the delegate was called to load or save the context of
+	 * the exchange
+	 */
+	public int getRoundTrips(ServerWebExchange exchange) {
+		ExchangeState state = exchange.getAttribute(STATE_ATTR_NAME);
+		return (state != null) ? state.roundTrips.get() : 0;
+	}
+
+	/**
+	 * @return the number of exchanges whose context was loaded or saved
+	 */
+	public long getExchangeCount() {
+		return this.exchanges.sum();
+	}
+
+	/**
+	 * @return the number of times the delegate loaded a context
+	 */
+	public long getLoadCount() {
+		return this.loads.sum();
+	}
+
+	/**
+	 * @return the number of times the delegate saved a context
+	 */
+	public long getSaveCount() {
+		return this.saves.sum();
+	}
+
+	/**
+	 * @return the number of saves that were skipped because the context was unchanged
+	 */
+	public long getSkippedSaveCount() {
+		return this.skippedSaves.sum();
+	}
+
+	private ExchangeState getState(ServerWebExchange exchange) {
+		return (ExchangeState) exchange.getAttributes().computeIfAbsent(STATE_ATTR_NAME, (name) -> {
+			this.exchanges.increment();
+			return new ExchangeState(exchange);
+		});
+	}
+
+	private final class ExchangeState {
+
+		private final AtomicInteger roundTrips = new AtomicInteger();
+
+		private volatile Mono<SecurityContext> context;
+
+		private volatile boolean resolved;
+
+		private volatile SecurityContext resolvedContext;
+
+		private volatile Authentication resolvedAuthentication;
+
+		ExchangeState(ServerWebExchange exchange) {
+			this.context = Mono.defer(() -> {
+				CachingServerSecurityContextRepository.this.loads.increment();
+				this.roundTrips.incrementAndGet();
+				return CachingServerSecurityContextRepository.this.delegate.load(exchange);
+			}).doOnSuccess(this::resolved).cache();
+		}
+
+		boolean isUnchanged(SecurityContext context) {
+			return this.resolved && context == this.resolvedContext
+					&& (context == null || context.getAuthentication() == this.resolvedAuthentication);
+		}
+
+		void saved(SecurityContext context) {
+			this.context = Mono.justOrEmpty(context);
+			resolved(context);
+		}
+
+		private void resolved(SecurityContext context) {
+			this.resolvedContext = context;
+			this.resolvedAuthentication = (context != null) ? context.getAuthentication() : null;
+			this.resolved = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.context;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.log.LogMessage;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.EncryptedSecurityContextCodec;
+import org.springframework.security.web.context.EncryptedSecurityContextCodec.DecodedSecurityContext;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Stores the {@link SecurityContext} in an encrypted cookie rather than in the
+ * {@link org.springframework.web.server.WebSession}, so that no state is kept on the
+ * server for an authenticated user.
+ * <p>
+ * The cookie is encoded by an {@link EncryptedSecurityContextCodec} and expires after
+ * the {@link #setMaxAge(Duration) maximum age} without requests. Once half of the
+ * maximum age has passed, or if the cookie was encrypted with a key which is no longer
+ * the current one, the cookie is renewed before the response is committed. A context
+ * whose cookie would be larger than the {@link #setMaxCookieSize(int) size budget} is
+ * not stored, and the cookie is removed.
+ * <p>
+ * The cookie is {@code HttpOnly}, {@code SameSite=Lax} by default, and {@code Secure}
+ * when the request was received over TLS unless {@link #setSecure(boolean) configured}
+ * otherwise, for example behind a proxy terminating TLS.
+ *
+ * @author Ben Siegler
+ * @since 5.5
+ * @see org.springframework.security.web.context.CookieSecurityContextRepository
+ */
+public final class CookieServerSecurityContextRepository implements ServerSecurityContextRepository {
+
+	/**
+	 * The default name of the cookie.
+	 */
+	public static final String DEFAULT_COOKIE_NAME = "SPRING_SECURITY_CONTEXT";
+
+	private static final Log logger = LogFactory.getLog(CookieServerSecurityContextRepository.class);
+
+	private final EncryptedSecurityContextCodec codec;
+
+	private String cookieName = DEFAULT_COOKIE_NAME;
+
+	private String cookiePath;
+
+	private String cookieDomain;
+
+	private Boolean secure;
+
+	private String sameSite = "Lax";
+
+	private Duration maxAge = Duration.ofMinutes(30);
+
+	private int maxCookieSize = 4096;
+
+	private Clock clock = Clock.systemUTC();
+
+	/**
+	 * Constructs a {@code CookieServerSecurityContextRepository} using the provided
+	 * {@link EncryptedSecurityContextCodec}.
+	 * @param codec the codec encrypting the cookie
+	 */
+	public CookieServerSecurityContextRepository(EncryptedSecurityContextCodec codec) {
+		Assert.notNull(codec, "codec cannot be null");
+		this.codec = codec;
+	}
+
+	@Override
+	public Mono<Void> save(ServerWebExchange exchange, SecurityContext context) {
+		return Mono.fromRunnable(() -> writeCookie(exchange, context));
+	}
+
+	@Override
+	public Mono<SecurityContext> load(ServerWebExchange exchange) {
+		return Mono.fromSupplier(() -> {
+			HttpCookie cookie = exchange.getRequest().getCookies().getFirst(this.cookieName);
+			if (cookie == null) {
+				return null;
+			}
+			Instant now = this.clock.instant();
+			DecodedSecurityContext decoded = this.codec.decode(cookie.getValue(), now);
+			if (decoded == null) {
+				logger.debug(LogMessage.format("Did not find a valid SecurityContext in cookie %s", this.cookieName));
+				return null;
+			}
+			if (!decoded.isCurrentKey() || now.plus(this.maxAge.dividedBy(2)).isAfter(decoded.getExpiresAt())) {
+				exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> renewCookie(exchange, decoded)));
+			}
+			logger.debug(LogMessage.format("Found SecurityContext '%s' in cookie %s", decoded.getContext(),
+					this.cookieName));
+			return decoded.getContext();
+		});
+	}
+
+	/**
+	 * Sets the name of the cookie. Defaults to {@link #DEFAULT_COOKIE_NAME}.
+	 * @param cookieName the cookie name
+	 */
+	public void setCookieName(String cookieName) {
+		Assert.hasText(cookieName, "cookieName cannot be empty");
+		this.cookieName = cookieName;
+	}
+
+	/**
+	 * Sets the path of the cookie. Defaults to the context path of the request.
+	 * @param cookiePath the cookie path
+	 */
+	public void setCookiePath(String cookiePath) {
+		this.cookiePath = cookiePath;
+	}
+
+	/**
+	 * Sets the domain of the cookie.
+	 * @param cookieDomain the cookie domain
+	 */
+	public void setCookieDomain(String cookieDomain) {
+		this.cookieDomain = cookieDomain;
+	}
+
+	/**
+	 * Sets whether the cookie is only sent over HTTPS. Defaults to whether the request
+	 * was received over TLS.
+	 * @param secure whether the cookie is secure
+	 */
+	public void setSecure(boolean secure) {
+		this.secure = secure;
+	}
+
+	/**
+	 * Sets the {@code SameSite} attribute of the cookie. Defaults to {@code Lax}.
+	 * @param sameSite the {@code SameSite} attribute, or {@code null} to omit it
+	 */
+	public void setSameSite(String sameSite) {
+		this.sameSite = sameSite;
+	}
+
+	/**
+	 * Sets how long the cookie is valid without requests. Defaults to 30 minutes.
+	 * @param maxAge the maximum age of the cookie
+	 */
+	public void setMaxAge(Duration maxAge) {
+		Assert.notNull(maxAge, "maxAge cannot be null");
+		Assert.isTrue(maxAge.getSeconds() > 0, "maxAge must be at least one second");
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Sets the largest cookie, name and value included, which is written. Defaults to
+	 * 4096, the smallest limit browsers must support.
+	 * @param maxCookieSize the size budget of the cookie
+	 */
+	public void setMaxCookieSize(int maxCookieSize) {
+		Assert.isTrue(maxCookieSize > 0, "maxCookieSize must be greater than 0");
+		this.maxCookieSize = maxCookieSize;
+	}
+
+	/**
+	 * Sets the {@link Clock} used to expire the cookie.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "clock cannot be null");
+		this.clock = clock;
+	}
+
+	private void renewCookie(ServerWebExchange exchange, DecodedSecurityContext decoded) {
+		if (!exchange.getResponse().getCookies().containsKey(this.cookieName)) {
+			writeCookie(exchange, decoded.getContext());
+		}
+	}
+
+	private void writeCookie(ServerWebExchange exchange, SecurityContext context) {
+		if (context == null) {
+			addCookie(exchange, "", Duration.ZERO);
+			logger.debug(LogMessage.format("Removed SecurityContext stored in cookie %s", this.cookieName));
+			return;
+		}
+		String value = this.codec.encode(context, this.clock.instant().plus(this.maxAge));
+		if (this.cookieName.length() + value.length() + 1 > this.maxCookieSize) {
+			logger.warn(LogMessage.format(
+					"Did not store SecurityContext since its cookie of %s bytes exceeds the maximum of %s",
+					value.length(), this.maxCookieSize));
+			addCookie(exchange, "", Duration.ZERO);
+			return;
+		}
+		addCookie(exchange, value, this.maxAge);
+		logger.debug(LogMessage.format("Saved SecurityContext '%s' in cookie %s", context, this.cookieName));
+	}
+
+	private void addCookie(ServerWebExchange exchange, String value, Duration maxAge) {
+		ServerHttpRequest request = exchange.getRequest();
+		String path = (this.cookiePath != null) ? this.cookiePath : getRequestContext(request);
+		boolean secure = (this.secure != null) ? this.secure : request.getSslInfo() != null;
+		ResponseCookie cookie = ResponseCookie.from(this.cookieName, value).domain(this.cookieDomain).httpOnly(true)
+				.maxAge(maxAge).path(path).secure(secure).sameSite(this.sameSite).build();
+		exchange.getResponse().getCookies().set(this.cookieName, cookie);
+	}
+
+	private String getRequestContext(ServerHttpRequest request) {
+		String contextPath = request.getPath().contextPath().value();
+		return StringUtils.hasLength(contextPath) ? contextPath : "/";
+	}
+
+}
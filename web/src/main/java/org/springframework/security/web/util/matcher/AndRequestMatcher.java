@@ -67,6 +67,10 @@ public final class AndRequestMatcher implements RequestMatcher {
 		return true;
 	}
 
+	List<RequestMatcher> getRequestMatchers() {
+		return this.requestMatchers;
+	}
+
 	@Override
 	public String toString() {
 		return "And " + this.requestMatchers;
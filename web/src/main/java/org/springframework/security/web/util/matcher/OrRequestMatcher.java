@@ -62,6 +62,10 @@ public final class OrRequestMatcher implements RequestMatcher {
 		return false;
 	}
 
+	List<RequestMatcher> getRequestMatchers() {
+		return this.requestMatchers;
+	}
+
 	@Override
 	public String toString() {
 		return "Or " + this.requestMatchers;
@@ -102,6 +102,14 @@ public final class RegexRequestMatcher implements RequestMatcher {
 		return this.pattern.matcher(url).matches();
 	}
 
+	Pattern getPattern() {
+		return this.pattern;
+	}
+
+	HttpMethod getHttpMethod() {
+		return this.httpMethod;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
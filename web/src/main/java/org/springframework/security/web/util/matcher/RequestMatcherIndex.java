@@ -0,0 +1,536 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.util.matcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.log.LogMessage;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.RequestMatcher.MatchResult;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * An ordered list of {@link RequestMatcher}s, each associated with a value, which finds
+ * the value of the first matcher matching a request without evaluating every matcher.
+ * <p>
+ * When the index is built, the HTTP method and the path segments every request matched
+ * by a matcher starts with are compiled into a trie of path segments:
+ * <ul>
+ * <li>for an {@link AntPathRequestMatcher}, the segments preceding the first wildcard or
+ * path variable of its pattern</li>
+ * <li>for a {@link RegexRequestMatcher}, the complete segments of the literal text its
+ * expression starts with</li>
+ * </ul>
+ * Looking a request up walks the trie along the segments of its path and only evaluates
+ * the matchers found on the way, in their original order. The first match is therefore
+ * the same as when evaluating every matcher in order, and the cost of the lookup is
+ * close to proportional to the length of the path instead of the number of matchers.
+ * Case insensitive patterns are indexed by their HTTP method only.
+ * <p>
+ * {@link AnyRequestMatcher}s, and {@link OrRequestMatcher}s and
+ * {@link AndRequestMatcher}s built from analysable matchers, are indexed too. Any other
+ * matcher is evaluated for every request, at its position in the list.
+ * {@link #getUnindexedMatchers()} lists them.
+ * <p>
+ * This includes every {@code MvcRequestMatcher}, and therefore every matcher created by
+ * {@code mvcMatchers()}: its servlet path and HTTP method are not exposed, and its
+ * pattern is matched against the path computed by Spring MVC, so nothing can be inferred
+ * from it. Applications declaring their rules with MVC matchers do not benefit from the
+ * index.
+ * <p>
+ * Every matcher evaluated during a lookup is logged at trace level.
+ *
+ * @param <T> the type of the values
+ * @author Ben Siegler
+ * @since 5.5
+ */
+public final class RequestMatcherIndex<T> {
+
+	private static final Log logger = LogFactory.getLog(RequestMatcherIndex.class);
+
+	private static final HttpMethod[] METHODS = HttpMethod.values();
+
+	private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+	private static final String REGEX_QUANTIFIERS = "?*+{";
+
+	private static final int UNSUPPORTED_REGEX_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.LITERAL | Pattern.COMMENTS
+			| Pattern.CANON_EQ;
+
+	private static final int UNKNOWN_METHOD = METHODS.length;
+
+	private static final int NO_METHOD = METHODS.length + 1;
+
+	private final RequestMatcher[] matchers;
+
+	private final Object[] values;
+
+	private final Node root;
+
+	private final List<RequestMatcher> unindexedMatchers;
+
+	private RequestMatcherIndex(List<RequestMatcher> matchers, List<T> values) {
+		this.matchers = matchers.toArray(new RequestMatcher[0]);
+		this.values = values.toArray();
+		this.root = new Node();
+		List<RequestMatcher> unindexed = new ArrayList<>();
+		for (int i = 0; i < this.matchers.length; i++) {
+			List<Key> keys = keys(this.matchers[i]);
+			if (keys == null) {
+				unindexed.add(this.matchers[i]);
+				keys = Collections.singletonList(new Key(new String[0], null));
+			}
+			for (Key key : keys) {
+				this.root.add(key, i);
+			}
+		}
+		this.root.freeze(new Entry[0]);
+		this.unindexedMatchers = Collections.unmodifiableList(unindexed);
+	}
+
+	/**
+	 * Creates a {@link Builder} adding the matchers in the order they are evaluated.
+	 * @param <T> the type of the values
+	 * @return the builder
+	 */
+	public static <T> Builder<T> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * Finds the value of the first matcher matching the request.
+	 * @param request the request
+	 * @return the value, or {@code null} if no matcher matches
+	 */
+	public T findFirst(HttpServletRequest request) {
+		int match = indexOfFirstMatch(request);
+		return (match != -1) ? value(match) : null;
+	}
+
+	/**
+	 * Finds the first matcher matching the request, evaluating the matchers with
+	 * {@link RequestMatcher#matcher(HttpServletRequest)} so that the variables they
+	 * extract are available.
+	 * @param request the request
+	 * @return the matching matcher with its value and {@link MatchResult}, or
+	 * {@code null} if no matcher matches
+	 */
+	public Match<T> findFirstMatch(HttpServletRequest request) {
+		for (int candidate : candidates(request)) {
+			RequestMatcher matcher = this.matchers[candidate];
+			traceCandidate(candidate);
+			MatchResult result = matcher.matcher(request);
+			if (result.isMatch()) {
+				return new Match<>(matcher, value(candidate), result);
+			}
+		}
+		return null;
+	}
+
+	private int indexOfFirstMatch(HttpServletRequest request) {
+		for (int candidate : candidates(request)) {
+			traceCandidate(candidate);
+			if (this.matchers[candidate].matches(request)) {
+				return candidate;
+			}
+		}
+		return -1;
+	}
+
+	private void traceCandidate(int candidate) {
+		if (logger.isTraceEnabled()) {
+			logger.trace(LogMessage.format("Checking match of request against %s (%d/%d)", this.matchers[candidate],
+					candidate + 1, this.matchers.length));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T value(int index) {
+		return (T) this.values[index];
+	}
+
+	/**
+	 * Returns the positions of the matchers which may match the request, in ascending
+	 * order.
+	 */
+	int[] candidates(HttpServletRequest request) {
+		String path = requestPath(request);
+		Node node = this.root;
+		int length = path.length();
+		int start = 0;
+		while (node.children.length > 0) {
+			while (start < length && path.charAt(start) == '/') {
+				start++;
+			}
+			if (start == length) {
+				break;
+			}
+			int end = path.indexOf('/', start);
+			if (end == -1) {
+				end = length;
+			}
+			Node child = node.child(path, start, end);
+			if (child == null) {
+				break;
+			}
+			node = child;
+			start = end;
+		}
+		return node.candidates[methodSlot(request.getMethod())];
+	}
+
+	/**
+	 * Returns the matchers which could not be analysed and are evaluated for every
+	 * request.
+	 * @return the matchers which are not indexed, in their original order
+	 */
+	public List<RequestMatcher> getUnindexedMatchers() {
+		return this.unindexedMatchers;
+	}
+
+	/**
+	 * Returns the number of matchers in the index.
+	 * @return the number of matchers
+	 */
+	public int size() {
+		return this.matchers.length;
+	}
+
+	/**
+	 * The same path {@link AntPathRequestMatcher} matches its pattern against.
+	 */
+	private static String requestPath(HttpServletRequest request) {
+		String url = request.getServletPath();
+		String pathInfo = request.getPathInfo();
+		if (pathInfo != null) {
+			url = StringUtils.hasLength(url) ? url + pathInfo : pathInfo;
+		}
+		return (url != null) ? url : "";
+	}
+
+	private static int methodSlot(String method) {
+		if (!StringUtils.hasText(method)) {
+			return NO_METHOD;
+		}
+		HttpMethod httpMethod = HttpMethod.resolve(method);
+		return (httpMethod != null) ? httpMethod.ordinal() : UNKNOWN_METHOD;
+	}
+
+	/**
+	 * Returns the conditions a request must meet for the matcher to match, any of which
+	 * is enough, or {@code null} if the matcher cannot be analysed.
+	 */
+	private static List<Key> keys(RequestMatcher matcher) {
+		if (matcher instanceof AnyRequestMatcher) {
+			return Collections.singletonList(new Key(new String[0], null));
+		}
+		if (matcher instanceof AntPathRequestMatcher) {
+			AntPathRequestMatcher antMatcher = (AntPathRequestMatcher) matcher;
+			boolean analysable = antMatcher.isCaseSensitive() && !antMatcher.usesUrlPathHelper();
+			String[] segments = analysable ? literalSegments(antMatcher.getPattern()) : new String[0];
+			return Collections.singletonList(new Key(segments, antMatcher.getHttpMethod()));
+		}
+		if (matcher instanceof RegexRequestMatcher) {
+			RegexRequestMatcher regexMatcher = (RegexRequestMatcher) matcher;
+			return Collections.singletonList(new Key(literalSegments(regexMatcher.getPattern()),
+					regexMatcher.getHttpMethod()));
+		}
+		if (matcher instanceof OrRequestMatcher) {
+			List<Key> keys = new ArrayList<>();
+			for (RequestMatcher delegate : ((OrRequestMatcher) matcher).getRequestMatchers()) {
+				List<Key> delegateKeys = keys(delegate);
+				if (delegateKeys == null) {
+					return null;
+				}
+				keys.addAll(delegateKeys);
+			}
+			return keys;
+		}
+		if (matcher instanceof AndRequestMatcher) {
+			// every delegate must match, so the conditions of any one of them will do
+			for (RequestMatcher delegate : ((AndRequestMatcher) matcher).getRequestMatchers()) {
+				List<Key> delegateKeys = keys(delegate);
+				if (delegateKeys != null) {
+					return delegateKeys;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the segments of the pattern preceding its first wildcard or path variable.
+	 * Like {@code AntPathMatcher}, empty segments are ignored and segments are not
+	 * trimmed.
+	 */
+	private static String[] literalSegments(String pattern) {
+		String[] segments = StringUtils.tokenizeToStringArray(pattern, "/", false, true);
+		int literal = 0;
+		while (literal < segments.length && isLiteral(segments[literal])) {
+			literal++;
+		}
+		String[] result = new String[literal];
+		System.arraycopy(segments, 0, result, 0, literal);
+		return result;
+	}
+
+	private static boolean isLiteral(String segment) {
+		return segment.indexOf('*') == -1 && segment.indexOf('?') == -1 && segment.indexOf('{') == -1;
+	}
+
+	/**
+	 * Returns the complete segments of the literal text any URL matched by the expression
+	 * starts with. The URL the expression is matched against also contains the query
+	 * string, but it is preceded by a {@code ?}, which is not literal.
+	 */
+	private static String[] literalSegments(Pattern pattern) {
+		String regex = pattern.pattern();
+		if ((pattern.flags() & UNSUPPORTED_REGEX_FLAGS) != 0 || mayHaveTopLevelAlternation(regex)) {
+			return new String[0];
+		}
+		int start = regex.startsWith("^") ? 1 : 0;
+		int end = start;
+		while (end < regex.length() && REGEX_METACHARACTERS.indexOf(regex.charAt(end)) == -1) {
+			end++;
+		}
+		if (end < regex.length() && REGEX_QUANTIFIERS.indexOf(regex.charAt(end)) != -1 && end > start) {
+			// the quantifier applies to the last literal character
+			end--;
+		}
+		String literal = regex.substring(start, end);
+		return StringUtils.tokenizeToStringArray(literal.substring(0, literal.lastIndexOf('/') + 1), "/", false,
+				true);
+	}
+
+	private static boolean mayHaveTopLevelAlternation(String regex) {
+		int depth = 0;
+		boolean inClass = false;
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+					// quoted text could hide anything, do not analyse it
+					return true;
+				}
+				i++;
+			}
+			else if (inClass) {
+				if (c == '[') {
+					// nested classes are not worth the trouble
+					return true;
+				}
+				inClass = c != ']';
+			}
+			else if (c == '[') {
+				inClass = true;
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+					i++;
+				}
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+					// a closing bracket first in a class is literal
+					i++;
+				}
+			}
+			else if (c == '(') {
+				depth++;
+			}
+			else if (c == ')') {
+				depth--;
+			}
+			else if (c == '|' && depth == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The first matcher matching a request, along with its value and the result of the
+	 * match.
+	 *
+	 * @param <T> the type of the value
+	 */
+	public static final class Match<T> {
+
+		private final RequestMatcher requestMatcher;
+
+		private final T value;
+
+		private final MatchResult matchResult;
+
+		private Match(RequestMatcher requestMatcher, T value, MatchResult matchResult) {
+			this.requestMatcher = requestMatcher;
+			this.value = value;
+			this.matchResult = matchResult;
+		}
+
+		public RequestMatcher getRequestMatcher() {
+			return this.requestMatcher;
+		}
+
+		public T getValue() {
+			return this.value;
+		}
+
+		public MatchResult getMatchResult() {
+			return this.matchResult;
+		}
+
+	}
+
+	/**
+	 * Builds a {@link RequestMatcherIndex}.
+	 *
+	 * @param <T> the type of the values
+	 */
+	public static final class Builder<T> {
+
+		private final List<RequestMatcher> matchers = new ArrayList<>();
+
+		private final List<T> values = new ArrayList<>();
+
+		private Builder() {
+		}
+
+		/**
+		 * Adds a matcher, evaluated after the matchers added before it.
+		 * @param matcher the matcher
+		 * @param value the value returned when the matcher is the first to match
+		 * @return the builder for further customization
+		 */
+		public Builder<T> add(RequestMatcher matcher, T value) {
+			Assert.notNull(matcher, "matcher cannot be null");
+			this.matchers.add(matcher);
+			this.values.add(value);
+			return this;
+		}
+
+		public RequestMatcherIndex<T> build() {
+			return new RequestMatcherIndex<>(this.matchers, this.values);
+		}
+
+	}
+
+	private static final class Key {
+
+		private final String[] segments;
+
+		private final HttpMethod method;
+
+		private Key(String[] segments, HttpMethod method) {
+			this.segments = segments;
+			this.method = method;
+		}
+
+	}
+
+	private static final class Entry {
+
+		private final int position;
+
+		private final HttpMethod method;
+
+		private Entry(int position, HttpMethod method) {
+			this.position = position;
+			this.method = method;
+		}
+
+		private boolean accepts(int methodSlot) {
+			return this.method == null || methodSlot == NO_METHOD || this.method.ordinal() == methodSlot;
+		}
+
+	}
+
+	private static final class Node {
+
+		private final Map<String, Node> next = new LinkedHashMap<>();
+
+		private final List<Entry> entries = new ArrayList<>();
+
+		private String[] segments;
+
+		private Node[] children;
+
+		/**
+		 * The positions of the matchers registered on this node and its ancestors, in
+		 * ascending order, for each method slot.
+		 */
+		private int[][] candidates;
+
+		private void add(Key key, int position) {
+			Node node = this;
+			for (String segment : key.segments) {
+				node = node.next.computeIfAbsent(segment, (s) -> new Node());
+			}
+			node.entries.add(new Entry(position, key.method));
+		}
+
+		private void freeze(Entry[] inherited) {
+			Entry[] all = new Entry[inherited.length + this.entries.size()];
+			System.arraycopy(inherited, 0, all, 0, inherited.length);
+			for (int i = 0; i < this.entries.size(); i++) {
+				all[inherited.length + i] = this.entries.get(i);
+			}
+			this.candidates = new int[NO_METHOD + 1][];
+			for (int slot = 0; slot <= NO_METHOD; slot++) {
+				TreeSet<Integer> positions = new TreeSet<>();
+				for (Entry entry : all) {
+					if (entry.accepts(slot)) {
+						positions.add(entry.position);
+					}
+				}
+				this.candidates[slot] = positions.stream().mapToInt(Integer::intValue).toArray();
+			}
+			this.segments = this.next.keySet().toArray(new String[0]);
+			this.children = this.next.values().toArray(new Node[0]);
+			for (Node child : this.children) {
+				child.freeze(all);
+			}
+			this.next.clear();
+			this.entries.clear();
+		}
+
+		/**
+		 * Finds the child for the segment between {@code start} and {@code end} without
+		 * extracting it from the path.
+		 */
+		private Node child(String path, int start, int end) {
+			int length = end - start;
+			for (int i = 0; i < this.segments.length; i++) {
+				String segment = this.segments[i];
+				if (segment.length() == length && path.regionMatches(start, segment, 0, length)) {
+					return this.children[i];
+				}
+			}
+			return null;
+		}
+
+	}
+
+}
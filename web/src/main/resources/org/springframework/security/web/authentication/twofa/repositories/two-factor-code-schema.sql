@@ -0,0 +1,8 @@
+CREATE TABLE two_factor_code (
+  cookie varchar(200) NOT NULL,
+  code varchar(50) DEFAULT NULL,
+  username varchar(200) NOT NULL,
+  time_created bigint NOT NULL,
+  PRIMARY KEY (cookie)
+);
+CREATE INDEX two_factor_code_time_created_idx ON two_factor_code (time_created);
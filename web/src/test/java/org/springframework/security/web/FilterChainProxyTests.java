@@ -40,6 +40,8 @@ import org.springframework.security.web.firewall.FirewalledRequest;
 import org.springframework.security.web.firewall.HttpFirewall;
 import org.springframework.security.web.firewall.RequestRejectedException;
 import org.springframework.security.web.firewall.RequestRejectedHandler;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -149,6 +151,30 @@ public class FilterChainProxyTests {
 		verify(this.chain).doFilter(any(FirewalledRequest.class), any(HttpServletResponse.class));
 	}
 
+	@Test
+	public void doFilterWhenFilterChainsIndexedThenFirstMatchingChainInvoked() throws Exception {
+		Filter apiFilter = mock(Filter.class);
+		Filter anyFilter = mock(Filter.class);
+		this.fcp = new FilterChainProxy(Arrays.asList(
+				new DefaultSecurityFilterChain(new AntPathRequestMatcher("/css/**")),
+				new DefaultSecurityFilterChain(new AntPathRequestMatcher("/api/**"), apiFilter),
+				new DefaultSecurityFilterChain(AnyRequestMatcher.INSTANCE, anyFilter)));
+		this.fcp.setIndexFilterChains(true);
+		assertThat(this.fcp.getFilters("/css/site.css")).isEmpty();
+		assertThat(this.fcp.getFilters("/api/orders")).containsExactly(apiFilter);
+		assertThat(this.fcp.getFilters("/account")).containsExactly(anyFilter);
+	}
+
+	@Test
+	public void doFilterWhenFilterChainsIndexedAndMatcherNotAnalysableThenMatcherEvaluated() throws Exception {
+		given(this.matcher.matches(any(HttpServletRequest.class))).willReturn(true);
+		this.fcp.setIndexFilterChains(true);
+		this.fcp.doFilter(this.request, this.response, this.chain);
+		verify(this.matcher).matches(any(FirewalledRequest.class));
+		verify(this.filter).doFilter(any(FirewalledRequest.class), any(HttpServletResponse.class),
+				any(FilterChain.class));
+	}
+
 	@Test
 	public void wrapperIsResetWhenNoMatchingFilters() throws Exception {
 		HttpFirewall fw = mock(HttpFirewall.class);
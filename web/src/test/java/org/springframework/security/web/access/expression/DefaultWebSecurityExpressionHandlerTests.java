@@ -28,8 +28,15 @@ import org.springframework.context.support.StaticApplicationContext;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.access.SecurityConfig;
 import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.FilterInvocation;
@@ -91,4 +98,63 @@ public class DefaultWebSecurityExpressionHandlerTests {
 		verify(this.trustResolver).isAnonymous(this.authentication);
 	}
 
+	@Test
+	public void getAuthorizationManagerWhenNotCompilingExpressionsThenNull() {
+		Expression expression = this.handler.getExpressionParser().parseExpression("hasRole('ADMIN')");
+		assertThat(this.handler.getAuthorizationManager(expression)).isNull();
+	}
+
+	@Test
+	public void getAuthorizationManagerWhenCompilingExpressionsThenDecidesRecognizedExpressions() {
+		this.handler.setCompileExpressions(true);
+		ExpressionParser parser = this.handler.getExpressionParser();
+		Expression expression = parser.parseExpression("hasRole('ADMIN') and hasIpAddress('192.168.1.0/24')");
+		AuthorizationManager<FilterInvocation> authorizationManager = this.handler.getAuthorizationManager(expression);
+		assertThat(this.handler.getAuthorizationManager(expression)).isSameAs(authorizationManager);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setRemoteAddr("192.168.1.10");
+		FilterInvocation invocation = new FilterInvocation(request, new MockHttpServletResponse(),
+				new MockFilterChain());
+		Authentication admin = new TestingAuthenticationToken("admin", "password", "ROLE_ADMIN");
+		assertThat(authorizationManager.check(() -> admin, invocation).isGranted()).isTrue();
+		request.setRemoteAddr("10.0.0.1");
+		assertThat(authorizationManager.check(() -> admin, invocation).isGranted()).isFalse();
+		assertThat(this.handler.getAuthorizationManager(parser.parseExpression("hasRole(#role)"))).isNull();
+	}
+
+	@Test
+	public void getAuthorizationManagerWhenDefaultRolePrefixChangedThenCreatedAgain() {
+		this.handler.setCompileExpressions(true);
+		Expression expression = this.handler.getExpressionParser().parseExpression("hasRole('ADMIN')");
+		Authentication admin = new TestingAuthenticationToken("admin", "password", "ADMIN");
+		assertThat(this.handler.getAuthorizationManager(expression).check(() -> admin, this.invocation).isGranted())
+				.isFalse();
+		this.handler.setDefaultRolePrefix("");
+		assertThat(this.handler.getAuthorizationManager(expression).check(() -> admin, this.invocation).isGranted())
+				.isTrue();
+	}
+
+	@Test
+	public void setCompileExpressionsWhenCustomExpressionParserThenKept() {
+		ExpressionParser parser = new SpelExpressionParser();
+		this.handler.setExpressionParser(parser);
+		this.handler.setCompileExpressions(true);
+		assertThat(this.handler.getExpressionParser()).isSameAs(parser);
+		this.handler.setCompileExpressions(false);
+		assertThat(this.handler.getExpressionParser()).isSameAs(parser);
+	}
+
+	@Test
+	public void createEvaluationContextWhenCompilingExpressionsThenSharesInfrastructure() {
+		this.handler.setCompileExpressions(true);
+		StandardEvaluationContext first = (StandardEvaluationContext) this.handler
+				.createEvaluationContext(this.authentication, this.invocation);
+		StandardEvaluationContext second = (StandardEvaluationContext) this.handler
+				.createEvaluationContext(this.authentication, this.invocation);
+		assertThat(second.getPropertyAccessors()).containsExactlyElementsOf(first.getPropertyAccessors());
+		assertThat(second.getMethodResolvers()).containsExactlyElementsOf(first.getMethodResolvers());
+		assertThat(second.getTypeLocator()).isSameAs(first.getTypeLocator());
+		assertThat(second.getRootObject().getValue()).isNotSameAs(first.getRootObject().getValue());
+	}
+
 }
@@ -31,6 +31,8 @@ import org.springframework.security.access.AccessDecisionVoter;
 import org.springframework.security.access.SecurityConfig;
 import org.springframework.security.access.expression.SecurityExpressionHandler;
 import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.FilterInvocation;
 
@@ -38,6 +40,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author Luke Taylor
@@ -87,6 +91,23 @@ public class WebExpressionVoterTests {
 		assertThat(voter.vote(this.user, fi, attributes)).isEqualTo(AccessDecisionVoter.ACCESS_DENIED);
 	}
 
+	@Test
+	public void voteWhenExpressionHandlerProvidesAuthorizationManagerThenDecidesWithoutEvaluationContext() {
+		WebExpressionVoter voter = new WebExpressionVoter();
+		Expression ex = mock(Expression.class);
+		WebExpressionConfigAttribute weca = new WebExpressionConfigAttribute(ex,
+				mock(EvaluationContextPostProcessor.class));
+		SecurityExpressionHandler eh = mock(SecurityExpressionHandler.class);
+		FilterInvocation fi = new FilterInvocation("/path", "GET");
+		voter.setExpressionHandler(eh);
+		given(eh.getAuthorizationManager(ex)).willReturn(
+				(AuthorizationManager<FilterInvocation>) (authentication, object) -> new AuthorizationDecision(false));
+		ArrayList attributes = new ArrayList();
+		attributes.add(weca);
+		assertThat(voter.vote(this.user, fi, attributes)).isEqualTo(AccessDecisionVoter.ACCESS_DENIED);
+		verify(eh, never()).createEvaluationContext(any(), any());
+	}
+
 	// SEC-2507
 	@Test
 	public void supportFilterInvocationSubClass() {
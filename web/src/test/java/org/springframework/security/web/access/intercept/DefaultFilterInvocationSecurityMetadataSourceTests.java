@@ -144,6 +144,26 @@ public class DefaultFilterInvocationSecurityMetadataSourceTests {
 		assertThat(response).isEqualTo(this.def);
 	}
 
+	@Test
+	public void lookupWhenSeveralMatchersThenFirstMatchUsed() {
+		Collection<ConfigAttribute> admin = SecurityConfig.createList("ROLE_ADMIN");
+		Collection<ConfigAttribute> user = SecurityConfig.createList("ROLE_USER");
+		LinkedHashMap<RequestMatcher, Collection<ConfigAttribute>> requestMap = new LinkedHashMap<>();
+		requestMap.put(new AntPathRequestMatcher("/secure/admin/**"), admin);
+		requestMap.put(new AntPathRequestMatcher("/secure/**", "POST"), admin);
+		requestMap.put(new AntPathRequestMatcher("/secure/**"), user);
+		requestMap.put(new AntPathRequestMatcher("/**"), this.def);
+		this.fids = new DefaultFilterInvocationSecurityMetadataSource(requestMap);
+		this.fids.setIndexRequestMatchers(true);
+		assertThat(this.fids.getAttributes(createFilterInvocation("/secure/admin/users", null, null, "GET")))
+				.isEqualTo(admin);
+		assertThat(this.fids.getAttributes(createFilterInvocation("/secure/page", null, null, "POST")))
+				.isEqualTo(admin);
+		assertThat(this.fids.getAttributes(createFilterInvocation("/secure/page", null, null, "GET")))
+				.isEqualTo(user);
+		assertThat(this.fids.getAttributes(createFilterInvocation("/public", null, null, "GET"))).isEqualTo(this.def);
+	}
+
 	private FilterInvocation createFilterInvocation(String servletPath, String pathInfo, String queryString,
 			String method) {
 		MockHttpServletRequest request = new MockHttpServletRequest();
@@ -25,6 +25,7 @@ import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.servlet.util.matcher.MvcRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
@@ -81,4 +82,20 @@ public class DelegatingAuthorizationManagerTests {
 		assertThat(abstain).isNull();
 	}
 
+	@Test
+	public void checkWhenIndexedMappingsThenFirstMatchingManagerGetsVariables() {
+		DelegatingAuthorizationManager manager = DelegatingAuthorizationManager.builder()
+				.add(new AntPathRequestMatcher("/orders/{id}", "DELETE"), (a, o) -> new AuthorizationDecision(false))
+				.add(new AntPathRequestMatcher("/orders/{id}"),
+						(a, o) -> new AuthorizationDecision("42".equals(o.getVariables().get("id"))))
+				.add(new AntPathRequestMatcher("/**"), (a, o) -> new AuthorizationDecision(false))
+				.indexRequestMatchers(true).build();
+		Supplier<Authentication> authentication = () -> new TestingAuthenticationToken("user", "password", "ROLE_USER");
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders/42");
+		request.setServletPath("/orders/42");
+		assertThat(manager.check(authentication, request).isGranted()).isTrue();
+		request.setMethod("DELETE");
+		assertThat(manager.check(authentication, request).isGranted()).isFalse();
+	}
+
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.ratelimit;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.web.authentication.twofa.ratelimit.InMemoryTwoFactorAuthRateLimiter.Policy;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.KeyType;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.Operation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link InMemoryTwoFactorAuthRateLimiter}.
+ */
+public class InMemoryTwoFactorAuthRateLimiterTests {
+
+	private static final Instant NOW = Instant.parse("2021-06-01T12:00:00Z");
+
+	private InMemoryTwoFactorAuthRateLimiter rateLimiter;
+
+	@Before
+	public void setup() {
+		this.rateLimiter = new InMemoryTwoFactorAuthRateLimiter();
+		this.rateLimiter.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION, Policy.of(3, Duration.ofSeconds(30)));
+		setTime(NOW);
+	}
+
+	@Test
+	public void constructorWhenTableSizeNotPowerOfTwoThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new InMemoryTwoFactorAuthRateLimiter(1000));
+	}
+
+	@Test
+	public void policyWhenLockoutShorterThanWindowThenException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> Policy.of(3, Duration.ofMinutes(5)).withLockout(Duration.ofMinutes(1)));
+	}
+
+	@Test
+	public void tryAcquireWhenWithinLimitThenPermitted() {
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isFalse();
+		assertThat(this.rateLimiter.getRejectedCount(Operation.VERIFY_CODE)).isEqualTo(1);
+	}
+
+	@Test
+	public void tryAcquireWhenIntervalElapsedThenOneMorePermitted() {
+		exhaust("session");
+		setTime(NOW.plusSeconds(10));
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isFalse();
+	}
+
+	@Test
+	public void tryAcquireWhenWindowElapsedThenFullAllowance() {
+		exhaust("session");
+		setTime(NOW.plusSeconds(30));
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isTrue();
+	}
+
+	@Test
+	public void tryAcquireWhenLockoutThenRefusedUntilLockoutEnds() {
+		this.rateLimiter.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION,
+				Policy.of(3, Duration.ofSeconds(30)).withLockout(Duration.ofMinutes(10)));
+		exhaust("session");
+		assertThat(acquire("session")).isFalse();
+		setTime(NOW.plusSeconds(30));
+		assertThat(acquire("session")).isFalse();
+		setTime(NOW.plus(Duration.ofMinutes(10)));
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isTrue();
+		assertThat(acquire("session")).isTrue();
+	}
+
+	@Test
+	public void tryAcquireWhenRefusedDuringLockoutThenLockoutNotExtended() {
+		this.rateLimiter.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION,
+				Policy.of(3, Duration.ofSeconds(30)).withLockout(Duration.ofMinutes(10)));
+		exhaust("session");
+		acquire("session");
+		setTime(NOW.plus(Duration.ofMinutes(9)));
+		assertThat(acquire("session")).isFalse();
+		setTime(NOW.plus(Duration.ofMinutes(10)));
+		assertThat(acquire("session")).isTrue();
+	}
+
+	@Test
+	public void tryAcquireWhenOtherKeyThenLimitedSeparately() {
+		exhaust("session");
+		assertThat(acquire("other")).isTrue();
+		assertThat(this.rateLimiter.tryAcquire(Operation.VERIFY_CODE, KeyType.USERNAME, "session")).isTrue();
+		assertThat(this.rateLimiter.tryAcquire(Operation.RESEND_CODE, KeyType.SESSION, "session")).isTrue();
+	}
+
+	@Test
+	public void tryAcquireWhenNullKeyThenPermitted() {
+		for (int i = 0; i < 10; i++) {
+			assertThat(acquire(null)).isTrue();
+		}
+	}
+
+	@Test
+	public void tryAcquireWhenNoPolicyThenPermitted() {
+		this.rateLimiter.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION, null);
+		for (int i = 0; i < 10; i++) {
+			assertThat(acquire("session")).isTrue();
+		}
+	}
+
+	@Test
+	public void tryAcquireWhenTableFullThenKeysStillLimited() {
+		InMemoryTwoFactorAuthRateLimiter small = new InMemoryTwoFactorAuthRateLimiter(16);
+		small.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION, Policy.of(3, Duration.ofMinutes(1)));
+		for (int i = 0; i < 1000; i++) {
+			small.tryAcquire(Operation.VERIFY_CODE, KeyType.SESSION, "attacker-" + i);
+		}
+		int permitted = 0;
+		for (int i = 0; i < 10; i++) {
+			if (small.tryAcquire(Operation.VERIFY_CODE, KeyType.SESSION, "session")) {
+				permitted++;
+			}
+		}
+		assertThat(permitted).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	public void tryAcquireWhenTableFloodedWithLockedOutKeysThenOtherKeyPermitted() {
+		InMemoryTwoFactorAuthRateLimiter small = new InMemoryTwoFactorAuthRateLimiter(16);
+		small.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION,
+				Policy.of(5, Duration.ofMinutes(5)).withLockout(Duration.ofMinutes(15)));
+		for (int i = 0; i < 1000; i++) {
+			for (int j = 0; j < 6; j++) {
+				small.tryAcquire(Operation.VERIFY_CODE, KeyType.SESSION, "fake-" + i);
+			}
+		}
+		assertThat(small.tryAcquire(Operation.VERIFY_CODE, KeyType.SESSION, "session")).isTrue();
+		assertThat(small.tryAcquire(Operation.VERIFY_CODE, KeyType.USERNAME, "user")).isTrue();
+	}
+
+	@Test
+	public void tryAcquireWhenRemoteAddressByDefaultThenNotLimited() {
+		assertThat(this.rateLimiter.getPolicy(Operation.VERIFY_CODE, KeyType.REMOTE_ADDRESS)).isNull();
+		assertThat(this.rateLimiter.getPolicy(Operation.RESEND_CODE, KeyType.REMOTE_ADDRESS)).isNull();
+		for (int i = 0; i < 1000; i++) {
+			assertThat(this.rateLimiter.tryAcquire(Operation.VERIFY_CODE, KeyType.REMOTE_ADDRESS, "10.0.0.1"))
+					.isTrue();
+		}
+	}
+
+	@Test
+	public void resetThenFullAllowance() {
+		exhaust("session");
+		this.rateLimiter.reset(Operation.VERIFY_CODE, KeyType.SESSION, "session");
+		assertThat(acquire("session")).isTrue();
+	}
+
+	@Test
+	public void tryAcquireWhenConcurrentThenLimitHolds() throws Exception {
+		this.rateLimiter.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION, Policy.of(100, Duration.ofHours(1)));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger permitted = new AtomicInteger();
+		for (int i = 0; i < 8; i++) {
+			executor.execute(() -> {
+				try {
+					start.await();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				for (int j = 0; j < 1000; j++) {
+					if (acquire("session")) {
+						permitted.incrementAndGet();
+					}
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(permitted.get()).isEqualTo(100);
+	}
+
+	private boolean acquire(String key) {
+		return this.rateLimiter.tryAcquire(Operation.VERIFY_CODE, KeyType.SESSION, key);
+	}
+
+	private void exhaust(String key) {
+		while (acquire(key)) {
+			assertThat(this.rateLimiter.getRejectedCount(Operation.VERIFY_CODE)).isZero();
+		}
+	}
+
+	private void setTime(Instant instant) {
+		this.rateLimiter.setClock(Clock.fixed(instant, ZoneOffset.UTC));
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.repositories;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.ScheduledFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link DatabaseTwoFactorAuthCodeRepository}.
+ */
+public class DatabaseTwoFactorAuthCodeRepositoryTests {
+
+	private static final String SCHEMA_SQL_RESOURCE = "org/springframework/security/web/authentication/twofa/repositories/two-factor-code-schema.sql";
+
+	private EmbeddedDatabase db;
+
+	private JdbcOperations jdbcOperations;
+
+	private DatabaseTwoFactorAuthCodeRepository repository;
+
+	@Before
+	public void setUp() {
+		// @formatter:off
+		this.db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.HSQL)
+				.setScriptEncoding("UTF-8")
+				.addScript(SCHEMA_SQL_RESOURCE)
+				.build();
+		// @formatter:on
+		this.jdbcOperations = new JdbcTemplate(this.db);
+		this.repository = new DatabaseTwoFactorAuthCodeRepository(this.jdbcOperations);
+	}
+
+	@After
+	public void tearDown() {
+		this.db.shutdown();
+	}
+
+	@Test
+	public void constructorWhenJdbcOperationsIsNullThenThrowIllegalArgumentException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> new DatabaseTwoFactorAuthCodeRepository((JdbcOperations) null))
+				.withMessage("jdbcOperations cannot be null");
+	}
+
+	@Test
+	public void getCodeWhenInsertedThenFound() {
+		this.repository.insertCode(new SignInAttempt("session", "123456", "user", 1000L));
+		SignInAttempt attempt = this.repository.getCode("session");
+		assertThat(attempt.getSessionId()).isEqualTo("session");
+		assertThat(attempt.getTwoFactorCode()).isEqualTo("123456");
+		assertThat(attempt.getUsername()).isEqualTo("user");
+		assertThat(attempt.getTime().getTime()).isEqualTo(1000L);
+	}
+
+	@Test
+	public void getCodeWhenMissingThenNull() {
+		assertThat(this.repository.getCode("missing")).isNull();
+		assertThat(this.repository.getCode(null)).isNull();
+	}
+
+	@Test
+	public void insertCodeWhenTotpAttemptThenCodeIsNull() {
+		this.repository.insertCode(new SignInAttempt("session", null, "user", 1000L));
+		assertThat(this.repository.getCode("session").getTwoFactorCode()).isNull();
+	}
+
+	@Test
+	public void insertCodeWhenSessionExistsThenReplaced() {
+		this.repository.insertCode(new SignInAttempt("session", "111111", "user", 1000L));
+		this.repository.insertCode(new SignInAttempt("session", "222222", "user", 2000L));
+		SignInAttempt attempt = this.repository.getCode("session");
+		assertThat(attempt.getTwoFactorCode()).isEqualTo("222222");
+		assertThat(attempt.getTime().getTime()).isEqualTo(2000L);
+		assertThat(this.jdbcOperations.queryForObject("SELECT COUNT(*) FROM two_factor_code", Integer.class))
+				.isEqualTo(1);
+	}
+
+	@Test
+	public void removeCodeThenNotFound() {
+		this.repository.insertCode(new SignInAttempt("session", "123456", "user", 1000L));
+		this.repository.removeCode("session");
+		assertThat(this.repository.getCode("session")).isNull();
+	}
+
+	@Test
+	public void purgeExpiredCodesThenOnlyExpiredRemoved() {
+		this.repository.setExpirationTime(1000);
+		this.repository.setClock(Clock.fixed(Instant.ofEpochMilli(10000L), ZoneOffset.UTC));
+		this.repository.insertCode(new SignInAttempt("expired", "111111", "user", 8000L));
+		this.repository.insertCode(new SignInAttempt("live", "222222", "user", 9500L));
+		assertThat(this.repository.purgeExpiredCodes()).isEqualTo(1);
+		assertThat(this.repository.getCode("expired")).isNull();
+		assertThat(this.repository.getCode("live")).isNotNull();
+	}
+
+	@Test
+	public void insertCodeWhenTableMissingThenRepositoryHandlingException() {
+		this.jdbcOperations.execute("DROP TABLE two_factor_code");
+		assertThatExceptionOfType(RepositoryHandlingException.class)
+				.isThrownBy(() -> this.repository.insertCode(new SignInAttempt("session", "1", "user", 1000L)));
+	}
+
+	@Test
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void schedulePurgeThenScheduledAndCancelledOnDestroy() {
+		TaskScheduler taskScheduler = mock(TaskScheduler.class);
+		ScheduledFuture future = mock(ScheduledFuture.class);
+		given(taskScheduler.scheduleAtFixedRate(any(Runnable.class), eq(Duration.ofMinutes(1)))).willReturn(future);
+		this.repository.schedulePurge(taskScheduler, Duration.ofMinutes(1));
+		this.repository.destroy();
+		verify(future).cancel(false);
+	}
+
+	@Test
+	public void schedulePurgeWhenIntervalZeroThenException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> this.repository.schedulePurge(mock(TaskScheduler.class), Duration.ZERO));
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.repositories;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link InMemoryReactiveTwoFactorAuthCodeRepository}.
+ */
+public class InMemoryReactiveTwoFactorAuthCodeRepositoryTests {
+
+	private final InMemoryTwoFactorAuthCodeRepository delegate = new InMemoryTwoFactorAuthCodeRepository();
+
+	private final InMemoryReactiveTwoFactorAuthCodeRepository repository = new InMemoryReactiveTwoFactorAuthCodeRepository(
+			this.delegate);
+
+	@Test
+	public void constructorWhenDelegateNullThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new InMemoryReactiveTwoFactorAuthCodeRepository(null));
+	}
+
+	@Test
+	public void getCodeWhenInsertedThenFound() {
+		SignInAttempt attempt = new SignInAttempt("session", "123456", "user", System.currentTimeMillis());
+		StepVerifier.create(this.repository.insertCode(attempt)).verifyComplete();
+		StepVerifier.create(this.repository.getCode("session")).expectNext(attempt).verifyComplete();
+		assertThat(this.delegate.getCode("session")).isSameAs(attempt);
+	}
+
+	@Test
+	public void insertCodeWhenNotSubscribedThenNotInserted() {
+		this.repository.insertCode(new SignInAttempt("session", "123456", "user", System.currentTimeMillis()));
+		assertThat(this.delegate.size()).isZero();
+	}
+
+	@Test
+	public void getCodeWhenMissingThenEmpty() {
+		StepVerifier.create(this.repository.getCode("missing")).verifyComplete();
+		StepVerifier.create(this.repository.getCode(null)).verifyComplete();
+	}
+
+	@Test
+	public void getCodeWhenExpiredThenEmpty() {
+		this.repository.setExpirationTime(1000);
+		this.delegate.setClock(Clock.fixed(Instant.ofEpochMilli(10000L), ZoneOffset.UTC));
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("session", "123456", "user", 8000L)))
+				.verifyComplete();
+		StepVerifier.create(this.repository.getCode("session")).verifyComplete();
+	}
+
+	@Test
+	public void removeCodeThenNotFound() {
+		StepVerifier.create(this.repository.insertCode(
+				new SignInAttempt("session", "123456", "user", System.currentTimeMillis()))).verifyComplete();
+		StepVerifier.create(this.repository.removeCode("session")).verifyComplete();
+		StepVerifier.create(this.repository.getCode("session")).verifyComplete();
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.repositories;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link InMemoryTwoFactorAuthCodeRepository}.
+ */
+public class InMemoryTwoFactorAuthCodeRepositoryTests {
+
+	private static final long NOW = 1_000_000L;
+
+	private InMemoryTwoFactorAuthCodeRepository repository;
+
+	@Before
+	public void setup() {
+		this.repository = new InMemoryTwoFactorAuthCodeRepository();
+		this.repository.setExpirationTime(1000);
+		setNow(NOW);
+	}
+
+	@Test
+	public void getCodeWhenInsertedThenFound() {
+		SignInAttempt attempt = attempt("session", NOW);
+		this.repository.insertCode(attempt);
+		assertThat(this.repository.getCode("session")).isSameAs(attempt);
+		assertThat(this.repository.getHitCount()).isEqualTo(1);
+		assertThat(this.repository.getMissCount()).isZero();
+	}
+
+	@Test
+	public void getCodeWhenMissingThenNullAndMissCounted() {
+		assertThat(this.repository.getCode("missing")).isNull();
+		assertThat(this.repository.getCode(null)).isNull();
+		assertThat(this.repository.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void getCodeWhenExpiredThenNullAndEvicted() {
+		this.repository.insertCode(attempt("session", NOW));
+		setNow(NOW + 1001);
+		assertThat(this.repository.getCode("session")).isNull();
+		assertThat(this.repository.size()).isZero();
+		assertThat(this.repository.getEvictionCount()).isEqualTo(1);
+		assertThat(this.repository.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void insertCodeWhenOlderAttemptsExpiredThenPurged() {
+		this.repository.insertCode(attempt("one", NOW));
+		this.repository.insertCode(attempt("two", NOW + 500));
+		setNow(NOW + 1200);
+		this.repository.insertCode(attempt("three", NOW + 1200));
+		assertThat(this.repository.size()).isEqualTo(2);
+		assertThat(this.repository.getCode("two")).isNotNull();
+		assertThat(this.repository.getEvictionCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void insertCodeWhenFullThenOldestEvicted() {
+		this.repository.setMaximumEntries(2);
+		this.repository.insertCode(attempt("one", NOW));
+		this.repository.insertCode(attempt("two", NOW));
+		this.repository.insertCode(attempt("three", NOW));
+		assertThat(this.repository.size()).isEqualTo(2);
+		assertThat(this.repository.getCode("one")).isNull();
+		assertThat(this.repository.getCode("three")).isNotNull();
+		assertThat(this.repository.getEvictionCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void insertCodeWhenSameSessionThenReplacedAndStaleEntryIgnored() {
+		this.repository.setMaximumEntries(1);
+		this.repository.insertCode(attempt("session", NOW));
+		SignInAttempt replacement = attempt("session", NOW + 10);
+		this.repository.insertCode(replacement);
+		assertThat(this.repository.getCode("session")).isSameAs(replacement);
+		assertThat(this.repository.getEvictionCount()).isZero();
+	}
+
+	@Test
+	public void removeCodeThenNotFound() {
+		SignInAttempt attempt = attempt("session", NOW);
+		this.repository.insertCode(attempt);
+		this.repository.removeCode(attempt);
+		assertThat(this.repository.getCode("session")).isNull();
+	}
+
+	@Test
+	public void insertCodeWhenConcurrentThenBounded() throws Exception {
+		this.repository.setMaximumEntries(100);
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			executor.execute(() -> {
+				for (int i = 0; i < 1000; i++) {
+					this.repository.insertCode(attempt(thread + "-" + i, NOW));
+				}
+				done.countDown();
+			});
+		}
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		executor.shutdown();
+		this.repository.evict();
+		assertThat(this.repository.size()).isEqualTo(100);
+		assertThat(this.repository.getEvictionCount()).isEqualTo(threads * 1000 - 100);
+	}
+
+	@Test
+	public void setMaximumEntriesWhenZeroThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.repository.setMaximumEntries(0));
+	}
+
+	@Test
+	public void setExpirationTimeWhenNegativeThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.repository.setExpirationTime(-1));
+	}
+
+	private void setNow(long millis) {
+		this.repository.setClock(Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+	}
+
+	private static SignInAttempt attempt(String sessionId, long time) {
+		return new SignInAttempt(sessionId, "123456", "user", time);
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.repositories;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link R2dbcReactiveTwoFactorAuthCodeRepository}.
+ */
+public class R2dbcReactiveTwoFactorAuthCodeRepositoryTests {
+
+	private static final String SCHEMA_SQL_RESOURCE = "org/springframework/security/web/authentication/twofa/repositories/two-factor-code-schema.sql";
+
+	private static int databaseId = 0;
+
+	private DatabaseClient databaseClient;
+
+	private R2dbcReactiveTwoFactorAuthCodeRepository repository;
+
+	@Before
+	public void setUp() {
+		ConnectionFactory connectionFactory = H2ConnectionFactory.inMemory("two-factor-" + databaseId++);
+		new ResourceDatabasePopulator(new ClassPathResource(SCHEMA_SQL_RESOURCE)).populate(connectionFactory)
+				.block();
+		this.databaseClient = DatabaseClient.create(connectionFactory);
+		this.repository = new R2dbcReactiveTwoFactorAuthCodeRepository(this.databaseClient);
+		this.repository.setClock(Clock.fixed(Instant.ofEpochMilli(10000L), ZoneOffset.UTC));
+	}
+
+	@Test
+	public void constructorWhenDatabaseClientIsNullThenThrowIllegalArgumentException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new R2dbcReactiveTwoFactorAuthCodeRepository(null))
+				.withMessage("databaseClient cannot be null");
+	}
+
+	@Test
+	public void getCodeWhenInsertedThenFound() {
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("session", "123456", "user", 1000L)))
+				.verifyComplete();
+		StepVerifier.create(this.repository.getCode("session")).assertNext((attempt) -> {
+			assertThat(attempt.getSessionId()).isEqualTo("session");
+			assertThat(attempt.getTwoFactorCode()).isEqualTo("123456");
+			assertThat(attempt.getUsername()).isEqualTo("user");
+			assertThat(attempt.getTime().getTime()).isEqualTo(1000L);
+		}).verifyComplete();
+	}
+
+	@Test
+	public void getCodeWhenExpiredThenEmpty() {
+		this.repository.setExpirationTime(1000);
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("session", "123456", "user", 8000L)))
+				.verifyComplete();
+		StepVerifier.create(this.repository.getCode("session")).verifyComplete();
+	}
+
+	@Test
+	public void getCodeWhenMissingThenEmpty() {
+		StepVerifier.create(this.repository.getCode("missing")).verifyComplete();
+		StepVerifier.create(this.repository.getCode(null)).verifyComplete();
+	}
+
+	@Test
+	public void insertCodeWhenTotpAttemptThenCodeIsNull() {
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("session", null, "user", 1000L)))
+				.verifyComplete();
+		StepVerifier.create(this.repository.getCode("session"))
+				.assertNext((attempt) -> assertThat(attempt.getTwoFactorCode()).isNull()).verifyComplete();
+	}
+
+	@Test
+	public void insertCodeWhenSessionExistsThenReplaced() {
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("session", "111111", "user", 1000L))
+				.then(this.repository.insertCode(new SignInAttempt("session", "222222", "user", 2000L))))
+				.verifyComplete();
+		StepVerifier.create(this.repository.getCode("session")).assertNext((attempt) -> {
+			assertThat(attempt.getTwoFactorCode()).isEqualTo("222222");
+			assertThat(attempt.getTime().getTime()).isEqualTo(2000L);
+		}).verifyComplete();
+		StepVerifier.create(this.databaseClient.sql("SELECT COUNT(*) AS total FROM two_factor_code")
+				.map((row, metadata) -> row.get("total", Long.class)).first()).expectNext(1L).verifyComplete();
+	}
+
+	@Test
+	public void removeCodeThenNotFound() {
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("session", "123456", "user", 1000L))
+				.then(this.repository.removeCode("session"))).verifyComplete();
+		StepVerifier.create(this.repository.getCode("session")).verifyComplete();
+	}
+
+	@Test
+	public void purgeExpiredCodesThenOnlyExpiredRemoved() {
+		this.repository.setExpirationTime(1000);
+		this.repository.setClock(Clock.fixed(Instant.ofEpochMilli(10000L), ZoneOffset.UTC));
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("expired", "111111", "user", 8000L))
+				.then(this.repository.insertCode(new SignInAttempt("live", "222222", "user", 9500L)))).verifyComplete();
+		StepVerifier.create(this.repository.purgeExpiredCodes()).expectNext(1).verifyComplete();
+		StepVerifier.create(this.repository.getCode("expired")).verifyComplete();
+		StepVerifier.create(this.repository.getCode("live")).expectNextCount(1).verifyComplete();
+	}
+
+	@Test
+	public void schedulePurgeThenExpiredCodesRemovedPeriodically() {
+		VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+		this.repository.setExpirationTime(1000);
+		StepVerifier.create(this.repository.insertCode(new SignInAttempt("expired", "111111", "user", 8000L)))
+				.verifyComplete();
+		this.repository.schedulePurge(scheduler, Duration.ofMinutes(1));
+		scheduler.advanceTimeBy(Duration.ofMinutes(1));
+		StepVerifier.create(this.databaseClient.sql("SELECT COUNT(*) AS total FROM two_factor_code")
+				.map((row, metadata) -> row.get("total", Long.class)).first()).expectNext(0L).verifyComplete();
+		this.repository.destroy();
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.services;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link TotpService}, using the test vectors of RFC 6238 Appendix B.
+ */
+public class TotpServiceTests {
+
+	// the ASCII seeds of RFC 6238 Appendix B, Base32 encoded
+	private static final String SHA1_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+
+	private static final String SHA256_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZA====";
+
+	private static final String SHA512_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ"
+			+ "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQGEZDGNA=";
+
+	private TotpService service;
+
+	@Before
+	public void setup() {
+		this.service = new TotpService();
+	}
+
+	@Test
+	public void generateCodeWhenSha1ThenMatchesRfcVectors() {
+		this.service.setCodeLength(8);
+		assertThat(this.service.generateCode(SHA1_SECRET, 59L / 30)).isEqualTo("94287082");
+		assertThat(this.service.generateCode(SHA1_SECRET, 1111111109L / 30)).isEqualTo("07081804");
+		assertThat(this.service.generateCode(SHA1_SECRET, 20000000000L / 30)).isEqualTo("65353130");
+	}
+
+	@Test
+	public void generateCodeWhenSha256ThenMatchesRfcVectors() {
+		this.service.setCodeLength(8);
+		this.service.setAlgorithm(TotpService.Algorithm.SHA256);
+		assertThat(this.service.generateCode(SHA256_SECRET, 59L / 30)).isEqualTo("46119246");
+		assertThat(this.service.generateCode(SHA256_SECRET, 1111111109L / 30)).isEqualTo("68084774");
+	}
+
+	@Test
+	public void generateCodeWhenSha512ThenMatchesRfcVectors() {
+		this.service.setCodeLength(8);
+		this.service.setAlgorithm(TotpService.Algorithm.SHA512);
+		assertThat(this.service.generateCode(SHA512_SECRET, 59L / 30)).isEqualTo("90693936");
+		assertThat(this.service.generateCode(SHA512_SECRET, 1111111109L / 30)).isEqualTo("25091201");
+	}
+
+	@Test
+	public void generateCodeWhenSixDigitsThenZeroPadded() {
+		assertThat(this.service.generateCode(SHA1_SECRET, 1111111109L / 30)).isEqualTo("081804");
+	}
+
+	@Test
+	public void confirmCodeWhenCurrentCodeThenAccepted() {
+		setNow(59);
+		this.service.confirmCode(key(SHA1_SECRET), "287082");
+	}
+
+	@Test
+	public void confirmCodeWhenSurroundedByWhitespaceThenAccepted() {
+		setNow(59);
+		this.service.confirmCode(key(SHA1_SECRET), " 287082 ");
+	}
+
+	@Test
+	public void confirmCodeWhenWithinPastDriftThenAccepted() {
+		setNow(59 + 60);
+		this.service.confirmCode(key(SHA1_SECRET), "287082");
+	}
+
+	@Test
+	public void confirmCodeWhenOutsidePastDriftThenRejected() {
+		setNow(59 + 90);
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> this.service.confirmCode(key(SHA1_SECRET), "287082"));
+	}
+
+	@Test
+	public void confirmCodeWhenFutureDriftAllowedThenAccepted() {
+		this.service.setAllowedTimeStepDrift(1, 1);
+		setNow(59 - 30);
+		this.service.confirmCode(key(SHA1_SECRET), "287082");
+	}
+
+	@Test
+	public void confirmCodeWhenFutureCodeAndNoFutureDriftThenRejected() {
+		setNow(59 - 30);
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> this.service.confirmCode(key(SHA1_SECRET), "287082"));
+	}
+
+	@Test
+	public void confirmCodeWhenWrongCodeThenRejected() {
+		setNow(59);
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> this.service.confirmCode(key(SHA1_SECRET), "287083"));
+	}
+
+	@Test
+	public void confirmCodeWhenNotDigitsThenRejected() {
+		setNow(59);
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> this.service.confirmCode(key(SHA1_SECRET), "28708a"));
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> this.service.confirmCode(key(SHA1_SECRET), "-287082"));
+	}
+
+	@Test
+	public void confirmCodeWhenWrongLengthThenRejected() {
+		setNow(59);
+		assertThatExceptionOfType(BadCredentialsException.class)
+				.isThrownBy(() -> this.service.confirmCode(key(SHA1_SECRET), "94287082"));
+	}
+
+	@Test
+	public void confirmCodeWhenNotKeyPreferenceThenException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> this.service.confirmCode(new TwoFactorPreference(false, "555-5555"), "287082"));
+	}
+
+	@Test
+	public void confirmCodeWhenKeyCacheFullThenStillVerifies() {
+		this.service.setMaximumCachedKeys(1);
+		setNow(59);
+		this.service.confirmCode(key(SHA1_SECRET), "287082");
+		this.service.generateCode(SHA256_SECRET, 1);
+		this.service.confirmCode(key(SHA1_SECRET), "287082");
+	}
+
+	@Test
+	public void setCodeLengthWhenTooLongThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.service.setCodeLength(10));
+	}
+
+	private void setNow(long epochSecond) {
+		this.service.setClock(Clock.fixed(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC));
+	}
+
+	private static TwoFactorPreference key(String secret) {
+		return new TwoFactorPreference(true, secret);
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.authentication.twofa.stategies.sendattemp;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.security.web.authentication.twofa.dtos.TwoFactorAuthCodeDelivery;
+import org.springframework.security.web.authentication.twofa.stategies.sendfailure.TwoFactorAuthCodeSendFailureStrategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link AsyncTwoFactorAuthCodeSendStrategy}.
+ */
+public class AsyncTwoFactorAuthCodeSendStrategyTests {
+
+	private final UserDetails user = User.withUsername("user").password("password").roles("USER").build();
+
+	private final TwoFactorAuthCodeSendStrategy delegate = mock(TwoFactorAuthCodeSendStrategy.class);
+
+	private final TwoFactorAuthCodeSendFailureStrategy failureStrategy = mock(
+			TwoFactorAuthCodeSendFailureStrategy.class);
+
+	private AsyncTwoFactorAuthCodeSendStrategy strategy;
+
+	@After
+	public void cleanup() {
+		if (this.strategy != null) {
+			this.strategy.destroy();
+		}
+	}
+
+	@Test
+	public void constructorWhenDelegateNullThenException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> new AsyncTwoFactorAuthCodeSendStrategy(null, this.failureStrategy));
+	}
+
+	@Test
+	public void sendCodeThenDeliveredInBackground() throws Exception {
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(this.delegate, this.failureStrategy);
+		SignInAttempt attempt = attempt("session");
+		this.strategy.sendCode(this.user, attempt);
+		verify(this.delegate, timeout(5000)).sendCode(this.user, attempt);
+		awaitSent(1);
+		assertThat(this.strategy.getFailedCount()).isZero();
+		assertThat(this.strategy.getMaximumDeliveryLatency().toNanos()).isPositive();
+	}
+
+	@Test
+	public void sendCodeWhenQueueFullThenRejected() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		willAnswer((invocation) -> {
+			started.countDown();
+			release.await();
+			return null;
+		}).given(this.delegate).sendCode(any(), any());
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(this.delegate, this.failureStrategy, 1, 1);
+		this.strategy.sendCode(this.user, attempt("one"));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		this.strategy.sendCode(this.user, attempt("two"));
+		assertThat(this.strategy.getQueueDepth()).isEqualTo(1);
+		assertThatExceptionOfType(RejectedExecutionException.class)
+				.isThrownBy(() -> this.strategy.sendCode(this.user, attempt("three")));
+		assertThat(this.strategy.getRejectedCount()).isEqualTo(1);
+		release.countDown();
+		awaitSent(2);
+	}
+
+	@Test
+	public void sendCodeWhenDelegateFailsThenRetriedThenFailureStrategyInvoked() throws Exception {
+		IllegalStateException failure = new IllegalStateException("gateway down");
+		willThrow(failure).given(this.delegate).sendCode(any(), any());
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(this.delegate, this.failureStrategy);
+		this.strategy.setMaximumAttempts(3);
+		this.strategy.setRetryDelay(Duration.ofMillis(10));
+		SignInAttempt attempt = attempt("session");
+		this.strategy.sendCode(this.user, attempt);
+		verify(this.failureStrategy, timeout(5000)).handleAsyncSendFailure(attempt, failure);
+		verify(this.delegate, times(3)).sendCode(this.user, attempt);
+		assertThat(this.strategy.getFailedCount()).isEqualTo(1);
+		assertThat(this.strategy.getSentCount()).isZero();
+	}
+
+	@Test
+	public void sendCodeWhenDelegateFailsThenRetriedAfterDelay() throws Exception {
+		List<Long> calls = new CopyOnWriteArrayList<>();
+		willAnswer((invocation) -> {
+			calls.add(System.nanoTime());
+			throw new IllegalStateException("gateway down");
+		}).given(this.delegate).sendCode(any(), any());
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(this.delegate, this.failureStrategy);
+		this.strategy.setMaximumAttempts(2);
+		this.strategy.setRetryDelay(Duration.ofMillis(200));
+		SignInAttempt attempt = attempt("session");
+		this.strategy.sendCode(this.user, attempt);
+		verify(this.failureStrategy, timeout(5000)).handleAsyncSendFailure(eq(attempt), any());
+		assertThat(calls).hasSize(2);
+		assertThat(calls.get(1) - calls.get(0)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	public void sendCodeWhenDelegateHangsThenTimesOut() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		willAnswer((invocation) -> {
+			release.await();
+			return null;
+		}).given(this.delegate).sendCode(any(), any());
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(this.delegate, this.failureStrategy, 10, 1);
+		this.strategy.setSendTimeout(Duration.ofMillis(100));
+		SignInAttempt first = attempt("one");
+		SignInAttempt second = attempt("two");
+		this.strategy.sendCode(this.user, first);
+		this.strategy.sendCode(this.user, second);
+		verify(this.failureStrategy, timeout(5000)).handleAsyncSendFailure(eq(first), isA(TimeoutException.class));
+		verify(this.failureStrategy, timeout(5000)).handleAsyncSendFailure(eq(second), isA(TimeoutException.class));
+		release.countDown();
+	}
+
+	@Test
+	public void sendCodeWhenDestroyedThenRejected() {
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(this.delegate, this.failureStrategy);
+		this.strategy.destroy();
+		assertThatExceptionOfType(RejectedExecutionException.class)
+				.isThrownBy(() -> this.strategy.sendCode(this.user, attempt("session")));
+	}
+
+	@Test
+	public void sendCodeWhenBatchDelegateThenSentInBatches() throws Exception {
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		BatchTwoFactorAuthCodeSendStrategy batchDelegate = new BatchTwoFactorAuthCodeSendStrategy() {
+
+			@Override
+			public void sendCodes(List<TwoFactorAuthCodeDelivery> deliveries) {
+				batchSizes.add(deliveries.size());
+			}
+
+			@Override
+			public void sendCode(UserDetails userDetails, SignInAttempt codeWrapper) throws Exception {
+				started.countDown();
+				release.await();
+				batchSizes.add(1);
+			}
+
+		};
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(batchDelegate, this.failureStrategy, 10, 1);
+		this.strategy.setBatchSize(5);
+		this.strategy.sendCode(this.user, attempt("blocking"));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int i = 0; i < 5; i++) {
+			this.strategy.sendCode(this.user, attempt("session" + i));
+		}
+		release.countDown();
+		awaitSent(6);
+		assertThat(batchSizes).containsExactly(1, 5);
+	}
+
+	@Test
+	public void destroyWhenCodesQueuedThenFailureStrategyInvoked() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		willAnswer((invocation) -> {
+			started.countDown();
+			release.await();
+			return null;
+		}).given(this.delegate).sendCode(any(), any());
+		this.strategy = new AsyncTwoFactorAuthCodeSendStrategy(this.delegate, this.failureStrategy, 10, 1);
+		this.strategy.sendCode(this.user, attempt("one"));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		SignInAttempt queued = attempt("two");
+		this.strategy.sendCode(this.user, queued);
+		assertThat(this.strategy.getQueueDepth()).isEqualTo(1);
+		this.strategy.destroy();
+		verify(this.failureStrategy).handleAsyncSendFailure(eq(queued), any());
+	}
+
+	private void awaitSent(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.strategy.getSentCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(this.strategy.getSentCount()).isEqualTo(count);
+	}
+
+	private static SignInAttempt attempt(String sessionId) {
+		return new SignInAttempt(sessionId, "123456", "user", System.currentTimeMillis());
+	}
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.context;
+
+import java.math.BigInteger;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockCookie;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.crypto.encrypt.Encryptors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link CookieSecurityContextRepository}.
+ *
+ * @author Ben Siegler
+ */
+public class CookieSecurityContextRepositoryTests {
+
+	private static final String SALT = "5c0744940b5c369b";
+
+	private final TestingAuthenticationToken testToken = new TestingAuthenticationToken("someone", "passwd", "ROLE_A");
+
+	private Instant now = Instant.parse("2021-01-01T00:00:00Z");
+
+	private EncryptedSecurityContextCodec codec;
+
+	private CookieSecurityContextRepository repository;
+
+	@Before
+	public void setUp() {
+		this.codec = new EncryptedSecurityContextCodec("key1", Encryptors.stronger("password", SALT));
+		this.repository = new CookieSecurityContextRepository(this.codec);
+		this.repository.setClock(Clock.fixed(this.now, ZoneOffset.UTC));
+	}
+
+	@After
+	public void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	public void constructorWhenCodecIsNullThenThrowIllegalArgumentException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new CookieSecurityContextRepository(null))
+				.withMessage("codec cannot be null");
+	}
+
+	@Test
+	public void constructorWhenEncryptorNotAuthenticatedThenThrowIllegalArgumentException() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> new EncryptedSecurityContextCodec("key1", Encryptors.standard("password", SALT)));
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> this.codec.addDecryptionKey("key0", Encryptors.standard("password", SALT)));
+	}
+
+	@Test
+	public void decodeWhenClassNotAllowedThenNullUntilAllowed() {
+		TestingAuthenticationToken token = new TestingAuthenticationToken(BigInteger.ONE, "passwd", "ROLE_A");
+		String value = this.codec.encode(new SecurityContextImpl(token), this.now.plus(Duration.ofMinutes(1)));
+		assertThat(this.codec.decode(value, this.now)).isNull();
+		this.codec.addAllowedClassNamePrefixes("java.math.");
+		assertThat(this.codec.decode(value, this.now).getContext().getAuthentication()).isEqualTo(token);
+	}
+
+	@Test
+	public void saveContextThenCookieSameSiteLaxAndSecureWhenRequestSecure() {
+		MockCookie cookie = (MockCookie) saveAuthenticatedContext();
+		assertThat(cookie.getSameSite()).isEqualTo("Lax");
+		assertThat(cookie.getSecure()).isFalse();
+		this.repository.setSecure(true);
+		this.repository.setSameSite("Strict");
+		cookie = (MockCookie) saveAuthenticatedContext();
+		assertThat(cookie.getSameSite()).isEqualTo("Strict");
+		assertThat(cookie.getSecure()).isTrue();
+	}
+
+	@Test
+	public void loadContextWhenSavedThenAuthenticationRestored() {
+		Cookie cookie = saveAuthenticatedContext();
+		assertThat(cookie.isHttpOnly()).isTrue();
+		assertThat(cookie.getMaxAge()).isEqualTo(1800);
+		assertThat(cookie.getValue()).startsWith("key1.");
+		SecurityContext context = load(cookie, new MockHttpServletResponse());
+		assertThat(context.getAuthentication()).isEqualTo(this.testToken);
+	}
+
+	@Test
+	public void saveContextWhenUnchangedThenCookieNotWritten() {
+		Cookie cookie = saveAuthenticatedContext();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HttpRequestResponseHolder holder = holder(cookie, response);
+		SecurityContext context = this.repository.loadContext(holder);
+		this.repository.saveContext(context, holder.getRequest(), holder.getResponse());
+		assertThat(response.getCookie(CookieSecurityContextRepository.DEFAULT_COOKIE_NAME)).isNull();
+	}
+
+	@Test
+	public void saveContextWhenHalfOfMaxAgePassedThenCookieRenewed() {
+		Cookie cookie = saveAuthenticatedContext();
+		this.repository.setClock(Clock.fixed(this.now.plus(Duration.ofMinutes(16)), ZoneOffset.UTC));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HttpRequestResponseHolder holder = holder(cookie, response);
+		SecurityContext context = this.repository.loadContext(holder);
+		this.repository.saveContext(context, holder.getRequest(), holder.getResponse());
+		Cookie renewed = response.getCookie(CookieSecurityContextRepository.DEFAULT_COOKIE_NAME);
+		assertThat(renewed.getValue()).isNotEqualTo(cookie.getValue());
+	}
+
+	@Test
+	public void loadContextWhenExpiredThenEmptyContext() {
+		Cookie cookie = saveAuthenticatedContext();
+		this.repository.setClock(Clock.fixed(this.now.plus(Duration.ofMinutes(31)), ZoneOffset.UTC));
+		SecurityContext context = load(cookie, new MockHttpServletResponse());
+		assertThat(context.getAuthentication()).isNull();
+	}
+
+	@Test
+	public void loadContextWhenTamperedThenEmptyContext() {
+		Cookie cookie = saveAuthenticatedContext();
+		char[] value = cookie.getValue().toCharArray();
+		value[value.length - 2] = (value[value.length - 2] != 'A') ? 'A' : 'B';
+		SecurityContext context = load(new Cookie(cookie.getName(), new String(value)), new MockHttpServletResponse());
+		assertThat(context.getAuthentication()).isNull();
+	}
+
+	@Test
+	public void loadContextWhenPreviousKeyThenRestoredAndReencrypted() {
+		Cookie cookie = saveAuthenticatedContext();
+		EncryptedSecurityContextCodec rotated = new EncryptedSecurityContextCodec("key2",
+				Encryptors.stronger("other", SALT));
+		rotated.addDecryptionKey("key1", Encryptors.stronger("password", SALT));
+		this.repository = new CookieSecurityContextRepository(rotated);
+		this.repository.setClock(Clock.fixed(this.now, ZoneOffset.UTC));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HttpRequestResponseHolder holder = holder(cookie, response);
+		SecurityContext context = this.repository.loadContext(holder);
+		assertThat(context.getAuthentication()).isEqualTo(this.testToken);
+		this.repository.saveContext(context, holder.getRequest(), holder.getResponse());
+		assertThat(response.getCookie(CookieSecurityContextRepository.DEFAULT_COOKIE_NAME).getValue())
+				.startsWith("key2.");
+	}
+
+	@Test
+	public void loadContextWhenUnknownKeyThenEmptyContext() {
+		Cookie cookie = saveAuthenticatedContext();
+		this.repository = new CookieSecurityContextRepository(
+				new EncryptedSecurityContextCodec("key2", Encryptors.stronger("other", SALT)));
+		SecurityContext context = load(cookie, new MockHttpServletResponse());
+		assertThat(context.getAuthentication()).isNull();
+	}
+
+	@Test
+	public void saveContextWhenAnonymousThenCookieRemoved() {
+		Cookie cookie = saveAuthenticatedContext();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HttpRequestResponseHolder holder = holder(cookie, response);
+		this.repository.loadContext(holder);
+		SecurityContext anonymous = new SecurityContextImpl(new AnonymousAuthenticationToken("key", "anonymous",
+				AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+		this.repository.saveContext(anonymous, holder.getRequest(), holder.getResponse());
+		assertThat(response.getCookie(CookieSecurityContextRepository.DEFAULT_COOKIE_NAME).getMaxAge()).isZero();
+	}
+
+	@Test
+	public void saveContextWhenOverSizeBudgetThenNotStored() {
+		this.repository.setMaxCookieSize(100);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HttpRequestResponseHolder holder = holder(null, response);
+		this.repository.loadContext(holder);
+		this.repository.saveContext(new SecurityContextImpl(this.testToken), holder.getRequest(),
+				holder.getResponse());
+		assertThat(response.getCookie(CookieSecurityContextRepository.DEFAULT_COOKIE_NAME)).isNull();
+	}
+
+	@Test
+	public void saveContextWhenResponseCommittedThenCookieWrittenBeforeCommit() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HttpRequestResponseHolder holder = holder(null, response);
+		this.repository.loadContext(holder);
+		SecurityContextHolder.setContext(new SecurityContextImpl(this.testToken));
+		holder.getResponse().sendRedirect("/");
+		assertThat(response.getCookie(CookieSecurityContextRepository.DEFAULT_COOKIE_NAME)).isNotNull();
+	}
+
+	@Test
+	public void containsContextWhenCookieThenTrue() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		assertThat(this.repository.containsContext(request)).isFalse();
+		request.setCookies(saveAuthenticatedContext());
+		assertThat(this.repository.containsContext(request)).isTrue();
+	}
+
+	private Cookie saveAuthenticatedContext() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HttpRequestResponseHolder holder = holder(null, response);
+		this.repository.loadContext(holder);
+		this.repository.saveContext(new SecurityContextImpl(this.testToken), holder.getRequest(),
+				holder.getResponse());
+		return response.getCookie(CookieSecurityContextRepository.DEFAULT_COOKIE_NAME);
+	}
+
+	private SecurityContext load(Cookie cookie, MockHttpServletResponse response) {
+		return this.repository.loadContext(holder(cookie, response));
+	}
+
+	private static HttpRequestResponseHolder holder(Cookie cookie, MockHttpServletResponse response) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		if (cookie != null) {
+			request.setCookies(cookie);
+		}
+		return new HttpRequestResponseHolder(request, response);
+	}
+
+}
@@ -55,7 +55,9 @@ import org.springframework.security.core.userdetails.UserDetails;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -628,6 +630,97 @@ public class HttpSessionSecurityContextRepositoryTests {
 		assertThat(session).isNull();
 	}
 
+	@Test
+	public void saveContextWhenTrackContextChangesAndUnchangedThenSessionNotAccessed() {
+		HttpSessionSecurityContextRepository repo = new HttpSessionSecurityContextRepository();
+		repo.setTrackContextChanges(true);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		HttpSession session = mock(HttpSession.class);
+		given(session.getId()).willReturn("session");
+		given(session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY))
+				.willReturn(new SecurityContextImpl(this.testToken));
+		request.setSession(session);
+		HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, new MockHttpServletResponse());
+		repo.loadContext(holder);
+		reset(session);
+		given(session.getId()).willReturn("session");
+		SecurityContext context = new SecurityContextImpl(
+				new TestingAuthenticationToken("someone", "passwd", "ROLE_A"));
+		repo.saveContext(context, holder.getRequest(), holder.getResponse());
+		verify(session, never()).getAttribute(anyString());
+		verify(session, never()).setAttribute(anyString(), any());
+		assertThat(repo.getSkippedSaveCount()).isEqualTo(1);
+		assertThat(repo.getPerformedSaveCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void saveContextWhenTrackContextChangesAndAuthoritiesChangedThenSaved() {
+		HttpSessionSecurityContextRepository repo = new HttpSessionSecurityContextRepository();
+		repo.setTrackContextChanges(true);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.getSession().setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+				new SecurityContextImpl(this.testToken));
+		HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, new MockHttpServletResponse());
+		repo.loadContext(holder);
+		SecurityContext context = new SecurityContextImpl(
+				new TestingAuthenticationToken("someone", "passwd", "ROLE_A", "ROLE_B"));
+		repo.saveContext(context, holder.getRequest(), holder.getResponse());
+		assertThat(request.getSession().getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY))
+				.isSameAs(context);
+		assertThat(repo.getSkippedSaveCount()).isEqualTo(0);
+		assertThat(repo.getPerformedSaveCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void saveContextWhenTrackContextChangesAndAuthoritiesWithSameHashThenSaved() {
+		HttpSessionSecurityContextRepository repo = new HttpSessionSecurityContextRepository();
+		repo.setTrackContextChanges(true);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.getSession().setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+				new SecurityContextImpl(new TestingAuthenticationToken("someone", "passwd", "Aa")));
+		HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, new MockHttpServletResponse());
+		repo.loadContext(holder);
+		assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+		SecurityContext context = new SecurityContextImpl(new TestingAuthenticationToken("someone", "passwd", "BB"));
+		repo.saveContext(context, holder.getRequest(), holder.getResponse());
+		assertThat(request.getSession().getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY))
+				.isSameAs(context);
+		assertThat(repo.getPerformedSaveCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void saveContextWhenTrackContextChangesAndSessionReplacedThenSaved() {
+		HttpSessionSecurityContextRepository repo = new HttpSessionSecurityContextRepository();
+		repo.setTrackContextChanges(true);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		SecurityContext context = new SecurityContextImpl(this.testToken);
+		request.getSession().setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
+		HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, new MockHttpServletResponse());
+		repo.loadContext(holder);
+		request.getSession().invalidate();
+		request.setSession(new MockHttpSession());
+		repo.saveContext(context, holder.getRequest(), holder.getResponse());
+		assertThat(request.getSession().getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY))
+				.isSameAs(context);
+		assertThat(repo.getSkippedSaveCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void saveContextWhenTrackContextChangesAndAnonymousThenRemoved() {
+		HttpSessionSecurityContextRepository repo = new HttpSessionSecurityContextRepository();
+		repo.setTrackContextChanges(true);
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.getSession().setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+				new SecurityContextImpl(this.testToken));
+		HttpRequestResponseHolder holder = new HttpRequestResponseHolder(request, new MockHttpServletResponse());
+		repo.loadContext(holder);
+		repo.saveContext(new SecurityContextImpl(new AnonymousAuthenticationToken("key", "anonymous",
+				AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"))), holder.getRequest(), holder.getResponse());
+		assertThat(request.getSession().getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY))
+				.isNull();
+		assertThat(repo.getPerformedSaveCount()).isEqualTo(1);
+	}
+
 	private SecurityContext createSecurityContext(UserDetails userDetails) {
 		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(userDetails,
 				userDetails.getPassword(), userDetails.getAuthorities());
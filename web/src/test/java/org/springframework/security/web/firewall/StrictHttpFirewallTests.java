@@ -16,6 +16,7 @@
 
 package org.springframework.security.web.firewall;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -26,6 +27,7 @@ import org.junit.Test;
 import org.springframework.http.HttpMethod;
 import org.springframework.mock.web.MockHttpServletRequest;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 /**
@@ -579,6 +581,33 @@ public class StrictHttpFirewallTests {
 		assertThatExceptionOfType(RequestRejectedException.class).isThrownBy(() -> request.getHeader("good name"));
 	}
 
+	@Test
+	public void getFirewalledRequestGetHeaderWhenReadTwiceThenValidatedOnce() {
+		List<String> validated = new ArrayList<>();
+		this.request.addHeader("Authorization", "Bearer token");
+		this.firewall.setAllowedHeaderNames((name) -> validated.add(name));
+		this.firewall.setAllowedHeaderValues((value) -> validated.add(value));
+		HttpServletRequest request = this.firewall.getFirewalledRequest(this.request);
+		request.getHeader("Authorization");
+		request.getHeader("Authorization");
+		request.getHeaders("Authorization").nextElement();
+		assertThat(validated).containsExactly("Authorization", "Bearer token");
+	}
+
+	@Test
+	public void getFirewalledRequestGetHeaderWhenNonAsciiHeaderValueThenNoException() {
+		this.request.addHeader("X-Name", "Ren\u00e9e \ud83d\ude00");
+		HttpServletRequest request = this.firewall.getFirewalledRequest(this.request);
+		assertThat(request.getHeader("X-Name")).isEqualTo("Ren\u00e9e \ud83d\ude00");
+	}
+
+	@Test
+	public void getFirewalledRequestGetHeaderWhenNonAsciiControlCharacterInHeaderValueThenException() {
+		this.request.addHeader("X-Name", "Ren\u00e9e\u0085");
+		HttpServletRequest request = this.firewall.getFirewalledRequest(this.request);
+		assertThatExceptionOfType(RequestRejectedException.class).isThrownBy(() -> request.getHeader("X-Name"));
+	}
+
 	@Test
 	public void getFirewalledRequestGetDateHeaderWhenControlCharacterInHeaderNameThenException() {
 		this.request.addHeader("Bad\0Name", "some value");
@@ -690,4 +719,22 @@ public class StrictHttpFirewallTests {
 				.isThrownBy(() -> request.getParameterValues("bad name"));
 	}
 
+	@Test
+	public void getFirewalledRequestWhenAddedToEncodedUrlBlocklistAfterFirstRequestThenException() {
+		this.request.setRequestURI("/a/b");
+		this.firewall.getFirewalledRequest(this.request);
+		this.firewall.getEncodedUrlBlocklist().add("/b");
+		assertThatExceptionOfType(RequestRejectedException.class)
+				.isThrownBy(() -> this.firewall.getFirewalledRequest(this.request));
+	}
+
+	@Test
+	public void getFirewalledRequestWhenRemovedFromDecodedUrlBlocklistAfterFirstRequestThenNoException() {
+		this.request.setPathInfo("/a/b;c");
+		assertThatExceptionOfType(RequestRejectedException.class)
+				.isThrownBy(() -> this.firewall.getFirewalledRequest(this.request));
+		this.firewall.getDecodedUrlBlocklist().remove(";");
+		this.firewall.getFirewalledRequest(this.request);
+	}
+
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.firewall;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Ben Siegler
+ */
+public class UrlBlocklistMatcherTests {
+
+	@Test
+	public void nextWhenNoBlocklistedStringThenNoMatch() {
+		UrlBlocklistMatcher matcher = UrlBlocklistMatcher.compile(Collections.emptyList());
+		assertThat(containsAny(matcher, "/a/b;c")).isFalse();
+		assertThat(containsAny(matcher, "")).isFalse();
+	}
+
+	@Test
+	public void nextWhenContainsBlocklistedStringThenMatch() {
+		UrlBlocklistMatcher matcher = UrlBlocklistMatcher.compile(Arrays.asList(";", "%2e", "%2E"));
+		assertThat(containsAny(matcher, "/a;jsessionid=1")).isTrue();
+		assertThat(containsAny(matcher, "/a/%2E%2E/b")).isTrue();
+		assertThat(containsAny(matcher, "/a/%2f/b")).isFalse();
+	}
+
+	@Test
+	public void nextWhenBlocklistedStringFollowsPartialMatchThenMatch() {
+		UrlBlocklistMatcher matcher = UrlBlocklistMatcher.compile(Arrays.asList("%2f%2f", "f%25"));
+		assertThat(containsAny(matcher, "/a%2f%2%2f%2fb")).isTrue();
+		assertThat(containsAny(matcher, "/a%2f%25")).isTrue();
+		assertThat(containsAny(matcher, "/a%2f%2b")).isFalse();
+	}
+
+	@Test
+	public void nextWhenBlocklistedStringInsideAnotherThenMatch() {
+		UrlBlocklistMatcher matcher = UrlBlocklistMatcher.compile(Arrays.asList("a/b/c/d", "/b/"));
+		assertThat(containsAny(matcher, "xa/b/c")).isTrue();
+	}
+
+	@Test
+	public void nextWhenNonAsciiBlocklistedStringThenMatch() {
+		UrlBlocklistMatcher matcher = UrlBlocklistMatcher.compile(Arrays.asList("été", " "));
+		assertThat(containsAny(matcher, "/éété")).isTrue();
+		assertThat(containsAny(matcher, "/a b")).isTrue();
+		assertThat(containsAny(matcher, "/étè")).isFalse();
+	}
+
+	@Test
+	public void isMatchWhenEmptyStringBlocklistedThenInitialStateMatches() {
+		UrlBlocklistMatcher matcher = UrlBlocklistMatcher.compile(Collections.singletonList(""));
+		assertThat(matcher.isMatch(matcher.initialState())).isTrue();
+		assertThat(containsAny(matcher, "/a")).isTrue();
+	}
+
+	private static boolean containsAny(UrlBlocklistMatcher matcher, String value) {
+		int state = matcher.initialState();
+		if (matcher.isMatch(state)) {
+			return true;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			state = matcher.next(state, value.charAt(i));
+			if (matcher.isMatch(state)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
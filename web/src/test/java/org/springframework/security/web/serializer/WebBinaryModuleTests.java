@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.serializer;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.serializer.CoreBinaryModule;
+import org.springframework.security.serializer.SecurityBinaryCodec;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link WebBinaryModule}.
+ *
+ * @author Ben Siegler
+ */
+public class WebBinaryModuleTests {
+
+	private final SecurityBinaryCodec codec = new SecurityBinaryCodec(
+			Arrays.asList(new CoreBinaryModule(), new WebBinaryModule()));
+
+	@Test
+	public void deserializeWhenWebAuthenticationDetailsThenEqual() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setRemoteAddr("192.168.1.1");
+		request.getSession();
+		UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken("user", "password");
+		token.setDetails(new WebAuthenticationDetails(request));
+		Authentication read = this.codec.deserialize(this.codec.serialize(token), Authentication.class);
+		assertThat(read.getDetails()).isEqualTo(token.getDetails());
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.authentication;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authentication.TwoFactorAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.security.web.authentication.twofa.repositories.InMemoryReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.repositories.ReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.services.TotpService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link ReactiveTwoFactorAuthenticationManager}.
+ */
+public class ReactiveTwoFactorAuthenticationManagerTests {
+
+	// RFC 6238 Appendix B SHA1 seed, Base32 encoded; its code at t=59s is 287082
+	private static final String TOTP_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+
+	private final ReactiveTwoFactorAuthCodeRepository codeRepository = new InMemoryReactiveTwoFactorAuthCodeRepository();
+
+	private final ReactiveUserDetailsService userDetailsService = mock(ReactiveUserDetailsService.class);
+
+	private final TotpService totpService = new TotpService();
+
+	private ReactiveTwoFactorAuthenticationManager manager;
+
+	@Before
+	public void setup() {
+		this.manager = new ReactiveTwoFactorAuthenticationManager(this.codeRepository, this.userDetailsService,
+				this.totpService);
+		this.totpService.setClock(Clock.fixed(Instant.ofEpochSecond(59), ZoneOffset.UTC));
+	}
+
+	@Test
+	public void constructorWhenCodeRepositoryNullThenException() {
+		assertThatIllegalArgumentException().isThrownBy(
+				() -> new ReactiveTwoFactorAuthenticationManager(null, this.userDetailsService, this.totpService));
+	}
+
+	@Test
+	public void authenticateWhenSentCodeMatchesThenAuthenticated() {
+		UserDetails user = twoFactorUser(new TwoFactorPreference(false, "user@example.com"));
+		given(this.userDetailsService.findByUsername("user")).willReturn(Mono.just(user));
+		saveAttempt("123456", System.currentTimeMillis());
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", " 123456 ")))
+				.assertNext((authentication) -> {
+					assertThat(authentication.isAuthenticated()).isTrue();
+					assertThat(authentication.getPrincipal()).isSameAs(user);
+					assertThat(authentication.getAuthorities()).isEqualTo(user.getAuthorities());
+				}).verifyComplete();
+	}
+
+	@Test
+	public void authenticateWhenSentCodeDoesNotMatchThenBadCredentials() {
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(false, "user@example.com"))));
+		saveAttempt("123456", System.currentTimeMillis());
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "654321")))
+				.verifyError(BadCredentialsException.class);
+	}
+
+	@Test
+	public void authenticateWhenSentCodeExpiredThenBadCredentials() {
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(false, "user@example.com"))));
+		long now = System.currentTimeMillis();
+		this.manager.setExpirationTime(1000);
+		this.manager.setClock(Clock.fixed(Instant.ofEpochMilli(now + 2000), ZoneOffset.UTC));
+		saveAttempt("123456", now);
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "123456")))
+				.verifyErrorSatisfies((ex) -> assertThat(ex).isInstanceOf(BadCredentialsException.class)
+						.hasMessage("code is expired"));
+	}
+
+	@Test
+	public void authenticateWhenAuthenticatorCodeMatchesThenAuthenticated() {
+		HashMap<Integer, TwoFactorPreference> preferences = new HashMap<>();
+		preferences.put(1, new TwoFactorPreference(false, "user@example.com"));
+		preferences.put(2, new TwoFactorPreference(true, TOTP_SECRET));
+		given(this.userDetailsService.findByUsername("user")).willReturn(Mono.just(twoFactorUser(preferences)));
+		saveAttempt(null, System.currentTimeMillis());
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "287082")))
+				.expectNextCount(1).verifyComplete();
+	}
+
+	@Test
+	public void authenticateWhenAuthenticatorAttemptExpiredThenBadCredentials() {
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(true, TOTP_SECRET))));
+		long now = System.currentTimeMillis();
+		this.manager.setExpirationTime(1000);
+		this.manager.setClock(Clock.fixed(Instant.ofEpochMilli(now + 2000), ZoneOffset.UTC));
+		saveAttempt(null, now);
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "287082")))
+				.verifyErrorSatisfies((ex) -> assertThat(ex).isInstanceOf(BadCredentialsException.class)
+						.hasMessage("code is expired"));
+	}
+
+	@Test
+	public void authenticateWhenAuthenticatorCodeDoesNotMatchThenBadCredentials() {
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(true, TOTP_SECRET))));
+		saveAttempt(null, System.currentTimeMillis());
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "287083")))
+				.verifyError(BadCredentialsException.class);
+	}
+
+	@Test
+	public void authenticateWhenNoAuthenticatorRegisteredThenBadCredentials() {
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(false, "user@example.com"))));
+		saveAttempt(null, System.currentTimeMillis());
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "287082")))
+				.verifyError(BadCredentialsException.class);
+	}
+
+	@Test
+	public void authenticateWhenNoAttemptThenCredentialsNotFound() {
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "123456")))
+				.verifyError(AuthenticationCredentialsNotFoundException.class);
+	}
+
+	@Test
+	public void authenticateWhenUserNotFoundThenBadCredentials() {
+		given(this.userDetailsService.findByUsername("user")).willReturn(Mono.empty());
+		saveAttempt("123456", System.currentTimeMillis());
+		StepVerifier.create(this.manager.authenticate(new TwoFactorAuthenticationToken("session", "123456")))
+				.verifyError(BadCredentialsException.class);
+	}
+
+	@Test
+	public void authenticateWhenNotTwoFactorTokenThenEmpty() {
+		StepVerifier.create(this.manager.authenticate(new TestingAuthenticationToken("user", "password")))
+				.verifyComplete();
+	}
+
+	private void saveAttempt(String code, long time) {
+		this.codeRepository.insertCode(new SignInAttempt("session", code, "user", time)).block();
+	}
+
+	private static UserDetails twoFactorUser(TwoFactorPreference primaryPreference) {
+		HashMap<Integer, TwoFactorPreference> preferences = new HashMap<>();
+		preferences.put(1, primaryPreference);
+		return twoFactorUser(preferences);
+	}
+
+	private static UserDetails twoFactorUser(HashMap<Integer, TwoFactorPreference> preferences) {
+		return new User("user", "password", AuthorityUtils.createAuthorityList("ROLE_USER")) {
+
+			@Override
+			public boolean isTwoFactorAuthEnabled() {
+				return true;
+			}
+
+			@Override
+			public HashMap<Integer, TwoFactorPreference> getTwoFactorAuthPreferences() {
+				return preferences;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.authentication;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.mock.web.server.MockWebSession;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.TwoFactorPreference;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.twofa.dtos.SignInAttempt;
+import org.springframework.security.web.authentication.twofa.ratelimit.InMemoryTwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.KeyType;
+import org.springframework.security.web.authentication.twofa.ratelimit.TwoFactorAuthRateLimiter.Operation;
+import org.springframework.security.web.authentication.twofa.repositories.InMemoryReactiveTwoFactorAuthCodeRepository;
+import org.springframework.security.web.authentication.twofa.services.TotpService;
+import org.springframework.security.web.authentication.twofa.stategies.sendattemp.TwoFactorAuthCodeSendStrategy;
+import org.springframework.security.web.authentication.twofa.stategies.sendfailure.TwoFactorAuthCodeSendFailureStrategy;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import org.springframework.web.server.WebFilterChain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Tests for {@link TwoFactorAuthenticationWebFilter}.
+ */
+public class TwoFactorAuthenticationWebFilterTests {
+
+	private final ReactiveAuthenticationManager authenticationManager = mock(ReactiveAuthenticationManager.class);
+
+	private final ReactiveUserDetailsService userDetailsService = mock(ReactiveUserDetailsService.class);
+
+	private final TwoFactorAuthCodeSendStrategy sendStrategy = mock(TwoFactorAuthCodeSendStrategy.class);
+
+	private final TwoFactorAuthCodeSendFailureStrategy sendFailureStrategy = mock(
+			TwoFactorAuthCodeSendFailureStrategy.class);
+
+	private final InMemoryReactiveTwoFactorAuthCodeRepository codeRepository = new InMemoryReactiveTwoFactorAuthCodeRepository();
+
+	private final WebFilterChain chain = mock(WebFilterChain.class);
+
+	private final MockWebSession session = new MockWebSession();
+
+	private TwoFactorAuthenticationWebFilter filter;
+
+	@Before
+	public void setup() {
+		ReactiveTwoFactorAuthenticationManager twoFactorAuthenticationManager = new ReactiveTwoFactorAuthenticationManager(
+				this.codeRepository, this.userDetailsService, new TotpService());
+		this.filter = new TwoFactorAuthenticationWebFilter(this.authenticationManager, twoFactorAuthenticationManager,
+				this.userDetailsService, this.sendStrategy);
+		this.filter.setCodeRepository(this.codeRepository);
+		this.filter.setSendFailureStrategy(this.sendFailureStrategy);
+		this.filter.setGenerationStrategy(() -> "123456");
+		this.filter.setSendScheduler(Schedulers.immediate());
+		given(this.chain.filter(any())).willReturn(Mono.empty());
+	}
+
+	@Test
+	public void constructorWhenSendStrategyNullThenException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new TwoFactorAuthenticationWebFilter(
+				this.authenticationManager, this.authenticationManager, this.userDetailsService, null));
+	}
+
+	@Test
+	public void filterWhenNotTwoFactorRequestThenChainContinued() {
+		MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/"));
+		this.filter.filter(exchange, this.chain).block();
+		verify(this.chain).filter(exchange);
+		verifyZeroInteractions(this.authenticationManager);
+	}
+
+	@Test
+	public void loginWhenTwoFactorDisabledThenLoggedIn() {
+		UserDetails user = User.withUsername("user").password("password").roles("USER").build();
+		givenPasswordAuthenticates(user);
+		MockServerWebExchange exchange = login();
+		assertRedirect(exchange, "/");
+		assertThat(securityContext()).isNotNull();
+		verifyZeroInteractions(this.sendStrategy);
+	}
+
+	@Test
+	public void loginWhenTwoFactorEnabledThenCodeSavedSentAndRedirected() throws Exception {
+		UserDetails user = twoFactorUser(new TwoFactorPreference(false, "user@example.com"));
+		givenPasswordAuthenticates(user);
+		MockServerWebExchange exchange = login();
+		assertRedirect(exchange, "/2FA");
+		assertThat(securityContext()).isNull();
+		SignInAttempt attempt = this.codeRepository.getCode(this.session.getId()).block();
+		assertThat(attempt.getTwoFactorCode()).isEqualTo("123456");
+		assertThat(attempt.getUsername()).isEqualTo("user");
+		verify(this.sendStrategy).sendCode(user, attempt);
+	}
+
+	@Test
+	public void loginWhenAuthenticatorAppThenAttemptSavedWithoutCode() {
+		givenPasswordAuthenticates(twoFactorUser(new TwoFactorPreference(true, "GEZDGNBVGY3TQOJQ")));
+		MockServerWebExchange exchange = login();
+		assertRedirect(exchange, "/2FA");
+		assertThat(this.codeRepository.getCode(this.session.getId()).block().getTwoFactorCode()).isNull();
+		verifyZeroInteractions(this.sendStrategy);
+	}
+
+	@Test
+	public void loginWhenBadCredentialsThenRedirectedToLoginError() {
+		given(this.authenticationManager.authenticate(any()))
+				.willReturn(Mono.error(new BadCredentialsException("Invalid Credentials")));
+		MockServerWebExchange exchange = login();
+		assertRedirect(exchange, "/login?error");
+	}
+
+	@Test
+	public void loginWhenSendFailsThenFailureStrategyInvoked() throws Exception {
+		givenPasswordAuthenticates(twoFactorUser(new TwoFactorPreference(false, "user@example.com")));
+		IllegalStateException failure = new IllegalStateException("gateway down");
+		willThrow(failure).given(this.sendStrategy).sendCode(any(), any());
+		MockServerWebExchange exchange = login();
+		assertRedirect(exchange, "/2FA");
+		verify(this.sendFailureStrategy).handleAsyncSendFailure(any(), eq(failure));
+	}
+
+	@Test
+	public void loginWhenDefaultSchedulerThenCodeNotSentOnRequestThread() throws Exception {
+		this.filter.setSendScheduler(Schedulers.boundedElastic());
+		givenPasswordAuthenticates(twoFactorUser(new TwoFactorPreference(false, "user@example.com")));
+		AtomicReference<Thread> sendingThread = new AtomicReference<>();
+		willAnswer((invocation) -> {
+			sendingThread.set(Thread.currentThread());
+			return null;
+		}).given(this.sendStrategy).sendCode(any(), any());
+		login();
+		assertThat(sendingThread.get()).isNotNull().isNotSameAs(Thread.currentThread());
+	}
+
+	@Test
+	public void verifyCodeWhenCorrectThenLoggedInAndAttemptRemoved() {
+		UserDetails user = twoFactorUser(new TwoFactorPreference(false, "user@example.com"));
+		given(this.userDetailsService.findByUsername("user")).willReturn(Mono.just(user));
+		String sessionId = this.session.getId();
+		saveAttempt("123456");
+		MockServerWebExchange exchange = submitCode("123456");
+		assertRedirect(exchange, "/");
+		assertThat(securityContext().getAuthentication().getPrincipal()).isSameAs(user);
+		assertThat(this.session.getId()).isNotEqualTo(sessionId);
+		assertThat(this.codeRepository.getCode(sessionId).block()).isNull();
+	}
+
+	@Test
+	public void verifyCodeWhenIncorrectThenRedirectedToTwoFactorError() {
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(false, "user@example.com"))));
+		saveAttempt("123456");
+		MockServerWebExchange exchange = submitCode("654321");
+		assertRedirect(exchange, "/2FA?error");
+		assertThat(securityContext()).isNull();
+		assertThat(this.codeRepository.getCode(this.session.getId()).block()).isNotNull();
+	}
+
+	@Test
+	public void verifyCodeWhenNoAttemptThenRedirectedToLogin() {
+		MockServerWebExchange exchange = submitCode("123456");
+		assertRedirect(exchange, "/login");
+	}
+
+	@Test
+	public void verifyCodeWhenTooManyAttemptsThenLockedOut() {
+		InMemoryTwoFactorAuthRateLimiter rateLimiter = new InMemoryTwoFactorAuthRateLimiter();
+		rateLimiter.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION,
+				InMemoryTwoFactorAuthRateLimiter.Policy.of(2, Duration.ofMinutes(1)).withLockout(Duration.ofHours(1)));
+		this.filter.setRateLimiter(rateLimiter);
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(false, "user@example.com"))));
+		saveAttempt("123456");
+		assertRedirect(submitCode("000000"), "/2FA?error");
+		assertRedirect(submitCode("111111"), "/2FA?error");
+		assertRedirect(submitCode("123456"), "/2FA?locked");
+		assertThat(securityContext()).isNull();
+		assertThat(rateLimiter.getRejectedCount(Operation.VERIFY_CODE)).isEqualTo(1);
+	}
+
+	@Test
+	public void verifyCodeWhenUserOverLimitThenLockedOutWithoutCheckingCode() {
+		InMemoryTwoFactorAuthRateLimiter rateLimiter = new InMemoryTwoFactorAuthRateLimiter();
+		this.filter.setRateLimiter(rateLimiter);
+		int limit = rateLimiter.getPolicy(Operation.VERIFY_CODE, KeyType.USERNAME).getLimit();
+		for (int i = 0; i < limit; i++) {
+			rateLimiter.tryAcquire(Operation.VERIFY_CODE, KeyType.USERNAME, "user");
+		}
+		saveAttempt("123456");
+		assertRedirect(submitCode("123456"), "/2FA?locked");
+		verifyZeroInteractions(this.userDetailsService);
+	}
+
+	@Test
+	public void verifyCodeWhenNoAttemptThenSessionNotCharged() {
+		InMemoryTwoFactorAuthRateLimiter rateLimiter = new InMemoryTwoFactorAuthRateLimiter();
+		rateLimiter.setPolicy(Operation.VERIFY_CODE, KeyType.SESSION,
+				InMemoryTwoFactorAuthRateLimiter.Policy.of(1, Duration.ofMinutes(1)).withLockout(Duration.ofHours(1)));
+		this.filter.setRateLimiter(rateLimiter);
+		given(this.userDetailsService.findByUsername("user"))
+				.willReturn(Mono.just(twoFactorUser(new TwoFactorPreference(false, "user@example.com"))));
+		for (int i = 0; i < 10; i++) {
+			assertRedirect(submitCode("000000"), "/login");
+		}
+		saveAttempt("123456");
+		assertRedirect(submitCode("123456"), "/");
+		assertThat(rateLimiter.getRejectedCount(Operation.VERIFY_CODE)).isZero();
+	}
+
+	@Test
+	public void verifyCodeWhenRemoteAddressRefusedThenLockedOutWithoutCheckingSession() {
+		TwoFactorAuthRateLimiter rateLimiter = mock(TwoFactorAuthRateLimiter.class);
+		given(rateLimiter.tryAcquire(eq(Operation.VERIFY_CODE), eq(KeyType.REMOTE_ADDRESS), any())).willReturn(false);
+		this.filter.setRateLimiter(rateLimiter);
+		saveAttempt("123456");
+		assertRedirect(submitCode("123456"), "/2FA?locked");
+		verify(rateLimiter, never()).tryAcquire(eq(Operation.VERIFY_CODE), eq(KeyType.SESSION), any());
+		verifyZeroInteractions(this.userDetailsService);
+	}
+
+	@Test
+	public void resendCodeWhenPendingThenSentAgain() throws Exception {
+		UserDetails user = twoFactorUser(new TwoFactorPreference(false, "user@example.com"));
+		given(this.userDetailsService.findByUsername("user")).willReturn(Mono.just(user));
+		SignInAttempt attempt = saveAttempt("123456");
+		MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/2FA/resend"));
+		this.filter.filter(exchange, this.chain).block();
+		assertRedirect(exchange, "/2FA");
+		verify(this.sendStrategy).sendCode(user, attempt);
+	}
+
+	@Test
+	public void resendCodeWhenTooManyRequestsThenLockedOut() throws Exception {
+		UserDetails user = twoFactorUser(new TwoFactorPreference(false, "user@example.com"));
+		given(this.userDetailsService.findByUsername("user")).willReturn(Mono.just(user));
+		SignInAttempt attempt = saveAttempt("123456");
+		int limit = new InMemoryTwoFactorAuthRateLimiter().getPolicy(Operation.RESEND_CODE, KeyType.SESSION)
+				.getLimit();
+		for (int i = 0; i < limit; i++) {
+			assertRedirect(resendCode(), "/2FA");
+		}
+		assertRedirect(resendCode(), "/2FA?locked");
+		verify(this.sendStrategy, times(limit)).sendCode(user, attempt);
+	}
+
+	@Test
+	public void resendCodeWhenAttemptExpiredThenRedirectedToLogin() {
+		saveAttempt("123456");
+		this.filter.setExpirationTime(1000);
+		this.filter.setClock(Clock.fixed(Instant.ofEpochMilli(System.currentTimeMillis() + 2000), ZoneOffset.UTC));
+		assertRedirect(resendCode(), "/login");
+		verifyZeroInteractions(this.sendStrategy);
+	}
+
+	@Test
+	public void resendCodeWhenNoAttemptThenRedirectedToLogin() {
+		MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/2FA/resend"));
+		this.filter.filter(exchange, this.chain).block();
+		assertRedirect(exchange, "/login");
+		verifyZeroInteractions(this.sendStrategy);
+	}
+
+	private void givenPasswordAuthenticates(UserDetails user) {
+		given(this.authenticationManager.authenticate(any()))
+				.willReturn(Mono.just(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities())));
+	}
+
+	private MockServerWebExchange login() {
+		MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/login")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).body("username=user&password=password"));
+		this.filter.filter(exchange, this.chain).block();
+		return exchange;
+	}
+
+	private MockServerWebExchange submitCode(String code) {
+		MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/2FA/authenticate")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED).body("code=" + code));
+		this.filter.filter(exchange, this.chain).block();
+		return exchange;
+	}
+
+	private MockServerWebExchange resendCode() {
+		MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/2FA/resend"));
+		this.filter.filter(exchange, this.chain).block();
+		return exchange;
+	}
+
+	private SignInAttempt saveAttempt(String code) {
+		SignInAttempt attempt = new SignInAttempt(this.session.getId(), code, "user", System.currentTimeMillis());
+		this.codeRepository.insertCode(attempt).block();
+		return attempt;
+	}
+
+	private MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+		return MockServerWebExchange.builder(request).session(this.session).build();
+	}
+
+	private MockServerWebExchange exchange(MockServerHttpRequest request) {
+		return MockServerWebExchange.builder(request).session(this.session).build();
+	}
+
+	private SecurityContext securityContext() {
+		return this.session
+				.getAttribute(WebSessionServerSecurityContextRepository.DEFAULT_SPRING_SECURITY_CONTEXT_ATTR_NAME);
+	}
+
+	private static void assertRedirect(MockServerWebExchange exchange, String location) {
+		assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.FOUND);
+		assertThat(exchange.getResponse().getHeaders().getLocation()).hasToString(location);
+	}
+
+	private static UserDetails twoFactorUser(TwoFactorPreference primaryPreference) {
+		HashMap<Integer, TwoFactorPreference> preferences = new HashMap<>();
+		preferences.put(1, primaryPreference);
+		return new User("user", "password", AuthorityUtils.createAuthorityList("ROLE_USER")) {
+
+			@Override
+			public boolean isTwoFactorAuthEnabled() {
+				return true;
+			}
+
+			@Override
+			public HashMap<Integer, TwoFactorPreference> getTwoFactorAuthPreferences() {
+				return preferences;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.context;
+
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link CachingServerSecurityContextRepository}.
+ *
+ * @author Ben Siegler
+ */
+public class CachingServerSecurityContextRepositoryTests {
+
+	private final SecurityContext context = new SecurityContextImpl(
+			new TestingAuthenticationToken("user", "password", "ROLE_USER"));
+
+	private final MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+
+	private ServerSecurityContextRepository delegate;
+
+	private CachingServerSecurityContextRepository repository;
+
+	@Before
+	public void setUp() {
+		this.delegate = mock(ServerSecurityContextRepository.class);
+		given(this.delegate.load(any())).willReturn(Mono.just(this.context));
+		given(this.delegate.save(any(), any())).willReturn(Mono.empty());
+		this.repository = new CachingServerSecurityContextRepository(this.delegate);
+	}
+
+	@Test
+	public void constructorWhenDelegateIsNullThenThrowIllegalArgumentException() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new CachingServerSecurityContextRepository(null))
+				.withMessage("delegate cannot be null");
+	}
+
+	@Test
+	public void loadWhenSubscribedTwiceThenDelegateLoadsOnce() {
+		Mono<SecurityContext> load = this.repository.load(this.exchange);
+		StepVerifier.create(load).expectNext(this.context).verifyComplete();
+		StepVerifier.create(load).expectNext(this.context).verifyComplete();
+		StepVerifier.create(this.repository.load(this.exchange)).expectNext(this.context).verifyComplete();
+		verify(this.delegate, times(1)).load(this.exchange);
+		assertThat(this.repository.getRoundTrips(this.exchange)).isEqualTo(1);
+		assertThat(this.repository.getLoadCount()).isEqualTo(1);
+		assertThat(this.repository.getExchangeCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void loadWhenOtherExchangeThenDelegateLoadsAgain() {
+		MockServerWebExchange other = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+		this.repository.load(this.exchange).block();
+		this.repository.load(other).block();
+		verify(this.delegate).load(this.exchange);
+		verify(this.delegate).load(other);
+		assertThat(this.repository.getExchangeCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void saveWhenContextUnchangedThenNotDelegated() {
+		this.repository.load(this.exchange).block();
+		StepVerifier.create(this.repository.save(this.exchange, this.context)).verifyComplete();
+		verify(this.delegate, never()).save(any(), any());
+		assertThat(this.repository.getSkippedSaveCount()).isEqualTo(1);
+		assertThat(this.repository.getRoundTrips(this.exchange)).isEqualTo(1);
+	}
+
+	@Test
+	public void saveWhenAuthenticationReplacedThenDelegated() {
+		this.repository.load(this.exchange).block();
+		this.context.setAuthentication(new TestingAuthenticationToken("admin", "password", "ROLE_ADMIN"));
+		StepVerifier.create(this.repository.save(this.exchange, this.context)).verifyComplete();
+		verify(this.delegate).save(this.exchange, this.context);
+		assertThat(this.repository.getSaveCount()).isEqualTo(1);
+		assertThat(this.repository.getRoundTrips(this.exchange)).isEqualTo(2);
+	}
+
+	@Test
+	public void saveWhenNewContextThenLoadReturnsItWithoutDelegating() {
+		SecurityContext saved = new SecurityContextImpl(new TestingAuthenticationToken("admin", "password"));
+		StepVerifier.create(this.repository.save(this.exchange, saved)).verifyComplete();
+		StepVerifier.create(this.repository.load(this.exchange)).expectNext(saved).verifyComplete();
+		verify(this.delegate, never()).load(any());
+		StepVerifier.create(this.repository.save(this.exchange, saved)).verifyComplete();
+		verify(this.delegate, times(1)).save(this.exchange, saved);
+	}
+
+	@Test
+	public void saveWhenNullAndNothingLoadedThenNotDelegated() {
+		given(this.delegate.load(any())).willReturn(Mono.empty());
+		StepVerifier.create(this.repository.load(this.exchange)).verifyComplete();
+		StepVerifier.create(this.repository.save(this.exchange, null)).verifyComplete();
+		verify(this.delegate, never()).save(any(), any());
+	}
+
+	@Test
+	public void saveWhenNullAndContextLoadedThenDelegatedAndLoadEmpty() {
+		this.repository.load(this.exchange).block();
+		StepVerifier.create(this.repository.save(this.exchange, null)).verifyComplete();
+		verify(this.delegate).save(this.exchange, null);
+		StepVerifier.create(this.repository.load(this.exchange)).verifyComplete();
+	}
+
+	@Test
+	public void getRoundTripsWhenExchangeNotUsedThenZero() {
+		assertThat(this.repository.getRoundTrips(this.exchange)).isEqualTo(0);
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.server.context;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.http.HttpCookie;
+import org.springframework.http.ResponseCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.security.web.context.EncryptedSecurityContextCodec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link CookieServerSecurityContextRepository}.
+ *
+ * @author Ben Siegler
+ */
+public class CookieServerSecurityContextRepositoryTests {
+
+	private final TestingAuthenticationToken testToken = new TestingAuthenticationToken("someone", "passwd", "ROLE_A");
+
+	private Instant now = Instant.parse("2021-01-01T00:00:00Z");
+
+	private CookieServerSecurityContextRepository repository;
+
+	@Before
+	public void setUp() {
+		this.repository = new CookieServerSecurityContextRepository(
+				new EncryptedSecurityContextCodec("key1", Encryptors.stronger("password", "5c0744940b5c369b")));
+		this.repository.setClock(Clock.fixed(this.now, ZoneOffset.UTC));
+	}
+
+	@Test
+	public void saveAndLoadThenFound() {
+		ResponseCookie cookie = save(new SecurityContextImpl(this.testToken));
+		assertThat(cookie.isHttpOnly()).isTrue();
+		assertThat(cookie.getMaxAge()).isEqualTo(Duration.ofMinutes(30));
+		SecurityContext context = this.repository.load(exchange(cookie)).block();
+		assertThat(context.getAuthentication()).isEqualTo(this.testToken);
+	}
+
+	@Test
+	public void saveThenCookieSameSiteLaxAndSecureWhenConfigured() {
+		ResponseCookie cookie = save(new SecurityContextImpl(this.testToken));
+		assertThat(cookie.getSameSite()).isEqualTo("Lax");
+		assertThat(cookie.isSecure()).isFalse();
+		this.repository.setSecure(true);
+		this.repository.setSameSite("Strict");
+		cookie = save(new SecurityContextImpl(this.testToken));
+		assertThat(cookie.getSameSite()).isEqualTo("Strict");
+		assertThat(cookie.isSecure()).isTrue();
+	}
+
+	@Test
+	public void saveWhenNullThenCookieRemoved() {
+		ResponseCookie cookie = save(null);
+		assertThat(cookie.getMaxAge()).isZero();
+	}
+
+	@Test
+	public void loadWhenNoCookieThenEmpty() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+		assertThat(this.repository.load(exchange).block()).isNull();
+	}
+
+	@Test
+	public void loadWhenExpiredThenEmpty() {
+		ResponseCookie cookie = save(new SecurityContextImpl(this.testToken));
+		this.repository.setClock(Clock.fixed(this.now.plus(Duration.ofHours(1)), ZoneOffset.UTC));
+		assertThat(this.repository.load(exchange(cookie)).block()).isNull();
+	}
+
+	@Test
+	public void loadWhenHalfOfMaxAgePassedThenCookieRenewedOnCommit() {
+		ResponseCookie cookie = save(new SecurityContextImpl(this.testToken));
+		this.repository.setClock(Clock.fixed(this.now.plus(Duration.ofMinutes(20)), ZoneOffset.UTC));
+		MockServerWebExchange exchange = exchange(cookie);
+		this.repository.load(exchange).block();
+		exchange.getResponse().setComplete().block();
+		ResponseCookie renewed = exchange.getResponse().getCookies()
+				.getFirst(CookieServerSecurityContextRepository.DEFAULT_COOKIE_NAME);
+		assertThat(renewed.getValue()).isNotEqualTo(cookie.getValue());
+	}
+
+	@Test
+	public void loadWhenRecentThenCookieNotRenewed() {
+		ResponseCookie cookie = save(new SecurityContextImpl(this.testToken));
+		MockServerWebExchange exchange = exchange(cookie);
+		this.repository.load(exchange).block();
+		exchange.getResponse().setComplete().block();
+		assertThat(exchange.getResponse().getCookies()).isEmpty();
+	}
+
+	@Test
+	public void saveWhenOverSizeBudgetThenCookieRemoved() {
+		this.repository.setMaxCookieSize(100);
+		ResponseCookie cookie = save(new SecurityContextImpl(this.testToken));
+		assertThat(cookie.getMaxAge()).isZero();
+	}
+
+	private ResponseCookie save(SecurityContext context) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+		this.repository.save(exchange, context).block();
+		return exchange.getResponse().getCookies().getFirst(CookieServerSecurityContextRepository.DEFAULT_COOKIE_NAME);
+	}
+
+	private static MockServerWebExchange exchange(ResponseCookie cookie) {
+		HttpCookie requestCookie = new HttpCookie(cookie.getName(), cookie.getValue());
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/").cookie(requestCookie));
+	}
+
+}
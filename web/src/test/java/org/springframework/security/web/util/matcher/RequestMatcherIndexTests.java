@@ -0,0 +1,236 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.security.web.util.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.servlet.util.matcher.MvcRequestMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Tests for {@link RequestMatcherIndex}.
+ */
+public class RequestMatcherIndexTests {
+
+	@Test
+	public void findFirstWhenPathMatchesThenValueOfFirstMatch() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/api/admin/**"), "admin")
+				.add(new AntPathRequestMatcher("/api/**"), "api")
+				.add(new AntPathRequestMatcher("/**"), "any").build();
+		assertThat(index.findFirst(request("GET", "/api/admin/users"))).isEqualTo("admin");
+		assertThat(index.findFirst(request("GET", "/api/orders"))).isEqualTo("api");
+		assertThat(index.findFirst(request("GET", "/api"))).isEqualTo("api");
+		assertThat(index.findFirst(request("GET", "/apix"))).isEqualTo("any");
+		assertThat(index.findFirst(request("GET", "/"))).isEqualTo("any");
+	}
+
+	@Test
+	public void findFirstWhenCatchAllFirstThenCatchAllWins() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(AnyRequestMatcher.INSTANCE, "any").add(new AntPathRequestMatcher("/api/**"), "api").build();
+		assertThat(index.findFirst(request("GET", "/api/orders"))).isEqualTo("any");
+	}
+
+	@Test
+	public void findFirstWhenNoMatchThenNull() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/api/**"), "api").build();
+		assertThat(index.findFirst(request("GET", "/account"))).isNull();
+		assertThat(index.findFirstMatch(request("GET", "/account"))).isNull();
+	}
+
+	@Test
+	public void findFirstWhenWildcardThenLiteralPrefixIndexed() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/api/*/orders"), "orders")
+				.add(new AntPathRequestMatcher("/users/{id}"), "user").build();
+		assertThat(index.findFirst(request("GET", "/api/v1/orders"))).isEqualTo("orders");
+		assertThat(index.findFirst(request("GET", "/api/v1/items"))).isNull();
+		assertThat(index.findFirst(request("GET", "/users/42"))).isEqualTo("user");
+		assertThat(index.getUnindexedMatchers()).isEmpty();
+	}
+
+	@Test
+	public void findFirstWhenHttpMethodThenOnlyThatMethodMatches() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/api/**", "POST"), "post")
+				.add(new AntPathRequestMatcher("/api/**"), "api").build();
+		assertThat(index.findFirst(request("POST", "/api/orders"))).isEqualTo("post");
+		assertThat(index.findFirst(request("GET", "/api/orders"))).isEqualTo("api");
+		assertThat(index.findFirst(request("PROPFIND", "/api/orders"))).isEqualTo("api");
+		assertThat(index.findFirst(request("", "/api/orders"))).isEqualTo("post");
+	}
+
+	@Test
+	public void findFirstWhenPathInfoThenMatchedAgainstServletPathAndPathInfo() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/spring/api/**"), "api").build();
+		MockHttpServletRequest request = request("GET", "/spring");
+		request.setPathInfo("/api/orders");
+		assertThat(index.findFirst(request)).isEqualTo("api");
+	}
+
+	@Test
+	public void findFirstWhenEmptySegmentsThenIgnored() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/api/orders/**"), "orders").build();
+		assertThat(index.findFirst(request("GET", "/api//orders/42"))).isEqualTo("orders");
+	}
+
+	@Test
+	public void findFirstWhenOrRequestMatcherThenEachDelegateIndexed() {
+		RequestMatcher matcher = new OrRequestMatcher(new AntPathRequestMatcher("/css/**"),
+				new AntPathRequestMatcher("/js/**"));
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder().add(matcher, "static")
+				.add(AnyRequestMatcher.INSTANCE, "any").build();
+		assertThat(index.findFirst(request("GET", "/css/site.css"))).isEqualTo("static");
+		assertThat(index.findFirst(request("GET", "/js/site.js"))).isEqualTo("static");
+		assertThat(index.findFirst(request("GET", "/images/logo.png"))).isEqualTo("any");
+		assertThat(index.getUnindexedMatchers()).isEmpty();
+	}
+
+	@Test
+	public void findFirstWhenAndRequestMatcherThenIndexedByAnalysableDelegate() {
+		RequestMatcher custom = mock(RequestMatcher.class);
+		given(custom.matches(any())).willReturn(true);
+		RequestMatcher matcher = new AndRequestMatcher(custom, new AntPathRequestMatcher("/api/**"));
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder().add(matcher, "api").build();
+		assertThat(index.findFirst(request("GET", "/account"))).isNull();
+		verifyZeroInteractions(custom);
+		assertThat(index.findFirst(request("GET", "/api/orders"))).isEqualTo("api");
+		assertThat(index.getUnindexedMatchers()).isEmpty();
+	}
+
+	@Test
+	public void findFirstWhenUnindexedMatcherThenEvaluatedInOrder() {
+		RequestMatcher custom = mock(RequestMatcher.class);
+		given(custom.matches(any())).willReturn(true);
+		RequestMatcher caseInsensitive = new AntPathRequestMatcher("/API/**", null, false);
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/css/**"), "css").add(caseInsensitive, "api").add(custom, "custom")
+				.add(new AntPathRequestMatcher("/account/**"), "account").build();
+		assertThat(index.getUnindexedMatchers()).containsExactly(custom);
+		assertThat(index.findFirst(request("GET", "/css/site.css"))).isEqualTo("css");
+		verifyZeroInteractions(custom);
+		assertThat(index.findFirst(request("GET", "/api/orders"))).isEqualTo("api");
+		assertThat(index.findFirst(request("GET", "/account/settings"))).isEqualTo("custom");
+		verify(custom).matches(any());
+	}
+
+	@Test
+	public void findFirstWhenRegexThenLiteralPrefixIndexed() {
+		RequestMatcher custom = mock(RequestMatcher.class);
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new RegexRequestMatcher("/api/v[0-9]+/orders.*", null), "orders")
+				.add(new RegexRequestMatcher("^/account/settings?", "GET"), "settings")
+				.add(new AndRequestMatcher(custom, new RegexRequestMatcher("/admin/(users|roles)/.*", null)), "admin")
+				.build();
+		assertThat(index.getUnindexedMatchers()).isEmpty();
+		MockHttpServletRequest orders = request("GET", "/api/v1/orders");
+		orders.setQueryString("page=2");
+		assertThat(index.findFirst(orders)).isEqualTo("orders");
+		assertThat(index.findFirst(request("GET", "/account/setting"))).isEqualTo("settings");
+		assertThat(index.findFirst(request("POST", "/account/settings"))).isNull();
+		assertThat(index.findFirst(request("GET", "/other/admin/users/1"))).isNull();
+		verifyZeroInteractions(custom);
+	}
+
+	@Test
+	public void findFirstWhenRegexWithTopLevelAlternationThenNotIndexedByPath() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new RegexRequestMatcher("/api/orders|/legacy/orders", null), "orders").build();
+		assertThat(index.findFirst(request("GET", "/legacy/orders"))).isEqualTo("orders");
+	}
+
+	@Test
+	public void findFirstWhenCaseInsensitiveRegexThenNotIndexedByPath() {
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new RegexRequestMatcher("/api/orders", null, true), "orders").build();
+		assertThat(index.findFirst(request("GET", "/API/orders"))).isEqualTo("orders");
+	}
+
+	@Test
+	public void findFirstWhenMvcRequestMatcherThenNotIndexed() {
+		MvcRequestMatcher admin = new MvcRequestMatcher(null, "/users");
+		admin.setServletPath("/admin");
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/api/**"), "api").add(admin, "admin").build();
+		assertThat(index.getUnindexedMatchers()).containsExactly(admin);
+		assertThat(index.candidates(request("GET", "/orders"))).containsExactly(1);
+		assertThat(index.candidates(request("GET", "/api/orders"))).containsExactly(0, 1);
+	}
+
+	@Test
+	public void findFirstMatchThenMatcherValueAndVariables() {
+		RequestMatcher matcher = new AntPathRequestMatcher("/api/orders/{id}");
+		RequestMatcherIndex<String> index = RequestMatcherIndex.<String>builder()
+				.add(new AntPathRequestMatcher("/api/items/{id}"), "items").add(matcher, "orders").build();
+		RequestMatcherIndex.Match<String> match = index.findFirstMatch(request("GET", "/api/orders/42"));
+		assertThat(match.getRequestMatcher()).isSameAs(matcher);
+		assertThat(match.getValue()).isEqualTo("orders");
+		assertThat(match.getMatchResult().getVariables()).containsEntry("id", "42");
+	}
+
+	@Test
+	public void findFirstThenSameAsEvaluatingInOrder() {
+		List<RequestMatcher> matchers = Arrays.asList(new AntPathRequestMatcher("/api/admin/**", "DELETE"),
+				new AntPathRequestMatcher("/api/*/orders/**"), new AntPathRequestMatcher("/api/**", "GET"),
+				new AntPathRequestMatcher("/api/public"), new AntPathRequestMatcher("/login", "POST"),
+				new AntPathRequestMatcher("/**/*.css"), new AntPathRequestMatcher("/account/**"),
+				new OrRequestMatcher(new AntPathRequestMatcher("/js/**"), new AntPathRequestMatcher("/img/**")),
+				new AntPathRequestMatcher("/Account/**", null, false), new RegexRequestMatcher("/api/v[0-9]/.*", null),
+				new RegexRequestMatcher("/img/(small|large)", "GET"), new AntPathRequestMatcher("/**", "POST"));
+		RequestMatcherIndex.Builder<RequestMatcher> builder = RequestMatcherIndex.builder();
+		matchers.forEach((matcher) -> builder.add(matcher, matcher));
+		RequestMatcherIndex<RequestMatcher> index = builder.build();
+		List<String> paths = Arrays.asList("/", "/api", "/api/admin/users", "/api/v1/orders/42", "/api/public",
+				"/api/public/x", "/login", "/css/site.css", "/api/site.css", "/account", "/ACCOUNT/settings",
+				"/js/app.js", "/img", "/img/small", "/api/v1/orders", "/other");
+		List<String> methods = Arrays.asList("GET", "POST", "DELETE", "PROPFIND", "");
+		List<String> mismatches = new ArrayList<>();
+		for (String path : paths) {
+			for (String method : methods) {
+				MockHttpServletRequest request = request(method, path);
+				RequestMatcher expected = matchers.stream().filter((matcher) -> matcher.matches(request)).findFirst()
+						.orElse(null);
+				if (index.findFirst(request) != expected) {
+					mismatches.add(method + " " + path);
+				}
+			}
+		}
+		assertThat(mismatches).isEmpty();
+	}
+
+	private static MockHttpServletRequest request(String method, String servletPath) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, servletPath);
+		request.setServletPath(servletPath);
+		return request;
+	}
+
+}